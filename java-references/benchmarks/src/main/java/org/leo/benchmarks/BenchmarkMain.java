@@ -0,0 +1,42 @@
+package org.leo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of benchmarks.jar, the JMH command line with the results written as JSON by default
+ * 
+ * java -jar target/benchmarks.jar [regexp] [jmh options], same options as org.openjdk.jmh.Main (-h to list them)
+ * Without -rf / -rff the results go to jmh-result-<date>.json in the current directory : one file per run,
+ * with the parameters (implementation, size...), the score, its error and the raw iteration results of every benchmark,
+ * to compare runs over time (jmh.morethan.me or any JSON tool reads them)
+ */
+public class BenchmarkMain {
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+
+    if (commandLine.shouldHelp() || commandLine.shouldList() || commandLine.shouldListWithParams()
+        || commandLine.shouldListProfilers() || commandLine.shouldListResultFormats()) {
+      Main.main(args);
+      return;
+    }
+
+    OptionsBuilder options = new OptionsBuilder();
+    options.parent(commandLine);
+    if (!commandLine.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!commandLine.getResult().hasValue()) {
+      options.result("jmh-result-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+    }
+
+    new Runner(options.build()).run();
+  }
+}
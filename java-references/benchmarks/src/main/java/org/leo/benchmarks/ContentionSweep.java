@@ -0,0 +1,43 @@
+package org.leo.benchmarks;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the contention benchmarks once per thread count : 1, 2, 4, 8, 16, 32 and 64 threads
+ * 
+ * java -cp target/benchmarks.jar org.leo.benchmarks.ContentionSweep [regexp] [jmh options]
+ * The regexp defaults to the Contended*Benchmark classes, the other options are those of BenchmarkMain (-t and -rff are set for each run),
+ * one JSON file per thread count : jmh-contention-<date>-<threads>t.json
+ * Above the number of cores the threads share them, the throughput of the lock free reads should stay flat
+ * while the single lock collections keep dropping
+ */
+public class ContentionSweep {
+
+  private static final int[] THREADS = { 1, 2, 4, 8, 16, 32, 64 };
+
+  private static final String DEFAULT_INCLUDE = "org\\.leo\\.benchmarks\\.collections\\.Contended.*";
+
+  public static void main(String[] args) throws Exception {
+    CommandLineOptions commandLine = new CommandLineOptions(args);
+    String date = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+
+    for (int threads : THREADS) {
+      OptionsBuilder options = new OptionsBuilder();
+      options.parent(commandLine);
+      if (commandLine.getIncludes().isEmpty()) {
+        options.include(DEFAULT_INCLUDE);
+      }
+      options.threads(threads);
+      options.resultFormat(ResultFormatType.JSON);
+      options.result("jmh-contention-" + date + "-" + threads + "t.json");
+
+      new Runner(options.build()).run();
+    }
+  }
+}
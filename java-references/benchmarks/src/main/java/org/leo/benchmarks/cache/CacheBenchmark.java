@@ -0,0 +1,117 @@
+package org.leo.benchmarks.cache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.leo.benchmarks.collections.ThreadCursor;
+import org.leo.core.cache.ConcurrentCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of ConcurrentCache against the synchronized LinkedHashMap LRU of ReferenceCollections, on a Zipfian trace
+ * 
+ * The cache holds size entries out of 10 * size distinct keys, requested with a Zipf(0.99) distribution
+ * - read : get(key, loader), the loader (returning the key) runs on the misses, 1, 4 and 8 threads
+ * - readWrite : 3 reads for 1 put
+ * The hit rates of the two caches on the same traces are printed by CacheHitRateReport
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+  private static final int TRACE_LENGTH = 1 << 20;
+
+  private static final Function<Long, Long> LOADER = key -> key;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    long[] keys = ZipfianTrace.generate(TRACE_LENGTH, size * 10, 0.99, 42);
+
+    trace = new Long[TRACE_LENGTH];
+    for (int i = 0; i < TRACE_LENGTH; i++) {
+      trace[i] = keys[i];
+    }
+
+    if ("ConcurrentCache".equals(implementation)) {
+      concurrentCache = ConcurrentCache.<Long, Long> builder().maximumSize(size).build();
+    } else if ("SynchronizedLru".equals(implementation)) {
+      lruCache = new SynchronizedLruCache<>(size);
+    } else {
+      throw new IllegalArgumentException("Unknown cache implementation : " + implementation);
+    }
+
+    // warm the cache with one pass of the trace
+    for (Long key : trace) {
+      get(key);
+    }
+  }
+
+  @Benchmark
+  @Threads(1)
+  public Long read1(ThreadCursor cursor) {
+    return get(trace[cursor.next() & (TRACE_LENGTH - 1)]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Long read4(ThreadCursor cursor) {
+    return get(trace[cursor.next() & (TRACE_LENGTH - 1)]);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Long read8(ThreadCursor cursor) {
+    return get(trace[cursor.next() & (TRACE_LENGTH - 1)]);
+  }
+
+  @Benchmark
+  @Threads(8)
+  public Long readWrite8(ThreadCursor cursor) {
+    int position = cursor.next();
+    Long key = trace[position & (TRACE_LENGTH - 1)];
+
+    if ((position & 3) == 0) {
+      put(key);
+      return key;
+    }
+    return get(key);
+  }
+
+  private Long get(Long key) {
+    return concurrentCache != null ? concurrentCache.get(key, LOADER) : lruCache.get(key, LOADER);
+  }
+
+  private void put(Long key) {
+    if (concurrentCache != null) {
+      concurrentCache.put(key, key);
+    } else {
+      lruCache.put(key, key);
+    }
+  }
+
+  @Param({ "ConcurrentCache", "SynchronizedLru" })
+  private String implementation;
+
+  @Param({ "1000", "100000" })
+  private int size;
+
+  private Long[] trace;
+  private ConcurrentCache<Long, Long> concurrentCache;
+  private SynchronizedLruCache<Long, Long> lruCache;
+}
@@ -0,0 +1,69 @@
+package org.leo.benchmarks.cache;
+
+import org.leo.core.cache.ConcurrentCache;
+
+/**
+ * Hit rates of ConcurrentCache (W-TinyLFU) and of the LinkedHashMap LRU on the same Zipfian traces
+ * 
+ * A hit rate is not a JMH measure (it does not depend on time), so this is a plain main, the maintenance of ConcurrentCache
+ * runs in the calling thread (Runnable::run) so that the replay is deterministic
+ * The traces request 1M distinct keys, the caches hold 0.1% to 10% of them, with a moderate (0.8) and a strong (0.99) skew
+ * A scan (every key of the tail requested once) is inserted in the middle of each trace, the case where LRU loses its hot keys
+ * 
+ * java -cp target/benchmarks.jar org.leo.benchmarks.cache.CacheHitRateReport
+ */
+public class CacheHitRateReport {
+
+  private static final int ITEMS = 1_000_000;
+
+  private static final int TRACE_LENGTH = 5_000_000;
+
+  public static void main(String[] args) {
+    System.out.printf("%-10s %10s %15s %15s%n", "exponent", "size", "w-tinylfu", "lru");
+
+    for (double exponent : new double[] { 0.8, 0.99 }) {
+      long[] trace = withScan(ZipfianTrace.generate(TRACE_LENGTH, ITEMS, exponent, 42));
+
+      for (int size : new int[] { 1_000, 10_000, 100_000 }) {
+        System.out.printf("%-10s %10d %15.4f %15.4f%n", exponent, size, tinyLfuHitRate(trace, size), lruHitRate(trace, size));
+      }
+    }
+  }
+
+  private static long[] withScan(long[] trace) {
+    int scanLength = ITEMS / 2;
+    long[] scanned = new long[trace.length + scanLength];
+    int middle = trace.length / 2;
+
+    System.arraycopy(trace, 0, scanned, 0, middle);
+    for (int i = 0; i < scanLength; i++) {
+      // keys of the tail, ranks ITEMS / 2 to ITEMS, requested once each
+      scanned[middle + i] = (long) (ITEMS / 2 + i) * 0x9E3779B97F4A7C15L;
+    }
+    System.arraycopy(trace, middle, scanned, middle + scanLength, trace.length - middle);
+    return scanned;
+  }
+
+  private static double tinyLfuHitRate(long[] trace, int size) {
+    ConcurrentCache<Long, Long> cache = ConcurrentCache.<Long, Long> builder().maximumSize(size).executor(Runnable::run).build();
+
+    for (long key : trace) {
+      cache.get(key, k -> k);
+    }
+    return cache.stats().hitRate();
+  }
+
+  private static double lruHitRate(long[] trace, int size) {
+    SynchronizedLruCache<Long, Long> cache = new SynchronizedLruCache<>(size);
+    long hits = 0;
+
+    for (long key : trace) {
+      if (cache.getIfPresent(key) != null) {
+        hits++;
+      } else {
+        cache.put(key, key);
+      }
+    }
+    return (double) hits / trace.length;
+  }
+}
@@ -0,0 +1,45 @@
+package org.leo.benchmarks.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The LRU cache of ReferenceCollections (a LinkedHashMap in access order with removeEldestEntry) behind a lock,
+ * the baseline of the ConcurrentCache benchmarks
+ * The loader runs under the lock, as it would in the simplest shared version
+ */
+final class SynchronizedLruCache<K, V> {
+
+  SynchronizedLruCache(int maximumSize) {
+    this.map = new LinkedHashMap<K, V>(16, 0.75f, true) {
+
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+        return size() > maximumSize;
+      }
+    };
+  }
+
+  synchronized V getIfPresent(K key) {
+    return map.get(key);
+  }
+
+  synchronized V get(K key, Function<? super K, ? extends V> loader) {
+    V value = map.get(key);
+
+    if (value == null) {
+      value = loader.apply(key);
+      map.put(key, value);
+    }
+    return value;
+  }
+
+  synchronized void put(K key, V value) {
+    map.put(key, value);
+  }
+
+  private final Map<K, V> map;
+}
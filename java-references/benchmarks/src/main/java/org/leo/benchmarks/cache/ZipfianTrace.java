@@ -0,0 +1,37 @@
+package org.leo.benchmarks.cache;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Key traces following a Zipf distribution : the key of rank k is requested with a probability proportional to 1 / k^s,
+ * a few keys get most of the requests and a long tail is requested rarely, the usual shape of the traffic of a cache
+ * (s = 0.99 is the YCSB default, the higher s the more skewed)
+ * 
+ * The keys are drawn by inverting the cumulative distribution (a binary search in the precomputed sums),
+ * then scrambled so that the popular keys are not the small ones (they would hash next to each other)
+ */
+final class ZipfianTrace {
+
+  private ZipfianTrace() {
+  }
+
+  static long[] generate(int length, int items, double exponent, long seed) {
+    double[] cumulative = new double[items];
+    double sum = 0;
+
+    for (int rank = 0; rank < items; rank++) {
+      sum += 1 / Math.pow(rank + 1, exponent);
+      cumulative[rank] = sum;
+    }
+
+    Random random = new Random(seed);
+    long[] trace = new long[length];
+    for (int i = 0; i < length; i++) {
+      int rank = Arrays.binarySearch(cumulative, random.nextDouble() * sum);
+
+      trace[i] = (rank < 0 ? -rank - 1 : rank) * 0x9E3779B97F4A7C15L;
+    }
+    return trace;
+  }
+}
@@ -0,0 +1,44 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Random;
+
+/**
+ * Input data shared by the collection benchmarks, built once per trial so that no benchmark method pays for random numbers nor boxing
+ */
+final class BenchmarkData {
+
+  /** Length of the index sequences, a power of two walked cyclically by ThreadCursor */
+  static final int SEQUENCE_LENGTH = 1 << 16;
+
+  static final int SEQUENCE_MASK = SEQUENCE_LENGTH - 1;
+
+  private BenchmarkData() {
+  }
+
+  /**
+   * count distinct Integers spread over the whole int range : i * 0x9E3779B9 is a bijection of the ints (odd multiplier),
+   * so they are distinct without a set to check, and they do not come in the order of their hash as 0..count-1 would
+   * (sequential Integers fill a HashMap table in order, a best case real keys do not get)
+   */
+  static Integer[] keys(int count) {
+    Integer[] keys = new Integer[count];
+
+    for (int i = 0; i < count; i++) {
+      keys[i] = i * 0x9E3779B9;
+    }
+    return keys;
+  }
+
+  /**
+   * A random sequence of indexes in [0, bound)
+   */
+  static int[] indexes(int bound, long seed) {
+    Random random = new Random(seed);
+    int[] indexes = new int[SEQUENCE_LENGTH];
+
+    for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+      indexes[i] = random.nextInt(bound);
+    }
+    return indexes;
+  }
+}
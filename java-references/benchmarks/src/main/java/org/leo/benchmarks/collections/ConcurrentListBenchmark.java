@@ -0,0 +1,87 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi threaded costs of the thread safe lists described in ReferenceCollections :
+ * Vector and Collections.synchronizedList(ArrayList) take a lock on every call, readers included,
+ * CopyOnWriteArrayList reads its current array without a lock and copies it on every write
+ * 
+ * - get : 4 threads reading random indexes, how the reads scale
+ * - readMostly : 3 threads reading and 1 thread appending then removing the last element, the single writer keeps the readers' indexes valid
+ * The thread counts can be changed with -t (get) and -tg 3,1 (readMostly)
+ * Iteration is left out, only CopyOnWriteArrayList can be iterated while an other thread writes
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ConcurrentListBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    elements = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+
+    if ("SynchronizedArrayList".equals(implementation)) {
+      list = Collections.synchronizedList(new ArrayList<>(Arrays.asList(elements)));
+    } else {
+      list = ListBenchmark.newList(implementation, Arrays.asList(elements));
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Integer get(ThreadCursor cursor) {
+    return list.get(indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(3)
+  public Integer readMostlyGet(ThreadCursor cursor) {
+    return list.get(indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public Integer readMostlyWrite() {
+    list.add(EXTRA);
+    return list.remove(list.size() - 1);
+  }
+
+  private static final Integer EXTRA = -1;
+
+  @Param({ "Vector", "SynchronizedArrayList", "CopyOnWriteArrayList" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] elements;
+  private int[] indexes;
+  private List<Integer> list;
+}
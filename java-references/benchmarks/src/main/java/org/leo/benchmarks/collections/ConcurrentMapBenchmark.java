@@ -0,0 +1,114 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Multi threaded costs of the thread safe maps described in ReferenceCollections :
+ * Hashtable and Collections.synchronizedMap(HashMap) serialize every call on one lock,
+ * ConcurrentHashMap reads without a lock and writes by locking the bin of the key
+ * 
+ * Same keys as MapBenchmark (one lookup in two misses)
+ * - get : 4 threads reading, how the reads scale
+ * - readMostly : 3 readers, 1 writer putting an absent key then removing it
+ * - writeHeavy : 2 readers, 2 writers
+ * The thread counts can be changed with -t (get) and -tg (the groups)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ConcurrentMapBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    absent = BenchmarkData.indexes(size, 43);
+
+    if ("SynchronizedHashMap".equals(implementation)) {
+      map = Collections.synchronizedMap(MapBenchmark.newMap("HashMap", size));
+    } else {
+      map = MapBenchmark.newMap(implementation, size);
+    }
+    for (int i = 0; i < size; i++) {
+      map.put(keys[i], keys[i]);
+    }
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Integer get(ThreadCursor cursor) {
+    return lookup(cursor);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(3)
+  public Integer readMostlyGet(ThreadCursor cursor) {
+    return lookup(cursor);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public Integer readMostlyWrite(ThreadCursor cursor) {
+    return putThenRemove(cursor);
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(2)
+  public Integer writeHeavyGet(ThreadCursor cursor) {
+    return lookup(cursor);
+  }
+
+  @Benchmark
+  @Group("writeHeavy")
+  @GroupThreads(2)
+  public Integer writeHeavyWrite(ThreadCursor cursor) {
+    return putThenRemove(cursor);
+  }
+
+  private Integer lookup(ThreadCursor cursor) {
+    return map.get(keys[lookups[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  private Integer putThenRemove(ThreadCursor cursor) {
+    // the writers start at different cursor offsets, two of them rarely take the same key, and then only the remove is redundant
+    Integer key = keys[size + absent[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    map.put(key, key);
+    return map.remove(key);
+  }
+
+  @Param({ "Hashtable", "SynchronizedHashMap", "ConcurrentHashMap" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] lookups;
+  private int[] absent;
+  private Map<Integer, Integer> map;
+}
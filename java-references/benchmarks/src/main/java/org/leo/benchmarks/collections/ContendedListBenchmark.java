@@ -0,0 +1,85 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.concurrent.ReadWriteLockedList;
+import org.leo.core.concurrent.StampedArrayList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The single lock lists (Vector, Collections.synchronizedList) against the org.leo.core.concurrent ones under contention
+ * 
+ * Every thread runs the same mix : writePercent % of set at a random index (the size does not change, the indexes of the readers stay valid),
+ * the rest get at a random index
+ * Meant to be run for a growing number of threads, ContentionSweep runs it with -t 1, 2, 4... 64
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ContendedListBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    elements = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+    list = newList(implementation, Arrays.asList(elements));
+  }
+
+  static List<Integer> newList(String implementation, List<Integer> elements) {
+    switch (implementation) {
+      case "Vector":
+        return new Vector<>(elements);
+      case "SynchronizedArrayList":
+        return Collections.synchronizedList(new ArrayList<>(elements));
+      case "ReadWriteLockedList":
+        return new ReadWriteLockedList<>(new ArrayList<>(elements));
+      case "StampedArrayList":
+        return new StampedArrayList<>(elements);
+      default:
+        throw new IllegalArgumentException("Unknown list implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+    int index = indexes[position & BenchmarkData.SEQUENCE_MASK];
+
+    if (position % 100 < writePercent) {
+      return list.set(index, elements[index]);
+    }
+    return list.get(index);
+  }
+
+  @Param({ "Vector", "SynchronizedArrayList", "ReadWriteLockedList", "StampedArrayList" })
+  private String implementation;
+
+  @Param({ "0", "10", "50" })
+  private int writePercent;
+
+  @Param({ "1000", "1000000" })
+  private int size;
+
+  private Integer[] elements;
+  private int[] indexes;
+  private List<Integer> list;
+}
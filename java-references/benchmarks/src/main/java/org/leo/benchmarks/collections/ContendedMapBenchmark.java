@@ -0,0 +1,92 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.concurrent.StripedMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hashtable and Collections.synchronizedMap against StripedMap under contention, ConcurrentHashMap as the reference
+ * 
+ * Every thread runs the same mix : writePercent % of put then remove of an absent key, the rest get
+ * (same keys as MapBenchmark, one lookup in two misses)
+ * Meant to be run for a growing number of threads, ContentionSweep runs it with -t 1, 2, 4... 64
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ContendedMapBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    absent = BenchmarkData.indexes(size, 43);
+    map = newMap(implementation, size);
+
+    for (int i = 0; i < size; i++) {
+      map.put(keys[i], keys[i]);
+    }
+  }
+
+  static Map<Integer, Integer> newMap(String implementation, int size) {
+    switch (implementation) {
+      case "Hashtable":
+        return new Hashtable<>(size * 2);
+      case "SynchronizedHashMap":
+        return Collections.synchronizedMap(new HashMap<>(size * 2));
+      case "StripedMap":
+        return new StripedMap<>();
+      case "ConcurrentHashMap":
+        return new ConcurrentHashMap<>(size * 2);
+      default:
+        throw new IllegalArgumentException("Unknown map implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 100 < writePercent) {
+      Integer key = keys[size + absent[position & BenchmarkData.SEQUENCE_MASK]];
+
+      map.put(key, key);
+      return map.remove(key);
+    }
+    return map.get(keys[lookups[position & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Param({ "Hashtable", "SynchronizedHashMap", "StripedMap", "ConcurrentHashMap" })
+  private String implementation;
+
+  @Param({ "0", "10", "50" })
+  private int writePercent;
+
+  @Param({ "1000", "1000000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] lookups;
+  private int[] absent;
+  private Map<Integer, Integer> map;
+}
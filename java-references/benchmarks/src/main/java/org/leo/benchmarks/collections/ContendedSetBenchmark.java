@@ -0,0 +1,87 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.concurrent.ReadWriteLockedSet;
+import org.leo.core.concurrent.StampedHashSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collections.synchronizedSet against the org.leo.core.concurrent sets under contention
+ * 
+ * Every thread runs the same mix : writePercent % of add then remove of an absent element, the rest contains
+ * (one lookup in two misses, as in SetBenchmark)
+ * Meant to be run for a growing number of threads, ContentionSweep runs it with -t 1, 2, 4... 64
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ContendedSetBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    elements = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    absent = BenchmarkData.indexes(size, 43);
+    set = newSet(implementation, Arrays.asList(elements).subList(0, size));
+  }
+
+  static Set<Integer> newSet(String implementation, List<Integer> elements) {
+    switch (implementation) {
+      case "SynchronizedHashSet":
+        return Collections.synchronizedSet(new HashSet<>(elements));
+      case "ReadWriteLockedSet":
+        return new ReadWriteLockedSet<>(new HashSet<>(elements));
+      case "StampedHashSet":
+        return new StampedHashSet<>(elements);
+      default:
+        throw new IllegalArgumentException("Unknown set implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public boolean mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 100 < writePercent) {
+      Integer element = elements[size + absent[position & BenchmarkData.SEQUENCE_MASK]];
+
+      set.add(element);
+      return set.remove(element);
+    }
+    return set.contains(elements[lookups[position & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Param({ "SynchronizedHashSet", "ReadWriteLockedSet", "StampedHashSet" })
+  private String implementation;
+
+  @Param({ "0", "10", "50" })
+  private int writePercent;
+
+  @Param({ "1000", "1000000" })
+  private int size;
+
+  private Integer[] elements;
+  private int[] lookups;
+  private int[] absent;
+  private Set<Integer> set;
+}
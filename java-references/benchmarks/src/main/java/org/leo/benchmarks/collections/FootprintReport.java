@@ -0,0 +1,76 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.leo.core.collections.primitive.IntArrayList;
+import org.leo.core.collections.primitive.IntHashSet;
+import org.leo.core.collections.primitive.IntIntHashMap;
+import org.leo.core.collections.primitive.LongArrayList;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Retained size of the primitive collections of core-java against their boxed JDK equivalents, for the same random content
+ * 
+ * JOL walks the object graph from the collection and sums the sizes of everything reachable (the arrays, the nodes, the boxed keys...)
+ * as laid out by the running JVM, so the figures depend on its flags (compressed oops, object alignment)
+ * The boxed keys are new Integer/Long objects for most random values, that is the usual case outside of the -128..127 cache
+ * 
+ * java -cp target/benchmarks.jar org.leo.benchmarks.collections.FootprintReport [sizes, 1000,100000,1000000 by default]
+ */
+public class FootprintReport {
+
+  public static void main(String[] args) {
+    String[] sizes = args.length > 0 ? args[0].split(",") : new String[] { "1000", "100000", "1000000" };
+
+    System.out.printf("%-30s %10s %15s %15s%n", "collection", "size", "bytes", "bytes/entry");
+    for (String size : sizes) {
+      report(Integer.parseInt(size.trim()));
+    }
+  }
+
+  private static void report(int size) {
+    Random random = new Random(42);
+    IntIntHashMap intIntMap = new IntIntHashMap();
+    Map<Integer, Integer> boxedIntMap = new HashMap<>();
+    IntHashSet intSet = new IntHashSet();
+    Set<Integer> boxedSet = new HashSet<>();
+    IntArrayList intList = new IntArrayList();
+    List<Integer> boxedIntList = new ArrayList<>();
+    LongArrayList longList = new LongArrayList();
+    List<Long> boxedLongList = new ArrayList<>();
+
+    for (int i = 0; i < size; i++) {
+      int key = random.nextInt();
+
+      intIntMap.put(key, i);
+      boxedIntMap.put(key, i);
+      intSet.add(key);
+      boxedSet.add(key);
+      intList.add(key);
+      boxedIntList.add(key);
+      longList.add(key);
+      boxedLongList.add((long) key);
+    }
+
+    print("IntIntHashMap", size, intIntMap);
+    print("HashMap<Integer, Integer>", size, boxedIntMap);
+    print("IntHashSet", size, intSet);
+    print("HashSet<Integer>", size, boxedSet);
+    print("IntArrayList", size, intList);
+    print("ArrayList<Integer>", size, boxedIntList);
+    print("LongArrayList", size, longList);
+    print("ArrayList<Long>", size, boxedLongList);
+  }
+
+  private static void print(String name, int size, Object collection) {
+    long bytes = GraphLayout.parseInstance(collection).totalSize();
+
+    System.out.printf("%-30s %10d %15d %15.1f%n", name, size, bytes, bytes / (double) size);
+  }
+}
@@ -0,0 +1,226 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import org.leo.core.concurrent.MpmcRingBuffer;
+import org.leo.core.concurrent.MpscRingBuffer;
+import org.leo.core.concurrent.RingBufferQueue;
+import org.leo.core.concurrent.SpscRingBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+
+/**
+ * Producer / consumer hand off through the thread safe queues : ArrayBlockingQueue, LinkedBlockingQueue, ConcurrentLinkedQueue
+ * and the ring buffers of org.leo.core.concurrent (RingBuffer : the Spsc, Mpsc or Mpmc variant matching the threads of the group)
+ * 
+ * - spsc : 1 producer, 1 consumer
+ * - mpsc : 3 producers, 1 consumer
+ * - mpmc : 2 producers, 2 consumers
+ * - spscBatch : 1 producer, 1 consumer moving up to BATCH elements per call (fill / drain for the ring buffers, drainTo for the blocking queues)
+ * The producers and the consumers never wait, a failed offer or poll is simply retried by the next call
+ * The score of a group mixes both sides, the number to read is the polled counter : the elements handed over per second
+ * ConcurrentLinkedQueue is unbounded, it grows when its producers are faster, the queue is renewed at every iteration
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class HandoffQueueBenchmark {
+
+  private static final int BATCH = 32;
+
+  private static final Integer ELEMENT = 42;
+
+  private static final Supplier<Integer> SUPPLIER = () -> ELEMENT;
+
+  private static final Consumer<Integer> IGNORE = element -> {
+  };
+
+  @Setup(Level.Iteration)
+  public void setUp(BenchmarkParams params) {
+    String group = params.getBenchmark().substring(params.getBenchmark().lastIndexOf('.') + 1);
+
+    switch (implementation) {
+      case "ArrayBlockingQueue":
+        queue = new ArrayBlockingQueue<>(capacity);
+        break;
+      case "LinkedBlockingQueue":
+        queue = new LinkedBlockingQueue<>(capacity);
+        break;
+      case "ConcurrentLinkedQueue":
+        queue = new ConcurrentLinkedQueue<>();
+        break;
+      case "RingBuffer":
+        queue = newRingBuffer(group, capacity);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown queue implementation : " + implementation);
+    }
+  }
+
+  static RingBufferQueue<Integer> newRingBuffer(String group, int capacity) {
+    if (group.startsWith("spsc")) {
+      return new SpscRingBuffer<>(capacity);
+    }
+    if (group.startsWith("mpsc")) {
+      return new MpscRingBuffer<>(capacity);
+    }
+    return new MpmcRingBuffer<>(capacity);
+  }
+
+  /**
+   * Elements offered and polled by a thread, reported next to the score
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  public static class Counters {
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      offered = 0;
+      polled = 0;
+    }
+
+    public long offered;
+    public long polled;
+  }
+
+  /**
+   * Destination of drainTo
+   */
+  @State(Scope.Thread)
+  public static class Sink {
+
+    private final List<Integer> elements = new ArrayList<>(BATCH);
+  }
+
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public boolean spscOffer(Counters counters) {
+    return offer(counters);
+  }
+
+  @Benchmark
+  @Group("spsc")
+  @GroupThreads(1)
+  public Integer spscPoll(Counters counters) {
+    return poll(counters);
+  }
+
+  @Benchmark
+  @Group("mpsc")
+  @GroupThreads(3)
+  public boolean mpscOffer(Counters counters) {
+    return offer(counters);
+  }
+
+  @Benchmark
+  @Group("mpsc")
+  @GroupThreads(1)
+  public Integer mpscPoll(Counters counters) {
+    return poll(counters);
+  }
+
+  @Benchmark
+  @Group("mpmc")
+  @GroupThreads(2)
+  public boolean mpmcOffer(Counters counters) {
+    return offer(counters);
+  }
+
+  @Benchmark
+  @Group("mpmc")
+  @GroupThreads(2)
+  public Integer mpmcPoll(Counters counters) {
+    return poll(counters);
+  }
+
+  @Benchmark
+  @Group("spscBatch")
+  @GroupThreads(1)
+  public int spscBatchFill(Counters counters) {
+    int count = 0;
+
+    if (queue instanceof RingBufferQueue) {
+      count = ((RingBufferQueue<Integer>) queue).fill(SUPPLIER, BATCH);
+    } else {
+      while (count < BATCH && queue.offer(ELEMENT)) {
+        count++;
+      }
+    }
+    counters.offered += count;
+    return count;
+  }
+
+  @Benchmark
+  @Group("spscBatch")
+  @GroupThreads(1)
+  public int spscBatchDrain(Counters counters, Sink sink) {
+    int count = 0;
+
+    if (queue instanceof RingBufferQueue) {
+      count = ((RingBufferQueue<Integer>) queue).drain(IGNORE, BATCH);
+    } else if (queue instanceof BlockingQueue) {
+      count = ((BlockingQueue<Integer>) queue).drainTo(sink.elements, BATCH);
+      sink.elements.clear();
+    } else {
+      while (count < BATCH && queue.poll() != null) {
+        count++;
+      }
+    }
+    counters.polled += count;
+    return count;
+  }
+
+  private boolean offer(Counters counters) {
+    boolean offered = queue.offer(ELEMENT);
+
+    if (offered) {
+      counters.offered++;
+    }
+    return offered;
+  }
+
+  private Integer poll(Counters counters) {
+    Integer element = queue.poll();
+
+    if (element != null) {
+      counters.polled++;
+    }
+    return element;
+  }
+
+  @Param({ "ArrayBlockingQueue", "LinkedBlockingQueue", "ConcurrentLinkedQueue", "RingBuffer" })
+  private String implementation;
+
+  @Param({ "128", "8192" })
+  private int capacity;
+
+  private Queue<Integer> queue;
+}
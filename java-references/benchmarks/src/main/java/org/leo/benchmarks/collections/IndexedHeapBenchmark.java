@@ -0,0 +1,160 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.collections.heap.IndexedDaryHeap;
+import org.leo.core.collections.heap.IndexedLongHeap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * PriorityQueue against the indexed heaps of org.leo.core.collections.heap : BinaryHeap and QuaternaryHeap (IndexedDaryHeap
+ * with an arity of 2 and 4, tasks as objects) and IndexedLongHeap (int ids, long priorities)
+ * 
+ * size tasks stay queued during a trial
+ * - pollThenOffer : poll the first task and queue it again with a new priority, what PriorityQueue is made for
+ * - updatePriority : change the priority of a random queued task, remove + offer for PriorityQueue (remove(Object) is a linear scan)
+ * - removeThenOffer : cancel a random queued task then queue it again
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class IndexedHeapBenchmark {
+
+  private static final Comparator<Task> BY_PRIORITY = Comparator.comparingLong(task -> task.priority);
+
+  /**
+   * A queued task, its priority changes in place
+   */
+  static final class Task {
+
+    Task(int id, long priority) {
+      this.id = id;
+      this.priority = priority;
+    }
+
+    final int id;
+    long priority;
+  }
+
+  @Setup(Level.Trial)
+  @SuppressWarnings("unchecked")
+  public void setUp() {
+    priorities = BenchmarkData.indexes(Integer.MAX_VALUE, 42);
+    ids = BenchmarkData.indexes(size, 43);
+    tasks = new Task[size];
+    handles = (IndexedDaryHeap.Handle<Task>[]) new IndexedDaryHeap.Handle<?>[size];
+
+    switch (implementation) {
+      case "PriorityQueue":
+        priorityQueue = new PriorityQueue<>(size, BY_PRIORITY);
+        break;
+      case "BinaryHeap":
+        heap = new IndexedDaryHeap<>(2, BY_PRIORITY);
+        break;
+      case "QuaternaryHeap":
+        heap = new IndexedDaryHeap<>(4, BY_PRIORITY);
+        break;
+      case "IndexedLongHeap":
+        longHeap = new IndexedLongHeap(size);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown heap implementation : " + implementation);
+    }
+
+    for (int id = 0; id < size; id++) {
+      tasks[id] = new Task(id, priorities[id & BenchmarkData.SEQUENCE_MASK]);
+      offer(tasks[id]);
+    }
+  }
+
+  @Benchmark
+  public int pollThenOffer(ThreadCursor cursor) {
+    Task task;
+
+    if (priorityQueue != null) {
+      task = priorityQueue.poll();
+    } else if (heap != null) {
+      task = heap.poll();
+    } else {
+      task = tasks[longHeap.pollId()];
+    }
+    task.priority = task.priority + priorities[cursor.next() & BenchmarkData.SEQUENCE_MASK];
+    offer(task);
+    return task.id;
+  }
+
+  @Benchmark
+  public long updatePriority(ThreadCursor cursor) {
+    int position = cursor.next();
+    Task task = tasks[ids[position & BenchmarkData.SEQUENCE_MASK]];
+    long priority = priorities[(position + 1) & BenchmarkData.SEQUENCE_MASK];
+
+    if (priorityQueue != null) {
+      priorityQueue.remove(task);
+      task.priority = priority;
+      priorityQueue.offer(task);
+    } else if (heap != null) {
+      task.priority = priority;
+      heap.changed(handles[task.id]);
+    } else {
+      task.priority = priority;
+      longHeap.update(task.id, priority);
+    }
+    return priority;
+  }
+
+  @Benchmark
+  public int removeThenOffer(ThreadCursor cursor) {
+    Task task = tasks[ids[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    if (priorityQueue != null) {
+      priorityQueue.remove(task);
+    } else if (heap != null) {
+      heap.remove(handles[task.id]);
+    } else {
+      longHeap.remove(task.id);
+    }
+    offer(task);
+    return task.id;
+  }
+
+  private void offer(Task task) {
+    if (priorityQueue != null) {
+      priorityQueue.offer(task);
+    } else if (heap != null) {
+      handles[task.id] = heap.insert(task);
+    } else {
+      longHeap.insert(task.id, task.priority);
+    }
+  }
+
+  @Param({ "PriorityQueue", "BinaryHeap", "QuaternaryHeap", "IndexedLongHeap" })
+  private String implementation;
+
+  @Param({ "1000", "100000", "1000000" })
+  private int size;
+
+  private int[] priorities;
+  private int[] ids;
+  private Task[] tasks;
+  private IndexedDaryHeap.Handle<Task>[] handles;
+  private PriorityQueue<Task> priorityQueue;
+  private IndexedDaryHeap<Task> heap;
+  private IndexedLongHeap longHeap;
+}
@@ -0,0 +1,132 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded costs of the List implementations described in ReferenceCollections :
+ * ArrayList and Vector are backed by an array (Vector synchronizes every method), LinkedList is a doubly linked list of nodes,
+ * CopyOnWriteArrayList copies its whole array on every write
+ * 
+ * The list keeps its size during a trial : an insertion is measured together with the removal that undoes it,
+ * so that an operation at size 10M is an operation on 10M elements and not on a list growing by millions during the iteration
+ * - get : random index, O(1) for the arrays, a walk from the closest end for LinkedList
+ * - contains : lookup of a present value, a linear scan for all of them
+ * - iterate : sum of all the elements through the Iterator
+ * - appendThenRemoveLast : add at the end then remove the last one, O(1) except for the copies of CopyOnWriteArrayList
+ * - insertThenRemoveMiddle : add and remove at size / 2, shifts half of the array or walks half of the nodes
+ * - removeFirstThenAppend : remove the head and add it back at the end, shifts the whole array except for LinkedList
+ * - mixed : 9 gets for 1 append/remove
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ListBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    elements = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+    list = newList(implementation, Arrays.asList(elements));
+  }
+
+  static List<Integer> newList(String implementation, Collection<Integer> elements) {
+    switch (implementation) {
+      case "ArrayList":
+        return new ArrayList<>(elements);
+      case "LinkedList":
+        return new LinkedList<>(elements);
+      case "Vector":
+        return new Vector<>(elements);
+      case "CopyOnWriteArrayList":
+        return new CopyOnWriteArrayList<>(elements);
+      default:
+        throw new IllegalArgumentException("Unknown list implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public Integer get(ThreadCursor cursor) {
+    return list.get(indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  @Benchmark
+  public boolean contains(ThreadCursor cursor) {
+    return list.contains(elements[indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for (Integer element : list) {
+      sum += element;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Integer appendThenRemoveLast() {
+    list.add(EXTRA);
+    return list.remove(list.size() - 1);
+  }
+
+  @Benchmark
+  public Integer insertThenRemoveMiddle() {
+    int middle = list.size() / 2;
+
+    list.add(middle, EXTRA);
+    return list.remove(middle);
+  }
+
+  @Benchmark
+  public Integer removeFirstThenAppend() {
+    Integer first = list.remove(0);
+
+    list.add(first);
+    return first;
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 10 == 0) {
+      return appendThenRemoveLast();
+    }
+    return list.get(indexes[position & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  private static final Integer EXTRA = -1;
+
+  @Param({ "ArrayList", "LinkedList", "Vector", "CopyOnWriteArrayList" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] elements;
+  private int[] indexes;
+  private List<Integer> list;
+}
@@ -0,0 +1,119 @@
+package org.leo.benchmarks.collections;
+
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded costs of the Map implementations described in ReferenceCollections :
+ * HashMap is not synchronized, Hashtable synchronizes every method on the table, ConcurrentHashMap reads without locks
+ * and locks a single bin on writes
+ * Single threaded, the difference is the price of the (uncontended) synchronization, see ConcurrentMapBenchmark for the contended case
+ * 
+ * Same workloads as SetBenchmark : get of a present key one time in two, put measured with the remove that undoes it...
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class MapBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    present = BenchmarkData.indexes(size, 43);
+    map = newMap(implementation, size);
+
+    for (int i = 0; i < size; i++) {
+      map.put(keys[i], keys[i]);
+    }
+  }
+
+  static Map<Integer, Integer> newMap(String implementation, int size) {
+    // the default load factor 0.75 of the three of them
+    int capacity = (int) (size / 0.75f) + 1;
+
+    switch (implementation) {
+      case "HashMap":
+        return new HashMap<>(capacity);
+      case "Hashtable":
+        return new Hashtable<>(capacity);
+      case "ConcurrentHashMap":
+        return new ConcurrentHashMap<>(capacity);
+      default:
+        throw new IllegalArgumentException("Unknown map implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public Integer get(ThreadCursor cursor) {
+    return map.get(keys[lookups[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for (Map.Entry<Integer, Integer> entry : map.entrySet()) {
+      sum += entry.getValue();
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Integer putThenRemove(ThreadCursor cursor) {
+    Integer absent = keys[size + present[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    map.put(absent, absent);
+    return map.remove(absent);
+  }
+
+  @Benchmark
+  public Integer removeThenPut(ThreadCursor cursor) {
+    Integer key = keys[present[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    map.remove(key);
+    return map.put(key, key);
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 10 == 0) {
+      Integer key = keys[present[position & BenchmarkData.SEQUENCE_MASK]];
+
+      map.remove(key);
+      return map.put(key, key);
+    }
+    return map.get(keys[lookups[position & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Param({ "HashMap", "Hashtable", "ConcurrentHashMap" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] lookups;
+  private int[] present;
+  private Map<Integer, Integer> map;
+}
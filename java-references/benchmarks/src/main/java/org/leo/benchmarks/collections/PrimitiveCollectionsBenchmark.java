@@ -0,0 +1,228 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.collections.primitive.IntArrayList;
+import org.leo.core.collections.primitive.IntHashSet;
+import org.leo.core.collections.primitive.IntIntHashMap;
+import org.leo.core.collections.primitive.IntObjectHashMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * get/put throughput of the primitive collections of core-java against their boxed JDK equivalents
+ * 
+ * Each benchmark method works on the whole collection (size operations), the score is in operations on the collection per second,
+ * divide by size for the cost of one get or put
+ * The keys are random ints, half of the lookups miss so that the probe sequences of absent keys are measured too
+ * The boxed maps are read with the same int keys, the autoboxing of the key is part of their cost as it is in real code
+ * (Integer.valueOf caches -128..127 only)
+ * 
+ * The memory footprints are printed by FootprintReport
+ * 
+ * java -jar target/benchmarks.jar PrimitiveCollectionsBenchmark -p size=1000,1000000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrimitiveCollectionsBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+
+    keys = new int[size];
+    lookups = new int[size];
+    for (int i = 0; i < size; i++) {
+      keys[i] = random.nextInt();
+      // one lookup in two is a key of the map, the other one is (very likely) absent
+      lookups[i] = (i & 1) == 0 ? keys[random.nextInt(size)] : random.nextInt();
+    }
+
+    intIntMap = new IntIntHashMap(size);
+    boxedIntMap = new HashMap<>(size * 4 / 3 + 1);
+    intObjectMap = new IntObjectHashMap<>(size);
+    boxedObjectMap = new HashMap<>(size * 4 / 3 + 1);
+    intSet = new IntHashSet(size);
+    boxedSet = new HashSet<>(size * 4 / 3 + 1);
+    intList = new IntArrayList(size);
+    boxedList = new ArrayList<>(size);
+
+    for (int key : keys) {
+      intIntMap.put(key, key);
+      boxedIntMap.put(key, key);
+      intObjectMap.put(key, VALUE);
+      boxedObjectMap.put(key, VALUE);
+      intSet.add(key);
+      boxedSet.add(key);
+      intList.add(key);
+      boxedList.add(key);
+    }
+  }
+
+  @Benchmark
+  public long intIntMapGet() {
+    long sum = 0;
+    for (int key : lookups) {
+      sum += intIntMap.get(key);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long boxedIntMapGet() {
+    long sum = 0;
+    for (int key : lookups) {
+      Integer value = boxedIntMap.get(key);
+      if (value != null) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public IntIntHashMap intIntMapPut() {
+    IntIntHashMap map = new IntIntHashMap();
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public Map<Integer, Integer> boxedIntMapPut() {
+    Map<Integer, Integer> map = new HashMap<>();
+    for (int key : keys) {
+      map.put(key, key);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public void intObjectMapGet(Blackhole blackhole) {
+    for (int key : lookups) {
+      blackhole.consume(intObjectMap.get(key));
+    }
+  }
+
+  @Benchmark
+  public void boxedObjectMapGet(Blackhole blackhole) {
+    for (int key : lookups) {
+      blackhole.consume(boxedObjectMap.get(key));
+    }
+  }
+
+  @Benchmark
+  public IntObjectHashMap<Object> intObjectMapPut() {
+    IntObjectHashMap<Object> map = new IntObjectHashMap<>();
+    for (int key : keys) {
+      map.put(key, VALUE);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public Map<Integer, Object> boxedObjectMapPut() {
+    Map<Integer, Object> map = new HashMap<>();
+    for (int key : keys) {
+      map.put(key, VALUE);
+    }
+    return map;
+  }
+
+  @Benchmark
+  public int intSetContains() {
+    int found = 0;
+    for (int key : lookups) {
+      if (intSet.contains(key)) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public int boxedSetContains() {
+    int found = 0;
+    for (int key : lookups) {
+      if (boxedSet.contains(key)) {
+        found++;
+      }
+    }
+    return found;
+  }
+
+  @Benchmark
+  public IntArrayList intListAdd() {
+    IntArrayList list = new IntArrayList();
+    for (int key : keys) {
+      list.add(key);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public List<Integer> boxedListAdd() {
+    List<Integer> list = new ArrayList<>();
+    for (int key : keys) {
+      list.add(key);
+    }
+    return list;
+  }
+
+  @Benchmark
+  public long intListGet() {
+    long sum = 0;
+    for (int i = 0; i < intList.size(); i++) {
+      sum += intList.get(i);
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public long boxedListGet() {
+    long sum = 0;
+    for (int i = 0; i < boxedList.size(); i++) {
+      sum += boxedList.get(i);
+    }
+    return sum;
+  }
+
+  private static final Object VALUE = new Object();
+
+  @Param({ "1000", "100000", "1000000" })
+  private int size;
+
+  private int[] keys;
+  private int[] lookups;
+  private IntIntHashMap intIntMap;
+  private Map<Integer, Integer> boxedIntMap;
+  private IntObjectHashMap<Object> intObjectMap;
+  private Map<Integer, Object> boxedObjectMap;
+  private IntHashSet intSet;
+  private Set<Integer> boxedSet;
+  private IntArrayList intList;
+  private List<Integer> boxedList;
+}
@@ -0,0 +1,108 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded costs of the Queue implementations described in ReferenceCollections :
+ * PriorityQueue is a binary heap in an array (O(log n) offer and poll, the head is the smallest element),
+ * ArrayDeque is a circular array (O(1) at both ends), LinkedList is the node based alternative to ArrayDeque
+ * 
+ * The queue keeps its size during a trial : every offer is followed by a poll
+ * - offerThenPoll : offer a random key then poll the head, the FIFO order for ArrayDeque and LinkedList, the smallest for PriorityQueue
+ * - peek : the head
+ * - contains : lookup of a present key, a linear scan for all of them (a heap is not sorted)
+ * - iterate : sum of all the elements through the Iterator
+ * - mixed : 9 peeks for 1 offerThenPoll
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class QueueBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+
+    switch (implementation) {
+      case "PriorityQueue":
+        queue = new PriorityQueue<>(Arrays.asList(keys));
+        break;
+      case "ArrayDeque":
+        queue = new ArrayDeque<>(Arrays.asList(keys));
+        break;
+      case "LinkedList":
+        queue = new LinkedList<>(Arrays.asList(keys));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown queue implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public Integer offerThenPoll(ThreadCursor cursor) {
+    queue.offer(keys[indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+    return queue.poll();
+  }
+
+  @Benchmark
+  public Integer peek() {
+    return queue.peek();
+  }
+
+  @Benchmark
+  public boolean contains(ThreadCursor cursor) {
+    return queue.contains(keys[indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for (Integer element : queue) {
+      sum += element;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public Integer mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 10 == 0) {
+      queue.offer(keys[indexes[position & BenchmarkData.SEQUENCE_MASK]]);
+      return queue.poll();
+    }
+    return queue.peek();
+  }
+
+  @Param({ "PriorityQueue", "ArrayDeque", "LinkedList" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] indexes;
+  private Queue<Integer> queue;
+}
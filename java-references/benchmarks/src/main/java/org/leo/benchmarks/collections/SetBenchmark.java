@@ -0,0 +1,119 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Single threaded costs of the Set implementations described in ReferenceCollections :
+ * HashSet is a HashMap (O(1) lookups, no order), LinkedHashSet adds a linked list of the entries (insertion order),
+ * TreeSet is a red-black tree (O(log n) lookups, sorted)
+ * 
+ * The set holds size keys, the lookups look for a present key one time in two and for an absent one the other time
+ * The set keeps its size during a trial : an insertion is measured together with the removal that undoes it
+ * - contains : present or absent key
+ * - iterate : sum of all the elements through the Iterator
+ * - addThenRemove : add an absent key then remove it
+ * - removeThenAdd : remove a present key then add it back
+ * - mixed : 9 contains for 1 removeThenAdd
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SetBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    // the first size keys are in the set, the next size ones are not
+    keys = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    present = BenchmarkData.indexes(size, 43);
+
+    switch (implementation) {
+      case "HashSet":
+        set = new HashSet<>(Arrays.asList(keys).subList(0, size));
+        break;
+      case "LinkedHashSet":
+        set = new LinkedHashSet<>(Arrays.asList(keys).subList(0, size));
+        break;
+      case "TreeSet":
+        set = new TreeSet<>(Arrays.asList(keys).subList(0, size));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown set implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  public boolean contains(ThreadCursor cursor) {
+    return set.contains(keys[lookups[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  public long iterate() {
+    long sum = 0;
+    for (Integer element : set) {
+      sum += element;
+    }
+    return sum;
+  }
+
+  @Benchmark
+  public boolean addThenRemove(ThreadCursor cursor) {
+    Integer absent = keys[size + present[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    set.add(absent);
+    return set.remove(absent);
+  }
+
+  @Benchmark
+  public boolean removeThenAdd(ThreadCursor cursor) {
+    Integer key = keys[present[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    set.remove(key);
+    return set.add(key);
+  }
+
+  @Benchmark
+  public boolean mixed(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    if (position % 10 == 0) {
+      Integer key = keys[present[position & BenchmarkData.SEQUENCE_MASK]];
+
+      set.remove(key);
+      return set.add(key);
+    }
+    return set.contains(keys[lookups[position & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Param({ "HashSet", "LinkedHashSet", "TreeSet" })
+  private String implementation;
+
+  @Param({ "10", "1000", "100000", "10000000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] lookups;
+  private int[] present;
+  private Set<Integer> set;
+}
@@ -0,0 +1,127 @@
+package org.leo.benchmarks.collections;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Supplier;
+
+import org.leo.core.collections.persistent.PersistentVector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read mostly lists whose readers work on snapshots : a version that no writer changes while they read it
+ *
+ * - CopyOnWriteArrayList : every write copies the whole array, a read is a plain array read
+ * - CopyOnWriteUnmodifiableList : the same done by hand, an ArrayList copied at every write and published as Collections.unmodifiableList
+ *   through an AtomicReference (the way to snapshot a list with only the unmodifiable views of java.util)
+ * - PersistentVector : a write copies the path to the index (log32 n arrays of 32), published through an AtomicReference
+ *
+ * readMostly group : 3 readers taking the current snapshot and reading a random index of it, 1 writer replacing a random element
+ * The read scores are close, the write scores show the O(n) copies against the O(log32 n) path copies as size grows
+ * build : the whole list built element by element, PersistentVector with its builder, the others in an ArrayList then copied or wrapped
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SnapshotListBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    elements = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+
+    switch (implementation) {
+      case "CopyOnWriteArrayList":
+        CopyOnWriteArrayList<Integer> copyOnWrite = new CopyOnWriteArrayList<>(elements);
+        snapshot = () -> copyOnWrite;
+        writer = (element, index) -> copyOnWrite.set(index, element);
+        break;
+      case "CopyOnWriteUnmodifiableList":
+        AtomicReference<List<Integer>> current = new AtomicReference<>(Collections.unmodifiableList(new ArrayList<>(Arrays.asList(elements))));
+        snapshot = current::get;
+        writer = (element, index) -> current.updateAndGet(list -> {
+          List<Integer> copy = new ArrayList<>(list);
+          copy.set(index, element);
+          return Collections.unmodifiableList(copy);
+        });
+        break;
+      case "PersistentVector":
+        AtomicReference<PersistentVector<Integer>> vector = new AtomicReference<>(PersistentVector.of(elements));
+        snapshot = vector::get;
+        writer = (element, index) -> vector.updateAndGet(list -> list.with(index, element));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown list implementation : " + implementation);
+    }
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(3)
+  public Integer read(ThreadCursor cursor) {
+    return snapshot.get().get(indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public void write(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    // another element than the one in place : CopyOnWriteArrayList.set does not copy for the same one
+    writer.accept(elements[position % size], indexes[position & BenchmarkData.SEQUENCE_MASK]);
+  }
+
+  @Benchmark
+  public List<Integer> build() {
+    if (implementation.equals("PersistentVector")) {
+      PersistentVector.Builder<Integer> builder = PersistentVector.builder();
+      for (Integer element : elements) {
+        builder.add(element);
+      }
+      return builder.build();
+    }
+
+    List<Integer> list = new ArrayList<>(size);
+    for (Integer element : elements) {
+      list.add(element);
+    }
+    return implementation.equals("CopyOnWriteArrayList") ? new CopyOnWriteArrayList<>(list) : Collections.unmodifiableList(list);
+  }
+
+  @Param({ "CopyOnWriteArrayList", "CopyOnWriteUnmodifiableList", "PersistentVector" })
+  private String implementation;
+
+  @Param({ "1000", "100000" })
+  private int size;
+
+  private Integer[] elements;
+  private int[] indexes;
+
+  /** Current version of the list */
+  private Supplier<List<Integer>> snapshot;
+
+  /** Replaces an element (element, index) and publishes the new version */
+  private ObjIntConsumer<Integer> writer;
+}
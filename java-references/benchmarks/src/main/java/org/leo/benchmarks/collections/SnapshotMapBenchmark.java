@@ -0,0 +1,122 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.leo.core.collections.persistent.PersistentHashMap;
+import org.leo.core.collections.persistent.PersistentSortedMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Read mostly maps whose readers work on snapshots, published through an AtomicReference
+ *
+ * - CopyOnWriteHashMap / CopyOnWriteTreeMap : the map copied at every write and published as Collections.unmodifiableMap (O(n) per write)
+ * - PersistentHashMap : a write copies the path to the key in the hash trie (log32 n small arrays)
+ * - PersistentSortedMap : a write copies the path to the key in the balanced tree (log2 n nodes)
+ *
+ * readMostly group : 3 readers taking the current snapshot and getting a random key of it, 1 writer putting a new value for a random key
+ * (the keys do not change, only the versions)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SnapshotMapBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size);
+    indexes = BenchmarkData.indexes(size, 42);
+
+    Map<Integer, Integer> initial = new HashMap<>();
+    for (Integer key : keys) {
+      initial.put(key, key);
+    }
+
+    switch (implementation) {
+      case "CopyOnWriteHashMap":
+        copyOnWrite(initial, HashMap::new);
+        break;
+      case "CopyOnWriteTreeMap":
+        copyOnWrite(initial, TreeMap::new);
+        break;
+      case "PersistentHashMap":
+        AtomicReference<PersistentHashMap<Integer, Integer>> hashMap = new AtomicReference<>(PersistentHashMap.copyOf(initial));
+        snapshot = hashMap::get;
+        writer = (key, value) -> hashMap.updateAndGet(map -> map.with(key, value));
+        break;
+      case "PersistentSortedMap":
+        AtomicReference<PersistentSortedMap<Integer, Integer>> sortedMap = new AtomicReference<>(PersistentSortedMap.copyOf(initial));
+        snapshot = sortedMap::get;
+        writer = (key, value) -> sortedMap.updateAndGet(map -> map.with(key, value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown map implementation : " + implementation);
+    }
+  }
+
+  private void copyOnWrite(Map<Integer, Integer> initial, Function<Map<Integer, Integer>, Map<Integer, Integer>> copier) {
+    AtomicReference<Map<Integer, Integer>> current = new AtomicReference<>(Collections.unmodifiableMap(copier.apply(initial)));
+
+    snapshot = current::get;
+    writer = (key, value) -> current.updateAndGet(map -> {
+      Map<Integer, Integer> copy = copier.apply(map);
+      copy.put(key, value);
+      return Collections.unmodifiableMap(copy);
+    });
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(3)
+  public Integer read(ThreadCursor cursor) {
+    return snapshot.get().get(keys[indexes[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public void write(ThreadCursor cursor) {
+    int position = cursor.next();
+
+    // another key as the value : a persistent map returns itself for a value it already holds
+    writer.accept(keys[indexes[position & BenchmarkData.SEQUENCE_MASK]], keys[position % size]);
+  }
+
+  @Param({ "CopyOnWriteHashMap", "PersistentHashMap", "CopyOnWriteTreeMap", "PersistentSortedMap" })
+  private String implementation;
+
+  @Param({ "1000", "100000" })
+  private int size;
+
+  private Integer[] keys;
+  private int[] indexes;
+
+  /** Current version of the map */
+  private Supplier<Map<Integer, Integer>> snapshot;
+
+  /** Puts a key and publishes the new version */
+  private BiConsumer<Integer, Integer> writer;
+}
@@ -0,0 +1,249 @@
+package org.leo.benchmarks.collections;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.collections.btree.ConcurrentBTreeMap;
+import org.leo.core.collections.btree.ConcurrentLongBTreeMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point and range queries on the sorted maps : TreeMap (a red-black tree), ConcurrentSkipListMap (a lock free skip list),
+ * and the B+trees of core-java, ConcurrentBTreeMap and its long keys variant ConcurrentLongBTreeMap
+ *
+ * The TreeMap is synchronized (Collections.synchronizedNavigableMap), the only way to share it : the single threaded benchmarks
+ * pay an uncontended lock, the multi threaded ones show the lock. The maps are built by inserts (fromSorted only for the B+trees
+ * would hide the cost of their splits in the layout)
+ * - get : a random lookup, one in two misses, single threaded then by 4 threads (getConcurrent)
+ * - scan : the sum of the values of scanLength consecutive keys from a random one, where a B+tree reads contiguous arrays
+ * - readMostly : 2 threads getting, 1 scanning, 1 putting an absent key then removing it
+ *
+ * java -jar target/benchmarks.jar SortedMapBenchmark -p size=1000000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SortedMapBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    keys = BenchmarkData.keys(size * 2);
+    lookups = BenchmarkData.indexes(size * 2, 42);
+    absent = BenchmarkData.indexes(size, 43);
+    scanStarts = BenchmarkData.indexes(Math.max(1, size - scanLength), 44);
+    sortedKeys = Arrays.copyOf(keys, size);
+    Arrays.sort(sortedKeys);
+
+    index = newIndex(implementation);
+    for (int i = 0; i < size; i++) {
+      index.put(keys[i]);
+    }
+  }
+
+  @Benchmark
+  public Integer get(ThreadCursor cursor) {
+    return index.get(keys[lookups[cursor.next() & BenchmarkData.SEQUENCE_MASK]]);
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Integer getConcurrent(ThreadCursor cursor) {
+    return get(cursor);
+  }
+
+  @Benchmark
+  public long scan(ThreadCursor cursor) {
+    return scanFrom(cursor);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(2)
+  public Integer readMostlyGet(ThreadCursor cursor) {
+    return get(cursor);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public long readMostlyScan(ThreadCursor cursor) {
+    return scanFrom(cursor);
+  }
+
+  @Benchmark
+  @Group("readMostly")
+  @GroupThreads(1)
+  public Integer readMostlyWrite(ThreadCursor cursor) {
+    Integer key = keys[size + absent[cursor.next() & BenchmarkData.SEQUENCE_MASK]];
+
+    index.put(key);
+    return index.remove(key);
+  }
+
+  private long scanFrom(ThreadCursor cursor) {
+    int start = scanStarts[cursor.next() & BenchmarkData.SEQUENCE_MASK];
+    return index.sum(sortedKeys[start], sortedKeys[Math.min(start + scanLength, size - 1)]);
+  }
+
+  /**
+   * The operations measured, over each map : one implementation per trial, the calls stay monomorphic
+   */
+  private interface SortedIndex {
+
+    Integer get(Integer key);
+
+    void put(Integer key);
+
+    Integer remove(Integer key);
+
+    /**
+     * Sum of the values of the keys in [from, to)
+     */
+    long sum(Integer from, Integer to);
+  }
+
+  private static SortedIndex newIndex(String implementation) {
+    switch (implementation) {
+      case "TreeMap":
+        return navigableIndex(Collections.synchronizedNavigableMap(new TreeMap<>()), true);
+      case "ConcurrentSkipListMap":
+        return navigableIndex(new ConcurrentSkipListMap<>(), false);
+      case "ConcurrentBTreeMap":
+        return new SortedIndex() {
+
+          @Override
+          public Integer get(Integer key) {
+            return map.get(key);
+          }
+
+          @Override
+          public void put(Integer key) {
+            map.put(key, key);
+          }
+
+          @Override
+          public Integer remove(Integer key) {
+            return map.remove(key);
+          }
+
+          @Override
+          public long sum(Integer from, Integer to) {
+            long[] sum = { 0 };
+            map.forEachInRange(from, to, (key, value) -> sum[0] += value);
+            return sum[0];
+          }
+
+          private final ConcurrentBTreeMap<Integer, Integer> map = new ConcurrentBTreeMap<>();
+        };
+      case "ConcurrentLongBTreeMap":
+        return new SortedIndex() {
+
+          @Override
+          public Integer get(Integer key) {
+            return map.get(key);
+          }
+
+          @Override
+          public void put(Integer key) {
+            map.put(key, key);
+          }
+
+          @Override
+          public Integer remove(Integer key) {
+            return map.remove(key);
+          }
+
+          @Override
+          public long sum(Integer from, Integer to) {
+            long[] sum = { 0 };
+            map.forEachInRange(from, to, (key, value) -> sum[0] += value);
+            return sum[0];
+          }
+
+          private final ConcurrentLongBTreeMap<Integer> map = new ConcurrentLongBTreeMap<>();
+        };
+      default:
+        throw new IllegalArgumentException("Unknown sorted map implementation : " + implementation);
+    }
+  }
+
+  /**
+   * A scan of a synchronized map iterates a view, which must hold the lock of the map
+   */
+  private static SortedIndex navigableIndex(NavigableMap<Integer, Integer> map, boolean synchronizedMap) {
+    return new SortedIndex() {
+
+      @Override
+      public Integer get(Integer key) {
+        return map.get(key);
+      }
+
+      @Override
+      public void put(Integer key) {
+        map.put(key, key);
+      }
+
+      @Override
+      public Integer remove(Integer key) {
+        return map.remove(key);
+      }
+
+      @Override
+      public long sum(Integer from, Integer to) {
+        if (synchronizedMap) {
+          synchronized (map) {
+            return sumOf(map.subMap(from, true, to, false));
+          }
+        }
+        return sumOf(map.subMap(from, true, to, false));
+      }
+    };
+  }
+
+  private static long sumOf(Map<Integer, Integer> range) {
+    long sum = 0;
+
+    for (Integer value : range.values()) {
+      sum += value;
+    }
+    return sum;
+  }
+
+  @Param({ "TreeMap", "ConcurrentSkipListMap", "ConcurrentBTreeMap", "ConcurrentLongBTreeMap" })
+  private String implementation;
+
+  @Param({ "1000", "100000", "10000000" })
+  private int size;
+
+  @Param({ "10", "1000" })
+  private int scanLength;
+
+  private Integer[] keys;
+  private Integer[] sortedKeys;
+  private int[] lookups;
+  private int[] absent;
+  private int[] scanStarts;
+  private SortedIndex index;
+}
@@ -0,0 +1,31 @@
+package org.leo.benchmarks.collections;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Position of a benchmark thread in the index sequences of BenchmarkData
+ * 
+ * One per thread (Scope.Thread) : the threads of a multi threaded benchmark do not share a counter, which would be a contention point
+ * measured along with the collection, and each thread starts at a different offset so that they do not all hit the same keys
+ */
+@State(Scope.Thread)
+public class ThreadCursor {
+
+  public ThreadCursor() {
+    this.position = OFFSETS.getAndAdd(7919);
+  }
+
+  /**
+   * Next position (never negative), to use as a sequence index (masked by the caller with SEQUENCE_MASK) and as the counter of the mixed workloads
+   */
+  public int next() {
+    return position++ & Integer.MAX_VALUE;
+  }
+
+  private static final AtomicInteger OFFSETS = new AtomicInteger();
+
+  private int position;
+}
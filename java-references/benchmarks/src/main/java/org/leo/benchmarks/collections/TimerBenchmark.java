@@ -0,0 +1,150 @@
+package org.leo.benchmarks.collections;
+
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.leo.core.collections.timer.TimerWheel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Timeouts kept in a DelayQueue, in a PriorityQueue of deadlines (the same heap without the lock) and in a TimerWheel (1 ms ticks)
+ * 
+ * The clock is a field of the benchmark moved by 1 microsecond per call, so that the three see the same time
+ * - scheduleThenCancel : pending timeouts stay queued, each call schedules a new one (1 to 60 s) and cancels the oldest one,
+ *   the fate of most request timeouts, remove(Object) scans the heaps
+ * - scheduleThenFire : each call schedules a timeout of up to 2 * pending microseconds then fires the expired ones, about pending stay queued
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class TimerBenchmark {
+
+  private static final long STEP_NANOS = TimeUnit.MICROSECONDS.toNanos(1);
+
+  private static final Consumer<Object> IGNORE = task -> {
+  };
+
+  /**
+   * A timeout as a DelayQueue wants it, its delay is measured on the clock of the benchmark
+   */
+  final class DelayedTimeout implements Delayed {
+
+    DelayedTimeout(long deadline) {
+      this.deadline = deadline;
+    }
+
+    @Override
+    public long getDelay(TimeUnit unit) {
+      return unit.convert(deadline - now, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public int compareTo(Delayed other) {
+      return Long.compare(deadline, ((DelayedTimeout) other).deadline);
+    }
+
+    private final long deadline;
+  }
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    now = 0;
+    delays = BenchmarkData.indexes(60_000, 42);
+    pendingTimeouts = new Object[pending];
+
+    switch (implementation) {
+      case "DelayQueue":
+        queue = new DelayQueue<>();
+        break;
+      case "PriorityQueue":
+        queue = new PriorityQueue<>(pending);
+        break;
+      case "TimerWheel":
+        wheel = new TimerWheel<>(1, TimeUnit.MILLISECONDS, () -> now);
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown timer implementation : " + implementation);
+    }
+
+    for (int i = 0; i < pending; i++) {
+      pendingTimeouts[i] = schedule(TimeUnit.MILLISECONDS.toNanos(1 + delays[i & BenchmarkData.SEQUENCE_MASK]));
+    }
+  }
+
+  @Benchmark
+  @SuppressWarnings("unchecked")
+  public boolean scheduleThenCancel(ThreadCursor cursor) {
+    int position = cursor.next();
+    int oldest = position % pending;
+    Object timeout = pendingTimeouts[oldest];
+
+    now += STEP_NANOS;
+    pendingTimeouts[oldest] = schedule(TimeUnit.MILLISECONDS.toNanos(1 + delays[position & BenchmarkData.SEQUENCE_MASK]));
+    return queue != null ? queue.remove(timeout) : ((TimerWheel.Timeout<Object>) timeout).cancel();
+  }
+
+  @Benchmark
+  public int scheduleThenFire(ThreadCursor cursor) {
+    // uniform in [0, 2 * pending) ms with one call per microsecond : about pending timeouts queued
+    long delay = TimeUnit.MICROSECONDS.toNanos((long) delays[cursor.next() & BenchmarkData.SEQUENCE_MASK] * pending / 30_000);
+
+    now += STEP_NANOS;
+    schedule(delay);
+
+    if (queue == null) {
+      return wheel.advance(IGNORE);
+    }
+
+    int fired = 0;
+    if (queue instanceof DelayQueue) {
+      while (queue.poll() != null) {
+        fired++;
+      }
+    } else {
+      while (!queue.isEmpty() && queue.peek().deadline <= now) {
+        queue.poll();
+        fired++;
+      }
+    }
+    return fired;
+  }
+
+  private Object schedule(long delayNanos) {
+    if (queue != null) {
+      DelayedTimeout timeout = new DelayedTimeout(now + delayNanos);
+      queue.offer(timeout);
+      return timeout;
+    }
+    return wheel.schedule(this, delayNanos, TimeUnit.NANOSECONDS);
+  }
+
+  @Param({ "DelayQueue", "PriorityQueue", "TimerWheel" })
+  private String implementation;
+
+  @Param({ "10000", "1000000" })
+  private int pending;
+
+  private long now;
+  private int[] delays;
+  private Object[] pendingTimeouts;
+  private Queue<DelayedTimeout> queue;
+  private TimerWheel<Object> wheel;
+}
@@ -0,0 +1,135 @@
+package org.leo.benchmarks.columnar;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.leo.core.columnar.ProductTable;
+import org.leo.core.syntax.ReferenceFeatures8.Product;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The stream pipelines of ReferenceFeatures8.test() over a List<Product> against the same queries on a ProductTable (columns of primitives)
+ *
+ * - filterMap : filter(p -> p.price > 30000).map(p -> p.price).collect(toList()) against filterPriceGreaterThan then prices(selection)
+ * - sum : map(p -> p.price).reduce(0.0f, Float::sum) against sumPrice
+ * - filteredSum : the sum of the prices above the threshold, streamed, then by the fused kernel sumPriceGreaterThan
+ * - max : max(comparator) against rowOfMaxPrice
+ * - groupBy : groupingBy(name, summingDouble(price)) against sumPriceByName
+ *
+ * The list is shuffled once built : in a long running application the products of a list are not in the heap in the order of the list
+ * Prices are uniform in [0, 100000), the filter keeps 70 % of them, the names are drawn from nameCount distinct names
+ *
+ * java -jar target/benchmarks.jar ProductTableBenchmark -p size=1000000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class ProductTableBenchmark {
+
+  private static final float THRESHOLD = 30000f;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+
+    products = new ArrayList<>(size);
+    table = new ProductTable(size);
+    for (int i = 0; i < size; i++) {
+      String name = "Laptop " + random.nextInt(nameCount);
+      float price = random.nextInt(10_000_000) / 100f;
+
+      products.add(new Product(i, name, price));
+      table.add(i, name, price);
+    }
+    Collections.shuffle(products, random);
+  }
+
+  @Benchmark
+  public List<Float> filterMapStream() {
+    return products.stream()
+        .filter(p -> p.price > THRESHOLD)
+        .map(p -> p.price)
+        .collect(Collectors.toList());
+  }
+
+  @Benchmark
+  public float[] filterMapTable() {
+    return table.prices(table.filterPriceGreaterThan(THRESHOLD));
+  }
+
+  @Benchmark
+  public float sumStream() {
+    return products.stream()
+        .map(p -> p.price)
+        .reduce(0.0f, Float::sum);
+  }
+
+  @Benchmark
+  public double sumTable() {
+    return table.sumPrice();
+  }
+
+  @Benchmark
+  public double filteredSumStream() {
+    return products.stream()
+        .filter(p -> p.price > THRESHOLD)
+        .mapToDouble(p -> p.price)
+        .sum();
+  }
+
+  @Benchmark
+  public double filteredSumTable() {
+    return table.sumPriceGreaterThan(THRESHOLD);
+  }
+
+  @Benchmark
+  public Product maxStream() {
+    return products.stream()
+        .max((product1, product2) -> Float.compare(product1.price, product2.price))
+        .get();
+  }
+
+  @Benchmark
+  public int maxTable() {
+    return table.rowOfMaxPrice();
+  }
+
+  @Benchmark
+  public Map<String, Double> groupByStream() {
+    return products.stream()
+        .collect(Collectors.groupingBy(p -> p.name, Collectors.summingDouble(p -> p.price)));
+  }
+
+  @Benchmark
+  public Map<String, Double> groupByTable() {
+    return table.sumPriceByName();
+  }
+
+  @Param({ "1000", "1000000" })
+  private int size;
+
+  @Param({ "100" })
+  private int nameCount;
+
+  private List<Product> products;
+  private ProductTable table;
+}
@@ -0,0 +1,148 @@
+package org.leo.benchmarks.offheap;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongUnaryOperator;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+
+import org.leo.core.collections.offheap.Codecs;
+import org.leo.core.collections.offheap.OffHeapHashMap;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+/**
+ * GC pauses of a large lookup table in a ConcurrentHashMap against the same table in an OffHeapHashMap
+ * 
+ * Each map runs in its own JVM (same JVM options as this one), so that the heap of one does not weigh on the other :
+ * the table is loaded (long keys to long values), then for the given duration lookups run while short lived garbage is allocated
+ * and one lookup in 100 is an update, the usual life of a lookup table behind a service
+ * The pauses are the durations of the collections reported by the GC notifications of the JVM (HotSpot), the report gives their number,
+ * total, max and p99 (with a concurrent collector a concurrent cycle is reported too, compare the young / full collections then)
+ * Pauses are a JVM measure and not a JMH one, so this is a plain main
+ * 
+ * java -Xmx8g -XX:+UseG1GC -cp target/benchmarks.jar org.leo.benchmarks.offheap.OffHeapGcReport [entries, 20000000] [seconds, 60]
+ * (50M entries in a ConcurrentHashMap needs a heap of about 6 GB)
+ */
+public class OffHeapGcReport {
+
+  private static final String CONCURRENT_HASH_MAP = "ConcurrentHashMap";
+
+  private static final String OFF_HEAP_HASH_MAP = "OffHeapHashMap";
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0 && (CONCURRENT_HASH_MAP.equals(args[0]) || OFF_HEAP_HASH_MAP.equals(args[0]))) {
+      run(args[0], Long.parseLong(args[1]), Integer.parseInt(args[2]));
+      return;
+    }
+
+    String entries = args.length > 0 ? args[0] : "20000000";
+    String seconds = args.length > 1 ? args[1] : "60";
+
+    System.out.printf("%-20s %12s %12s %10s %14s %12s %12s%n", "map", "entries", "lookups/s", "pauses", "total (ms)", "max (ms)",
+        "p99 (ms)");
+    for (String map : new String[] { CONCURRENT_HASH_MAP, OFF_HEAP_HASH_MAP }) {
+      fork(map, entries, seconds);
+    }
+  }
+
+  private static void fork(String map, String entries, String seconds) throws Exception {
+    List<String> command = new ArrayList<>();
+
+    command.add(System.getProperty("java.home") + "/bin/java");
+    command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+    command.add("-cp");
+    command.add(System.getProperty("java.class.path"));
+    command.add(OffHeapGcReport.class.getName());
+    command.add(map);
+    command.add(entries);
+    command.add(seconds);
+
+    int status = new ProcessBuilder(command).inheritIO().start().waitFor();
+    if (status != 0) {
+      System.out.println(map + " failed with the status " + status);
+    }
+  }
+
+  private static void run(String map, long entries, int seconds) throws Exception {
+    LongUnaryOperator lookup;
+    ConcurrentHashMap<Long, Long> onHeap = null;
+    OffHeapHashMap<Long, Long> offHeap = null;
+
+    if (CONCURRENT_HASH_MAP.equals(map)) {
+      onHeap = new ConcurrentHashMap<>((int) Math.min(entries * 4 / 3 + 1, Integer.MAX_VALUE));
+      for (long key = 0; key < entries; key++) {
+        onHeap.put(key, key);
+      }
+      ConcurrentHashMap<Long, Long> table = onHeap;
+      lookup = key -> table.get(key);
+    } else {
+      offHeap = OffHeapHashMap.builder(Codecs.LONG, Codecs.LONG).segments(64).expectedSize(entries).build();
+      for (long key = 0; key < entries; key++) {
+        offHeap.set(key, key);
+      }
+      OffHeapHashMap<Long, Long> table = offHeap;
+      lookup = key -> table.get(key);
+    }
+
+    // the load is over, only the pauses of the steady state are counted
+    System.gc();
+    List<Long> pauses = Collections.synchronizedList(new ArrayList<>());
+    for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+      ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+          GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+          pauses.add(info.getGcInfo().getDuration());
+        }
+      }, null, null);
+    }
+
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    long lookups = 0;
+    long checksum = 0;
+    long end = System.nanoTime() + seconds * 1_000_000_000L;
+    Object[] garbage = new Object[1024];
+
+    while (System.nanoTime() < end) {
+      for (int i = 0; i < 1000; i++) {
+        long key = random.nextLong(entries);
+
+        checksum += lookup.applyAsLong(key);
+        if (i % 100 == 0) {
+          if (onHeap != null) {
+            onHeap.put(key, key);
+          } else {
+            offHeap.set(key, key);
+          }
+        }
+        // request garbage : a few short lived objects per lookup
+        garbage[i & 1023] = new byte[64];
+      }
+      lookups += 1000;
+    }
+
+    List<Long> sorted;
+    synchronized (pauses) {
+      sorted = new ArrayList<>(pauses);
+    }
+    Collections.sort(sorted);
+    long total = sorted.stream().mapToLong(Long::longValue).sum();
+    long max = sorted.isEmpty() ? 0 : sorted.get(sorted.size() - 1);
+    long p99 = sorted.isEmpty() ? 0 : sorted.get((int) Math.ceil(sorted.size() * 0.99) - 1);
+
+    System.out.printf("%-20s %12d %12d %10d %14d %12d %12d%n", map, entries, lookups / seconds, sorted.size(), total, max, p99);
+    if (checksum == 42 && garbage[0] == null) {
+      // keeps the lookups alive
+      System.out.println();
+    }
+    if (offHeap != null) {
+      offHeap.close();
+    }
+  }
+}
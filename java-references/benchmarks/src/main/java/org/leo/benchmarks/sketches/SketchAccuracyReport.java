@@ -0,0 +1,159 @@
+package org.leo.benchmarks.sketches;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.leo.core.sketches.BloomFilter;
+import org.leo.core.sketches.CountMinSketch;
+import org.leo.core.sketches.HyperLogLog;
+import org.leo.core.sketches.TDigest;
+import org.openjdk.jol.info.GraphLayout;
+
+/**
+ * Accuracy and size of the sketches of core-java against the exact answers computed with the JDK collections
+ *
+ * An error is not a JMH measure (it does not depend on time), so this is a plain main printing, for each sketch :
+ * - BloomFilter : the false positive rate measured on elements never added, against the one requested
+ * - CountMinSketch : the average and maximum overestimate of the counts, against the bound epsilon * total
+ * - HyperLogLog : the relative error of the distinct count, against the standard error 1.04 / sqrt(2^precision)
+ * - TDigest : the error in rank of a few quantiles (estimated rank - requested rank) on a normal and an exponential distribution
+ * and the bytes of the sketch (toBytes) against the retained size of the exact structure (JOL)
+ *
+ * The repository has no test harness, so the report is also the check of the sketches : every error is compared to its bound,
+ * a line out of bound is flagged and the report exits with status 1 (a CI step or a script can run it like a test)
+ * - BloomFilter : measured rate at most 1.5 times the requested one
+ * - CountMinSketch : no count underestimated, at most 2 delta of the counts above epsilon * total
+ * - HyperLogLog : relative error within 4 standard errors
+ * - TDigest : rank error within 0.005
+ *
+ * java -cp target/benchmarks.jar org.leo.benchmarks.sketches.SketchAccuracyReport [sizes, 100000,1000000 by default]
+ */
+public class SketchAccuracyReport {
+
+  private static final double BLOOM_TOLERANCE = 1.5;
+  private static final double HLL_STANDARD_ERRORS = 4;
+  private static final double TDIGEST_RANK_ERROR = 0.005;
+
+  public static void main(String[] args) {
+    String[] sizes = args.length > 0 ? args[0].split(",") : new String[] { "100000", "1000000" };
+
+    for (String size : sizes) {
+      int n = Integer.parseInt(size.trim());
+
+      System.out.println("--- " + n + " elements");
+      bloomFilter(n);
+      countMinSketch(n);
+      hyperLogLog(n);
+      tDigest(n);
+    }
+
+    if (failures > 0) {
+      System.out.println(failures + " sketch errors out of bound");
+      System.exit(1);
+    }
+  }
+
+  private static void check(boolean withinBound, String sketch) {
+    if (!withinBound) {
+      failures++;
+      System.out.println("  ^ " + sketch + " error out of bound");
+    }
+  }
+
+  private static void bloomFilter(int n) {
+    for (double falsePositiveRate : new double[] { 0.01, 0.001 }) {
+      BloomFilter<Long> filter = new BloomFilter<>(n, falsePositiveRate);
+      Set<Long> set = new HashSet<>();
+
+      for (long i = 0; i < n; i++) {
+        filter.add(i);
+        set.add(i);
+      }
+
+      int falsePositives = 0;
+      int trials = 1_000_000;
+      for (long i = 0; i < trials; i++) {
+        if (filter.mightContain(-1 - i)) {
+          falsePositives++;
+        }
+      }
+      System.out.printf("%-15s requested fpp %.4f measured %.4f %12d bytes, HashSet %12d bytes%n", "BloomFilter", falsePositiveRate,
+          (double) falsePositives / trials, filter.toBytes().length, GraphLayout.parseInstance(set).totalSize());
+      check((double) falsePositives / trials <= BLOOM_TOLERANCE * falsePositiveRate, "BloomFilter");
+    }
+  }
+
+  private static void countMinSketch(int n) {
+    Random random = new Random(42);
+    CountMinSketch<Long> sketch = new CountMinSketch<>(0.001, 0.01);
+    Map<Long, Long> counts = new HashMap<>();
+
+    for (int i = 0; i < n; i++) {
+      // log uniform ranks over n / 4 distinct values : a few heavy hitters and a long tail
+      long element = (long) Math.pow(n / 4, random.nextDouble());
+      sketch.add(element);
+      counts.merge(element, 1L, Long::sum);
+    }
+
+    long maximum = 0;
+    long minimum = 0;
+    int aboveBound = 0;
+    double sum = 0;
+    for (Map.Entry<Long, Long> entry : counts.entrySet()) {
+      long error = sketch.estimateCount(entry.getKey()) - entry.getValue();
+      maximum = Math.max(maximum, error);
+      minimum = Math.min(minimum, error);
+      aboveBound += error > sketch.relativeError() * n ? 1 : 0;
+      sum += error;
+    }
+    System.out.printf("%-15s bound %.1f average overestimate %.2f maximum %d %12d bytes, HashMap %12d bytes%n", "CountMinSketch",
+        sketch.relativeError() * n, sum / counts.size(), maximum, sketch.toBytes().length, GraphLayout.parseInstance(counts).totalSize());
+    check(minimum == 0 && aboveBound <= 2 * (1 - sketch.confidence()) * counts.size(), "CountMinSketch");
+  }
+
+  private static void hyperLogLog(int n) {
+    Random random = new Random(42);
+
+    for (int precision : new int[] { 10, 14, 18 }) {
+      HyperLogLog<Long> sketch = new HyperLogLog<>(precision);
+      for (int i = 0; i < n; i++) {
+        sketch.add(random.nextLong());
+      }
+      double error = (double) (sketch.cardinality() - n) / n;
+      System.out.printf("%-15s precision %d standard error %.4f measured %.4f %12d bytes%n", "HyperLogLog", precision,
+          sketch.relativeStandardError(), error, sketch.toBytes().length);
+      check(Math.abs(error) <= HLL_STANDARD_ERRORS * sketch.relativeStandardError(), "HyperLogLog");
+    }
+  }
+
+  private static void tDigest(int n) {
+    Random random = new Random(42);
+
+    for (String distribution : new String[] { "normal", "exponential" }) {
+      TDigest digest = new TDigest();
+      double[] values = new double[n];
+      for (int i = 0; i < n; i++) {
+        values[i] = distribution.equals("normal") ? random.nextGaussian() : -Math.log(1 - random.nextDouble());
+        digest.add(values[i]);
+      }
+      Arrays.sort(values);
+
+      StringBuilder errors = new StringBuilder();
+      double worst = 0;
+      for (double q : new double[] { 0.001, 0.01, 0.5, 0.99, 0.999 }) {
+        int rank = Arrays.binarySearch(values, digest.quantile(q));
+        rank = rank < 0 ? -rank - 1 : rank;
+        errors.append(String.format(" q%s %+.5f", q, (double) rank / n - q));
+        worst = Math.max(worst, Math.abs((double) rank / n - q));
+      }
+      System.out.printf("%-15s %-12s%s %8d bytes, double[] %12d bytes%n", "TDigest", distribution, errors, digest.toBytes().length, 16L + 8L * n);
+      check(worst <= TDIGEST_RANK_ERROR, "TDigest");
+    }
+  }
+
+  private static int failures;
+}
@@ -0,0 +1,167 @@
+package org.leo.benchmarks.sketches;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.leo.core.sketches.BloomFilter;
+import org.leo.core.sketches.CountMinSketch;
+import org.leo.core.sketches.HyperLogLog;
+import org.leo.core.sketches.TDigest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the sketches of core-java against the exact answer of the same question with the JDK collections
+ *
+ * - membership : BloomFilter (1 %) against HashSet, built then queried
+ * - frequency : CountMinSketch (epsilon 0.1 %, delta 1 %) against HashMap.merge
+ * - distinct count : HyperLogLog (precision 14) against HashSet.size
+ * - quantiles : TDigest (compression 100) against sorting a copy of the values
+ *
+ * Each benchmark method processes the whole stream (size elements), the score is in streams per second, divide by size for one element
+ * The elements are boxed Longs drawn from size / 4 distinct values with a skew (a few frequent values, a long tail), as counted events are
+ * The accuracy of the sketches is not a JMH measure, it is printed by SketchAccuracyReport
+ *
+ * java -jar target/benchmarks.jar SketchBenchmark -p size=100000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "-Xms4g", "-Xmx4g" })
+@State(Scope.Benchmark)
+public class SketchBenchmark {
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    Random random = new Random(42);
+    int distinct = Math.max(1, size / 4);
+
+    elements = new Long[size];
+    values = new double[size];
+    for (int i = 0; i < size; i++) {
+      // log uniform ranks : rank r is drawn with a probability decreasing as 1 / r
+      long rank = (long) Math.pow(distinct, random.nextDouble());
+      elements[i] = rank * 0x9E3779B97F4A7C15L;
+      values[i] = random.nextGaussian();
+    }
+
+    bloomFilter = new BloomFilter<>(distinct, 0.01);
+    hashSet = new HashSet<>();
+    for (Long element : elements) {
+      bloomFilter.add(element);
+      hashSet.add(element);
+    }
+  }
+
+  @Benchmark
+  public BloomFilter<Long> bloomFilterBuild() {
+    BloomFilter<Long> filter = new BloomFilter<>(size / 4, 0.01);
+
+    for (Long element : elements) {
+      filter.add(element);
+    }
+    return filter;
+  }
+
+  @Benchmark
+  public Set<Long> hashSetBuild() {
+    Set<Long> set = new HashSet<>();
+
+    for (Long element : elements) {
+      set.add(element);
+    }
+    return set;
+  }
+
+  @Benchmark
+  public void bloomFilterQuery(Blackhole blackhole) {
+    for (Long element : elements) {
+      blackhole.consume(bloomFilter.mightContain(element));
+    }
+  }
+
+  @Benchmark
+  public void hashSetQuery(Blackhole blackhole) {
+    for (Long element : elements) {
+      blackhole.consume(hashSet.contains(element));
+    }
+  }
+
+  @Benchmark
+  public CountMinSketch<Long> countMinSketchCount() {
+    CountMinSketch<Long> sketch = new CountMinSketch<>(0.001, 0.01);
+
+    for (Long element : elements) {
+      sketch.add(element);
+    }
+    return sketch;
+  }
+
+  @Benchmark
+  public Map<Long, Long> hashMapCount() {
+    Map<Long, Long> counts = new HashMap<>();
+
+    for (Long element : elements) {
+      counts.merge(element, 1L, Long::sum);
+    }
+    return counts;
+  }
+
+  @Benchmark
+  public long hyperLogLogDistinct() {
+    HyperLogLog<Long> sketch = new HyperLogLog<>();
+
+    for (Long element : elements) {
+      sketch.add(element);
+    }
+    return sketch.cardinality();
+  }
+
+  @Benchmark
+  public long hashSetDistinct() {
+    return hashSetBuild().size();
+  }
+
+  @Benchmark
+  public double tDigestQuantile() {
+    TDigest digest = new TDigest();
+
+    for (double value : values) {
+      digest.add(value);
+    }
+    return digest.quantile(0.99);
+  }
+
+  @Benchmark
+  public double sortQuantile() {
+    double[] sorted = Arrays.copyOf(values, values.length);
+
+    Arrays.sort(sorted);
+    return sorted[(int) (0.99 * (sorted.length - 1))];
+  }
+
+  @Param({ "100000", "1000000" })
+  private int size;
+
+  private Long[] elements;
+  private double[] values;
+  private BloomFilter<Long> bloomFilter;
+  private Set<Long> hashSet;
+}
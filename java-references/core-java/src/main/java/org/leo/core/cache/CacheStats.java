@@ -0,0 +1,88 @@
+package org.leo.core.cache;
+
+/**
+ * Snapshot of the counters of a ConcurrentCache
+ */
+public final class CacheStats {
+
+  CacheStats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadTime, long evictionCount,
+      long evictionWeight) {
+    this.hitCount = hitCount;
+    this.missCount = missCount;
+    this.loadSuccessCount = loadSuccessCount;
+    this.loadFailureCount = loadFailureCount;
+    this.totalLoadTime = totalLoadTime;
+    this.evictionCount = evictionCount;
+    this.evictionWeight = evictionWeight;
+  }
+
+  public long requestCount() {
+    return hitCount + missCount;
+  }
+
+  /**
+   * Ratio of the lookups that found a value, 1 when there was no lookup
+   */
+  public double hitRate() {
+    long requests = requestCount();
+    return requests == 0 ? 1.0 : (double) hitCount / requests;
+  }
+
+  public long loadCount() {
+    return loadSuccessCount + loadFailureCount;
+  }
+
+  /**
+   * Average time spent in the loader, in nanoseconds
+   */
+  public double averageLoadPenalty() {
+    long loads = loadCount();
+    return loads == 0 ? 0.0 : (double) totalLoadTime / loads;
+  }
+
+  public long hitCount() {
+    return hitCount;
+  }
+
+  public long missCount() {
+    return missCount;
+  }
+
+  public long loadSuccessCount() {
+    return loadSuccessCount;
+  }
+
+  public long loadFailureCount() {
+    return loadFailureCount;
+  }
+
+  public long totalLoadTime() {
+    return totalLoadTime;
+  }
+
+  /**
+   * Entries removed because of the size or weight bound or of their expiration, the explicit invalidations are not counted
+   */
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  public long evictionWeight() {
+    return evictionWeight;
+  }
+
+  @Override
+  public String toString() {
+    return "CacheStats [hitCount=" + hitCount + ", missCount=" + missCount + ", hitRate=" + hitRate() + ", loadSuccessCount="
+        + loadSuccessCount + ", loadFailureCount=" + loadFailureCount + ", totalLoadTime=" + totalLoadTime + ", evictionCount="
+        + evictionCount + ", evictionWeight=" + evictionWeight + "]";
+  }
+
+  private final long hitCount;
+  private final long missCount;
+  private final long loadSuccessCount;
+  private final long loadFailureCount;
+  private final long totalLoadTime;
+  private final long evictionCount;
+  private final long evictionWeight;
+}
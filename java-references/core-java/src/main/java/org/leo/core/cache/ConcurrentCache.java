@@ -0,0 +1,928 @@
+package org.leo.core.cache;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Concurrent cache bounded by size, weight and time to live, with a W-TinyLFU eviction policy
+ *
+ * ReferenceCollections shows the LinkedHashMap.removeEldestEntry way of writing an LRU cache : it is a few lines, but a LinkedHashMap
+ * in access order modifies its list on every get, so sharing it between threads needs a lock around every read, and LRU itself
+ * is easily fooled, a scan of keys read once evicts the keys read all the time
+ *
+ * Concurrency :
+ * The entries are in a ConcurrentHashMap, reads and writes go to the map directly without any global lock
+ * What a LinkedHashMap does inline (moving the entry in the order, evicting the eldest) is deferred : the reads are recorded in
+ * striped lossy buffers (StripedReadBuffer) and the writes in a queue, then replayed in batch on the policy by a maintenance task
+ * running under a lock the callers only try (tryLock), on the executor (the common pool by default)
+ * So a get costs a map lookup and an append to a buffer, and the policy structures are only touched by one thread at a time
+ * When the writes come faster than the maintenance, the writer runs the maintenance itself (back pressure)
+ *
+ * Eviction, W-TinyLFU :
+ * The cache is split into a small admission window (1% of the maximum) in LRU order and a main space in segmented LRU
+ * (probation and protected, 80% of the main space is protected, an entry read while on probation is promoted there)
+ * New entries go to the window, the entries leaving the window are candidates to the main space : a candidate is admitted only
+ * if it was accessed more often than the main space entry it would evict, according to a count-min sketch of the recent
+ * access frequencies (FrequencySketch)
+ * The window keeps the recency of LRU for the bursts, TinyLFU keeps the frequent entries against the scans and the one hit wonders
+ *
+ * Expiration : with expireAfterWrite an entry is a miss once its time to live is over, and is removed by the next maintenance
+ * (there is no timer thread, cleanUp forces a maintenance)
+ *
+ * Loading : get(key, loader) loads a missing value at most once per key at a time, the other threads asking for the same key
+ * wait for that load instead of calling the loader too (single flight), the loads of different keys run in parallel
+ * A loader must not load an other key of the same cache that would in turn need the first one (the two loads would wait for each other)
+ *
+ * Neither the keys nor the values can be null, the sizes are estimates while the buffers are not drained
+ */
+public final class ConcurrentCache<K, V> {
+
+  private static final int IDLE = 0;
+
+  private static final int REQUIRED = 1;
+
+  private static final int PROCESSING_TO_IDLE = 2;
+
+  private static final int PROCESSING_TO_REQUIRED = 3;
+
+  /** Pending writes above which the writers run the maintenance themselves */
+  private static final int WRITE_BUFFER_MAX = 128 * Runtime.getRuntime().availableProcessors();
+
+  private static final double WINDOW_RATIO = 0.01;
+
+  private static final double PROTECTED_RATIO = 0.80;
+
+  /** Above this frequency a candidate less frequent than the victim is still admitted now and then, see admit */
+  private static final int ADMIT_HASHDOS_THRESHOLD = 5;
+
+  private static final byte NONE = 0;
+
+  private static final byte WINDOW = 1;
+
+  private static final byte PROBATION = 2;
+
+  private static final byte PROTECTED = 3;
+
+  public static <K, V> Builder<K, V> builder() {
+    return new Builder<>();
+  }
+
+  private ConcurrentCache(Builder<K, V> builder, Function<? super K, ? extends V> loader) {
+    this.data = new ConcurrentHashMap<>(builder.initialCapacity);
+    this.loader = loader;
+    this.executor = builder.executor;
+    this.ticker = builder.ticker;
+    this.weigher = builder.weigher;
+    this.maximum = builder.maximumWeight >= 0 ? builder.maximumWeight : builder.maximumSize;
+    this.bounded = maximum >= 0;
+    this.expireAfterWriteNanos = builder.expireAfterWriteNanos;
+    this.expires = expireAfterWriteNanos >= 0;
+
+    if (bounded) {
+      this.maxWindow = maximum - (long) (maximum * (1 - WINDOW_RATIO));
+      this.maxProtected = (long) ((maximum - maxWindow) * PROTECTED_RATIO);
+      this.sketch = new FrequencySketch(maximum);
+    } else {
+      this.maxWindow = Long.MAX_VALUE;
+      this.maxProtected = Long.MAX_VALUE;
+      this.sketch = null;
+    }
+  }
+
+  /**
+   * Value of the key, or null when it is absent or expired
+   */
+  public V getIfPresent(K key) {
+    Node<K, V> node = data.get(key);
+
+    if (node == null) {
+      misses.increment();
+      return null;
+    }
+
+    V value = node.value;
+    if (hasExpired(node, ticker.getAsLong())) {
+      misses.increment();
+      // the next maintenance removes it
+      scheduleAfterWrite();
+      return null;
+    }
+
+    afterRead(node);
+    hits.increment();
+    return value;
+  }
+
+  /**
+   * Value of the key, loaded by the loader given to the builder when absent
+   */
+  public V get(K key) {
+    if (loader == null) {
+      throw new IllegalStateException("The cache has no loader, build it with build(loader) or call get(key, loader)");
+    }
+    return get(key, loader);
+  }
+
+  /**
+   * Value of the key, loaded by loader when absent, once for all the threads asking for it at the same time
+   * A null loaded value is returned and not cached, an exception of the loader is thrown to all the waiting threads
+   */
+  public V get(K key, Function<? super K, ? extends V> loader) {
+    V value = getIfPresent(key);
+    return value != null ? value : load(key, loader);
+  }
+
+  /**
+   * Associates the value to the key, returns the previous value or null
+   */
+  public V put(K key, V value) {
+    Objects.requireNonNull(key);
+    Objects.requireNonNull(value);
+
+    int weight = weigh(key, value);
+    long now = ticker.getAsLong();
+
+    for (;;) {
+      Node<K, V> prior = data.get(key);
+
+      if (prior == null) {
+        Node<K, V> node = new Node<>(key, value, weight, now);
+
+        prior = data.putIfAbsent(key, node);
+        if (prior == null) {
+          afterWrite(new AddTask(node));
+          return null;
+        }
+      }
+
+      V previous;
+      synchronized (prior) {
+        if (!prior.alive) {
+          // removed in the meantime, the key is free again
+          continue;
+        }
+        previous = prior.value;
+        prior.value = value;
+        prior.weight = weight;
+        prior.writeTime = now;
+      }
+
+      afterWrite(new UpdateTask(prior));
+      return previous;
+    }
+  }
+
+  public void invalidate(K key) {
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      return;
+    }
+
+    synchronized (node) {
+      if (!node.alive) {
+        return;
+      }
+      data.remove(key, node);
+      node.alive = false;
+    }
+    afterWrite(new RemoveTask(node));
+  }
+
+  public void invalidateAll() {
+    for (K key : data.keySet()) {
+      invalidate(key);
+    }
+  }
+
+  /**
+   * Number of entries, expired ones included until the next maintenance
+   */
+  public long estimatedSize() {
+    return data.size();
+  }
+
+  /**
+   * Sum of the weights known to the policy (the number of entries without a weigher), the pending writes are not counted
+   */
+  public long weightedSize() {
+    evictionLock.lock();
+    try {
+      return weightedSize;
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  /**
+   * Runs the pending maintenance in the calling thread : replays the buffered reads and writes, removes the expired entries and evicts
+   */
+  public void cleanUp() {
+    evictionLock.lock();
+    try {
+      maintenance();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  public CacheStats stats() {
+    return new CacheStats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadTime.sum(), evictions.sum(),
+        evictionWeight.sum());
+  }
+
+  private V load(K key, Function<? super K, ? extends V> loader) {
+    CompletableFuture<V> flight = new CompletableFuture<>();
+    CompletableFuture<V> running = loading.putIfAbsent(key, flight);
+
+    if (running != null) {
+      return join(running);
+    }
+
+    try {
+      // an other thread may have loaded it between our miss and our putIfAbsent
+      V value = peek(key);
+
+      if (value == null) {
+        long start = ticker.getAsLong();
+        try {
+          value = loader.apply(key);
+          loadSuccesses.increment();
+        } catch (RuntimeException | Error e) {
+          loadFailures.increment();
+          throw e;
+        } finally {
+          totalLoadTime.add(ticker.getAsLong() - start);
+        }
+
+        if (value != null) {
+          put(key, value);
+        }
+      }
+
+      flight.complete(value);
+      return value;
+    } catch (RuntimeException | Error e) {
+      flight.completeExceptionally(e);
+      throw e;
+    } finally {
+      loading.remove(key, flight);
+    }
+  }
+
+  private V join(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Value of the key without recording a read nor counting a hit or a miss
+   */
+  private V peek(K key) {
+    Node<K, V> node = data.get(key);
+    return node == null || hasExpired(node, ticker.getAsLong()) ? null : node.value;
+  }
+
+  private int weigh(K key, V value) {
+    if (weigher == null) {
+      return 1;
+    }
+
+    int weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("Negative weight " + weight + " for the key " + key);
+    }
+    return weight;
+  }
+
+  private boolean hasExpired(Node<K, V> node, long now) {
+    return expires && now - node.writeTime >= expireAfterWriteNanos;
+  }
+
+  private void afterRead(Node<K, V> node) {
+    if (!bounded) {
+      // an unbounded cache only needs the write order, for the expiration
+      return;
+    }
+    if (readBuffer.offer(node) == StripedReadBuffer.FULL || drainStatus.get() == REQUIRED) {
+      scheduleDrain();
+    }
+  }
+
+  private void afterWrite(Runnable task) {
+    writeBuffer.add(task);
+    if (writeBufferSize.incrementAndGet() > WRITE_BUFFER_MAX) {
+      // the maintenance does not keep up, the writer pays for it instead of letting the buffer grow
+      cleanUp();
+      return;
+    }
+    scheduleAfterWrite();
+  }
+
+  private void scheduleAfterWrite() {
+    for (;;) {
+      switch (drainStatus.get()) {
+        case IDLE:
+          drainStatus.compareAndSet(IDLE, REQUIRED);
+          scheduleDrain();
+          return;
+        case REQUIRED:
+          scheduleDrain();
+          return;
+        case PROCESSING_TO_IDLE:
+          if (drainStatus.compareAndSet(PROCESSING_TO_IDLE, PROCESSING_TO_REQUIRED)) {
+            return;
+          }
+          continue;
+        case PROCESSING_TO_REQUIRED:
+          return;
+        default:
+          throw new IllegalStateException("Invalid drain status " + drainStatus.get());
+      }
+    }
+  }
+
+  private void scheduleDrain() {
+    if (drainStatus.get() >= PROCESSING_TO_IDLE || !evictionLock.tryLock()) {
+      return;
+    }
+
+    try {
+      if (drainStatus.get() >= PROCESSING_TO_IDLE) {
+        return;
+      }
+      drainStatus.lazySet(PROCESSING_TO_IDLE);
+      executor.execute(this::performCleanUp);
+    } catch (RuntimeException e) {
+      // rejected by the executor, the caller runs it (the lock is reentrant)
+      performCleanUp();
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  private void performCleanUp() {
+    evictionLock.lock();
+    try {
+      drainStatus.lazySet(PROCESSING_TO_IDLE);
+      maintenance();
+    } finally {
+      if (drainStatus.get() != PROCESSING_TO_IDLE || !drainStatus.compareAndSet(PROCESSING_TO_IDLE, IDLE)) {
+        drainStatus.lazySet(REQUIRED);
+      }
+      evictionLock.unlock();
+    }
+
+    if (drainStatus.get() == REQUIRED && writeBufferSize.get() > 0) {
+      // writes came during the maintenance and nothing may come after them to trigger the next one
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Replays the buffers on the policy then expires and evicts, under the eviction lock
+   */
+  private void maintenance() {
+    if (bounded) {
+      readBuffer.drainTo(this::onAccess);
+    }
+
+    Runnable task;
+    while ((task = writeBuffer.poll()) != null) {
+      writeBufferSize.decrementAndGet();
+      task.run();
+    }
+
+    expireEntries();
+    if (bounded) {
+      evictEntries();
+    }
+  }
+
+  private void onAccess(Node<K, V> node) {
+    if (node.queue == NONE) {
+      // not added yet or already dead
+      return;
+    }
+
+    sketch.increment(node.key);
+    switch (node.queue) {
+      case WINDOW:
+        window.moveToLast(node);
+        break;
+      case PROBATION:
+        probation.unlink(node);
+        protectedQueue.linkLast(node);
+        node.queue = PROTECTED;
+        protectedWeight += node.policyWeight;
+        demoteFromProtected();
+        break;
+      default:
+        protectedQueue.moveToLast(node);
+    }
+  }
+
+  private void demoteFromProtected() {
+    while (protectedWeight > maxProtected) {
+      Node<K, V> demoted = protectedQueue.first();
+
+      protectedQueue.unlink(demoted);
+      probation.linkLast(demoted);
+      demoted.queue = PROBATION;
+      protectedWeight -= demoted.policyWeight;
+    }
+  }
+
+  private void expireEntries() {
+    if (!expires) {
+      return;
+    }
+
+    long now = ticker.getAsLong();
+    Node<K, V> node;
+    while ((node = writeOrder.first()) != null && hasExpired(node, now)) {
+      if (!evict(node, true, now)) {
+        // written again in the meantime, its update task will find it at the end
+        writeOrder.moveToLast(node);
+      }
+    }
+  }
+
+  private void evictEntries() {
+    int candidates = 0;
+
+    // the window overflows to the end of probation, those are the candidates
+    while (windowWeight > maxWindow) {
+      Node<K, V> node = window.first();
+      if (node == null) {
+        break;
+      }
+
+      window.unlink(node);
+      probation.linkLast(node);
+      node.queue = PROBATION;
+      windowWeight -= node.policyWeight;
+      candidates++;
+    }
+
+    Node<K, V> candidate = candidates > 0 ? probation.last() : null;
+    while (weightedSize > maximum) {
+      Node<K, V> victim = probation.first();
+
+      if (victim == null) {
+        // everything is protected or in the window (a tiny cache or heavy entries)
+        victim = protectedQueue.first() != null ? protectedQueue.first() : window.first();
+        if (victim == null) {
+          break;
+        }
+        evict(victim, false, 0);
+        continue;
+      }
+
+      if (candidate == null || candidate == victim) {
+        evict(victim, false, 0);
+        candidate = null;
+        continue;
+      }
+
+      Node<K, V> previous = --candidates > 0 ? probation.previous(candidate) : null;
+      if (candidate.policyWeight <= maximum && admit(candidate.key, victim.key)) {
+        evict(victim, false, 0);
+        if (previous == victim) {
+          previous = null;
+        }
+      } else {
+        evict(candidate, false, 0);
+      }
+      candidate = previous;
+    }
+  }
+
+  /**
+   * TinyLFU : the candidate takes the place of the victim if it was accessed more often
+   * A candidate with a fair frequency is still admitted once in 128 times, otherwise an attacker could keep a victim in the cache
+   * forever by making its hash collide in the sketch with keys it reads often (the victim would always look hotter)
+   */
+  private boolean admit(K candidateKey, K victimKey) {
+    int candidateFrequency = sketch.frequency(candidateKey);
+    int victimFrequency = sketch.frequency(victimKey);
+
+    if (candidateFrequency > victimFrequency) {
+      return true;
+    }
+    if (candidateFrequency <= ADMIT_HASHDOS_THRESHOLD) {
+      return false;
+    }
+    return (ThreadLocalRandom.current().nextInt() & 127) == 0;
+  }
+
+  /**
+   * Removes the node from the map and from the policy, returns false when an expired node was written again since
+   */
+  private boolean evict(Node<K, V> node, boolean expired, long now) {
+    boolean evicted = false;
+
+    synchronized (node) {
+      if (node.alive) {
+        if (expired && !hasExpired(node, now)) {
+          return false;
+        }
+        data.remove(node.key, node);
+        node.alive = false;
+        evicted = true;
+      }
+    }
+
+    if (evicted) {
+      evictions.increment();
+      evictionWeight.add(node.policyWeight);
+    }
+    makeDead(node);
+    return true;
+  }
+
+  private void makeDead(Node<K, V> node) {
+    if (node.dead) {
+      return;
+    }
+
+    // an unbounded cache marks its nodes WINDOW without linking them, only the write order is used
+    switch (bounded ? node.queue : NONE) {
+      case WINDOW:
+        window.unlink(node);
+        windowWeight -= node.policyWeight;
+        break;
+      case PROBATION:
+        probation.unlink(node);
+        break;
+      case PROTECTED:
+        protectedQueue.unlink(node);
+        protectedWeight -= node.policyWeight;
+        break;
+      default:
+        // never added to the policy
+    }
+
+    if (node.queue != NONE) {
+      weightedSize -= node.policyWeight;
+      if (expires) {
+        writeOrder.unlink(node);
+      }
+    }
+    node.queue = NONE;
+    node.dead = true;
+  }
+
+  /**
+   * A new node : into the window (or only in the write order for an unbounded cache)
+   */
+  private final class AddTask implements Runnable {
+
+    AddTask(Node<K, V> node) {
+      this.node = node;
+    }
+
+    @Override
+    public void run() {
+      if (node.dead) {
+        // removed before being added
+        return;
+      }
+
+      node.policyWeight = node.weight;
+      weightedSize += node.policyWeight;
+      if (expires) {
+        writeOrder.linkLast(node);
+      }
+
+      if (bounded) {
+        window.linkLast(node);
+        node.queue = WINDOW;
+        windowWeight += node.policyWeight;
+        sketch.increment(node.key);
+      } else {
+        node.queue = WINDOW;
+      }
+    }
+
+    private final Node<K, V> node;
+  }
+
+  /**
+   * A new value for an existing node : new weight, new write time, and an access
+   */
+  private final class UpdateTask implements Runnable {
+
+    UpdateTask(Node<K, V> node) {
+      this.node = node;
+    }
+
+    @Override
+    public void run() {
+      if (node.dead || node.queue == NONE) {
+        // dead, or the add task still to come reads the new weight
+        return;
+      }
+
+      int weight = node.weight;
+      int delta = weight - node.policyWeight;
+
+      node.policyWeight = weight;
+      weightedSize += delta;
+      if (expires) {
+        writeOrder.moveToLast(node);
+      }
+
+      if (bounded) {
+        if (node.queue == WINDOW) {
+          windowWeight += delta;
+        } else if (node.queue == PROTECTED) {
+          protectedWeight += delta;
+        }
+        onAccess(node);
+      }
+    }
+
+    private final Node<K, V> node;
+  }
+
+  private final class RemoveTask implements Runnable {
+
+    RemoveTask(Node<K, V> node) {
+      this.node = node;
+    }
+
+    @Override
+    public void run() {
+      makeDead(node);
+    }
+
+    private final Node<K, V> node;
+  }
+
+  /**
+   * An entry of the cache
+   * value, weight and writeTime are written under the node lock and read without it, the other fields belong to the maintenance
+   */
+  private static final class Node<K, V> {
+
+    Node(K key, V value, int weight, long writeTime) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+      this.writeTime = writeTime;
+    }
+
+    private final K key;
+    private volatile V value;
+    private volatile int weight;
+    private volatile long writeTime;
+    /** In the map, guarded by the node lock */
+    private boolean alive = true;
+    /** Removed from the policy */
+    private boolean dead;
+    /** Weight as last counted by the policy */
+    private int policyWeight;
+    private byte queue = NONE;
+    private Node<K, V> previousInAccessOrder;
+    private Node<K, V> nextInAccessOrder;
+    private Node<K, V> previousInWriteOrder;
+    private Node<K, V> nextInWriteOrder;
+  }
+
+  /**
+   * Doubly linked list through the links of the nodes, a node is in at most one access order list and in the write order list
+   */
+  private static final class NodeDeque<K, V> {
+
+    NodeDeque(boolean writeOrder) {
+      this.writeOrder = writeOrder;
+    }
+
+    Node<K, V> first() {
+      return first;
+    }
+
+    Node<K, V> last() {
+      return last;
+    }
+
+    Node<K, V> previous(Node<K, V> node) {
+      return writeOrder ? node.previousInWriteOrder : node.previousInAccessOrder;
+    }
+
+    void linkLast(Node<K, V> node) {
+      setPrevious(node, last);
+      setNext(node, null);
+      if (last == null) {
+        first = node;
+      } else {
+        setNext(last, node);
+      }
+      last = node;
+    }
+
+    void unlink(Node<K, V> node) {
+      Node<K, V> previous = previous(node);
+      Node<K, V> next = next(node);
+
+      if (previous == null) {
+        first = next;
+      } else {
+        setNext(previous, next);
+      }
+      if (next == null) {
+        last = previous;
+      } else {
+        setPrevious(next, previous);
+      }
+      setPrevious(node, null);
+      setNext(node, null);
+    }
+
+    void moveToLast(Node<K, V> node) {
+      if (node != last) {
+        unlink(node);
+        linkLast(node);
+      }
+    }
+
+    private Node<K, V> next(Node<K, V> node) {
+      return writeOrder ? node.nextInWriteOrder : node.nextInAccessOrder;
+    }
+
+    private void setPrevious(Node<K, V> node, Node<K, V> previous) {
+      if (writeOrder) {
+        node.previousInWriteOrder = previous;
+      } else {
+        node.previousInAccessOrder = previous;
+      }
+    }
+
+    private void setNext(Node<K, V> node, Node<K, V> next) {
+      if (writeOrder) {
+        node.nextInWriteOrder = next;
+      } else {
+        node.nextInAccessOrder = next;
+      }
+    }
+
+    private final boolean writeOrder;
+    private Node<K, V> first;
+    private Node<K, V> last;
+  }
+
+  public static final class Builder<K, V> {
+
+    private Builder() {
+    }
+
+    public Builder<K, V> initialCapacity(int initialCapacity) {
+      if (initialCapacity < 0) {
+        throw new IllegalArgumentException("Negative initial capacity : " + initialCapacity);
+      }
+      this.initialCapacity = initialCapacity;
+      return this;
+    }
+
+    /**
+     * Maximum number of entries, exclusive with maximumWeight
+     */
+    public Builder<K, V> maximumSize(long maximumSize) {
+      if (maximumSize < 0) {
+        throw new IllegalArgumentException("Negative maximum size : " + maximumSize);
+      }
+      this.maximumSize = maximumSize;
+      return this;
+    }
+
+    /**
+     * Maximum sum of the weights of the entries, with the weigher
+     */
+    public Builder<K, V> maximumWeight(long maximumWeight) {
+      if (maximumWeight < 0) {
+        throw new IllegalArgumentException("Negative maximum weight : " + maximumWeight);
+      }
+      this.maximumWeight = maximumWeight;
+      return this;
+    }
+
+    public Builder<K, V> weigher(Weigher<? super K, ? super V> weigher) {
+      this.weigher = Objects.requireNonNull(weigher);
+      return this;
+    }
+
+    /**
+     * Time to live of the entries, counted from their last put
+     */
+    public Builder<K, V> expireAfterWrite(long duration, TimeUnit unit) {
+      if (duration < 0) {
+        throw new IllegalArgumentException("Negative duration : " + duration);
+      }
+      this.expireAfterWriteNanos = unit.toNanos(duration);
+      return this;
+    }
+
+    /**
+     * Executor of the maintenance task, ForkJoinPool.commonPool() by default, Runnable::run runs it in the calling threads
+     */
+    public Builder<K, V> executor(Executor executor) {
+      this.executor = Objects.requireNonNull(executor);
+      return this;
+    }
+
+    /**
+     * Source of the time in nanoseconds, System.nanoTime by default
+     */
+    public Builder<K, V> ticker(LongSupplier ticker) {
+      this.ticker = Objects.requireNonNull(ticker);
+      return this;
+    }
+
+    public ConcurrentCache<K, V> build() {
+      return build(null);
+    }
+
+    /**
+     * A cache whose get(key) loads the missing values with the loader
+     */
+    public ConcurrentCache<K, V> build(Function<? super K, ? extends V> loader) {
+      if (maximumSize >= 0 && maximumWeight >= 0) {
+        throw new IllegalStateException("maximumSize and maximumWeight cannot be combined");
+      }
+      if (maximumWeight >= 0 && weigher == null) {
+        throw new IllegalStateException("maximumWeight needs a weigher");
+      }
+      if (weigher != null && maximumWeight < 0) {
+        throw new IllegalStateException("A weigher needs maximumWeight");
+      }
+      return new ConcurrentCache<>(this, loader);
+    }
+
+    private int initialCapacity = 16;
+    private long maximumSize = -1;
+    private long maximumWeight = -1;
+    private Weigher<? super K, ? super V> weigher;
+    private long expireAfterWriteNanos = -1;
+    private Executor executor = ForkJoinPool.commonPool();
+    private LongSupplier ticker = System::nanoTime;
+  }
+
+  private final ConcurrentHashMap<K, Node<K, V>> data;
+  private final ConcurrentHashMap<K, CompletableFuture<V>> loading = new ConcurrentHashMap<>();
+  private final Function<? super K, ? extends V> loader;
+  private final Executor executor;
+  private final LongSupplier ticker;
+  private final Weigher<? super K, ? super V> weigher;
+  private final long maximum;
+  private final boolean bounded;
+  private final long maxWindow;
+  private final long maxProtected;
+  private final long expireAfterWriteNanos;
+  private final boolean expires;
+  private final FrequencySketch sketch;
+
+  private final StripedReadBuffer<Node<K, V>> readBuffer = new StripedReadBuffer<>();
+  private final Queue<Runnable> writeBuffer = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger writeBufferSize = new AtomicInteger();
+  private final AtomicInteger drainStatus = new AtomicInteger(IDLE);
+  private final ReentrantLock evictionLock = new ReentrantLock();
+
+  // policy state, guarded by evictionLock
+  private final NodeDeque<K, V> window = new NodeDeque<>(false);
+  private final NodeDeque<K, V> probation = new NodeDeque<>(false);
+  private final NodeDeque<K, V> protectedQueue = new NodeDeque<>(false);
+  private final NodeDeque<K, V> writeOrder = new NodeDeque<>(true);
+  private long weightedSize;
+  private long windowWeight;
+  private long protectedWeight;
+
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder loadSuccesses = new LongAdder();
+  private final LongAdder loadFailures = new LongAdder();
+  private final LongAdder totalLoadTime = new LongAdder();
+  private final LongAdder evictions = new LongAdder();
+  private final LongAdder evictionWeight = new LongAdder();
+}
@@ -0,0 +1,105 @@
+package org.leo.core.cache;
+
+/**
+ * Count-min sketch of the access frequencies of the keys of a cache, the history behind the TinyLFU admission of ConcurrentCache
+ * 
+ * A count-min sketch estimates how many times a key was seen without storing the keys : each key is hashed to 4 counters,
+ * an access increments them and the estimate is the smallest of the 4, which is the right count unless the 4 counters are shared
+ * with more frequent keys (the sketch can over count, never under count)
+ * 
+ * The counters are 4 bits (TinyLFU only compares frequencies, 15 is frequent enough), 16 of them in each long,
+ * the 4 counters of a key are in the same long so that an access touches one word per hash
+ * To forget the old history, all the counters are halved after 10 * maximum increments (aging), a key popular yesterday
+ * does not stay in the cache forever
+ * 
+ * Not thread safe, ConcurrentCache only uses it under its eviction lock
+ */
+final class FrequencySketch {
+
+  private static final long[] SEEDS = { 0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+
+  private static final long ONE_MASK = 0x1111111111111111L;
+
+  /** Size cap of the table, 4M longs (32 MB), for the weight bounded caches whose maximum is not a number of entries */
+  private static final int MAX_TABLE_SIZE = 1 << 22;
+
+  FrequencySketch(long maximumSize) {
+    int tableSize = (int) Math.min(Math.max(maximumSize, 16), MAX_TABLE_SIZE);
+
+    this.table = new long[Integer.highestOneBit(tableSize - 1) << 1];
+    this.tableMask = table.length - 1;
+    this.sampleSize = (int) Math.min(10 * Math.max(maximumSize, 16), Integer.MAX_VALUE);
+  }
+
+  /**
+   * Estimated number of accesses of the key since the last aging, 15 at most
+   */
+  int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  void increment(Object key) {
+    int hash = spread(key.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int counter) {
+    int offset = counter << 2;
+    long mask = 0xfL << offset;
+
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Halves every counter, size is corrected for the odd counters that lose their last half increment
+   */
+  private void reset() {
+    int odd = 0;
+
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+}
@@ -0,0 +1,95 @@
+package org.leo.core.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lossy buffer of the reads of a cache, waiting to be replayed on the eviction policy
+ * 
+ * Updating an LRU order on every read means taking a lock on every read, the reason why a LinkedHashMap in access order
+ * does not scale even with a read/write lock (a get is a write of the order)
+ * Here a read only appends the entry to a small ring buffer and the policy is updated later, in batch, by a single thread
+ * 
+ * There is a buffer per stripe, the stripe of a thread is given by its id, so that the threads of different cores
+ * do not compete on the same counter
+ * When a buffer is full, or when two threads race for the same slot, the read is dropped : the policy loses a bit of
+ * information, which only matters for the hit rate if it happens all the time, and the readers never wait
+ */
+final class StripedReadBuffer<E> {
+
+  /** Result of offer : recorded */
+  static final int SUCCESS = 0;
+
+  /** Result of offer : dropped because of a concurrent offer on the same stripe */
+  static final int FAILED = 1;
+
+  /** Result of offer : dropped because the stripe is full, the buffer should be drained */
+  static final int FULL = 2;
+
+  private static final int BUFFER_SIZE = 16;
+
+  private static final int BUFFER_MASK = BUFFER_SIZE - 1;
+
+  @SuppressWarnings("unchecked")
+  StripedReadBuffer() {
+    int stripes = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 2) - 1) << 1;
+
+    this.stripes = (Stripe<E>[]) new Stripe<?>[Math.min(stripes, 64)];
+    for (int i = 0; i < this.stripes.length; i++) {
+      this.stripes[i] = new Stripe<>();
+    }
+  }
+
+  int offer(E element) {
+    Stripe<E> stripe = stripes[stripeIndex()];
+    long head = stripe.readCounter;
+    long tail = stripe.writeCounter.get();
+
+    if (tail - head >= BUFFER_SIZE) {
+      return FULL;
+    }
+    if (stripe.writeCounter.compareAndSet(tail, tail + 1)) {
+      stripe.buffer.lazySet((int) (tail & BUFFER_MASK), element);
+      return SUCCESS;
+    }
+    return FAILED;
+  }
+
+  /**
+   * Consumes the recorded elements, must not be called by two threads at the same time
+   */
+  void drainTo(Consumer<E> consumer) {
+    for (Stripe<E> stripe : stripes) {
+      long head = stripe.readCounter;
+      long tail = stripe.writeCounter.get();
+
+      for (; head != tail; head++) {
+        int index = (int) (head & BUFFER_MASK);
+        E element = stripe.buffer.get(index);
+
+        if (element == null) {
+          // the slot is taken but not written yet, it will be consumed by the next drain
+          break;
+        }
+        stripe.buffer.lazySet(index, null);
+        consumer.accept(element);
+      }
+      stripe.readCounter = head;
+    }
+  }
+
+  private int stripeIndex() {
+    int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & (stripes.length - 1);
+  }
+
+  private static final class Stripe<E> {
+
+    private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(BUFFER_SIZE);
+    private final AtomicLong writeCounter = new AtomicLong();
+    private volatile long readCounter;
+  }
+
+  private final Stripe<E>[] stripes;
+}
@@ -0,0 +1,11 @@
+package org.leo.core.cache;
+
+/**
+ * Weight of a cache entry, bounded caches built with maximumWeight evict until the sum of the weights is under the maximum
+ * The weight is computed once when the entry is put, it must not change while the entry is in the cache
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+  int weigh(K key, V value);
+}
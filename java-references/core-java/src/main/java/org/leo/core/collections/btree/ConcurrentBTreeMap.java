@@ -0,0 +1,839 @@
+package org.leo.core.collections.btree;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Thread safe sorted map, a B+tree whose readers take no lock (optimistic lock coupling)
+ * 
+ * TreeMap is a red-black tree : one node per entry, a lookup follows about 1.4 log2(n) pointers to nodes scattered in the heap
+ * (a cache miss each for a large map), and nothing in it is thread safe
+ * ConcurrentSkipListMap is thread safe and lock free, but still one node per entry and more pointers to follow (the index levels)
+ * A B+tree stores up to 64 entries per node in arrays : a lookup reads log64(n) nodes (4 for 10 million entries)
+ * with a binary search in each, the entries are only in the leaves and the leaves are linked, so a range scan reads
+ * contiguous arrays from leaf to leaf
+ * 
+ * Concurrency (Leis et al., "The ART of practical synchronization") : every node has a StampedLock
+ * - a reader takes an optimistic stamp of the node, reads it, takes the stamp of the child then validates the stamp of the node :
+ *   no writer changed the node while it was read, so the child is the right one. No write to shared memory at all,
+ *   the readers do not slow each other down. A failed validation restarts from the root, after a few failures the reader
+ *   goes down with read locks (hand over hand) so that it cannot starve
+ * - a writer goes down the same way and only converts its stamps into write locks where it writes : the leaf, and its parent
+ *   for a split. A full inner node met on the way down is split at once, so that a split never climbs more than one level
+ * Lookups, puts and removes of different leaves run in parallel, only the writers of a same leaf wait for each other
+ * 
+ * A remove does not merge the leaves it empties (as in many database B+trees) : the tree does not shrink, rebuild it with
+ * fromSorted after massive removals
+ * The range scans and the iterators are weakly consistent : each leaf is copied atomically, the scan sees the writes made
+ * to the leaves it has not reached yet. Neither null keys nor null values
+ */
+public class ConcurrentBTreeMap<K, V> extends AbstractMap<K, V> {
+
+  /** Maximum number of keys of a node */
+  static final int CAPACITY = 64;
+
+  /** Keys per leaf of a bulk load : room left for inserts before the first splits */
+  private static final int BULK_FILL = CAPACITY * 3 / 4;
+
+  /** Optimistic attempts before a reader takes read locks */
+  private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+  public ConcurrentBTreeMap() {
+    this(null);
+  }
+
+  /**
+   * @param comparator order of the keys, null for their natural order
+   */
+  public ConcurrentBTreeMap(Comparator<? super K> comparator) {
+    this.comparator = comparator;
+    this.root = new Leaf();
+  }
+
+  /**
+   * Builds the tree from entries sorted by key, leaf by leaf then level by level : O(n) instead of n inserts
+   * 
+   * @throws IllegalArgumentException when the keys are not strictly increasing
+   */
+  public static <K extends Comparable<? super K>, V> ConcurrentBTreeMap<K, V> fromSorted(Iterable<? extends Entry<? extends K, ? extends V>> entries) {
+    return fromSorted(entries, null);
+  }
+
+  public static <K, V> ConcurrentBTreeMap<K, V> fromSorted(Iterable<? extends Entry<? extends K, ? extends V>> entries, Comparator<? super K> comparator) {
+    ConcurrentBTreeMap<K, V> map = new ConcurrentBTreeMap<>(comparator);
+    List<Object> keys = new ArrayList<>();
+    List<Object> values = new ArrayList<>();
+
+    for (Entry<? extends K, ? extends V> entry : entries) {
+      checkNotNull(entry.getKey(), entry.getValue());
+      if (!keys.isEmpty() && map.compare(keys.get(keys.size() - 1), entry.getKey()) >= 0) {
+        throw new IllegalArgumentException("The keys are not strictly increasing : " + keys.get(keys.size() - 1) + ", " + entry.getKey());
+      }
+      keys.add(entry.getKey());
+      values.add(entry.getValue());
+    }
+
+    if (!keys.isEmpty()) {
+      map.root = bulkLoad(keys, values);
+      map.size.add(keys.size());
+    }
+    return map;
+  }
+
+  /**
+   * Node of the tree : count keys, the lock guards all the fields
+   */
+  abstract static class Node {
+
+    final StampedLock lock = new StampedLock();
+    final Object[] keys = new Object[CAPACITY];
+    int count;
+  }
+
+  /**
+   * count keys and count + 1 children, the child i holds the keys in [keys[i - 1], keys[i])
+   */
+  static final class Inner extends Node {
+
+    final Node[] children = new Node[CAPACITY + 1];
+  }
+
+  static final class Leaf extends Node {
+
+    final Object[] values = new Object[CAPACITY];
+    Leaf next;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    if (key == null) {
+      return null;
+    }
+
+    for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+      Node node = root;
+      long stamp = node.lock.tryOptimisticRead();
+      if (stamp == 0 || node != root) {
+        continue;
+      }
+
+      try {
+        while (node instanceof Inner) {
+          Node child = ((Inner) node).children[childIndex(node, key)];
+          long childStamp = child.lock.tryOptimisticRead();
+
+          // the child was read from a node no writer touched, it is the right one
+          if (!node.lock.validate(stamp) || childStamp == 0) {
+            stamp = 0;
+            break;
+          }
+          node = child;
+          stamp = childStamp;
+        }
+        if (stamp == 0) {
+          continue;
+        }
+
+        int index = indexOf(node, key);
+        Object value = index >= 0 ? ((Leaf) node).values[index] : null;
+        if (node.lock.validate(stamp)) {
+          return (V) value;
+        }
+      } catch (RuntimeException e) {
+        // a half written node may hold a null key : only an exception on a consistent node is a real one
+        if (stamp != 0 && node.lock.validate(stamp)) {
+          throw e;
+        }
+      }
+    }
+
+    Descent locked = readLockLeaf(key);
+    Leaf leaf = (Leaf) locked.node;
+    try {
+      int index = indexOf(leaf, key);
+      return index >= 0 ? (V) leaf.values[index] : null;
+    } finally {
+      leaf.lock.unlockRead(locked.stamp);
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public V put(K key, V value) {
+    return put(key, value, false);
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    return put(key, value, true);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V remove(Object key) {
+    if (key == null) {
+      return null;
+    }
+
+    for (int attempts = 0; ; attempts++) {
+      backoff(attempts);
+
+      Descent descent = descend(key, false);
+      if (descent == null) {
+        continue;
+      }
+
+      Leaf leaf = (Leaf) descent.node;
+      long writeStamp = leaf.lock.tryConvertToWriteLock(descent.stamp);
+      if (writeStamp == 0) {
+        continue;
+      }
+
+      try {
+        int index = indexOf(leaf, key);
+        if (index < 0) {
+          return null;
+        }
+
+        Object old = leaf.values[index];
+        int moved = leaf.count - index - 1;
+        System.arraycopy(leaf.keys, index + 1, leaf.keys, index, moved);
+        System.arraycopy(leaf.values, index + 1, leaf.values, index, moved);
+        leaf.count--;
+        leaf.keys[leaf.count] = null;
+        leaf.values[leaf.count] = null;
+        size.decrement();
+        return (V) old;
+      } finally {
+        leaf.lock.unlockWrite(writeStamp);
+      }
+    }
+  }
+
+  /**
+   * Exact when no thread writes, an estimate while they do
+   */
+  @Override
+  public int size() {
+    return (int) Math.min(size.sum(), Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size.sum() == 0;
+  }
+
+  public Comparator<? super K> comparator() {
+    return comparator;
+  }
+
+  /**
+   * The entries whose keys are between from and to, in key order, weakly consistent
+   * 
+   * @param from lowest key, null for no lower bound
+   * @param to highest key, null for no upper bound
+   */
+  public Iterator<Entry<K, V>> rangeIterator(K from, boolean fromInclusive, K to, boolean toInclusive) {
+    return new RangeIterator(from, fromInclusive, to, toInclusive);
+  }
+
+  /**
+   * Passes the entries whose keys are in [from, to) to the action, in key order, without creating an entry per key
+   * 
+   * @return the number of entries passed
+   */
+  @SuppressWarnings("unchecked")
+  public int forEachInRange(K from, K to, BiConsumer<? super K, ? super V> action) {
+    LeafCopy copy = new LeafCopy();
+    Leaf leaf = from == null ? firstLeaf() : findLeaf(from);
+    Object last = null;
+    int passed = 0;
+
+    while (leaf != null) {
+      copy.load(leaf);
+      leaf = copy.next;
+
+      for (int i = 0; i < copy.count; i++) {
+        Object key = copy.keys[i];
+        if ((from != null && compare(key, from) < 0) || (last != null && compare(key, last) <= 0)) {
+          continue;
+        }
+        if (to != null && compare(key, to) >= 0) {
+          return passed;
+        }
+        action.accept((K) key, (V) copy.values[i]);
+        last = key;
+        passed++;
+      }
+    }
+    return passed;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return rangeIterator(null, true, null, true);
+      }
+
+      @Override
+      public int size() {
+        return ConcurrentBTreeMap.this.size();
+      }
+    };
+  }
+
+  /**
+   * Height of the tree, 1 for a single leaf
+   */
+  public int height() {
+    int height = 1;
+
+    for (Node node = root; node instanceof Inner; node = ((Inner) node).children[0]) {
+      height++;
+    }
+    return height;
+  }
+
+  private static void checkNotNull(Object key, Object value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("Null keys and values are not allowed");
+    }
+  }
+
+  /**
+   * Yields the processor once the first attempts failed, the writer holding the node needs it to finish (on few cores)
+   */
+  private static void backoff(int attempts) {
+    if (attempts > 2) {
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Leaves filled to BULK_FILL, then each level of inner nodes over the level below, the separator of a child being its lowest key
+   */
+  private static Node bulkLoad(List<Object> keys, List<Object> values) {
+    int leafCount = (keys.size() + BULK_FILL - 1) / BULK_FILL;
+    Node[] level = new Node[leafCount];
+    Object[] lowestKeys = new Object[leafCount];
+    Leaf previous = null;
+
+    // the same number of keys in every leaf (give or take one), no nearly empty last leaf
+    for (int i = 0, start = 0; i < leafCount; i++) {
+      int end = (int) ((long) keys.size() * (i + 1) / leafCount);
+      Leaf leaf = new Leaf();
+
+      for (int j = start; j < end; j++) {
+        leaf.keys[j - start] = keys.get(j);
+        leaf.values[j - start] = values.get(j);
+      }
+      leaf.count = end - start;
+      if (previous != null) {
+        previous.next = leaf;
+      }
+      level[i] = leaf;
+      lowestKeys[i] = leaf.keys[0];
+      previous = leaf;
+      start = end;
+    }
+
+    while (level.length > 1) {
+      int parentCount = (level.length + BULK_FILL) / (BULK_FILL + 1);
+      Node[] parents = new Node[parentCount];
+      Object[] parentLowestKeys = new Object[parentCount];
+
+      for (int i = 0, start = 0; i < parentCount; i++) {
+        int end = (int) ((long) level.length * (i + 1) / parentCount);
+        Inner inner = new Inner();
+
+        for (int j = start; j < end; j++) {
+          inner.children[j - start] = level[j];
+          if (j > start) {
+            inner.keys[j - start - 1] = lowestKeys[j];
+          }
+        }
+        inner.count = end - start - 1;
+        parents[i] = inner;
+        parentLowestKeys[i] = lowestKeys[start];
+        start = end;
+      }
+      level = parents;
+      lowestKeys = parentLowestKeys;
+    }
+    return level[0];
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(Object key1, Object key2) {
+    return comparator == null ? ((Comparable<Object>) key1).compareTo(key2) : ((Comparator<Object>) comparator).compare(key1, key2);
+  }
+
+  /**
+   * Index of the child of an inner node holding the key : the number of keys lower than or equal to it
+   * The count is bounded by CAPACITY whatever a concurrent writer does, so a racy read stays in the arrays
+   */
+  private int childIndex(Node node, Object key) {
+    int low = 0;
+    int high = Math.min(node.count, CAPACITY) - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (compare(node.keys[middle], key) <= 0) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Index of the key in a leaf, -(insertion point + 1) when absent
+   */
+  private int indexOf(Node node, Object key) {
+    int low = 0;
+    int high = Math.min(node.count, CAPACITY) - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      int cmp = compare(node.keys[middle], key);
+      if (cmp < 0) {
+        low = middle + 1;
+      } else if (cmp > 0) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Where an optimistic descent ended : the leaf of the key with its stamp, and its parent with its stamp
+   */
+  private static final class Descent {
+
+    Descent(Node node, long stamp, Inner parent, long parentStamp) {
+      this.node = node;
+      this.stamp = stamp;
+      this.parent = parent;
+      this.parentStamp = parentStamp;
+    }
+
+    final Node node;
+    final long stamp;
+    final Inner parent;
+    final long parentStamp;
+  }
+
+  /**
+   * Optimistic descent to the leaf of the key, null when a validation failed and the caller must restart
+   * 
+   * @param splitFullNodes whether the full inner nodes met are split (by a put : the split of a leaf then always has room in its parent)
+   */
+  private Descent descend(Object key, boolean splitFullNodes) {
+    Node node = root;
+    long stamp = node.lock.tryOptimisticRead();
+    Inner parent = null;
+    long parentStamp = 0;
+
+    if (stamp == 0 || node != root) {
+      return null;
+    }
+
+    try {
+      while (node instanceof Inner) {
+        Inner inner = (Inner) node;
+
+        if (splitFullNodes && inner.count == CAPACITY) {
+          splitInner(parent, parentStamp, inner, stamp, key);
+          return null;
+        }
+
+        Node child = inner.children[childIndex(inner, key)];
+        long childStamp = child.lock.tryOptimisticRead();
+        if (!inner.lock.validate(stamp) || childStamp == 0) {
+          return null;
+        }
+        parent = inner;
+        parentStamp = stamp;
+        node = child;
+        stamp = childStamp;
+      }
+      return new Descent(node, stamp, parent, parentStamp);
+    } catch (RuntimeException e) {
+      if (node.lock.validate(stamp)) {
+        throw e;
+      }
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private V put(K key, V value, boolean onlyIfAbsent) {
+    checkNotNull(key, value);
+
+    for (int attempts = 0; ; attempts++) {
+      backoff(attempts);
+
+      Descent descent = descend(key, true);
+      if (descent == null) {
+        continue;
+      }
+
+      Leaf leaf = (Leaf) descent.node;
+      long writeStamp = leaf.lock.tryConvertToWriteLock(descent.stamp);
+      if (writeStamp == 0) {
+        continue;
+      }
+
+      long parentWriteStamp = 0;
+      try {
+        int index = indexOf(leaf, key);
+        if (index >= 0) {
+          Object old = leaf.values[index];
+          if (!onlyIfAbsent) {
+            leaf.values[index] = value;
+          }
+          return (V) old;
+        }
+
+        int insertion = -(index + 1);
+        if (leaf.count < CAPACITY) {
+          insert(leaf, insertion, key, value);
+          size.increment();
+          return null;
+        }
+
+        // full leaf : split under the write lock of the parent too (none for the root, whose lock we hold)
+        if (descent.parent != null) {
+          parentWriteStamp = descent.parent.lock.tryConvertToWriteLock(descent.parentStamp);
+          if (parentWriteStamp == 0) {
+            continue;
+          }
+        }
+
+        Leaf right = splitLeaf(leaf);
+        if (compare(key, right.keys[0]) < 0) {
+          insert(leaf, insertion, key, value);
+        } else {
+          insert(right, insertion - leaf.count, key, value);
+        }
+        linkChild(descent.parent, leaf, right.keys[0], right, key);
+        size.increment();
+        return null;
+      } finally {
+        if (parentWriteStamp != 0) {
+          descent.parent.lock.unlockWrite(parentWriteStamp);
+        }
+        leaf.lock.unlockWrite(writeStamp);
+      }
+    }
+  }
+
+  private static void insert(Leaf leaf, int index, Object key, Object value) {
+    int moved = leaf.count - index;
+
+    System.arraycopy(leaf.keys, index, leaf.keys, index + 1, moved);
+    System.arraycopy(leaf.values, index, leaf.values, index + 1, moved);
+    leaf.keys[index] = key;
+    leaf.values[index] = value;
+    leaf.count++;
+  }
+
+  /**
+   * Moves the upper half of a full leaf to a new leaf linked after it
+   */
+  private static Leaf splitLeaf(Leaf leaf) {
+    Leaf right = new Leaf();
+    int half = CAPACITY / 2;
+
+    System.arraycopy(leaf.keys, half, right.keys, 0, CAPACITY - half);
+    System.arraycopy(leaf.values, half, right.values, 0, CAPACITY - half);
+    for (int i = half; i < CAPACITY; i++) {
+      leaf.keys[i] = null;
+      leaf.values[i] = null;
+    }
+    right.count = CAPACITY - half;
+    leaf.count = half;
+    right.next = leaf.next;
+    leaf.next = right;
+    return right;
+  }
+
+  /**
+   * Links the new right sibling of a node in its parent (write locked, never full), or in a new root when the node was the root
+   */
+  private void linkChild(Inner parent, Node left, Object separator, Node right, Object key) {
+    if (parent == null) {
+      Inner newRoot = new Inner();
+      newRoot.keys[0] = separator;
+      newRoot.children[0] = left;
+      newRoot.children[1] = right;
+      newRoot.count = 1;
+      root = newRoot;
+      return;
+    }
+
+    int index = childIndex(parent, key);
+    int moved = parent.count - index;
+    System.arraycopy(parent.keys, index, parent.keys, index + 1, moved);
+    System.arraycopy(parent.children, index + 1, parent.children, index + 2, moved);
+    parent.keys[index] = separator;
+    parent.children[index + 1] = right;
+    parent.count++;
+  }
+
+  /**
+   * Splits a full inner node met by a put, if the locks of the node and of its parent can be taken at once, the put restarts anyway
+   */
+  private void splitInner(Inner parent, long parentStamp, Inner inner, long stamp, Object key) {
+    long writeStamp = inner.lock.tryConvertToWriteLock(stamp);
+    if (writeStamp == 0) {
+      return;
+    }
+
+    long parentWriteStamp = 0;
+    try {
+      if (parent != null) {
+        parentWriteStamp = parent.lock.tryConvertToWriteLock(parentStamp);
+        if (parentWriteStamp == 0) {
+          return;
+        }
+      }
+
+      // the middle key moves up, the keys and the children on its right move to the new node
+      int middle = CAPACITY / 2;
+      Object separator = inner.keys[middle];
+      Inner right = new Inner();
+      int moved = CAPACITY - middle - 1;
+
+      System.arraycopy(inner.keys, middle + 1, right.keys, 0, moved);
+      System.arraycopy(inner.children, middle + 1, right.children, 0, moved + 1);
+      for (int i = middle; i < CAPACITY; i++) {
+        inner.keys[i] = null;
+        inner.children[i + 1] = null;
+      }
+      right.count = moved;
+      inner.count = middle;
+      linkChild(parent, inner, separator, right, key);
+    } finally {
+      if (parentWriteStamp != 0) {
+        parent.lock.unlockWrite(parentWriteStamp);
+      }
+      inner.lock.unlockWrite(writeStamp);
+    }
+  }
+
+  /**
+   * Pessimistic descent for a reader that failed to validate too many times : read lock of the child taken before
+   * the one of the parent is released (hand over hand), the leaf is returned read locked with its stamp
+   */
+  private Descent readLockLeaf(Object key) {
+    for (;;) {
+      Node node = root;
+      long stamp = node.lock.readLock();
+
+      if (node != root) {
+        node.lock.unlockRead(stamp);
+        continue;
+      }
+
+      while (node instanceof Inner) {
+        Node child = ((Inner) node).children[childIndex(node, key)];
+        long childStamp = child.lock.readLock();
+
+        node.lock.unlockRead(stamp);
+        node = child;
+        stamp = childStamp;
+      }
+
+      return new Descent(node, stamp, null, 0);
+    }
+  }
+
+  /**
+   * The leaf of the key as it was at some point, for a scan that copies it afterwards (the keys only move right, to the next leaves)
+   */
+  private Leaf findLeaf(Object key) {
+    for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+      Descent descent = descend(key, false);
+      if (descent != null) {
+        return (Leaf) descent.node;
+      }
+    }
+
+    Descent locked = readLockLeaf(key);
+    locked.node.lock.unlockRead(locked.stamp);
+    return (Leaf) locked.node;
+  }
+
+  private Leaf firstLeaf() {
+    for (;;) {
+      Node node = root;
+      long stamp = node.lock.tryOptimisticRead();
+      Node child = node instanceof Inner ? ((Inner) node).children[0] : null;
+
+      if (stamp != 0 && node.lock.validate(stamp)) {
+        if (child == null) {
+          return (Leaf) node;
+        }
+        // the leftmost leaf never changes once the root is an inner node : a split keeps the lower half in place
+        while (child instanceof Inner) {
+          child = ((Inner) child).children[0];
+        }
+        return (Leaf) child;
+      }
+      Thread.yield();
+    }
+  }
+
+  /**
+   * Consistent copy of a leaf, reused from leaf to leaf by a scan
+   */
+  private static final class LeafCopy {
+
+    /**
+     * Copies the leaf under a validated optimistic read, or under its read lock when writers keep changing it
+     */
+    void load(Leaf leaf) {
+      for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+        long stamp = leaf.lock.tryOptimisticRead();
+        int copied = Math.min(leaf.count, CAPACITY);
+
+        System.arraycopy(leaf.keys, 0, keys, 0, copied);
+        System.arraycopy(leaf.values, 0, values, 0, copied);
+        Leaf following = leaf.next;
+        if (stamp != 0 && leaf.lock.validate(stamp)) {
+          count = copied;
+          next = following;
+          return;
+        }
+      }
+
+      long stamp = leaf.lock.readLock();
+      try {
+        System.arraycopy(leaf.keys, 0, keys, 0, leaf.count);
+        System.arraycopy(leaf.values, 0, values, 0, leaf.count);
+        count = leaf.count;
+        next = leaf.next;
+      } finally {
+        leaf.lock.unlockRead(stamp);
+      }
+    }
+
+    final Object[] keys = new Object[CAPACITY];
+    final Object[] values = new Object[CAPACITY];
+    int count;
+    Leaf next;
+  }
+
+  /**
+   * Walks the leaves from the one of the lower bound, a leaf copied at a time
+   */
+  private final class RangeIterator implements Iterator<Entry<K, V>> {
+
+    RangeIterator(K from, boolean fromInclusive, K to, boolean toInclusive) {
+      this.from = from;
+      this.fromInclusive = fromInclusive;
+      this.to = to;
+      this.toInclusive = toInclusive;
+      this.leaf = from == null ? firstLeaf() : findLeaf(from);
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextKey != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Entry<K, V> next() {
+      if (nextKey == null) {
+        throw new NoSuchElementException();
+      }
+
+      Entry<K, V> entry = new SimpleImmutableEntry<>((K) nextKey, (V) nextValue);
+      lastReturned = nextKey;
+      advance();
+      return entry;
+    }
+
+    @Override
+    public void remove() {
+      if (lastReturned == null) {
+        throw new IllegalStateException();
+      }
+
+      ConcurrentBTreeMap.this.remove(lastReturned);
+      lastReturned = null;
+    }
+
+    private void advance() {
+      Object last = nextKey;
+      nextKey = null;
+
+      for (;;) {
+        while (position < copy.count) {
+          Object key = copy.keys[position];
+          Object value = copy.values[position++];
+
+          if (from != null && (fromInclusive ? compare(key, from) < 0 : compare(key, from) <= 0)) {
+            continue;
+          }
+          // a key already returned, from a leaf copied before it split
+          if (last != null && compare(key, last) <= 0) {
+            continue;
+          }
+          if (to != null && (toInclusive ? compare(key, to) > 0 : compare(key, to) >= 0)) {
+            leaf = null;
+            return;
+          }
+          nextKey = key;
+          nextValue = value;
+          return;
+        }
+
+        if (leaf == null) {
+          return;
+        }
+        copy.load(leaf);
+        leaf = copy.next;
+        position = 0;
+      }
+    }
+
+    private final K from;
+    private final boolean fromInclusive;
+    private final K to;
+    private final boolean toInclusive;
+    private final LeafCopy copy = new LeafCopy();
+    private Leaf leaf;
+    private int position;
+    private Object nextKey;
+    private Object nextValue;
+    private Object lastReturned;
+  }
+
+  private final Comparator<? super K> comparator;
+  private final LongAdder size = new LongAdder();
+  private volatile Node root;
+}
@@ -0,0 +1,732 @@
+package org.leo.core.collections.btree;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.LongFunction;
+
+import org.leo.core.collections.primitive.LongObjectConsumer;
+
+/**
+ * Thread safe sorted map of long keys to objects, the primitive counterpart of ConcurrentBTreeMap (see there for the tree and its locking)
+ *
+ * The keys of a node are in a long array : no boxed Long per key, and the binary search of a node compares longs
+ * in one contiguous array instead of calling compareTo on objects scattered in the heap
+ * Same API as LongObjectHashMap, plus the range scans a hash map cannot do : forEachInRange and keyIterator(from, to), over [from, to)
+ *
+ * A remove does not merge the leaves it empties, the scans are weakly consistent. Null values are not allowed
+ */
+public class ConcurrentLongBTreeMap<V> {
+
+  /** Maximum number of keys of a node */
+  static final int CAPACITY = 64;
+
+  /** Keys per leaf of a bulk load : room left for inserts before the first splits */
+  private static final int BULK_FILL = CAPACITY * 3 / 4;
+
+  /** Optimistic attempts before a reader takes read locks */
+  private static final int OPTIMISTIC_ATTEMPTS = 4;
+
+  public ConcurrentLongBTreeMap() {
+    this.root = new Leaf();
+  }
+
+  /**
+   * Builds the tree from keys sorted in increasing order and their values, leaf by leaf then level by level : O(n) instead of n inserts
+   *
+   * @throws IllegalArgumentException when the keys are not strictly increasing or the arrays differ in length
+   */
+  public static <V> ConcurrentLongBTreeMap<V> fromSorted(long[] keys, V[] values) {
+    if (keys.length != values.length) {
+      throw new IllegalArgumentException("As many keys as values expected : " + keys.length + " and " + values.length);
+    }
+    for (int i = 0; i < keys.length; i++) {
+      Objects.requireNonNull(values[i], "Null values are not allowed");
+      if (i > 0 && keys[i - 1] >= keys[i]) {
+        throw new IllegalArgumentException("The keys are not strictly increasing : " + keys[i - 1] + ", " + keys[i]);
+      }
+    }
+
+    ConcurrentLongBTreeMap<V> map = new ConcurrentLongBTreeMap<>();
+    if (keys.length > 0) {
+      map.root = bulkLoad(keys, values);
+      map.size.add(keys.length);
+    }
+    return map;
+  }
+
+  /**
+   * Node of the tree : count keys, the lock guards all the fields
+   */
+  abstract static class Node {
+
+    final StampedLock lock = new StampedLock();
+    final long[] keys = new long[CAPACITY];
+    int count;
+  }
+
+  /**
+   * count keys and count + 1 children, the child i holds the keys in [keys[i - 1], keys[i])
+   */
+  static final class Inner extends Node {
+
+    final Node[] children = new Node[CAPACITY + 1];
+  }
+
+  static final class Leaf extends Node {
+
+    final Object[] values = new Object[CAPACITY];
+    Leaf next;
+  }
+
+  /**
+   * Value of the key, or null when absent
+   */
+  @SuppressWarnings("unchecked")
+  public V get(long key) {
+    for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+      Node node = root;
+      long stamp = node.lock.tryOptimisticRead();
+      if (stamp == 0 || node != root) {
+        continue;
+      }
+
+      try {
+        while (node instanceof Inner) {
+          Node child = ((Inner) node).children[childIndex(node, key)];
+          long childStamp = child.lock.tryOptimisticRead();
+
+          if (!node.lock.validate(stamp) || childStamp == 0) {
+            stamp = 0;
+            break;
+          }
+          node = child;
+          stamp = childStamp;
+        }
+        if (stamp == 0) {
+          continue;
+        }
+
+        int index = indexOf(node, key);
+        Object value = index >= 0 ? ((Leaf) node).values[index] : null;
+        if (node.lock.validate(stamp)) {
+          return (V) value;
+        }
+      } catch (RuntimeException e) {
+        // a child not linked yet by a concurrent split : only an exception on a consistent node is a real one
+        if (stamp != 0 && node.lock.validate(stamp)) {
+          throw e;
+        }
+      }
+    }
+
+    Descent locked = readLockLeaf(key);
+    Leaf leaf = (Leaf) locked.node;
+    try {
+      int index = indexOf(leaf, key);
+      return index >= 0 ? (V) leaf.values[index] : null;
+    } finally {
+      leaf.lock.unlockRead(locked.stamp);
+    }
+  }
+
+  public V getOrDefault(long key, V defaultValue) {
+    V value = get(key);
+    return value != null ? value : defaultValue;
+  }
+
+  public boolean containsKey(long key) {
+    return get(key) != null;
+  }
+
+  /**
+   * Associates the value to the key, returns the previous value or null
+   */
+  public V put(long key, V value) {
+    return put(key, value, false);
+  }
+
+  /**
+   * Associates the value to the key unless it has one, returns the value it had or null
+   */
+  public V putIfAbsent(long key, V value) {
+    return put(key, value, true);
+  }
+
+  /**
+   * Value of the key, computed and added when absent
+   * As ConcurrentMap.computeIfAbsent by default : the function may run in several threads for a same key, the first value added wins
+   */
+  public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+    V value = get(key);
+    if (value != null) {
+      return value;
+    }
+
+    V computed = mappingFunction.apply(key);
+    if (computed == null) {
+      return null;
+    }
+    V previous = putIfAbsent(key, computed);
+    return previous != null ? previous : computed;
+  }
+
+  @SuppressWarnings("unchecked")
+  public V remove(long key) {
+    for (int attempts = 0; ; attempts++) {
+      backoff(attempts);
+
+      Descent descent = descend(key, false);
+      if (descent == null) {
+        continue;
+      }
+
+      Leaf leaf = (Leaf) descent.node;
+      long writeStamp = leaf.lock.tryConvertToWriteLock(descent.stamp);
+      if (writeStamp == 0) {
+        continue;
+      }
+
+      try {
+        int index = indexOf(leaf, key);
+        if (index < 0) {
+          return null;
+        }
+
+        Object old = leaf.values[index];
+        int moved = leaf.count - index - 1;
+        System.arraycopy(leaf.keys, index + 1, leaf.keys, index, moved);
+        System.arraycopy(leaf.values, index + 1, leaf.values, index, moved);
+        leaf.count--;
+        leaf.values[leaf.count] = null;
+        size.decrement();
+        return (V) old;
+      } finally {
+        leaf.lock.unlockWrite(writeStamp);
+      }
+    }
+  }
+
+  /**
+   * Exact when no thread writes, an estimate while they do
+   */
+  public int size() {
+    return (int) Math.min(size.sum(), Integer.MAX_VALUE);
+  }
+
+  public boolean isEmpty() {
+    return size.sum() == 0;
+  }
+
+  /**
+   * Removes the keys one by one : the writers running meanwhile keep a consistent tree
+   */
+  public void clear() {
+    PrimitiveIterator.OfLong keys = keyIterator();
+
+    while (keys.hasNext()) {
+      remove(keys.nextLong());
+    }
+  }
+
+  public void forEach(LongObjectConsumer<? super V> action) {
+    forEachInRange(Long.MIN_VALUE, Long.MAX_VALUE, true, action);
+  }
+
+  /**
+   * Passes the entries whose keys are in [from, to) to the action, in key order, like ConcurrentBTreeMap.forEachInRange
+   *
+   * @return the number of entries passed
+   */
+  public int forEachInRange(long from, long to, LongObjectConsumer<? super V> action) {
+    return forEachInRange(from, to, false, action);
+  }
+
+  /**
+   * Iterator over the keys in increasing order, weakly consistent
+   */
+  public PrimitiveIterator.OfLong keyIterator() {
+    return keyIterator(Long.MIN_VALUE, Long.MAX_VALUE, true);
+  }
+
+  /**
+   * Iterator over the keys in [from, to) in increasing order, weakly consistent
+   */
+  public PrimitiveIterator.OfLong keyIterator(long from, long to) {
+    return keyIterator(from, to, false);
+  }
+
+  /**
+   * to is only passed when toInclusive, so forEach and keyIterator() reach Long.MAX_VALUE
+   */
+  @SuppressWarnings("unchecked")
+  private int forEachInRange(long from, long to, boolean toInclusive, LongObjectConsumer<? super V> action) {
+    LeafCopy copy = new LeafCopy();
+    Leaf leaf = findLeaf(from);
+    boolean started = false;
+    long last = 0;
+    int passed = 0;
+
+    while (leaf != null) {
+      copy.load(leaf);
+      leaf = copy.next;
+
+      for (int i = 0; i < copy.count; i++) {
+        long key = copy.keys[i];
+        if (key < from || (started && key <= last)) {
+          continue;
+        }
+        if (key > to || (key == to && !toInclusive)) {
+          return passed;
+        }
+        action.accept(key, (V) copy.values[i]);
+        started = true;
+        last = key;
+        passed++;
+      }
+    }
+    return passed;
+  }
+
+  private PrimitiveIterator.OfLong keyIterator(long from, long to, boolean toInclusive) {
+    return new PrimitiveIterator.OfLong() {
+
+      @Override
+      public boolean hasNext() {
+        while (!done && !ready) {
+          if (position < copy.count) {
+            long key = copy.keys[position++];
+            if (key < from || (started && key <= last)) {
+              continue;
+            }
+            if (key > to || (key == to && !toInclusive)) {
+              done = true;
+            } else {
+              last = key;
+              started = true;
+              ready = true;
+            }
+          } else if (leaf == null) {
+            done = true;
+          } else {
+            copy.load(leaf);
+            leaf = copy.next;
+            position = 0;
+          }
+        }
+        return ready;
+      }
+
+      @Override
+      public long nextLong() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        ready = false;
+        return last;
+      }
+
+      private final LeafCopy copy = new LeafCopy();
+      private Leaf leaf = findLeaf(from);
+      private int position;
+      private long last;
+      private boolean started;
+      private boolean ready;
+      private boolean done;
+    };
+  }
+
+  /**
+   * Height of the tree, 1 for a single leaf
+   */
+  public int height() {
+    int height = 1;
+
+    for (Node node = root; node instanceof Inner; node = ((Inner) node).children[0]) {
+      height++;
+    }
+    return height;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+
+    forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+    return builder.append('}').toString();
+  }
+
+  private static void backoff(int attempts) {
+    if (attempts > 2) {
+      Thread.yield();
+    }
+  }
+
+  private static Node bulkLoad(long[] keys, Object[] values) {
+    int leafCount = (keys.length + BULK_FILL - 1) / BULK_FILL;
+    Node[] level = new Node[leafCount];
+    long[] lowestKeys = new long[leafCount];
+    Leaf previous = null;
+
+    for (int i = 0, start = 0; i < leafCount; i++) {
+      int end = (int) ((long) keys.length * (i + 1) / leafCount);
+      Leaf leaf = new Leaf();
+
+      System.arraycopy(keys, start, leaf.keys, 0, end - start);
+      System.arraycopy(values, start, leaf.values, 0, end - start);
+      leaf.count = end - start;
+      if (previous != null) {
+        previous.next = leaf;
+      }
+      level[i] = leaf;
+      lowestKeys[i] = keys[start];
+      previous = leaf;
+      start = end;
+    }
+
+    while (level.length > 1) {
+      int parentCount = (level.length + BULK_FILL) / (BULK_FILL + 1);
+      Node[] parents = new Node[parentCount];
+      long[] parentLowestKeys = new long[parentCount];
+
+      for (int i = 0, start = 0; i < parentCount; i++) {
+        int end = (int) ((long) level.length * (i + 1) / parentCount);
+        Inner inner = new Inner();
+
+        System.arraycopy(level, start, inner.children, 0, end - start);
+        System.arraycopy(lowestKeys, start + 1, inner.keys, 0, end - start - 1);
+        inner.count = end - start - 1;
+        parents[i] = inner;
+        parentLowestKeys[i] = lowestKeys[start];
+        start = end;
+      }
+      level = parents;
+      lowestKeys = parentLowestKeys;
+    }
+    return level[0];
+  }
+
+  /**
+   * Index of the child of an inner node holding the key : the number of keys lower than or equal to it
+   */
+  private static int childIndex(Node node, long key) {
+    int low = 0;
+    int high = Math.min(node.count, CAPACITY) - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (node.keys[middle] <= key) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Index of the key in a leaf, -(insertion point + 1) when absent
+   */
+  private static int indexOf(Node node, long key) {
+    int low = 0;
+    int high = Math.min(node.count, CAPACITY) - 1;
+
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      long middleKey = node.keys[middle];
+      if (middleKey < key) {
+        low = middle + 1;
+      } else if (middleKey > key) {
+        high = middle - 1;
+      } else {
+        return middle;
+      }
+    }
+    return -(low + 1);
+  }
+
+  /**
+   * Where a descent ended : the leaf of the key with its stamp, and its parent with its stamp
+   */
+  private static final class Descent {
+
+    Descent(Node node, long stamp, Inner parent, long parentStamp) {
+      this.node = node;
+      this.stamp = stamp;
+      this.parent = parent;
+      this.parentStamp = parentStamp;
+    }
+
+    final Node node;
+    final long stamp;
+    final Inner parent;
+    final long parentStamp;
+  }
+
+  /**
+   * Optimistic descent to the leaf of the key, null when a validation failed and the caller must restart
+   */
+  private Descent descend(long key, boolean splitFullNodes) {
+    Node node = root;
+    long stamp = node.lock.tryOptimisticRead();
+    Inner parent = null;
+    long parentStamp = 0;
+
+    if (stamp == 0 || node != root) {
+      return null;
+    }
+
+    try {
+      while (node instanceof Inner) {
+        Inner inner = (Inner) node;
+
+        if (splitFullNodes && inner.count == CAPACITY) {
+          splitInner(parent, parentStamp, inner, stamp, key);
+          return null;
+        }
+
+        Node child = inner.children[childIndex(inner, key)];
+        long childStamp = child.lock.tryOptimisticRead();
+        if (!inner.lock.validate(stamp) || childStamp == 0) {
+          return null;
+        }
+        parent = inner;
+        parentStamp = stamp;
+        node = child;
+        stamp = childStamp;
+      }
+      return new Descent(node, stamp, parent, parentStamp);
+    } catch (RuntimeException e) {
+      if (node.lock.validate(stamp)) {
+        throw e;
+      }
+      return null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private V put(long key, V value, boolean onlyIfAbsent) {
+    Objects.requireNonNull(value, "Null values are not allowed");
+
+    for (int attempts = 0; ; attempts++) {
+      backoff(attempts);
+
+      Descent descent = descend(key, true);
+      if (descent == null) {
+        continue;
+      }
+
+      Leaf leaf = (Leaf) descent.node;
+      long writeStamp = leaf.lock.tryConvertToWriteLock(descent.stamp);
+      if (writeStamp == 0) {
+        continue;
+      }
+
+      long parentWriteStamp = 0;
+      try {
+        int index = indexOf(leaf, key);
+        if (index >= 0) {
+          Object old = leaf.values[index];
+          if (!onlyIfAbsent) {
+            leaf.values[index] = value;
+          }
+          return (V) old;
+        }
+
+        int insertion = -(index + 1);
+        if (leaf.count < CAPACITY) {
+          insert(leaf, insertion, key, value);
+          size.increment();
+          return null;
+        }
+
+        if (descent.parent != null) {
+          parentWriteStamp = descent.parent.lock.tryConvertToWriteLock(descent.parentStamp);
+          if (parentWriteStamp == 0) {
+            continue;
+          }
+        }
+
+        Leaf right = splitLeaf(leaf);
+        if (key < right.keys[0]) {
+          insert(leaf, insertion, key, value);
+        } else {
+          insert(right, insertion - leaf.count, key, value);
+        }
+        linkChild(descent.parent, leaf, right.keys[0], right, key);
+        size.increment();
+        return null;
+      } finally {
+        if (parentWriteStamp != 0) {
+          descent.parent.lock.unlockWrite(parentWriteStamp);
+        }
+        leaf.lock.unlockWrite(writeStamp);
+      }
+    }
+  }
+
+  private static void insert(Leaf leaf, int index, long key, Object value) {
+    int moved = leaf.count - index;
+
+    System.arraycopy(leaf.keys, index, leaf.keys, index + 1, moved);
+    System.arraycopy(leaf.values, index, leaf.values, index + 1, moved);
+    leaf.keys[index] = key;
+    leaf.values[index] = value;
+    leaf.count++;
+  }
+
+  private static Leaf splitLeaf(Leaf leaf) {
+    Leaf right = new Leaf();
+    int half = CAPACITY / 2;
+
+    System.arraycopy(leaf.keys, half, right.keys, 0, CAPACITY - half);
+    System.arraycopy(leaf.values, half, right.values, 0, CAPACITY - half);
+    for (int i = half; i < CAPACITY; i++) {
+      leaf.values[i] = null;
+    }
+    right.count = CAPACITY - half;
+    leaf.count = half;
+    right.next = leaf.next;
+    leaf.next = right;
+    return right;
+  }
+
+  private void linkChild(Inner parent, Node left, long separator, Node right, long key) {
+    if (parent == null) {
+      Inner newRoot = new Inner();
+      newRoot.keys[0] = separator;
+      newRoot.children[0] = left;
+      newRoot.children[1] = right;
+      newRoot.count = 1;
+      root = newRoot;
+      return;
+    }
+
+    int index = childIndex(parent, key);
+    int moved = parent.count - index;
+    System.arraycopy(parent.keys, index, parent.keys, index + 1, moved);
+    System.arraycopy(parent.children, index + 1, parent.children, index + 2, moved);
+    parent.keys[index] = separator;
+    parent.children[index + 1] = right;
+    parent.count++;
+  }
+
+  private void splitInner(Inner parent, long parentStamp, Inner inner, long stamp, long key) {
+    long writeStamp = inner.lock.tryConvertToWriteLock(stamp);
+    if (writeStamp == 0) {
+      return;
+    }
+
+    long parentWriteStamp = 0;
+    try {
+      if (parent != null) {
+        parentWriteStamp = parent.lock.tryConvertToWriteLock(parentStamp);
+        if (parentWriteStamp == 0) {
+          return;
+        }
+      }
+
+      int middle = CAPACITY / 2;
+      long separator = inner.keys[middle];
+      Inner right = new Inner();
+      int moved = CAPACITY - middle - 1;
+
+      System.arraycopy(inner.keys, middle + 1, right.keys, 0, moved);
+      System.arraycopy(inner.children, middle + 1, right.children, 0, moved + 1);
+      for (int i = middle + 1; i <= CAPACITY; i++) {
+        inner.children[i] = null;
+      }
+      right.count = moved;
+      inner.count = middle;
+      linkChild(parent, inner, separator, right, key);
+    } finally {
+      if (parentWriteStamp != 0) {
+        parent.lock.unlockWrite(parentWriteStamp);
+      }
+      inner.lock.unlockWrite(writeStamp);
+    }
+  }
+
+  /**
+   * Pessimistic descent, read locks taken hand over hand, the leaf is returned read locked with its stamp
+   */
+  private Descent readLockLeaf(long key) {
+    for (;;) {
+      Node node = root;
+      long stamp = node.lock.readLock();
+
+      if (node != root) {
+        node.lock.unlockRead(stamp);
+        continue;
+      }
+
+      while (node instanceof Inner) {
+        Node child = ((Inner) node).children[childIndex(node, key)];
+        long childStamp = child.lock.readLock();
+
+        node.lock.unlockRead(stamp);
+        node = child;
+        stamp = childStamp;
+      }
+      return new Descent(node, stamp, null, 0);
+    }
+  }
+
+  /**
+   * The leaf of the key as it was at some point, for a scan that copies it afterwards (the keys only move right, to the next leaves)
+   */
+  private Leaf findLeaf(long key) {
+    for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+      Descent descent = descend(key, false);
+      if (descent != null) {
+        return (Leaf) descent.node;
+      }
+    }
+
+    Descent locked = readLockLeaf(key);
+    locked.node.lock.unlockRead(locked.stamp);
+    return (Leaf) locked.node;
+  }
+
+  /**
+   * Consistent copy of a leaf, reused from leaf to leaf by a scan
+   */
+  private static final class LeafCopy {
+
+    void load(Leaf leaf) {
+      for (int attempts = 0; attempts < OPTIMISTIC_ATTEMPTS; attempts++) {
+        long stamp = leaf.lock.tryOptimisticRead();
+        int copied = Math.min(leaf.count, CAPACITY);
+
+        System.arraycopy(leaf.keys, 0, keys, 0, copied);
+        System.arraycopy(leaf.values, 0, values, 0, copied);
+        Leaf following = leaf.next;
+        if (stamp != 0 && leaf.lock.validate(stamp)) {
+          count = copied;
+          next = following;
+          return;
+        }
+      }
+
+      long stamp = leaf.lock.readLock();
+      try {
+        System.arraycopy(leaf.keys, 0, keys, 0, leaf.count);
+        System.arraycopy(leaf.values, 0, values, 0, leaf.count);
+        count = leaf.count;
+        next = leaf.next;
+      } finally {
+        leaf.lock.unlockRead(stamp);
+      }
+    }
+
+    final long[] keys = new long[CAPACITY];
+    final Object[] values = new Object[CAPACITY];
+    int count;
+    Leaf next;
+  }
+
+  private final LongAdder size = new LongAdder();
+  private volatile Node root;
+}
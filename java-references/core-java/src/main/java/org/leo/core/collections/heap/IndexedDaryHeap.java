@@ -0,0 +1,306 @@
+package org.leo.core.collections.heap;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Priority queue where every element keeps its position in the heap, so that it can be removed or moved in O(log n)
+ *
+ * PriorityQueue is a binary heap without memory of where an element is : remove(Object) scans the array (O(n)) and changing
+ * the priority of a queued element means remove then add, which is how schedulers and top K rankings spend their time
+ * Here insert returns a Handle holding the element and its index in the heap (kept up to date by every move), remove(handle) and
+ * update(handle, element) go straight to the element and sift it up or down : O(log n), decrease key included
+ *
+ * The heap is d-ary, each node has d children instead of 2 : the tree is log2(d) times shallower, so an add or a decrease key
+ * (sift up, one comparison per level) is faster, a poll (sift down, d comparisons per level) compares more but over fewer levels,
+ * with children that are contiguous in the array (one or two cache lines for d = 4 or 8), 4 is the usual sweet spot
+ *
+ * The iterator walks the array (no particular order) and does not support remove, the handles must be used for that
+ * It is not thread safe, a handle belongs to the heap that created it
+ *
+ * See IndexedLongHeap for int ids with long priorities, without any object per entry
+ */
+public class IndexedDaryHeap<E> extends AbstractQueue<E> {
+
+  private static final int DEFAULT_ARITY = 4;
+
+  private static final int DEFAULT_CAPACITY = 16;
+
+  /**
+   * Natural ordering, arity 4
+   */
+  public IndexedDaryHeap() {
+    this(DEFAULT_ARITY, null);
+  }
+
+  public IndexedDaryHeap(Comparator<? super E> comparator) {
+    this(DEFAULT_ARITY, comparator);
+  }
+
+  /**
+   * @param arity number of children of a node, at least 2
+   * @param comparator null for the natural ordering
+   */
+  @SuppressWarnings("unchecked")
+  public IndexedDaryHeap(int arity, Comparator<? super E> comparator) {
+    if (arity < 2) {
+      throw new IllegalArgumentException("The arity must be at least 2 : " + arity);
+    }
+
+    this.arity = arity;
+    this.comparator = comparator;
+    this.heap = (Handle<E>[]) new Handle<?>[DEFAULT_CAPACITY];
+  }
+
+  /**
+   * Position of an element in the heap, returned by insert
+   */
+  public static final class Handle<E> {
+
+    private Handle(E element) {
+      this.element = element;
+    }
+
+    public E element() {
+      return element;
+    }
+
+    /**
+     * Whether the element is still in the heap (not polled nor removed)
+     */
+    public boolean isQueued() {
+      return index >= 0;
+    }
+
+    private E element;
+    private int index = -1;
+  }
+
+  /**
+   * Adds the element and returns its handle, O(log n)
+   */
+  public Handle<E> insert(E element) {
+    Objects.requireNonNull(element);
+
+    if (size == heap.length) {
+      heap = Arrays.copyOf(heap, size + (size >> 1));
+    }
+
+    Handle<E> handle = new Handle<>(element);
+    siftUp(size++, handle);
+    modCount++;
+    return handle;
+  }
+
+  @Override
+  public boolean offer(E element) {
+    insert(element);
+    return true;
+  }
+
+  @Override
+  public E peek() {
+    return size == 0 ? null : heap[0].element;
+  }
+
+  public Handle<E> peekHandle() {
+    return size == 0 ? null : heap[0];
+  }
+
+  @Override
+  public E poll() {
+    if (size == 0) {
+      return null;
+    }
+
+    Handle<E> first = heap[0];
+    removeAt(0);
+    return first.element;
+  }
+
+  /**
+   * Removes the element of the handle, O(log n)
+   *
+   * @return false when it was no longer in the heap
+   */
+  public boolean remove(Handle<E> handle) {
+    if (!contains(handle)) {
+      return false;
+    }
+    removeAt(handle.index);
+    return true;
+  }
+
+  /**
+   * Replaces the element of the handle by one of a different priority and moves it accordingly, O(log n)
+   * (decrease key when it comes first now, increase key otherwise)
+   */
+  public void update(Handle<E> handle, E element) {
+    Objects.requireNonNull(element);
+    checkQueued(handle);
+
+    handle.element = element;
+    reposition(handle);
+  }
+
+  /**
+   * Moves the element of the handle after a change of the fields its comparison depends on, O(log n)
+   * (an element changed in place in a PriorityQueue silently breaks its order)
+   */
+  public void changed(Handle<E> handle) {
+    checkQueued(handle);
+    reposition(handle);
+  }
+
+  public boolean contains(Handle<E> handle) {
+    int index = handle.index;
+    return index >= 0 && index < size && heap[index] == handle;
+  }
+
+  /**
+   * O(n), use remove(handle)
+   */
+  @Override
+  public boolean remove(Object o) {
+    for (int i = 0; i < size; i++) {
+      if (heap[i].element.equals(o)) {
+        removeAt(i);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      heap[i].index = -1;
+      heap[i] = null;
+    }
+    size = 0;
+    modCount++;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      public E next() {
+        if (expectedModCount != modCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        return heap[index++].element;
+      }
+
+      private final int expectedModCount = modCount;
+      private int index;
+    };
+  }
+
+  private void checkQueued(Handle<E> handle) {
+    if (!contains(handle)) {
+      throw new IllegalArgumentException("The handle is not in this heap");
+    }
+  }
+
+  private void removeAt(int index) {
+    Handle<E> removed = heap[index];
+    Handle<E> last = heap[--size];
+
+    heap[size] = null;
+    removed.index = -1;
+    modCount++;
+
+    if (index < size) {
+      // the last element fills the hole, then goes up or down to its place
+      last.index = index;
+      heap[index] = last;
+      reposition(last);
+    }
+  }
+
+  private void reposition(Handle<E> handle) {
+    int index = handle.index;
+
+    if (index > 0 && compare(handle.element, heap[(index - 1) / arity].element) < 0) {
+      siftUp(index, handle);
+    } else {
+      siftDown(index, handle);
+    }
+  }
+
+  /**
+   * Moves the parents down until the place of the handle is found, the handle is written once
+   */
+  private void siftUp(int index, Handle<E> handle) {
+    while (index > 0) {
+      int parentIndex = (index - 1) / arity;
+      Handle<E> parent = heap[parentIndex];
+
+      if (compare(handle.element, parent.element) >= 0) {
+        break;
+      }
+      parent.index = index;
+      heap[index] = parent;
+      index = parentIndex;
+    }
+    handle.index = index;
+    heap[index] = handle;
+  }
+
+  private void siftDown(int index, Handle<E> handle) {
+    while (true) {
+      int firstChild = index * arity + 1;
+      if (firstChild >= size) {
+        break;
+      }
+
+      int end = Math.min(firstChild + arity, size);
+      int smallest = firstChild;
+      for (int child = firstChild + 1; child < end; child++) {
+        if (compare(heap[child].element, heap[smallest].element) < 0) {
+          smallest = child;
+        }
+      }
+
+      if (compare(heap[smallest].element, handle.element) >= 0) {
+        break;
+      }
+      heap[smallest].index = index;
+      heap[index] = heap[smallest];
+      index = smallest;
+    }
+    handle.index = index;
+    heap[index] = handle;
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(E a, E b) {
+    return comparator == null ? ((Comparable<? super E>) a).compareTo(b) : comparator.compare(a, b);
+  }
+
+  private final int arity;
+  private final Comparator<? super E> comparator;
+  private Handle<E>[] heap;
+  private int size;
+  private int modCount;
+}
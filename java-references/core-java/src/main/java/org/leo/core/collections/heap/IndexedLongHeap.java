@@ -0,0 +1,240 @@
+package org.leo.core.collections.heap;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Min heap of int ids in [0, maxId) by long priority, the primitive counterpart of IndexedDaryHeap
+ *
+ * The ids are the handles : positions[id] is the index of the id in the heap (-1 when absent), so contains, priorityOf,
+ * update and remove of an id are direct, without a Handle object nor a boxed priority per entry
+ * The ids and the priorities of the heap are two parallel arrays, a sift compares longs read in sequence (4 children in 32 bytes)
+ * Suits the graph algorithms (Dijkstra, Prim : the ids are the vertices and update is the decrease key) and the top K rankings :
+ * keep the K best in the heap, a new candidate replaces peekId() when its priority is higher than peekPriority()
+ *
+ * It is not thread safe
+ */
+public class IndexedLongHeap {
+
+  private static final int DEFAULT_ARITY = 4;
+
+  public IndexedLongHeap(int maxId) {
+    this(maxId, DEFAULT_ARITY);
+  }
+
+  /**
+   * @param maxId the ids are in [0, maxId), the heap holds at most maxId entries
+   * @param arity number of children of a node, at least 2
+   */
+  public IndexedLongHeap(int maxId, int arity) {
+    if (maxId < 0) {
+      throw new IllegalArgumentException("Negative maxId : " + maxId);
+    }
+    if (arity < 2) {
+      throw new IllegalArgumentException("The arity must be at least 2 : " + arity);
+    }
+
+    this.arity = arity;
+    this.ids = new int[maxId];
+    this.priorities = new long[maxId];
+    this.positions = new int[maxId];
+    Arrays.fill(positions, -1);
+  }
+
+  public boolean contains(int id) {
+    checkId(id);
+    return positions[id] >= 0;
+  }
+
+  /**
+   * Adds the id, O(log n)
+   *
+   * @throws IllegalArgumentException when the id is already in the heap
+   */
+  public void insert(int id, long priority) {
+    if (contains(id)) {
+      throw new IllegalArgumentException("Already in the heap : " + id);
+    }
+    siftUp(size++, id, priority);
+  }
+
+  /**
+   * Changes the priority of an id of the heap, O(log n), decrease or increase
+   *
+   * @throws NoSuchElementException when the id is not in the heap
+   */
+  public void update(int id, long priority) {
+    reposition(positionOf(id), id, priority);
+  }
+
+  /**
+   * insert or update
+   */
+  public void put(int id, long priority) {
+    if (contains(id)) {
+      update(id, priority);
+    } else {
+      insert(id, priority);
+    }
+  }
+
+  /**
+   * @throws NoSuchElementException when the id is not in the heap
+   */
+  public long priorityOf(int id) {
+    return priorities[positionOf(id)];
+  }
+
+  /**
+   * Removes the id, O(log n)
+   *
+   * @return false when it was not in the heap
+   */
+  public boolean remove(int id) {
+    if (!contains(id)) {
+      return false;
+    }
+    removeAt(positions[id]);
+    return true;
+  }
+
+  /**
+   * Id of the lowest priority
+   *
+   * @throws NoSuchElementException when the heap is empty
+   */
+  public int peekId() {
+    checkNotEmpty();
+    return ids[0];
+  }
+
+  /**
+   * @throws NoSuchElementException when the heap is empty
+   */
+  public long peekPriority() {
+    checkNotEmpty();
+    return priorities[0];
+  }
+
+  /**
+   * Removes and returns the id of the lowest priority
+   *
+   * @throws NoSuchElementException when the heap is empty
+   */
+  public int pollId() {
+    checkNotEmpty();
+
+    int id = ids[0];
+    removeAt(0);
+    return id;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    for (int i = 0; i < size; i++) {
+      positions[ids[i]] = -1;
+    }
+    size = 0;
+  }
+
+  private void checkId(int id) {
+    if (id < 0 || id >= positions.length) {
+      throw new IllegalArgumentException("The id must be in [0, " + positions.length + ") : " + id);
+    }
+  }
+
+  private void checkNotEmpty() {
+    if (size == 0) {
+      throw new NoSuchElementException();
+    }
+  }
+
+  private int positionOf(int id) {
+    checkId(id);
+
+    int position = positions[id];
+    if (position < 0) {
+      throw new NoSuchElementException("Not in the heap : " + id);
+    }
+    return position;
+  }
+
+  private void removeAt(int index) {
+    positions[ids[index]] = -1;
+    size--;
+
+    if (index < size) {
+      reposition(index, ids[size], priorities[size]);
+    }
+  }
+
+  private void reposition(int index, int id, long priority) {
+    if (index > 0 && priority < priorities[(index - 1) / arity]) {
+      siftUp(index, id, priority);
+    } else {
+      siftDown(index, id, priority);
+    }
+  }
+
+  private void siftUp(int index, int id, long priority) {
+    while (index > 0) {
+      int parent = (index - 1) / arity;
+
+      if (priority >= priorities[parent]) {
+        break;
+      }
+      move(parent, index);
+      index = parent;
+    }
+    set(index, id, priority);
+  }
+
+  private void siftDown(int index, int id, long priority) {
+    while (true) {
+      int firstChild = index * arity + 1;
+      if (firstChild >= size) {
+        break;
+      }
+
+      int end = Math.min(firstChild + arity, size);
+      int smallest = firstChild;
+      for (int child = firstChild + 1; child < end; child++) {
+        if (priorities[child] < priorities[smallest]) {
+          smallest = child;
+        }
+      }
+
+      if (priorities[smallest] >= priority) {
+        break;
+      }
+      move(smallest, index);
+      index = smallest;
+    }
+    set(index, id, priority);
+  }
+
+  private void move(int from, int to) {
+    ids[to] = ids[from];
+    priorities[to] = priorities[from];
+    positions[ids[to]] = to;
+  }
+
+  private void set(int index, int id, long priority) {
+    ids[index] = id;
+    priorities[index] = priority;
+    positions[id] = index;
+  }
+
+  private final int arity;
+  private final int[] ids;
+  private final long[] priorities;
+  private final int[] positions;
+  private int size;
+}
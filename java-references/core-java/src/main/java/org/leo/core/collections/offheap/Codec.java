@@ -0,0 +1,23 @@
+package org.leo.core.collections.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serialization of the keys or the values of an OffHeapHashMap
+ * 
+ * Two keys are equal for the map when their serialized bytes are equal, so a key codec must write equal keys the same way
+ * (no map with an unspecified order, no timestamps...)
+ */
+public interface Codec<T> {
+
+  /**
+   * Writes the value at the position of out, moving the position to the end of the bytes written
+   * A BufferOverflowException makes the map retry with a larger buffer
+   */
+  void write(T value, ByteBuffer out);
+
+  /**
+   * Reads a value from the remaining bytes of in, which are exactly the bytes written by write
+   */
+  T read(ByteBuffer in);
+}
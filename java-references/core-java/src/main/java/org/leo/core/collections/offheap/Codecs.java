@@ -0,0 +1,72 @@
+package org.leo.core.collections.offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Codecs of the common key and value types
+ */
+public final class Codecs {
+
+  public static final Codec<Long> LONG = new Codec<Long>() {
+
+    @Override
+    public void write(Long value, ByteBuffer out) {
+      out.putLong(value);
+    }
+
+    @Override
+    public Long read(ByteBuffer in) {
+      return in.getLong();
+    }
+  };
+
+  public static final Codec<Integer> INTEGER = new Codec<Integer>() {
+
+    @Override
+    public void write(Integer value, ByteBuffer out) {
+      out.putInt(value);
+    }
+
+    @Override
+    public Integer read(ByteBuffer in) {
+      return in.getInt();
+    }
+  };
+
+  /** UTF-8, without a length : the map stores the length of every key and value */
+  public static final Codec<String> STRING = new Codec<String>() {
+
+    @Override
+    public void write(String value, ByteBuffer out) {
+      out.put(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public String read(ByteBuffer in) {
+      byte[] bytes = new byte[in.remaining()];
+
+      in.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+  };
+
+  public static final Codec<byte[]> BYTES = new Codec<byte[]>() {
+
+    @Override
+    public void write(byte[] value, ByteBuffer out) {
+      out.put(value);
+    }
+
+    @Override
+    public byte[] read(ByteBuffer in) {
+      byte[] bytes = new byte[in.remaining()];
+
+      in.get(bytes);
+      return bytes;
+    }
+  };
+
+  private Codecs() {
+  }
+}
@@ -0,0 +1,44 @@
+package org.leo.core.collections.offheap;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Slab in a direct ByteBuffer : native memory, freed when the buffer is garbage collected
+ * Growing copies the content to a larger buffer, the old one lives until the next GC that finds it unreachable
+ */
+final class DirectSlab implements Slab {
+
+  DirectSlab(int capacity) {
+    this.buffer = ByteBuffer.allocateDirect(capacity);
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    if (buffer == null) {
+      throw new IllegalStateException("The slab is closed");
+    }
+    return buffer;
+  }
+
+  @Override
+  public void grow(int capacity) {
+    ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+    ByteBuffer old = buffer().duplicate();
+
+    old.clear();
+    grown.put(old);
+    grown.clear();
+    buffer = grown;
+  }
+
+  @Override
+  public void force() {
+  }
+
+  @Override
+  public void close() {
+    buffer = null;
+  }
+
+  private ByteBuffer buffer;
+}
@@ -0,0 +1,55 @@
+package org.leo.core.collections.offheap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Slab in a memory mapped file : the pages are in the OS page cache, outside of the heap, and written back to the file by the OS
+ * (force writes them now)
+ * Growing maps the file again with a larger size, which extends the file, the content is kept by the file itself
+ */
+final class MappedSlab implements Slab {
+
+  /**
+   * Opens or creates the file, mapping at least capacity bytes (the whole file when it is larger)
+   */
+  MappedSlab(Path file, int capacity) throws IOException {
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+    long size = channel.size();
+    if (size > Integer.MAX_VALUE) {
+      throw new IOException("The file " + file + " is larger than a slab");
+    }
+    this.buffer = channel.map(MapMode.READ_WRITE, 0, Math.max(capacity, (int) size));
+  }
+
+  @Override
+  public ByteBuffer buffer() {
+    return buffer;
+  }
+
+  @Override
+  public void grow(int capacity) throws IOException {
+    buffer.force();
+    buffer = channel.map(MapMode.READ_WRITE, 0, capacity);
+  }
+
+  @Override
+  public void force() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    buffer.force();
+    channel.close();
+  }
+
+  private final FileChannel channel;
+  private MappedByteBuffer buffer;
+}
@@ -0,0 +1,310 @@
+package org.leo.core.collections.offheap;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+
+/**
+ * Hash map whose entries are stored serialized outside of the heap, in direct buffers or in memory mapped files
+ *
+ * The maps of ReferenceCollections (HashMap, WeakHashMap, IdentityHashMap, ConcurrentHashMap) keep every entry as objects on the heap :
+ * with tens of millions of entries that is gigabytes of small objects the garbage collector has to trace and move,
+ * the old generation collections (or the remark / evacuation phases of CMS and G1) grow with them
+ * Here the heap only holds the map object and its segments, the entries are bytes the collector never looks at,
+ * the price is a serialization on every put and a deserialization on every get (see Codec)
+ *
+ * The map is split into segments (a power of two, chosen by the high bits of the hash of the serialized key),
+ * each one with its own read/write lock, open addressing index and data slab (see Segment) :
+ * readers of a segment share its lock, a writer blocks only its segment
+ * A segment holds 2 GB of data at most, size the number of segments for the data (64 segments, 128 GB)
+ *
+ * Persistence : built with a directory, the slabs are memory mapped files (segment-N.index, segment-N.data) and the map
+ * can be opened again from them without reloading, as long as it was flushed or closed after its last modification
+ * (a map not flushed is refused when reopened, its files may be inconsistent)
+ * Without a directory the slabs are direct buffers, freed when the map is garbage collected after close
+ * Any call on a closed map throws an IllegalStateException
+ *
+ * The keys and the values cannot be null, two keys are the same key when their serialized bytes are equal
+ */
+public final class OffHeapHashMap<K, V> implements AutoCloseable {
+
+  private static final int INITIAL_DATA_CAPACITY = 1 << 16;
+
+  private static final int INITIAL_SCRATCH_CAPACITY = 256;
+
+  public static <K, V> Builder<K, V> builder(Codec<K> keyCodec, Codec<V> valueCodec) {
+    return new Builder<>(keyCodec, valueCodec);
+  }
+
+  private OffHeapHashMap(Builder<K, V> builder) throws IOException {
+    this.keyCodec = builder.keyCodec;
+    this.valueCodec = builder.valueCodec;
+    this.segments = new Segment[builder.segments];
+    this.segmentBits = Integer.numberOfTrailingZeros(builder.segments);
+
+    long perSegment = Math.max(builder.expectedSize / builder.segments, 1);
+    long slots = Math.max(Long.highestOneBit((long) Math.ceil(perSegment / builder.loadFactor)) << 1, 16);
+    if (slots * 8 > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Too many entries per segment, use more segments");
+    }
+
+    boolean existing = builder.directory != null && Files.exists(builder.directory.resolve("segment-0.data"));
+    if (builder.directory != null) {
+      Files.createDirectories(builder.directory);
+    }
+
+    for (int i = 0; i < segments.length; i++) {
+      Slab index;
+      Slab data;
+
+      if (builder.directory != null) {
+        index = new MappedSlab(builder.directory.resolve("segment-" + i + ".index"), existing ? 0 : (int) slots * 8);
+        data = new MappedSlab(builder.directory.resolve("segment-" + i + ".data"), existing ? 0 : INITIAL_DATA_CAPACITY);
+      } else {
+        index = new DirectSlab((int) slots * 8);
+        data = new DirectSlab(INITIAL_DATA_CAPACITY);
+      }
+      segments[i] = new Segment(index, data, existing, segments.length, builder.loadFactor);
+    }
+  }
+
+  public V get(K key) {
+    Scratch scratch = SCRATCH.get();
+    int keyLength = scratch.encodeKey(keyCodec, key);
+    int hash = Segment.hash(scratch.key, 0, keyLength);
+
+    return segmentOf(hash).get(scratch.key, keyLength, hash, valueCodec);
+  }
+
+  public boolean containsKey(K key) {
+    Scratch scratch = SCRATCH.get();
+    int keyLength = scratch.encodeKey(keyCodec, key);
+    int hash = Segment.hash(scratch.key, 0, keyLength);
+
+    return segmentOf(hash).containsKey(scratch.key, keyLength, hash);
+  }
+
+  /**
+   * Associates the value to the key, returns the previous value or null
+   */
+  public V put(K key, V value) {
+    return put(key, value, valueCodec);
+  }
+
+  /**
+   * Associates the value to the key without deserializing the previous value, the usual call to load a large map
+   */
+  public void set(K key, V value) {
+    put(key, value, null);
+  }
+
+  /**
+   * Removes the key, returns its value or null
+   */
+  public V remove(K key) {
+    Scratch scratch = SCRATCH.get();
+    scratch.checkNotIterating();
+    int keyLength = scratch.encodeKey(keyCodec, key);
+    int hash = Segment.hash(scratch.key, 0, keyLength);
+
+    return segmentOf(hash).remove(scratch.key, keyLength, hash, valueCodec);
+  }
+
+  /**
+   * Sum of the sizes of the segments, each one read under its lock, an estimate while other threads write
+   */
+  public long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      size += segment.size();
+    }
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Deserializes every entry for the action, segment by segment, each one under its read lock
+   * The action cannot modify the map : a put or a remove would wait for the write lock of a segment the thread holds
+   * (or another thread iterating holds), it throws an IllegalStateException instead. Collect the changes and apply them after
+   */
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    Scratch scratch = SCRATCH.get();
+
+    scratch.iterating++;
+    try {
+      for (Segment segment : segments) {
+        segment.forEach(keyCodec, valueCodec, action);
+      }
+    } finally {
+      scratch.iterating--;
+    }
+  }
+
+  /**
+   * Native memory or mapped file bytes held by the map, the capacity and not only the entries
+   */
+  public long offHeapBytes() {
+    long bytes = 0;
+    for (Segment segment : segments) {
+      bytes += segment.offHeapBytes();
+    }
+    return bytes;
+  }
+
+  /**
+   * Writes everything to the files of a persistent map, which can then be reopened, nothing to write for a memory only map
+   */
+  public void flush() {
+    SCRATCH.get().checkNotIterating();
+    for (Segment segment : segments) {
+      segment.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    SCRATCH.get().checkNotIterating();
+    IOException failure = null;
+
+    for (Segment segment : segments) {
+      try {
+        segment.close();
+      } catch (IOException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private V put(K key, V value, Codec<V> previousCodec) {
+    Objects.requireNonNull(value);
+
+    Scratch scratch = SCRATCH.get();
+    scratch.checkNotIterating();
+    int keyLength = scratch.encodeKey(keyCodec, key);
+    int valueLength = scratch.encodeValue(valueCodec, value);
+    int hash = Segment.hash(scratch.key, 0, keyLength);
+
+    return segmentOf(hash).put(scratch.key, keyLength, hash, scratch.value, valueLength, previousCodec);
+  }
+
+  private Segment segmentOf(int hash) {
+    return segmentBits == 0 ? segments[0] : segments[hash >>> (32 - segmentBits)];
+  }
+
+  /**
+   * Buffers of a thread to serialize a key and a value, grown when a codec overflows them,
+   * and the depth of the forEach calls of the thread
+   */
+  private static final class Scratch {
+
+    void checkNotIterating() {
+      if (iterating > 0) {
+        throw new IllegalStateException("The map cannot be modified from a forEach action");
+      }
+    }
+
+    <T> int encodeKey(Codec<T> codec, T key) {
+      Objects.requireNonNull(key);
+      this.key = encode(codec, key, this.key);
+      return this.key.position();
+    }
+
+    <T> int encodeValue(Codec<T> codec, T value) {
+      this.value = encode(codec, value, this.value);
+      return this.value.position();
+    }
+
+    private static <T> ByteBuffer encode(Codec<T> codec, T object, ByteBuffer buffer) {
+      for (;;) {
+        buffer.clear();
+        try {
+          codec.write(object, buffer);
+          return buffer;
+        } catch (BufferOverflowException e) {
+          if (buffer.capacity() >= Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Serialized object too large", e);
+          }
+          buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+      }
+    }
+
+    private ByteBuffer key = ByteBuffer.allocate(INITIAL_SCRATCH_CAPACITY);
+    private ByteBuffer value = ByteBuffer.allocate(INITIAL_SCRATCH_CAPACITY);
+    private int iterating;
+  }
+
+  public static final class Builder<K, V> {
+
+    private Builder(Codec<K> keyCodec, Codec<V> valueCodec) {
+      this.keyCodec = Objects.requireNonNull(keyCodec);
+      this.valueCodec = Objects.requireNonNull(valueCodec);
+    }
+
+    /**
+     * Number of segments, a power of two, 16 by default
+     */
+    public Builder<K, V> segments(int segments) {
+      if (segments <= 0 || Integer.bitCount(segments) != 1 || segments > 1 << 16) {
+        throw new IllegalArgumentException("The number of segments must be a power of two up to 65536 : " + segments);
+      }
+      this.segments = segments;
+      return this;
+    }
+
+    /**
+     * Number of entries the indexes are sized for, they grow past it
+     */
+    public Builder<K, V> expectedSize(long expectedSize) {
+      if (expectedSize < 0) {
+        throw new IllegalArgumentException("Negative expected size : " + expectedSize);
+      }
+      this.expectedSize = expectedSize;
+      return this;
+    }
+
+    public Builder<K, V> loadFactor(float loadFactor) {
+      if (loadFactor <= 0 || loadFactor >= 1) {
+        throw new IllegalArgumentException("The load factor must be in ]0, 1[ : " + loadFactor);
+      }
+      this.loadFactor = loadFactor;
+      return this;
+    }
+
+    /**
+     * Directory of the files of a persistent map, the map found there is reopened
+     */
+    public Builder<K, V> directory(Path directory) {
+      this.directory = directory;
+      return this;
+    }
+
+    public OffHeapHashMap<K, V> build() throws IOException {
+      return new OffHeapHashMap<>(this);
+    }
+
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private int segments = 16;
+    private long expectedSize = 1024;
+    private float loadFactor = 0.7f;
+    private Path directory;
+  }
+
+  private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+  private final Codec<K> keyCodec;
+  private final Codec<V> valueCodec;
+  private final Segment[] segments;
+  private final int segmentBits;
+}
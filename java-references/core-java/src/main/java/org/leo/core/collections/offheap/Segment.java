@@ -0,0 +1,525 @@
+package org.leo.core.collections.offheap;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A part of an OffHeapHashMap with its own lock, its own index and its own data
+ *
+ * The data slab starts with a header then holds the entries one after the other, appended at the write position :
+ * [int key length][int value length][key bytes][value bytes]
+ * An update appends the new entry and leaves the old one as garbage, a removal only makes it garbage,
+ * when the garbage is half of the data the live entries are moved down over it (compaction)
+ *
+ * The index slab is an open addressing table of 8 bytes slots [int hash][int offset of the entry in the data slab],
+ * with linear probing and backward shift deletion, an offset 0 is a free slot (the header is at offset 0)
+ * The hash is kept in the slot so that most of the probes end without reading the data
+ *
+ * All the methods are called with the serialized key, the map serializes it once
+ */
+final class Segment {
+
+  static final int MAGIC = 0x4F464648;
+
+  static final int VERSION = 1;
+
+  private static final int HEADER_SIZE = 32;
+
+  private static final int HEADER_MAGIC = 0;
+
+  private static final int HEADER_VERSION = 4;
+
+  private static final int HEADER_STATE = 8;
+
+  private static final int HEADER_SEGMENTS = 12;
+
+  private static final int HEADER_SIZE_FIELD = 16;
+
+  private static final int HEADER_WRITE_POSITION = 20;
+
+  private static final int HEADER_GARBAGE = 24;
+
+  private static final int STATE_DIRTY = 0;
+
+  private static final int STATE_CLEAN = 1;
+
+  private static final int SLOT_SIZE = 8;
+
+  private static final int ENTRY_HEADER_SIZE = 8;
+
+  private static final int MAX_SLAB_SIZE = Integer.MAX_VALUE - 8;
+
+  /**
+   * @param existing whether the slabs hold a segment written by a previous map, checked and reopened as it is
+   */
+  Segment(Slab index, Slab data, boolean existing, int segments, float loadFactor) {
+    this.index = index;
+    this.data = data;
+    this.loadFactor = loadFactor;
+
+    ByteBuffer buffer = data.buffer();
+    if (existing) {
+      if (buffer.getInt(HEADER_MAGIC) != MAGIC || buffer.getInt(HEADER_VERSION) != VERSION) {
+        throw new IllegalStateException("Not an off heap map segment");
+      }
+      if (buffer.getInt(HEADER_SEGMENTS) != segments) {
+        throw new IllegalStateException("The map was written with " + buffer.getInt(HEADER_SEGMENTS) + " segments, not " + segments);
+      }
+      if (buffer.getInt(HEADER_STATE) != STATE_CLEAN) {
+        throw new IllegalStateException("The map was not flushed nor closed after its last modification, its files are not consistent");
+      }
+      this.size = buffer.getInt(HEADER_SIZE_FIELD);
+      this.writePosition = buffer.getInt(HEADER_WRITE_POSITION);
+      this.garbage = buffer.getInt(HEADER_GARBAGE);
+    } else {
+      buffer.putInt(HEADER_MAGIC, MAGIC);
+      buffer.putInt(HEADER_VERSION, VERSION);
+      buffer.putInt(HEADER_SEGMENTS, segments);
+      this.writePosition = HEADER_SIZE;
+      writeHeader(STATE_CLEAN);
+    }
+    this.slots = index.buffer().capacity() / SLOT_SIZE;
+  }
+
+  /**
+   * Hash of serialized bytes, 8 at a time, the high bits choose the segment and the low bits the slot
+   */
+  static int hash(ByteBuffer buffer, int offset, int length) {
+    long h = 0x9E3779B97F4A7C15L ^ length;
+    int i = 0;
+
+    for (; i + 8 <= length; i += 8) {
+      h = (h ^ buffer.getLong(offset + i)) * 0xBF58476D1CE4E5B9L;
+      h ^= h >>> 31;
+    }
+    for (; i < length; i++) {
+      h = (h ^ buffer.get(offset + i)) * 0x94D049BB133111EBL;
+    }
+    h ^= h >>> 29;
+    h *= 0xBF58476D1CE4E5B9L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  <V> V get(ByteBuffer key, int keyLength, int hash, Codec<V> valueCodec) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      int slot = find(key, keyLength, hash);
+      return slot >= 0 ? readValue(offsetAt(slot), valueCodec) : null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  boolean containsKey(ByteBuffer key, int keyLength, int hash) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      return find(key, keyLength, hash) >= 0;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Stores the entry, returns the previous value (decoded with valueCodec when it is not null) or null
+   */
+  <V> V put(ByteBuffer key, int keyLength, int hash, ByteBuffer value, int valueLength, Codec<V> valueCodec) {
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      markDirty();
+
+      int entrySize = ENTRY_HEADER_SIZE + keyLength + valueLength;
+      ensureDataCapacity(entrySize);
+
+      int slot = find(key, keyLength, hash);
+      V previous = null;
+      if (slot >= 0) {
+        int oldOffset = offsetAt(slot);
+
+        previous = valueCodec != null ? readValue(oldOffset, valueCodec) : null;
+        garbage += entrySizeAt(oldOffset);
+      } else {
+        if (size + 1 > slots * loadFactor) {
+          growIndex();
+        }
+        slot = freeSlot(hash);
+        size++;
+      }
+
+      int offset = appendEntry(key, keyLength, value, valueLength);
+      index.buffer().putInt(slot * SLOT_SIZE, hash);
+      index.buffer().putInt(slot * SLOT_SIZE + 4, offset);
+      return previous;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  <V> V remove(ByteBuffer key, int keyLength, int hash, Codec<V> valueCodec) {
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      int slot = find(key, keyLength, hash);
+      if (slot < 0) {
+        return null;
+      }
+
+      markDirty();
+      int offset = offsetAt(slot);
+      V previous = valueCodec != null ? readValue(offset, valueCodec) : null;
+
+      garbage += entrySizeAt(offset);
+      shiftBack(slot);
+      size--;
+      compactIfWasteful();
+      return previous;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  <K, V> void forEach(Codec<K> keyCodec, Codec<V> valueCodec, BiConsumer<? super K, ? super V> action) {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      ByteBuffer indexBuffer = index.buffer();
+
+      for (int slot = 0; slot < slots; slot++) {
+        int offset = indexBuffer.getInt(slot * SLOT_SIZE + 4);
+
+        if (offset != 0) {
+          int keyLength = data.buffer().getInt(offset);
+          action.accept(keyCodec.read(view(offset + ENTRY_HEADER_SIZE, keyLength)), readValue(offset, valueCodec));
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Bytes of native memory or of mapped file held by the segment
+   */
+  long offHeapBytes() {
+    lock.readLock().lock();
+    try {
+      checkOpen();
+      return (long) index.buffer().capacity() + data.buffer().capacity();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes the header and forces the slabs, the files are then consistent until the next modification
+   */
+  void flush() {
+    lock.writeLock().lock();
+    try {
+      checkOpen();
+      writeHeader(STATE_DIRTY);
+      index.force();
+      data.force();
+      // the state is written last, a crash while forcing leaves the segment dirty
+      writeHeader(STATE_CLEAN);
+      data.force();
+      dirty = false;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Flushes then releases the slabs, the segment refuses any later call (IllegalStateException), closing again does nothing
+   */
+  void close() throws IOException {
+    lock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      flush();
+      closed = true;
+      index.close();
+      data.close();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void checkOpen() {
+    if (closed) {
+      throw new IllegalStateException("The map is closed");
+    }
+  }
+
+  private int find(ByteBuffer key, int keyLength, int hash) {
+    ByteBuffer indexBuffer = index.buffer();
+    int mask = slots - 1;
+
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      int offset = indexBuffer.getInt(slot * SLOT_SIZE + 4);
+
+      if (offset == 0) {
+        return -1;
+      }
+      if (indexBuffer.getInt(slot * SLOT_SIZE) == hash && keyEquals(offset, key, keyLength)) {
+        return slot;
+      }
+    }
+  }
+
+  private int freeSlot(int hash) {
+    ByteBuffer indexBuffer = index.buffer();
+    int mask = slots - 1;
+    int slot = hash & mask;
+
+    while (indexBuffer.getInt(slot * SLOT_SIZE + 4) != 0) {
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  private boolean keyEquals(int offset, ByteBuffer key, int keyLength) {
+    ByteBuffer buffer = data.buffer();
+
+    if (buffer.getInt(offset) != keyLength) {
+      return false;
+    }
+
+    int start = offset + ENTRY_HEADER_SIZE;
+    int i = 0;
+    for (; i + 8 <= keyLength; i += 8) {
+      if (buffer.getLong(start + i) != key.getLong(i)) {
+        return false;
+      }
+    }
+    for (; i < keyLength; i++) {
+      if (buffer.get(start + i) != key.get(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private int offsetAt(int slot) {
+    return index.buffer().getInt(slot * SLOT_SIZE + 4);
+  }
+
+  private int entrySizeAt(int offset) {
+    ByteBuffer buffer = data.buffer();
+    return ENTRY_HEADER_SIZE + buffer.getInt(offset) + buffer.getInt(offset + 4);
+  }
+
+  private <V> V readValue(int offset, Codec<V> valueCodec) {
+    ByteBuffer buffer = data.buffer();
+    int keyLength = buffer.getInt(offset);
+    int valueLength = buffer.getInt(offset + 4);
+
+    return valueCodec.read(view(offset + ENTRY_HEADER_SIZE + keyLength, valueLength));
+  }
+
+  /**
+   * A buffer over length bytes of the data, for the codecs, the shared buffer position is never moved
+   */
+  private ByteBuffer view(int offset, int length) {
+    ByteBuffer view = data.buffer().duplicate();
+
+    view.limit(offset + length);
+    view.position(offset);
+    return view;
+  }
+
+  private int appendEntry(ByteBuffer key, int keyLength, ByteBuffer value, int valueLength) {
+    ByteBuffer target = data.buffer().duplicate();
+    int offset = writePosition;
+
+    target.position(offset);
+    target.putInt(keyLength);
+    target.putInt(valueLength);
+    target.put(slice(key, keyLength));
+    target.put(slice(value, valueLength));
+    writePosition = target.position();
+    return offset;
+  }
+
+  private static ByteBuffer slice(ByteBuffer buffer, int length) {
+    ByteBuffer slice = buffer.duplicate();
+
+    slice.position(0);
+    slice.limit(length);
+    return slice;
+  }
+
+  private void ensureDataCapacity(int entrySize) {
+    if ((long) writePosition + entrySize <= data.buffer().capacity()) {
+      return;
+    }
+
+    compactIfWasteful();
+    long needed = (long) writePosition + entrySize;
+    if (needed <= data.buffer().capacity()) {
+      return;
+    }
+    if (needed > MAX_SLAB_SIZE) {
+      throw new IllegalStateException("The segment is full (2 GB), use more segments");
+    }
+
+    try {
+      data.grow((int) Math.min(Math.max(needed, 2L * data.buffer().capacity()), MAX_SLAB_SIZE));
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Moves the live entries down over the garbage once the garbage is half of the data
+   * The entries are walked in the order they were written, an entry is live when the slot of its key points to it
+   */
+  private void compactIfWasteful() {
+    if (garbage < (writePosition - HEADER_SIZE) / 2 || garbage < 4096) {
+      return;
+    }
+
+    ByteBuffer buffer = data.buffer();
+    ByteBuffer indexBuffer = index.buffer();
+    int mask = slots - 1;
+    int write = HEADER_SIZE;
+
+    for (int read = HEADER_SIZE; read < writePosition; ) {
+      int keyLength = buffer.getInt(read);
+      int entrySize = entrySizeAt(read);
+      int hash = hash(buffer, read + ENTRY_HEADER_SIZE, keyLength);
+
+      int slot = hash & mask;
+      int offset;
+      while ((offset = indexBuffer.getInt(slot * SLOT_SIZE + 4)) != 0 && offset != read) {
+        slot = (slot + 1) & mask;
+      }
+
+      if (offset == read) {
+        if (write != read) {
+          move(buffer, read, write, entrySize);
+          indexBuffer.putInt(slot * SLOT_SIZE + 4, write);
+        }
+        write += entrySize;
+      }
+      read += entrySize;
+    }
+
+    writePosition = write;
+    garbage = 0;
+  }
+
+  /**
+   * Copies length bytes from from to to, to being lower, the ascending copy never overwrites bytes still to be read
+   */
+  private static void move(ByteBuffer buffer, int from, int to, int length) {
+    int i = 0;
+
+    for (; i + 8 <= length; i += 8) {
+      buffer.putLong(to + i, buffer.getLong(from + i));
+    }
+    for (; i < length; i++) {
+      buffer.put(to + i, buffer.get(from + i));
+    }
+  }
+
+  private void growIndex() {
+    if ((long) slots * 2 * SLOT_SIZE > MAX_SLAB_SIZE) {
+      throw new IllegalStateException("The segment index is full, use more segments");
+    }
+
+    // the slots are kept aside, the slab is grown then filled again
+    ByteBuffer indexBuffer = index.buffer();
+    int[] entries = new int[size * 2];
+    int count = 0;
+    for (int slot = 0; slot < slots; slot++) {
+      int offset = indexBuffer.getInt(slot * SLOT_SIZE + 4);
+
+      if (offset != 0) {
+        entries[count++] = indexBuffer.getInt(slot * SLOT_SIZE);
+        entries[count++] = offset;
+      }
+    }
+
+    try {
+      index.grow(slots * 2 * SLOT_SIZE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
+    indexBuffer = index.buffer();
+    for (int position = 0; position < indexBuffer.capacity(); position += 8) {
+      indexBuffer.putLong(position, 0L);
+    }
+    slots *= 2;
+
+    for (int i = 0; i < count; i += 2) {
+      int slot = freeSlot(entries[i]);
+
+      indexBuffer.putInt(slot * SLOT_SIZE, entries[i]);
+      indexBuffer.putInt(slot * SLOT_SIZE + 4, entries[i + 1]);
+    }
+  }
+
+  private void shiftBack(int hole) {
+    ByteBuffer indexBuffer = index.buffer();
+    int mask = slots - 1;
+
+    for (int slot = (hole + 1) & mask; indexBuffer.getInt(slot * SLOT_SIZE + 4) != 0; slot = (slot + 1) & mask) {
+      int home = indexBuffer.getInt(slot * SLOT_SIZE) & mask;
+
+      // the entry may move to the hole when the hole lies cyclically between its home slot and its slot
+      boolean canShift = slot > hole ? (home <= hole || home > slot) : (home <= hole && home > slot);
+      if (canShift) {
+        indexBuffer.putLong(hole * SLOT_SIZE, indexBuffer.getLong(slot * SLOT_SIZE));
+        hole = slot;
+      }
+    }
+    indexBuffer.putLong(hole * SLOT_SIZE, 0L);
+  }
+
+  private void markDirty() {
+    if (!dirty) {
+      data.buffer().putInt(HEADER_STATE, STATE_DIRTY);
+      dirty = true;
+    }
+  }
+
+  private void writeHeader(int state) {
+    ByteBuffer buffer = data.buffer();
+
+    buffer.putInt(HEADER_SIZE_FIELD, size);
+    buffer.putInt(HEADER_WRITE_POSITION, writePosition);
+    buffer.putInt(HEADER_GARBAGE, garbage);
+    buffer.putInt(HEADER_STATE, state);
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Slab index;
+  private final Slab data;
+  private final float loadFactor;
+  private int slots;
+  private int size;
+  private int writePosition;
+  private int garbage;
+  private boolean dirty;
+  private boolean closed;
+}
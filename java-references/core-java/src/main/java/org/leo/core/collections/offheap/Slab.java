@@ -0,0 +1,25 @@
+package org.leo.core.collections.offheap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A growable block of memory outside of the heap, a direct buffer or a memory mapped file
+ * 
+ * A ByteBuffer is indexed by int, so a slab holds 2 GB at most, OffHeapHashMap spreads its data over several segments
+ */
+interface Slab extends Closeable {
+
+  ByteBuffer buffer();
+
+  /**
+   * Extends the slab to capacity bytes, keeping its content, the previous buffer must not be used anymore
+   */
+  void grow(int capacity) throws IOException;
+
+  /**
+   * Writes the content to the storage device, nothing to do for the memory only slabs
+   */
+  void force();
+}
@@ -0,0 +1,586 @@
+package org.leo.core.collections.persistent;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable hash map where a modified version shares almost everything with the original : with and without return a new map
+ * in O(log32 n), the original stays valid and unchanged
+ *
+ * A hash array mapped trie (HAMT) : a tree of 32 way nodes on the bits of the hash, 5 bits per level
+ * A node only allocates the children it has : a 32 bits bitmap tells which of the 32 are there, and the rank of a child in the
+ * compact array is the number of bits set below its own (Integer.bitCount, one instruction)
+ * A slot of a node holds either an entry (key, value) or a sub node for the keys sharing the same 5 bits at this level,
+ * the keys whose hashes are fully equal end in a collision node (a plain array compared with equals)
+ * A write copies the nodes on the path to the key, about log32(n) small arrays (3 or 4 for a million entries)
+ *
+ * Neither null keys nor null values, get returns null for an absent key
+ * The Map methods that modify throw UnsupportedOperationException, entrySet iterates in hash order
+ * For bulk construction a Builder writes in place the nodes it created itself, then build() freezes them
+ */
+public final class PersistentHashMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS = 5;
+
+  private static final int MASK = (1 << BITS) - 1;
+
+  private static final PersistentHashMap<?, ?> EMPTY = new PersistentHashMap<>(0, null);
+
+  private PersistentHashMap(int size, Node root) {
+    this.size = size;
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> PersistentHashMap<K, V> empty() {
+    return (PersistentHashMap<K, V>) EMPTY;
+  }
+
+  public static <K, V> PersistentHashMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    Builder<K, V> builder = builder();
+
+    map.forEach(builder::put);
+    return builder.build();
+  }
+
+  public static <K, V> Builder<K, V> builder() {
+    return new Builder<>(empty());
+  }
+
+  /**
+   * A builder starting from this map, which is not modified
+   */
+  public Builder<K, V> toBuilder() {
+    return new Builder<>(this);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    return root == null || key == null ? null : (V) root.find(0, hash(key), key);
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A new map with the key mapped to the value, this one when it already was
+   */
+  public PersistentHashMap<K, V> with(K key, V value) {
+    checkNotNull(key, value);
+
+    Change change = new Change();
+    Node newRoot = (root == null ? BitmapNode.EMPTY : root).put(null, 0, hash(key), key, value, change);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentHashMap<>(change.added ? size + 1 : size, newRoot);
+  }
+
+  /**
+   * A new map without the key, this one when it was absent
+   */
+  public PersistentHashMap<K, V> without(Object key) {
+    if (root == null || key == null) {
+      return this;
+    }
+
+    Change change = new Change();
+    Node newRoot = root.remove(null, 0, hash(key), key, change);
+    if (!change.removed) {
+      return this;
+    }
+    return newRoot == null ? empty() : new PersistentHashMap<>(size - 1, newRoot);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    if (root != null) {
+      root.forEach((BiConsumer<Object, Object>) action);
+    }
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator<>(root);
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Entry)) {
+          return false;
+        }
+
+        Entry<?, ?> entry = (Entry<?, ?>) o;
+        return Objects.equals(get(entry.getKey()), entry.getValue()) && entry.getValue() != null;
+      }
+    };
+  }
+
+  /**
+   * Puts and removes in place in the nodes it created, copies the nodes shared with a map the first time it writes them
+   * build() returns the map and may be called several times, the builder keeps going on copies of what it gave away
+   * It is not thread safe
+   */
+  public static final class Builder<K, V> {
+
+    private Builder(PersistentHashMap<K, V> map) {
+      this.size = map.size;
+      this.root = map.root;
+    }
+
+    public Builder<K, V> put(K key, V value) {
+      checkNotNull(key, value);
+
+      Change change = new Change();
+      root = (root == null ? BitmapNode.EMPTY : root).put(owner, 0, hash(key), key, value, change);
+      if (change.added) {
+        size++;
+      }
+      return this;
+    }
+
+    public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+      map.forEach(this::put);
+      return this;
+    }
+
+    public Builder<K, V> remove(Object key) {
+      if (root != null && key != null) {
+        Change change = new Change();
+        root = root.remove(owner, 0, hash(key), key, change);
+        if (change.removed) {
+          size--;
+        }
+      }
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+      return root == null || key == null ? null : (V) root.find(0, hash(key), key);
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public PersistentHashMap<K, V> build() {
+      // the nodes given away are frozen : a new owner makes the builder copy them before its next writes
+      owner = new Object();
+      return size == 0 ? empty() : new PersistentHashMap<>(size, root);
+    }
+
+    private Object owner = new Object();
+    private int size;
+    private Node root;
+  }
+
+  static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static void checkNotNull(Object key, Object value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("Null keys and values are not allowed");
+    }
+  }
+
+  /**
+   * What a put or a remove did, the size of the map follows it
+   */
+  private static final class Change {
+
+    private boolean added;
+    private boolean removed;
+  }
+
+  private abstract static class Node {
+
+    Node(Object owner) {
+      this.owner = owner;
+    }
+
+    abstract Object find(int shift, int hash, Object key);
+
+    abstract Node put(Object owner, int shift, int hash, Object key, Object value, Change change);
+
+    /**
+     * @return null when the node is left empty
+     */
+    abstract Node remove(Object owner, int shift, int hash, Object key, Change change);
+
+    abstract void forEach(BiConsumer<Object, Object> action);
+
+    /**
+     * Length of the used part of array : key, value pairs (a null key marks a sub node in the value slot)
+     */
+    abstract int length();
+
+    abstract Object[] array();
+
+    boolean isEditable(Object owner) {
+      return owner != null && this.owner == owner;
+    }
+
+    final Object owner;
+  }
+
+  private static final class BitmapNode extends Node {
+
+    static final BitmapNode EMPTY = new BitmapNode(null, 0, new Object[0]);
+
+    BitmapNode(Object owner, int bitmap, Object[] array) {
+      super(owner);
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object storedKey = array[index];
+      Object value = array[index + 1];
+
+      if (storedKey == null) {
+        return ((Node) value).find(shift + BITS, hash, key);
+      }
+      return key.equals(storedKey) ? value : null;
+    }
+
+    @Override
+    Node put(Object owner, int shift, int hash, Object key, Object value, Change change) {
+      int bit = bit(hash, shift);
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+
+      if ((bitmap & bit) != 0) {
+        Object storedKey = array[index];
+        Object storedValue = array[index + 1];
+
+        if (storedKey == null) {
+          Node child = ((Node) storedValue).put(owner, shift + BITS, hash, key, value, change);
+          return child == storedValue ? this : set(owner, index + 1, child);
+        }
+        if (key.equals(storedKey)) {
+          return storedValue == value ? this : set(owner, index + 1, value);
+        }
+
+        // two keys on the same slot : they move to a sub node of the next level
+        change.added = true;
+        Node child = pair(owner, shift + BITS, storedKey, storedValue, hash, key, value);
+        BitmapNode editable = editable(owner);
+        editable.array[index] = null;
+        editable.array[index + 1] = child;
+        return editable;
+      }
+
+      change.added = true;
+      int used = 2 * Integer.bitCount(bitmap);
+
+      if (isEditable(owner) && used + 2 <= array.length) {
+        System.arraycopy(array, index, array, index + 2, used - index);
+        array[index] = key;
+        array[index + 1] = value;
+        bitmap |= bit;
+        return this;
+      }
+
+      // a builder keeps some room to insert in place next time
+      Object[] newArray = new Object[used + (owner != null ? 8 : 2)];
+      System.arraycopy(array, 0, newArray, 0, index);
+      newArray[index] = key;
+      newArray[index + 1] = value;
+      System.arraycopy(array, index, newArray, index + 2, used - index);
+      return new BitmapNode(owner, bitmap | bit, newArray);
+    }
+
+    @Override
+    Node remove(Object owner, int shift, int hash, Object key, Change change) {
+      int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+
+      int index = 2 * Integer.bitCount(bitmap & (bit - 1));
+      Object storedKey = array[index];
+      Object storedValue = array[index + 1];
+
+      if (storedKey == null) {
+        Node child = ((Node) storedValue).remove(owner, shift + BITS, hash, key, change);
+        if (child == storedValue) {
+          return this;
+        }
+        if (child != null) {
+          return set(owner, index + 1, child);
+        }
+      } else if (key.equals(storedKey)) {
+        change.removed = true;
+      } else {
+        return this;
+      }
+
+      // the slot is gone
+      if (bitmap == bit) {
+        return null;
+      }
+
+      int used = 2 * Integer.bitCount(bitmap);
+      if (isEditable(owner)) {
+        System.arraycopy(array, index + 2, array, index, used - index - 2);
+        array[used - 2] = null;
+        array[used - 1] = null;
+        bitmap ^= bit;
+        return this;
+      }
+
+      Object[] newArray = new Object[used - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, used - index - 2);
+      return new BitmapNode(owner, bitmap ^ bit, newArray);
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, Object> action) {
+      int used = length();
+
+      for (int i = 0; i < used; i += 2) {
+        if (array[i] == null) {
+          ((Node) array[i + 1]).forEach(action);
+        } else {
+          action.accept(array[i], array[i + 1]);
+        }
+      }
+    }
+
+    @Override
+    int length() {
+      return 2 * Integer.bitCount(bitmap);
+    }
+
+    @Override
+    Object[] array() {
+      return array;
+    }
+
+    private BitmapNode editable(Object owner) {
+      return isEditable(owner) ? this : new BitmapNode(owner, bitmap, array.clone());
+    }
+
+    private BitmapNode set(Object owner, int index, Object value) {
+      BitmapNode editable = editable(owner);
+
+      editable.array[index] = value;
+      return editable;
+    }
+
+    private int bitmap;
+    private Object[] array;
+  }
+
+  private static final class CollisionNode extends Node {
+
+    CollisionNode(Object owner, int hash, Object[] array) {
+      super(owner);
+      this.hash = hash;
+      this.array = array;
+    }
+
+    @Override
+    Object find(int shift, int hash, Object key) {
+      int index = indexOf(key);
+      return index < 0 ? null : array[index + 1];
+    }
+
+    @Override
+    Node put(Object owner, int shift, int hash, Object key, Object value, Change change) {
+      if (hash != this.hash) {
+        // another hash reaches this level : the collision node becomes the child of a bitmap node
+        BitmapNode parent = new BitmapNode(owner, bit(this.hash, shift), new Object[] { null, this });
+        return parent.put(owner, shift, hash, key, value, change);
+      }
+
+      int index = indexOf(key);
+      if (index >= 0) {
+        if (array[index + 1] == value) {
+          return this;
+        }
+
+        Object[] newArray = array.clone();
+        newArray[index + 1] = value;
+        return new CollisionNode(owner, hash, newArray);
+      }
+
+      change.added = true;
+      Object[] newArray = new Object[array.length + 2];
+      System.arraycopy(array, 0, newArray, 0, array.length);
+      newArray[array.length] = key;
+      newArray[array.length + 1] = value;
+      return new CollisionNode(owner, hash, newArray);
+    }
+
+    @Override
+    Node remove(Object owner, int shift, int hash, Object key, Change change) {
+      int index = indexOf(key);
+      if (index < 0) {
+        return this;
+      }
+
+      change.removed = true;
+      if (array.length == 2) {
+        return null;
+      }
+
+      Object[] newArray = new Object[array.length - 2];
+      System.arraycopy(array, 0, newArray, 0, index);
+      System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+      return new CollisionNode(owner, hash, newArray);
+    }
+
+    @Override
+    void forEach(BiConsumer<Object, Object> action) {
+      for (int i = 0; i < array.length; i += 2) {
+        action.accept(array[i], array[i + 1]);
+      }
+    }
+
+    @Override
+    int length() {
+      return array.length;
+    }
+
+    @Override
+    Object[] array() {
+      return array;
+    }
+
+    private int indexOf(Object key) {
+      for (int i = 0; i < array.length; i += 2) {
+        if (key.equals(array[i])) {
+          return i;
+        }
+      }
+      return -1;
+    }
+
+    private final int hash;
+    private final Object[] array;
+  }
+
+  private static int bit(int hash, int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  /**
+   * Node holding two entries of different keys
+   */
+  private static Node pair(Object owner, int shift, Object key1, Object value1, int hash2, Object key2, Object value2) {
+    int hash1 = hash(key1);
+
+    if (hash1 == hash2) {
+      return new CollisionNode(owner, hash1, new Object[] { key1, value1, key2, value2 });
+    }
+
+    Change ignored = new Change();
+    return BitmapNode.EMPTY.put(owner, shift, hash1, key1, value1, ignored).put(owner, shift, hash2, key2, value2, ignored);
+  }
+
+  /**
+   * Depth first walk with a stack of the nodes being visited, at most 7 levels plus a collision node
+   */
+  private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+    EntryIterator(Node root) {
+      if (root != null) {
+        push(root);
+      }
+      advance();
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextKey != null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Entry<K, V> next() {
+      if (nextKey == null) {
+        throw new NoSuchElementException();
+      }
+
+      Entry<K, V> entry = new SimpleImmutableEntry<>((K) nextKey, (V) nextValue);
+      advance();
+      return entry;
+    }
+
+    private void push(Node node) {
+      depth++;
+      arrays[depth] = node.array();
+      lengths[depth] = node.length();
+      positions[depth] = 0;
+    }
+
+    private void advance() {
+      nextKey = null;
+
+      while (depth >= 0) {
+        if (positions[depth] >= lengths[depth]) {
+          arrays[depth] = null;
+          depth--;
+          continue;
+        }
+
+        Object[] array = arrays[depth];
+        int position = positions[depth];
+        positions[depth] += 2;
+
+        if (array[position] == null) {
+          push((Node) array[position + 1]);
+        } else {
+          nextKey = array[position];
+          nextValue = array[position + 1];
+          return;
+        }
+      }
+    }
+
+    private final Object[][] arrays = new Object[8][];
+    private final int[] lengths = new int[8];
+    private final int[] positions = new int[8];
+    private int depth = -1;
+    private Object nextKey;
+    private Object nextValue;
+  }
+
+  private final int size;
+  private final Node root;
+}
@@ -0,0 +1,122 @@
+package org.leo.core.collections.persistent;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Immutable set where a modified version shares almost everything with the original, the keys of a PersistentHashMap
+ * with and without return a new set in O(log32 n), the original stays valid and unchanged
+ */
+public final class PersistentHashSet<E> extends AbstractSet<E> {
+
+  private static final PersistentHashSet<?> EMPTY = new PersistentHashSet<>(PersistentHashMap.empty());
+
+  private PersistentHashSet(PersistentHashMap<E, Boolean> map) {
+    this.map = map;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentHashSet<E> empty() {
+    return (PersistentHashSet<E>) EMPTY;
+  }
+
+  public static <E> PersistentHashSet<E> copyOf(Iterable<? extends E> elements) {
+    return PersistentHashSet.<E> builder().addAll(elements).build();
+  }
+
+  public static <E> Builder<E> builder() {
+    return new Builder<>(PersistentHashMap.<E, Boolean> builder());
+  }
+
+  /**
+   * A builder starting from this set, which is not modified
+   */
+  public Builder<E> toBuilder() {
+    return new Builder<>(map.toBuilder());
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return map.containsKey(o);
+  }
+
+  @Override
+  public int size() {
+    return map.size();
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<Map.Entry<E, Boolean>> entries = map.entrySet().iterator();
+
+    return new Iterator<E>() {
+
+      @Override
+      public boolean hasNext() {
+        return entries.hasNext();
+      }
+
+      @Override
+      public E next() {
+        return entries.next().getKey();
+      }
+    };
+  }
+
+  /**
+   * A new set with the element, this one when it already was there
+   */
+  public PersistentHashSet<E> with(E element) {
+    PersistentHashMap<E, Boolean> newMap = map.with(element, Boolean.TRUE);
+    return newMap == map ? this : new PersistentHashSet<>(newMap);
+  }
+
+  /**
+   * A new set without the element, this one when it was absent
+   */
+  public PersistentHashSet<E> without(Object element) {
+    PersistentHashMap<E, Boolean> newMap = map.without(element);
+    return newMap == map ? this : new PersistentHashSet<>(newMap);
+  }
+
+  /**
+   * Same as PersistentHashMap.Builder, it is not thread safe
+   */
+  public static final class Builder<E> {
+
+    private Builder(PersistentHashMap.Builder<E, Boolean> map) {
+      this.map = map;
+    }
+
+    public Builder<E> add(E element) {
+      map.put(element, Boolean.TRUE);
+      return this;
+    }
+
+    public Builder<E> addAll(Iterable<? extends E> elements) {
+      for (E element : elements) {
+        add(element);
+      }
+      return this;
+    }
+
+    public Builder<E> remove(Object element) {
+      map.remove(element);
+      return this;
+    }
+
+    public int size() {
+      return map.size();
+    }
+
+    public PersistentHashSet<E> build() {
+      PersistentHashMap<E, Boolean> built = map.build();
+      return built.isEmpty() ? empty() : new PersistentHashSet<>(built);
+    }
+
+    private final PersistentHashMap.Builder<E, Boolean> map;
+  }
+
+  private final PersistentHashMap<E, Boolean> map;
+}
@@ -0,0 +1,457 @@
+package org.leo.core.collections.persistent;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Immutable sorted map where a modified version shares almost everything with the original : with and without return a new map
+ * in O(log2 n), the original stays valid and unchanged
+ *
+ * A balanced binary search tree (AVL : the heights of the two subtrees of a node differ by 1 at most), a write copies the nodes
+ * on the path to the key and rebalances the copies, the other nodes are shared
+ * A sorted map compares keys, so unlike PersistentVector and PersistentHashMap it cannot use wide nodes addressed by bits :
+ * about log2(n) small nodes are copied per write (20 for a million entries)
+ *
+ * The keys are ordered by the comparator, or by their natural order when it is null, null keys and values are not allowed
+ * The Map methods that modify throw UnsupportedOperationException, entrySet iterates in key order
+ * The Builder sorts what it is given then builds a perfectly balanced tree in O(n), rather than n path copies
+ */
+public final class PersistentSortedMap<K, V> extends AbstractMap<K, V> {
+
+  private static final PersistentSortedMap<?, ?> EMPTY = new PersistentSortedMap<>(null, 0, null);
+
+  private PersistentSortedMap(Comparator<? super K> comparator, int size, Node root) {
+    this.comparator = comparator;
+    this.size = size;
+    this.root = root;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> empty() {
+    return (PersistentSortedMap<K, V>) EMPTY;
+  }
+
+  public static <K, V> PersistentSortedMap<K, V> empty(Comparator<? super K> comparator) {
+    return new PersistentSortedMap<>(comparator, 0, null);
+  }
+
+  public static <K extends Comparable<? super K>, V> PersistentSortedMap<K, V> copyOf(Map<? extends K, ? extends V> map) {
+    Builder<K, V> builder = builder();
+
+    map.forEach(builder::put);
+    return builder.build();
+  }
+
+  public static <K extends Comparable<? super K>, V> Builder<K, V> builder() {
+    return new Builder<>(null, null);
+  }
+
+  public static <K, V> Builder<K, V> builder(Comparator<? super K> comparator) {
+    return new Builder<>(comparator, null);
+  }
+
+  /**
+   * A builder starting from this map, which is not modified
+   */
+  public Builder<K, V> toBuilder() {
+    return new Builder<>(comparator, this);
+  }
+
+  /**
+   * @return null for the natural order
+   */
+  public Comparator<? super K> comparator() {
+    return comparator;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public V get(Object key) {
+    Node node = find((K) key);
+    return node == null ? null : (V) node.value;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return get(key) != null;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A new map with the key mapped to the value, this one when it already was
+   */
+  public PersistentSortedMap<K, V> with(K key, V value) {
+    checkNotNull(key, value);
+
+    boolean[] added = new boolean[1];
+    Node newRoot = put(root, key, value, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new PersistentSortedMap<>(comparator, added[0] ? size + 1 : size, newRoot);
+  }
+
+  /**
+   * A new map without the key, this one when it was absent
+   */
+  @SuppressWarnings("unchecked")
+  public PersistentSortedMap<K, V> without(Object key) {
+    if (key == null || find((K) key) == null) {
+      return this;
+    }
+    return new PersistentSortedMap<>(comparator, size - 1, remove(root, (K) key));
+  }
+
+  /**
+   * @return the entry of the lowest key, null when the map is empty
+   */
+  public Entry<K, V> firstEntry() {
+    Node node = root;
+
+    if (node == null) {
+      return null;
+    }
+    while (node.left != null) {
+      node = node.left;
+    }
+    return entry(node);
+  }
+
+  /**
+   * @return the entry of the greatest key, null when the map is empty
+   */
+  public Entry<K, V> lastEntry() {
+    Node node = root;
+
+    if (node == null) {
+      return null;
+    }
+    while (node.right != null) {
+      node = node.right;
+    }
+    return entry(node);
+  }
+
+  /**
+   * @return the entry of the greatest key lower than or equal to the key, null when there is none
+   */
+  @SuppressWarnings("unchecked")
+  public Entry<K, V> floorEntry(K key) {
+    Node floor = null;
+
+    for (Node node = root; node != null; ) {
+      int cmp = compare(key, (K) node.key);
+      if (cmp == 0) {
+        return entry(node);
+      }
+      if (cmp < 0) {
+        node = node.left;
+      } else {
+        floor = node;
+        node = node.right;
+      }
+    }
+    return floor == null ? null : entry(floor);
+  }
+
+  /**
+   * @return the entry of the lowest key greater than or equal to the key, null when there is none
+   */
+  @SuppressWarnings("unchecked")
+  public Entry<K, V> ceilingEntry(K key) {
+    Node ceiling = null;
+
+    for (Node node = root; node != null; ) {
+      int cmp = compare(key, (K) node.key);
+      if (cmp == 0) {
+        return entry(node);
+      }
+      if (cmp > 0) {
+        node = node.right;
+      } else {
+        ceiling = node;
+        node = node.left;
+      }
+    }
+    return ceiling == null ? null : entry(ceiling);
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    return new AbstractSet<Entry<K, V>>() {
+
+      @Override
+      public Iterator<Entry<K, V>> iterator() {
+        return new EntryIterator();
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+
+      @Override
+      public boolean contains(Object o) {
+        if (!(o instanceof Entry)) {
+          return false;
+        }
+
+        Entry<?, ?> entry = (Entry<?, ?>) o;
+        return entry.getValue() != null && Objects.equals(get(entry.getKey()), entry.getValue());
+      }
+    };
+  }
+
+  /**
+   * Collects the entries then sorts them once in build(), a key put twice keeps its last value
+   * build() may be called several times, it is not thread safe
+   */
+  public static final class Builder<K, V> {
+
+    private Builder(Comparator<? super K> comparator, PersistentSortedMap<K, V> map) {
+      this.comparator = comparator;
+      if (map != null) {
+        map.entrySet().forEach(entries::add);
+      }
+    }
+
+    public Builder<K, V> put(K key, V value) {
+      checkNotNull(key, value);
+      entries.add(new SimpleImmutableEntry<>(key, value));
+      return this;
+    }
+
+    public Builder<K, V> putAll(Map<? extends K, ? extends V> map) {
+      map.forEach(this::put);
+      return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public PersistentSortedMap<K, V> build() {
+      PersistentSortedMap<K, V> empty = new PersistentSortedMap<>(comparator, 0, null);
+      // stable sort : among equal keys the last put stays last
+      entries.sort((e1, e2) -> empty.compare(e1.getKey(), e2.getKey()));
+
+      List<Entry<K, V>> distinct = new ArrayList<>(entries.size());
+      for (Entry<K, V> entry : entries) {
+        int last = distinct.size() - 1;
+        if (last >= 0 && empty.compare(distinct.get(last).getKey(), entry.getKey()) == 0) {
+          distinct.set(last, entry);
+        } else {
+          distinct.add(entry);
+        }
+      }
+
+      entries.clear();
+      entries.addAll(distinct);
+      if (distinct.isEmpty()) {
+        return comparator == null ? (PersistentSortedMap<K, V>) EMPTY : empty;
+      }
+      return new PersistentSortedMap<>(comparator, distinct.size(), balanced(distinct, 0, distinct.size() - 1));
+    }
+
+    private static Node balanced(List<? extends Entry<?, ?>> entries, int from, int to) {
+      if (from > to) {
+        return null;
+      }
+
+      int middle = (from + to) >>> 1;
+      Entry<?, ?> entry = entries.get(middle);
+      return node(entry.getKey(), entry.getValue(), balanced(entries, from, middle - 1), balanced(entries, middle + 1, to));
+    }
+
+    private final Comparator<? super K> comparator;
+    private final List<Entry<K, V>> entries = new ArrayList<>();
+  }
+
+  private static final class Node {
+
+    Node(Object key, Object value, Node left, Node right, int height) {
+      this.key = key;
+      this.value = value;
+      this.left = left;
+      this.right = right;
+      this.height = height;
+    }
+
+    final Object key;
+    final Object value;
+    final Node left;
+    final Node right;
+    final int height;
+  }
+
+  private static void checkNotNull(Object key, Object value) {
+    if (key == null || value == null) {
+      throw new NullPointerException("Null keys and values are not allowed");
+    }
+  }
+
+  private static int height(Node node) {
+    return node == null ? 0 : node.height;
+  }
+
+  private static Node node(Object key, Object value, Node left, Node right) {
+    return new Node(key, value, left, right, Math.max(height(left), height(right)) + 1);
+  }
+
+  /**
+   * New node of the key whose subtrees may differ in height by 2, after a put or a remove below it, rotated back into balance
+   */
+  private static Node balance(Object key, Object value, Node left, Node right) {
+    int leftHeight = height(left);
+    int rightHeight = height(right);
+
+    if (leftHeight > rightHeight + 1) {
+      if (height(left.left) >= height(left.right)) {
+        return node(left.key, left.value, left.left, node(key, value, left.right, right));
+      }
+
+      Node pivot = left.right;
+      return node(pivot.key, pivot.value, node(left.key, left.value, left.left, pivot.left), node(key, value, pivot.right, right));
+    }
+    if (rightHeight > leftHeight + 1) {
+      if (height(right.right) >= height(right.left)) {
+        return node(right.key, right.value, node(key, value, left, right.left), right.right);
+      }
+
+      Node pivot = right.left;
+      return node(pivot.key, pivot.value, node(key, value, left, pivot.left), node(right.key, right.value, pivot.right, right.right));
+    }
+    return node(key, value, left, right);
+  }
+
+  @SuppressWarnings("unchecked")
+  private int compare(K key1, K key2) {
+    return comparator == null ? ((Comparable<? super K>) key1).compareTo(key2) : comparator.compare(key1, key2);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Node find(K key) {
+    if (key == null) {
+      return null;
+    }
+
+    Node node = root;
+    while (node != null) {
+      int cmp = compare(key, (K) node.key);
+      if (cmp == 0) {
+        return node;
+      }
+      node = cmp < 0 ? node.left : node.right;
+    }
+    return null;
+  }
+
+  @SuppressWarnings("unchecked")
+  private Node put(Node node, K key, V value, boolean[] added) {
+    if (node == null) {
+      added[0] = true;
+      return new Node(key, value, null, null, 1);
+    }
+
+    int cmp = compare(key, (K) node.key);
+    if (cmp == 0) {
+      return node.value == value ? node : new Node(node.key, value, node.left, node.right, node.height);
+    }
+    if (cmp < 0) {
+      Node left = put(node.left, key, value, added);
+      return left == node.left ? node : balance(node.key, node.value, left, node.right);
+    }
+
+    Node right = put(node.right, key, value, added);
+    return right == node.right ? node : balance(node.key, node.value, node.left, right);
+  }
+
+  /**
+   * Removes a key known to be in the subtree
+   */
+  @SuppressWarnings("unchecked")
+  private Node remove(Node node, K key) {
+    int cmp = compare(key, (K) node.key);
+
+    if (cmp < 0) {
+      return balance(node.key, node.value, remove(node.left, key), node.right);
+    }
+    if (cmp > 0) {
+      return balance(node.key, node.value, node.left, remove(node.right, key));
+    }
+    if (node.left == null) {
+      return node.right;
+    }
+    if (node.right == null) {
+      return node.left;
+    }
+
+    // the successor takes the place of the node
+    Node successor = node.right;
+    while (successor.left != null) {
+      successor = successor.left;
+    }
+    return balance(successor.key, successor.value, node.left, removeFirst(node.right));
+  }
+
+  private static Node removeFirst(Node node) {
+    if (node.left == null) {
+      return node.right;
+    }
+    return balance(node.key, node.value, removeFirst(node.left), node.right);
+  }
+
+  @SuppressWarnings("unchecked")
+  private Entry<K, V> entry(Node node) {
+    return new SimpleImmutableEntry<>((K) node.key, (V) node.value);
+  }
+
+  /**
+   * In order walk with a stack of the nodes whose left subtree is being visited, the height of an AVL tree is below 1.45 log2(n)
+   */
+  private final class EntryIterator implements Iterator<Entry<K, V>> {
+
+    EntryIterator() {
+      pushLeft(root);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return depth > 0;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (depth == 0) {
+        throw new NoSuchElementException();
+      }
+
+      Node node = stack[--depth];
+      stack[depth] = null;
+      pushLeft(node.right);
+      return entry(node);
+    }
+
+    private void pushLeft(Node node) {
+      for (; node != null; node = node.left) {
+        stack[depth++] = node;
+      }
+    }
+
+    private final Node[] stack = new Node[height(root)];
+    private int depth;
+  }
+
+  private final Comparator<? super K> comparator;
+  private final int size;
+  private final Node root;
+}
@@ -0,0 +1,402 @@
+package org.leo.core.collections.persistent;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.function.Consumer;
+
+/**
+ * Immutable list where a modified version shares almost everything with the original : plus, with and withoutLast return a new
+ * vector in O(log32 n), the original stays valid and unchanged
+ *
+ * Collections.unmodifiableList is a read only view of a list that can still change underneath, a snapshot for a reader
+ * needs a full copy (O(n)), as does every write of a CopyOnWriteArrayList
+ * Here the elements are the leaves of a tree of 32 wide arrays (a trie on the bits of the index, 5 bits per level),
+ * a write copies only the path from the root to the leaf of the index : 1 to 7 arrays of 32 references whatever the size
+ * (7 levels hold 2^35 elements), and a get reads at most 7 arrays, in practice 3 or 4 (32^4 is a million)
+ * The last 32 elements are kept out of the tree in a tail array, an append (the most frequent write) only copies the tail
+ *
+ * Any number of threads may read a vector without synchronization (it never changes), publishing a new version to them takes
+ * a volatile field or an AtomicReference
+ * The List methods that modify throw UnsupportedOperationException
+ *
+ * For bulk construction a Builder appends in place (no path copy) to the arrays it created itself, then build() freezes them
+ */
+public final class PersistentVector<E> extends AbstractList<E> implements RandomAccess {
+
+  private static final int BITS = 5;
+
+  private static final int WIDTH = 1 << BITS;
+
+  private static final int MASK = WIDTH - 1;
+
+  private static final Node EMPTY_NODE = new Node(null, new Object[WIDTH]);
+
+  private static final PersistentVector<?> EMPTY = new PersistentVector<>(0, BITS, EMPTY_NODE, new Object[0]);
+
+  private PersistentVector(int size, int shift, Node root, Object[] tail) {
+    this.size = size;
+    this.shift = shift;
+    this.root = root;
+    this.tail = tail;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <E> PersistentVector<E> empty() {
+    return (PersistentVector<E>) EMPTY;
+  }
+
+  @SafeVarargs
+  public static <E> PersistentVector<E> of(E... elements) {
+    Builder<E> builder = builder();
+
+    // a loop rather than Arrays.asList, which would pass the generic array on to another varargs method
+    for (E element : elements) {
+      builder.add(element);
+    }
+    return builder.build();
+  }
+
+  public static <E> PersistentVector<E> copyOf(Iterable<? extends E> elements) {
+    return PersistentVector.<E> builder().addAll(elements).build();
+  }
+
+  public static <E> Builder<E> builder() {
+    return new Builder<>(empty());
+  }
+
+  /**
+   * A builder starting from this vector, which is not modified
+   */
+  public Builder<E> toBuilder() {
+    return new Builder<>(this);
+  }
+
+  /**
+   * An array of the tree, the owner is the builder allowed to modify it in place (null once frozen)
+   */
+  private static final class Node {
+
+    Node(Object owner, Object[] array) {
+      this.owner = owner;
+      this.array = array;
+    }
+
+    final Object owner;
+    final Object[] array;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    checkIndex(index, size);
+    return (E) arrayFor(index)[index & MASK];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  /**
+   * A new vector with the element appended, O(1) most of the time (a copy of the tail), O(log32 n) once every 32 elements
+   */
+  public PersistentVector<E> plus(E element) {
+    int tailLength = size - tailOffset(size);
+
+    if (tailLength < WIDTH) {
+      Object[] newTail = Arrays.copyOf(tail, tailLength + 1);
+      newTail[tailLength] = element;
+      return new PersistentVector<>(size + 1, shift, root, newTail);
+    }
+
+    // the full tail goes into the tree, the element starts a new tail
+    Node tailNode = new Node(null, tail);
+    Node newRoot;
+    int newShift = shift;
+
+    if ((size >>> BITS) > (1 << shift)) {
+      // the tree is full : one more level
+      newRoot = new Node(null, new Object[WIDTH]);
+      newRoot.array[0] = root;
+      newRoot.array[1] = newPath(null, shift, tailNode);
+      newShift += BITS;
+    } else {
+      newRoot = pushTail(null, size, shift, root, tailNode);
+    }
+    return new PersistentVector<>(size + 1, newShift, newRoot, new Object[] { element });
+  }
+
+  /**
+   * A new vector with the element at the index replaced, O(log32 n)
+   */
+  public PersistentVector<E> with(int index, E element) {
+    checkIndex(index, size);
+
+    if (index >= tailOffset(size)) {
+      Object[] newTail = tail.clone();
+      newTail[index & MASK] = element;
+      return new PersistentVector<>(size, shift, root, newTail);
+    }
+    return new PersistentVector<>(size, shift, assoc(shift, root, index, element), tail);
+  }
+
+  /**
+   * A new vector without its last element, O(log32 n)
+   *
+   * @throws IllegalStateException when the vector is empty
+   */
+  public PersistentVector<E> withoutLast() {
+    if (size == 0) {
+      throw new IllegalStateException("Empty vector");
+    }
+    if (size == 1) {
+      return empty();
+    }
+
+    int tailLength = size - tailOffset(size);
+    if (tailLength > 1) {
+      return new PersistentVector<>(size - 1, shift, root, Arrays.copyOf(tail, tailLength - 1));
+    }
+
+    // the tail becomes the last leaf of the tree, which leaves the tree
+    Object[] newTail = arrayFor(size - 2);
+    Node newRoot = popTail(shift, root);
+    int newShift = shift;
+
+    if (newRoot == null) {
+      newRoot = EMPTY_NODE;
+    }
+    if (shift > BITS && newRoot.array[1] == null) {
+      newRoot = (Node) newRoot.array[0];
+      newShift -= BITS;
+    }
+    return new PersistentVector<>(size - 1, newShift, newRoot, newTail);
+  }
+
+  /**
+   * Walks the leaves in order, one array lookup per 32 elements
+   */
+  @Override
+  public Iterator<E> iterator() {
+    return new Iterator<E>() {
+
+      @Override
+      public boolean hasNext() {
+        return index < size;
+      }
+
+      @Override
+      @SuppressWarnings("unchecked")
+      public E next() {
+        if (index >= size) {
+          throw new NoSuchElementException();
+        }
+        if ((index & MASK) == 0) {
+          leaf = arrayFor(index);
+        }
+        return (E) leaf[index++ & MASK];
+      }
+
+      private int index;
+      private Object[] leaf;
+    };
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public void forEach(Consumer<? super E> action) {
+    for (int start = 0; start < size; start += WIDTH) {
+      Object[] leaf = arrayFor(start);
+      int end = Math.min(WIDTH, size - start);
+
+      for (int i = 0; i < end; i++) {
+        action.accept((E) leaf[i]);
+      }
+    }
+  }
+
+  /**
+   * Appends and replaces in place in the arrays it created, copies the arrays shared with a vector the first time it writes them
+   * build() returns the vector and may be called several times, the builder keeps going on copies of what it gave away
+   * It is not thread safe
+   */
+  public static final class Builder<E> {
+
+    private Builder(PersistentVector<E> vector) {
+      this.size = vector.size;
+      this.shift = vector.shift;
+      this.root = new Node(owner, vector.root.array.clone());
+      this.tail = Arrays.copyOf(vector.tail, WIDTH);
+    }
+
+    public Builder<E> add(E element) {
+      if (size - tailOffset(size) < WIDTH) {
+        tail[size & MASK] = element;
+        size++;
+        return this;
+      }
+
+      Node tailNode = new Node(owner, tail);
+      tail = new Object[WIDTH];
+      tail[0] = element;
+
+      if ((size >>> BITS) > (1 << shift)) {
+        Node newRoot = new Node(owner, new Object[WIDTH]);
+        newRoot.array[0] = root;
+        newRoot.array[1] = newPath(owner, shift, tailNode);
+        root = newRoot;
+        shift += BITS;
+      } else {
+        root = pushTail(owner, size, shift, root, tailNode);
+      }
+      size++;
+      return this;
+    }
+
+    public Builder<E> addAll(Iterable<? extends E> elements) {
+      for (E element : elements) {
+        add(element);
+      }
+      return this;
+    }
+
+    public Builder<E> set(int index, E element) {
+      checkIndex(index, size);
+
+      if (index >= tailOffset(size)) {
+        tail[index & MASK] = element;
+      } else {
+        root = set(shift, root, index, element);
+      }
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public PersistentVector<E> build() {
+      PersistentVector<E> vector = new PersistentVector<>(size, shift, root, Arrays.copyOf(tail, size - tailOffset(size)));
+
+      // the arrays given away are frozen : a new owner makes the builder copy them before its next writes
+      owner = new Object();
+      root = new Node(owner, root.array.clone());
+      return vector;
+    }
+
+    private Node set(int level, Node node, int index, Object element) {
+      Node editable = editable(node);
+
+      if (level == 0) {
+        editable.array[index & MASK] = element;
+      } else {
+        int child = (index >>> level) & MASK;
+        editable.array[child] = set(level - BITS, (Node) editable.array[child], index, element);
+      }
+      return editable;
+    }
+
+    private Node editable(Node node) {
+      return node.owner == owner ? node : new Node(owner, node.array.clone());
+    }
+
+    private Object owner = new Object();
+    private int size;
+    private int shift;
+    private Node root;
+    private Object[] tail;
+  }
+
+  private static void checkIndex(int index, int size) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  /**
+   * Index of the first element of the tail
+   */
+  private static int tailOffset(int size) {
+    return size < WIDTH ? 0 : ((size - 1) >>> BITS) << BITS;
+  }
+
+  private static Node newPath(Object owner, int level, Node node) {
+    if (level == 0) {
+      return node;
+    }
+
+    Node path = new Node(owner, new Object[WIDTH]);
+    path.array[0] = newPath(owner, level - BITS, node);
+    return path;
+  }
+
+  /**
+   * Adds the full tail as the last leaf of the tree, copying the path (or writing it in place when the owner owns it)
+   */
+  private static Node pushTail(Object owner, int size, int level, Node parent, Node tailNode) {
+    Node copy = owner != null && parent.owner == owner ? parent : new Node(owner, parent.array.clone());
+    int child = ((size - 1) >>> level) & MASK;
+
+    if (level == BITS) {
+      copy.array[child] = tailNode;
+    } else {
+      Node existing = (Node) parent.array[child];
+      copy.array[child] = existing != null ? pushTail(owner, size, level - BITS, existing, tailNode) : newPath(owner, level - BITS, tailNode);
+    }
+    return copy;
+  }
+
+  private static Node assoc(int level, Node node, int index, Object element) {
+    Node copy = new Node(null, node.array.clone());
+
+    if (level == 0) {
+      copy.array[index & MASK] = element;
+    } else {
+      int child = (index >>> level) & MASK;
+      copy.array[child] = assoc(level - BITS, (Node) node.array[child], index, element);
+    }
+    return copy;
+  }
+
+  private Object[] arrayFor(int index) {
+    if (index >= tailOffset(size)) {
+      return tail;
+    }
+
+    Node node = root;
+    for (int level = shift; level > 0; level -= BITS) {
+      node = (Node) node.array[(index >>> level) & MASK];
+    }
+    return node.array;
+  }
+
+  private Node popTail(int level, Node node) {
+    int child = ((size - 2) >>> level) & MASK;
+
+    if (level > BITS) {
+      Node newChild = popTail(level - BITS, (Node) node.array[child]);
+      if (newChild == null && child == 0) {
+        return null;
+      }
+
+      Node copy = new Node(null, node.array.clone());
+      copy.array[child] = newChild;
+      return copy;
+    }
+    if (child == 0) {
+      return null;
+    }
+
+    Node copy = new Node(null, node.array.clone());
+    copy.array[child] = null;
+    return copy;
+  }
+
+  private final int size;
+  private final int shift;
+  private final Node root;
+  private final Object[] tail;
+}
@@ -0,0 +1,51 @@
+package org.leo.core.collections.primitive;
+
+/**
+ * Hashing helpers shared by the open addressing maps and sets of this package
+ * 
+ * The tables have a power of two length, so the slot of a key is (hash & mask), the low bits of the hash
+ * Integer keys are often sequential or multiples of a power of two (ids, sizes...), their low bits alone would pile up in a few slots,
+ * so the key is first multiplied by the golden ratio constant (fibonacci hashing) and its high bits folded down
+ */
+final class Hashing {
+
+  static final float DEFAULT_LOAD_FACTOR = 0.65f;
+
+  static final int MAX_CAPACITY = 1 << 30;
+
+  private Hashing() {
+  }
+
+  static int mix(int key) {
+    int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  static int mix(long key) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  /**
+   * Smallest power of two table holding expectedSize entries without going over the load factor
+   */
+  static int tableSize(int expectedSize, float loadFactor) {
+    if (loadFactor <= 0 || loadFactor >= 1) {
+      throw new IllegalArgumentException("The load factor must be in ]0, 1[ : " + loadFactor);
+    }
+
+    long needed = (long) Math.ceil(Math.max(expectedSize, 2) / (double) loadFactor);
+    if (needed > MAX_CAPACITY) {
+      throw new IllegalArgumentException("Too many entries : " + expectedSize);
+    }
+    return Math.max(4, Integer.highestOneBit((int) needed - 1) << 1);
+  }
+
+  /**
+   * Whether the entry at slot, whose home slot is home, may move back to the freed slot hole (backward shift deletion) :
+   * it can when hole lies cyclically between home and slot, moving it there keeps it reachable from its home slot
+   */
+  static boolean canShift(int home, int hole, int slot) {
+    return slot > hole ? (home <= hole || home > slot) : (home <= hole && home > slot);
+  }
+}
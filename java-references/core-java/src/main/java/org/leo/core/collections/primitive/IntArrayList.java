@@ -0,0 +1,231 @@
+package org.leo.core.collections.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Growable list of int backed by an int[], the primitive counterpart of ArrayList<Integer>
+ * 
+ * An ArrayList<Integer> holds references to Integer objects : each element costs a 4 to 8 bytes reference plus a 16 bytes object
+ * (only -128..127 are cached), and reading it follows a pointer to somewhere else in the heap
+ * Here the values themselves are in one contiguous array : 4 bytes per element, no allocation when adding (besides the array growth)
+ * and a sequential scan reads memory in order, which the cpu caches and prefetchers like
+ * 
+ * Like ArrayList the array grows by half of its length when full, so adding is amortized O(1)
+ * It is not thread safe
+ */
+public class IntArrayList {
+
+  public IntArrayList() {
+    this(10);
+  }
+
+  public IntArrayList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Negative capacity : " + initialCapacity);
+    }
+    elements = new int[initialCapacity];
+  }
+
+  public static IntArrayList of(int... values) {
+    IntArrayList list = new IntArrayList(values.length);
+
+    System.arraycopy(values, 0, list.elements, 0, values.length);
+    list.size = values.length;
+    return list;
+  }
+
+  public void add(int value) {
+    if (size == elements.length) {
+      grow(size + 1);
+    }
+    elements[size++] = value;
+  }
+
+  public void add(int index, int value) {
+    if (index < 0 || index > size) {
+      throw new IndexOutOfBoundsException("Index : " + index + ", size : " + size);
+    }
+    if (size == elements.length) {
+      grow(size + 1);
+    }
+
+    System.arraycopy(elements, index, elements, index + 1, size - index);
+    elements[index] = value;
+    size++;
+  }
+
+  public void addAll(IntArrayList other) {
+    ensureCapacity(size + other.size);
+    System.arraycopy(other.elements, 0, elements, size, other.size);
+    size += other.size;
+  }
+
+  public int get(int index) {
+    checkIndex(index);
+    return elements[index];
+  }
+
+  public int set(int index, int value) {
+    checkIndex(index);
+
+    int previous = elements[index];
+    elements[index] = value;
+    return previous;
+  }
+
+  public int removeAt(int index) {
+    checkIndex(index);
+
+    int removed = elements[index];
+    System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+    size--;
+    return removed;
+  }
+
+  /**
+   * Removes the first occurrence of the value, returns false when the list does not hold it
+   */
+  public boolean removeValue(int value) {
+    int index = indexOf(value);
+
+    if (index < 0) {
+      return false;
+    }
+    removeAt(index);
+    return true;
+  }
+
+  public int indexOf(int value) {
+    for (int i = 0; i < size; i++) {
+      if (elements[i] == value) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public boolean contains(int value) {
+    return indexOf(value) >= 0;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  public void sort() {
+    Arrays.sort(elements, 0, size);
+  }
+
+  public void ensureCapacity(int minCapacity) {
+    if (minCapacity > elements.length) {
+      grow(minCapacity);
+    }
+  }
+
+  public void trimToSize() {
+    if (size < elements.length) {
+      elements = Arrays.copyOf(elements, size);
+    }
+  }
+
+  public void forEach(IntConsumer action) {
+    for (int i = 0; i < size; i++) {
+      action.accept(elements[i]);
+    }
+  }
+
+  public PrimitiveIterator.OfInt iterator() {
+    return new PrimitiveIterator.OfInt() {
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public int nextInt() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        return elements[next++];
+      }
+
+      private int next;
+    };
+  }
+
+  public IntStream stream() {
+    return Arrays.stream(elements, 0, size);
+  }
+
+  public int[] toArray() {
+    return Arrays.copyOf(elements, size);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof IntArrayList)) {
+      return false;
+    }
+
+    IntArrayList list = (IntArrayList) other;
+    if (size != list.size) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      if (elements[i] != list.elements[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = 1;
+
+    for (int i = 0; i < size; i++) {
+      hash = 31 * hash + elements[i];
+    }
+    return hash;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+
+    for (int i = 0; i < size; i++) {
+      builder.append(i == 0 ? "" : ", ").append(elements[i]);
+    }
+    return builder.append(']').toString();
+  }
+
+  private void grow(int minCapacity) {
+    int capacity = elements.length + (elements.length >> 1);
+    elements = Arrays.copyOf(elements, Math.max(capacity, Math.max(minCapacity, 10)));
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index : " + index + ", size : " + size);
+    }
+  }
+
+  private int[] elements;
+  private int size;
+}
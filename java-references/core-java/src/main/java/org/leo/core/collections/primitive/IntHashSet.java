@@ -0,0 +1,231 @@
+package org.leo.core.collections.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.function.IntConsumer;
+
+/**
+ * Set of ints with open addressing, the primitive counterpart of HashSet<Integer>
+ * 
+ * A HashSet<Integer> is a HashMap underneath, with a node and a boxed Integer per element,
+ * this one is a single int array with 4 bytes per slot
+ * Same probing and removal as IntIntHashMap (see there), the 0 marks a free slot and the element 0 is kept in a flag
+ * 
+ * It is not thread safe
+ */
+public class IntHashSet {
+
+  private static final int FREE = 0;
+
+  public IntHashSet() {
+    this(16, Hashing.DEFAULT_LOAD_FACTOR);
+  }
+
+  public IntHashSet(int expectedSize) {
+    this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR);
+  }
+
+  public IntHashSet(int expectedSize, float loadFactor) {
+    int tableSize = Hashing.tableSize(expectedSize, loadFactor);
+
+    this.loadFactor = loadFactor;
+    this.elements = new int[tableSize];
+    this.resizeAt = (int) (tableSize * loadFactor);
+  }
+
+  public static IntHashSet of(int... values) {
+    IntHashSet set = new IntHashSet(values.length);
+
+    for (int value : values) {
+      set.add(value);
+    }
+    return set;
+  }
+
+  /**
+   * Adds the value, returns false when it was already there
+   */
+  public boolean add(int value) {
+    if (value == FREE) {
+      if (hasFree) {
+        return false;
+      }
+      hasFree = true;
+      size++;
+      return true;
+    }
+
+    int mask = elements.length - 1;
+    for (int slot = Hashing.mix(value) & mask; ; slot = (slot + 1) & mask) {
+      if (elements[slot] == value) {
+        return false;
+      }
+      if (elements[slot] == FREE) {
+        elements[slot] = value;
+
+        if (++size > resizeAt) {
+          rehash(elements.length << 1);
+        }
+        return true;
+      }
+    }
+  }
+
+  public boolean contains(int value) {
+    return value == FREE ? hasFree : slot(value) >= 0;
+  }
+
+  /**
+   * Removes the value, returns false when it was not there
+   */
+  public boolean remove(int value) {
+    if (value == FREE) {
+      if (!hasFree) {
+        return false;
+      }
+      hasFree = false;
+      size--;
+      return true;
+    }
+
+    int slot = slot(value);
+    if (slot < 0) {
+      return false;
+    }
+    shiftBack(slot);
+    size--;
+    return true;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(elements, FREE);
+    hasFree = false;
+    size = 0;
+  }
+
+  public void forEach(IntConsumer action) {
+    if (hasFree) {
+      action.accept(FREE);
+    }
+    for (int element : elements) {
+      if (element != FREE) {
+        action.accept(element);
+      }
+    }
+  }
+
+  /**
+   * Iterator over the elements, the set must not be modified while iterating
+   */
+  public PrimitiveIterator.OfInt iterator() {
+    return new PrimitiveIterator.OfInt() {
+
+      @Override
+      public boolean hasNext() {
+        if (!freeDone) {
+          return true;
+        }
+        while (next < elements.length && elements[next] == FREE) {
+          next++;
+        }
+        return next < elements.length;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        if (!freeDone) {
+          freeDone = true;
+          return FREE;
+        }
+        return elements[next++];
+      }
+
+      private boolean freeDone = !hasFree;
+      private int next;
+    };
+  }
+
+  public int[] toArray() {
+    int[] array = new int[size];
+    int i = 0;
+
+    for (PrimitiveIterator.OfInt iterator = iterator(); iterator.hasNext(); ) {
+      array[i++] = iterator.nextInt();
+    }
+    return array;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("[");
+
+    forEach(value -> builder.append(builder.length() > 1 ? ", " : "").append(value));
+    return builder.append(']').toString();
+  }
+
+  private int slot(int value) {
+    int mask = elements.length - 1;
+
+    for (int slot = Hashing.mix(value) & mask; elements[slot] != FREE; slot = (slot + 1) & mask) {
+      if (elements[slot] == value) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void shiftBack(int hole) {
+    int mask = elements.length - 1;
+
+    for (int slot = (hole + 1) & mask; elements[slot] != FREE; slot = (slot + 1) & mask) {
+      int home = Hashing.mix(elements[slot]) & mask;
+
+      if (Hashing.canShift(home, hole, slot)) {
+        elements[hole] = elements[slot];
+        hole = slot;
+      }
+    }
+    elements[hole] = FREE;
+  }
+
+  private void rehash(int tableSize) {
+    if (tableSize > Hashing.MAX_CAPACITY) {
+      throw new IllegalStateException("The set is full");
+    }
+
+    int[] oldElements = elements;
+    int mask = tableSize - 1;
+
+    elements = new int[tableSize];
+    resizeAt = (int) (tableSize * loadFactor);
+
+    for (int element : oldElements) {
+      if (element != FREE) {
+        int slot = Hashing.mix(element) & mask;
+
+        while (elements[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        elements[slot] = element;
+      }
+    }
+  }
+
+  private final float loadFactor;
+  private int[] elements;
+  private int size;
+  private int resizeAt;
+  private boolean hasFree;
+}
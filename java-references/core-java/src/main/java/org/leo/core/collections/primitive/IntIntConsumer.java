@@ -0,0 +1,10 @@
+package org.leo.core.collections.primitive;
+
+/**
+ * Action on the entries of an IntIntHashMap, no boxing of the keys nor of the values
+ */
+@FunctionalInterface
+public interface IntIntConsumer {
+
+  void accept(int key, int value);
+}
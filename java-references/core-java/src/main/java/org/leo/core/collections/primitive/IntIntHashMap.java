@@ -0,0 +1,263 @@
+package org.leo.core.collections.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Map of int keys to int values with open addressing, the primitive counterpart of HashMap<Integer, Integer>
+ * 
+ * A HashMap<Integer, Integer> allocates a node object per entry (hash, key, value and next references) plus the boxed key and value,
+ * about 50 to 80 bytes per entry, and a lookup follows the table reference, then the node, then the key object
+ * Here the keys and the values are in two int arrays : 8 bytes per slot, no allocation per entry, and a lookup reads the arrays
+ * 
+ * Open addressing with linear probing : a key goes to the slot given by its hash, when that slot is taken it goes to the next free one
+ * A lookup starts at the same slot and walks until it finds the key or a free slot, which stays short while the table is not too full
+ * (the table doubles when size reaches the load factor)
+ * A free slot is marked by the key 0, so the key 0 itself is kept aside in a field
+ * A removal shifts back the following entries of the run instead of leaving a tombstone (backward shift deletion),
+ * lookups never walk over deleted slots
+ * 
+ * get of a missing key returns the missing value given at creation (0 by default), use containsKey or getOrDefault to tell them apart
+ * It is not thread safe
+ */
+public class IntIntHashMap {
+
+  private static final int FREE = 0;
+
+  public IntIntHashMap() {
+    this(16, Hashing.DEFAULT_LOAD_FACTOR, 0);
+  }
+
+  public IntIntHashMap(int expectedSize) {
+    this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR, 0);
+  }
+
+  public IntIntHashMap(int expectedSize, float loadFactor, int missingValue) {
+    int tableSize = Hashing.tableSize(expectedSize, loadFactor);
+
+    this.loadFactor = loadFactor;
+    this.missingValue = missingValue;
+    this.keys = new int[tableSize];
+    this.values = new int[tableSize];
+    this.resizeAt = (int) (tableSize * loadFactor);
+  }
+
+  public int get(int key) {
+    return getOrDefault(key, missingValue);
+  }
+
+  public int getOrDefault(int key, int defaultValue) {
+    if (key == FREE) {
+      return hasFreeKey ? freeKeyValue : defaultValue;
+    }
+
+    int slot = slot(key);
+    return slot >= 0 ? values[slot] : defaultValue;
+  }
+
+  public boolean containsKey(int key) {
+    return key == FREE ? hasFreeKey : slot(key) >= 0;
+  }
+
+  /**
+   * Associates the value to the key, returns the previous value or the missing value
+   */
+  public int put(int key, int value) {
+    if (key == FREE) {
+      int previous = hasFreeKey ? freeKeyValue : missingValue;
+
+      if (!hasFreeKey) {
+        hasFreeKey = true;
+        size++;
+      }
+      freeKeyValue = value;
+      return previous;
+    }
+
+    int mask = keys.length - 1;
+    for (int slot = Hashing.mix(key) & mask; ; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        int previous = values[slot];
+        values[slot] = value;
+        return previous;
+      }
+      if (keys[slot] == FREE) {
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > resizeAt) {
+          rehash(keys.length << 1);
+        }
+        return missingValue;
+      }
+    }
+  }
+
+  /**
+   * Adds delta to the value of the key (starting from 0 when absent), returns the new value, handy for counters
+   */
+  public int addTo(int key, int delta) {
+    int value = getOrDefault(key, 0) + delta;
+
+    put(key, value);
+    return value;
+  }
+
+  /**
+   * Removes the key, returns its value or the missing value
+   */
+  public int remove(int key) {
+    if (key == FREE) {
+      if (!hasFreeKey) {
+        return missingValue;
+      }
+      hasFreeKey = false;
+      size--;
+      return freeKeyValue;
+    }
+
+    int slot = slot(key);
+    if (slot < 0) {
+      return missingValue;
+    }
+
+    int removed = values[slot];
+    shiftBack(slot);
+    size--;
+    return removed;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, FREE);
+    hasFreeKey = false;
+    size = 0;
+  }
+
+  public void forEach(IntIntConsumer action) {
+    if (hasFreeKey) {
+      action.accept(FREE, freeKeyValue);
+    }
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (keys[slot] != FREE) {
+        action.accept(keys[slot], values[slot]);
+      }
+    }
+  }
+
+  /**
+   * Iterator over the keys, the map must not be modified while iterating
+   */
+  public PrimitiveIterator.OfInt keyIterator() {
+    return new PrimitiveIterator.OfInt() {
+
+      @Override
+      public boolean hasNext() {
+        if (!freeKeyDone) {
+          return true;
+        }
+        while (next < keys.length && keys[next] == FREE) {
+          next++;
+        }
+        return next < keys.length;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        if (!freeKeyDone) {
+          freeKeyDone = true;
+          return FREE;
+        }
+        return keys[next++];
+      }
+
+      private boolean freeKeyDone = !hasFreeKey;
+      private int next;
+    };
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+
+    forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+    return builder.append('}').toString();
+  }
+
+  private int slot(int key) {
+    int mask = keys.length - 1;
+
+    for (int slot = Hashing.mix(key) & mask; ; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      if (keys[slot] == FREE) {
+        return -1;
+      }
+    }
+  }
+
+  /**
+   * Frees the slot and moves back the entries of the run that would no longer be reachable from their home slot
+   */
+  private void shiftBack(int hole) {
+    int mask = keys.length - 1;
+
+    for (int slot = (hole + 1) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+      int home = Hashing.mix(keys[slot]) & mask;
+
+      if (Hashing.canShift(home, hole, slot)) {
+        keys[hole] = keys[slot];
+        values[hole] = values[slot];
+        hole = slot;
+      }
+    }
+    keys[hole] = FREE;
+  }
+
+  private void rehash(int tableSize) {
+    if (tableSize > Hashing.MAX_CAPACITY) {
+      throw new IllegalStateException("The map is full");
+    }
+
+    int[] oldKeys = keys;
+    int[] oldValues = values;
+    int mask = tableSize - 1;
+
+    keys = new int[tableSize];
+    values = new int[tableSize];
+    resizeAt = (int) (tableSize * loadFactor);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldKeys[i] != FREE) {
+        int slot = Hashing.mix(oldKeys[i]) & mask;
+
+        while (keys[slot] != FREE) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private final float loadFactor;
+  private final int missingValue;
+  private int[] keys;
+  private int[] values;
+  private int size;
+  private int resizeAt;
+  private boolean hasFreeKey;
+  private int freeKeyValue;
+}
@@ -0,0 +1,10 @@
+package org.leo.core.collections.primitive;
+
+/**
+ * Action on the entries of an IntObjectHashMap, the key is not boxed
+ */
+@FunctionalInterface
+public interface IntObjectConsumer<V> {
+
+  void accept(int key, V value);
+}
@@ -0,0 +1,228 @@
+package org.leo.core.collections.primitive;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.function.IntFunction;
+
+/**
+ * Map of int keys to objects with open addressing, the primitive counterpart of HashMap<Integer, V>
+ * 
+ * The keys are in an int array and the values in a parallel object array : no node nor boxed key per entry,
+ * the only objects left are the values themselves
+ * Same probing and removal as IntIntHashMap (see there), but a free slot is marked by a null value,
+ * so every key including 0 is stored in the table and null values are not allowed
+ * 
+ * It is not thread safe
+ */
+public class IntObjectHashMap<V> {
+
+  public IntObjectHashMap() {
+    this(16, Hashing.DEFAULT_LOAD_FACTOR);
+  }
+
+  public IntObjectHashMap(int expectedSize) {
+    this(expectedSize, Hashing.DEFAULT_LOAD_FACTOR);
+  }
+
+  public IntObjectHashMap(int expectedSize, float loadFactor) {
+    int tableSize = Hashing.tableSize(expectedSize, loadFactor);
+
+    this.loadFactor = loadFactor;
+    this.keys = new int[tableSize];
+    this.values = new Object[tableSize];
+    this.resizeAt = (int) (tableSize * loadFactor);
+  }
+
+  /**
+   * Value of the key, or null when absent
+   */
+  @SuppressWarnings("unchecked")
+  public V get(int key) {
+    int slot = slot(key);
+    return slot >= 0 ? (V) values[slot] : null;
+  }
+
+  public V getOrDefault(int key, V defaultValue) {
+    V value = get(key);
+    return value != null ? value : defaultValue;
+  }
+
+  public boolean containsKey(int key) {
+    return slot(key) >= 0;
+  }
+
+  /**
+   * Associates the value to the key, returns the previous value or null
+   */
+  @SuppressWarnings("unchecked")
+  public V put(int key, V value) {
+    Objects.requireNonNull(value, "Null values are not allowed");
+
+    int mask = keys.length - 1;
+    for (int slot = Hashing.mix(key) & mask; ; slot = (slot + 1) & mask) {
+      if (values[slot] == null) {
+        keys[slot] = key;
+        values[slot] = value;
+
+        if (++size > resizeAt) {
+          rehash(keys.length << 1);
+        }
+        return null;
+      }
+      if (keys[slot] == key) {
+        V previous = (V) values[slot];
+        values[slot] = value;
+        return previous;
+      }
+    }
+  }
+
+  /**
+   * Value of the key, computed and stored when absent, with a single probe sequence when present
+   */
+  @SuppressWarnings("unchecked")
+  public V computeIfAbsent(int key, IntFunction<? extends V> mappingFunction) {
+    int slot = slot(key);
+    if (slot >= 0) {
+      return (V) values[slot];
+    }
+
+    V value = mappingFunction.apply(key);
+    if (value != null) {
+      put(key, value);
+    }
+    return value;
+  }
+
+  /**
+   * Removes the key, returns its value or null
+   */
+  @SuppressWarnings("unchecked")
+  public V remove(int key) {
+    int slot = slot(key);
+    if (slot < 0) {
+      return null;
+    }
+
+    V removed = (V) values[slot];
+    shiftBack(slot);
+    size--;
+    return removed;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  public void clear() {
+    Arrays.fill(values, null);
+    size = 0;
+  }
+
+  @SuppressWarnings("unchecked")
+  public void forEach(IntObjectConsumer<? super V> action) {
+    for (int slot = 0; slot < keys.length; slot++) {
+      if (values[slot] != null) {
+        action.accept(keys[slot], (V) values[slot]);
+      }
+    }
+  }
+
+  /**
+   * Iterator over the keys, the map must not be modified while iterating
+   */
+  public PrimitiveIterator.OfInt keyIterator() {
+    return new PrimitiveIterator.OfInt() {
+
+      @Override
+      public boolean hasNext() {
+        while (next < values.length && values[next] == null) {
+          next++;
+        }
+        return next < values.length;
+      }
+
+      @Override
+      public int nextInt() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return keys[next++];
+      }
+
+      private int next;
+    };
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder builder = new StringBuilder("{");
+
+    forEach((key, value) -> builder.append(builder.length() > 1 ? ", " : "").append(key).append('=').append(value));
+    return builder.append('}').toString();
+  }
+
+  private int slot(int key) {
+    int mask = keys.length - 1;
+
+    for (int slot = Hashing.mix(key) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+    }
+    return -1;
+  }
+
+  private void shiftBack(int hole) {
+    int mask = keys.length - 1;
+
+    for (int slot = (hole + 1) & mask; values[slot] != null; slot = (slot + 1) & mask) {
+      int home = Hashing.mix(keys[slot]) & mask;
+
+      if (Hashing.canShift(home, hole, slot)) {
+        keys[hole] = keys[slot];
+        values[hole] = values[slot];
+        hole = slot;
+      }
+    }
+    values[hole] = null;
+  }
+
+  private void rehash(int tableSize) {
+    if (tableSize > Hashing.MAX_CAPACITY) {
+      throw new IllegalStateException("The map is full");
+    }
+
+    int[] oldKeys = keys;
+    Object[] oldValues = values;
+    int mask = tableSize - 1;
+
+    keys = new int[tableSize];
+    values = new Object[tableSize];
+    resizeAt = (int) (tableSize * loadFactor);
+
+    for (int i = 0; i < oldKeys.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = Hashing.mix(oldKeys[i]) & mask;
+
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private final float loadFactor;
+  private int[] keys;
+  private Object[] values;
+  private int size;
+  private int resizeAt;
+}
@@ -0,0 +1,10 @@
+package org.leo.core.collections.primitive;
+
+/**
+ * Action on the entries of a LongObjectHashMap, the key is not boxed
+ */
+@FunctionalInterface
+public interface LongObjectConsumer<V> {
+
+  void accept(long key, V value);
+}
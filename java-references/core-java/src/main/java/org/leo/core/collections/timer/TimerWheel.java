@@ -0,0 +1,247 @@
+package org.leo.core.collections.timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel : millions of timeouts scheduled and cancelled in O(1)
+ *
+ * A DelayQueue (or a PriorityQueue of deadlines) keeps the timeouts sorted : O(log n) to schedule, and O(n) to cancel since
+ * remove(Object) scans the heap, while most timeouts (requests, sessions, retries) are cancelled before they fire
+ * A wheel does not sort : time is cut in ticks, a timeout goes to the bucket of its deadline tick, a doubly linked list,
+ * so scheduling is a link and cancelling an unlink, and advancing the clock empties the buckets of the elapsed ticks
+ *
+ * One wheel of 64 buckets covers 64 ticks, so the wheels are stacked : level 0 has one bucket per tick, level 1 one per 64 ticks,
+ * level 2 one per 64^2 ticks... 6 levels cover 2^36 ticks (2 years with 1 ms ticks, later deadlines wait at the top level)
+ * A timeout goes to the lowest level able to hold its delay, when the clock reaches the bucket of a higher level its timeouts
+ * cascade down to the level matching what is left of their delay, to fire from level 0 at their tick
+ * advance visits at most 64 buckets per level whatever the time elapsed, plus the timeouts it moves or fires
+ *
+ * The precision is the tick : a timeout never fires before its delay, it fires at the first advance made after its deadline rounded up
+ * to a tick, the timeouts of a same tick fire in no particular order
+ * It is not thread safe, one thread owns it (an event loop that schedules, cancels and calls advance), other threads can hand it
+ * their timeouts through a queue (an MpscRingBuffer for instance)
+ */
+public class TimerWheel<T> {
+
+  private static final int BUCKET_BITS = 6;
+
+  private static final int BUCKETS = 1 << BUCKET_BITS;
+
+  private static final int BUCKET_MASK = BUCKETS - 1;
+
+  private static final int LEVELS = 6;
+
+  /** Number of ticks covered by all the levels */
+  private static final long SPAN = 1L << (BUCKET_BITS * LEVELS);
+
+  public TimerWheel(long tickDuration, TimeUnit unit) {
+    this(tickDuration, unit, System::nanoTime);
+  }
+
+  /**
+   * @param clock source of the time in nanoseconds, System::nanoTime by default
+   */
+  @SuppressWarnings("unchecked")
+  public TimerWheel(long tickDuration, TimeUnit unit, LongSupplier clock) {
+    this.tickNanos = unit.toNanos(tickDuration);
+    if (tickNanos <= 0) {
+      throw new IllegalArgumentException("The tick must last at least 1 ns : " + tickDuration + " " + unit);
+    }
+
+    this.clock = clock;
+    this.startNanos = clock.getAsLong();
+    this.buckets = (Timeout<T>[][]) new Timeout<?>[LEVELS][BUCKETS];
+    for (Timeout<T>[] level : buckets) {
+      for (int i = 0; i < BUCKETS; i++) {
+        level[i] = new Timeout<>(this, null, 0);
+      }
+    }
+  }
+
+  /**
+   * A scheduled task, node of the list of its bucket
+   */
+  public static final class Timeout<T> {
+
+    private Timeout(TimerWheel<T> wheel, T task, long deadline) {
+      this.wheel = wheel;
+      this.task = task;
+      this.deadline = deadline;
+      // alone in its list : the sentinels of the buckets stay like this when empty
+      this.previous = this;
+      this.next = this;
+    }
+
+    public T task() {
+      return task;
+    }
+
+    public boolean isPending() {
+      return state == PENDING;
+    }
+
+    public boolean isExpired() {
+      return state == EXPIRED;
+    }
+
+    public boolean isCancelled() {
+      return state == CANCELLED;
+    }
+
+    /**
+     * Same as wheel.cancel(this)
+     */
+    public boolean cancel() {
+      return wheel.cancel(this);
+    }
+
+    private static final int PENDING = 0;
+    private static final int EXPIRED = 1;
+    private static final int CANCELLED = 2;
+
+    private final TimerWheel<T> wheel;
+    private final T task;
+    private final long deadline;
+    private Timeout<T> previous;
+    private Timeout<T> next;
+    private int state;
+  }
+
+  /**
+   * Schedules the task to fire after the delay, O(1), a delay of 0 or less fires at the next tick
+   */
+  public Timeout<T> schedule(T task, long delay, TimeUnit unit) {
+    long elapsed = clock.getAsLong() - startNanos + Math.max(unit.toNanos(delay), 0);
+    long deadline = Math.max(ceilDiv(elapsed, tickNanos), currentTick + 1);
+    Timeout<T> timeout = new Timeout<>(this, task, deadline);
+
+    link(timeout);
+    size++;
+    return timeout;
+  }
+
+  /**
+   * Cancels a pending timeout, O(1)
+   *
+   * @return false when the timeout already fired, was already cancelled or belongs to another wheel
+   */
+  public boolean cancel(Timeout<T> timeout) {
+    if (timeout.wheel != this || timeout.state != Timeout.PENDING) {
+      return false;
+    }
+
+    unlink(timeout);
+    timeout.state = Timeout.CANCELLED;
+    size--;
+    return true;
+  }
+
+  /**
+   * Moves the wheel to the current time and passes the tasks whose deadline passed to the consumer
+   * The consumer may schedule and cancel timeouts
+   *
+   * @return the number of tasks fired
+   */
+  public int advance(Consumer<? super T> consumer) {
+    long now = Math.max((clock.getAsLong() - startNanos) / tickNanos, 0);
+    if (now <= currentTick) {
+      return 0;
+    }
+
+    long previous = currentTick;
+    currentTick = now;
+
+    // the fired timeouts are chained through next and handed to the consumer once the wheel is consistent again
+    Timeout<T> expired = null;
+    for (int level = 0; level < LEVELS; level++) {
+      int shift = level * BUCKET_BITS;
+      long previousLevelTick = previous >>> shift;
+      long levelTick = now >>> shift;
+
+      if (previousLevelTick == levelTick) {
+        break;
+      }
+
+      long steps = Math.min(levelTick - previousLevelTick, BUCKETS);
+      for (long step = 1; step <= steps; step++) {
+        Timeout<T> sentinel = buckets[level][(int) ((previousLevelTick + step) & BUCKET_MASK)];
+        Timeout<T> timeout = sentinel.next;
+
+        sentinel.previous = sentinel;
+        sentinel.next = sentinel;
+        while (timeout != sentinel) {
+          Timeout<T> following = timeout.next;
+
+          if (timeout.deadline <= now) {
+            timeout.state = Timeout.EXPIRED;
+            timeout.previous = null;
+            timeout.next = expired;
+            expired = timeout;
+            size--;
+          } else {
+            link(timeout);
+          }
+          timeout = following;
+        }
+      }
+    }
+
+    int fired = 0;
+    while (expired != null) {
+      Timeout<T> following = expired.next;
+
+      expired.next = null;
+      consumer.accept(expired.task);
+      fired++;
+      expired = following;
+    }
+    return fired;
+  }
+
+  /**
+   * Number of pending timeouts
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  private static long ceilDiv(long x, long y) {
+    return -Math.floorDiv(-x, y);
+  }
+
+  /**
+   * Links the timeout to the bucket of its deadline, at the lowest level covering the ticks left until then
+   */
+  private void link(Timeout<T> timeout) {
+    long delta = timeout.deadline - currentTick;
+    // beyond the span of the wheels : waits in the last bucket reachable, to cascade again from there
+    long placement = delta < SPAN ? timeout.deadline : currentTick + SPAN - 1;
+    int level = (63 - Long.numberOfLeadingZeros(Math.max(placement - currentTick, 1))) / BUCKET_BITS;
+    Timeout<T> sentinel = buckets[level][(int) ((placement >>> (level * BUCKET_BITS)) & BUCKET_MASK)];
+
+    timeout.previous = sentinel.previous;
+    timeout.next = sentinel;
+    sentinel.previous.next = timeout;
+    sentinel.previous = timeout;
+  }
+
+  private void unlink(Timeout<T> timeout) {
+    timeout.previous.next = timeout.next;
+    timeout.next.previous = timeout.previous;
+    timeout.previous = null;
+    timeout.next = null;
+  }
+
+  private final long tickNanos;
+  private final LongSupplier clock;
+  private final long startNanos;
+  private final Timeout<T>[][] buckets;
+  private long currentTick;
+  private int size;
+}
@@ -0,0 +1,242 @@
+package org.leo.core.columnar;
+
+/**
+ * Filter, projection and aggregation loops over primitive columns, the building blocks of ProductTable
+ *
+ * A stream over objects calls a lambda per element, boxes every float it maps (a Float per price with map(p -> p.price))
+ * and reads fields of objects scattered in the heap. These loops read one contiguous array with a counted int loop :
+ * no call, no allocation, the next values are already in the cache line, and the JIT compiler (C2 superword) turns
+ * the simple ones into SIMD instructions
+ * - filters are branch free : the row is always written to the selection and the count only moves when the predicate holds,
+ *   a random predicate costs no mispredicted branch (half of them at a selectivity of 50 %)
+ * - sums keep 4 independent accumulators : C2 does not vectorize a float reduction (it would change the order of the additions),
+ *   4 accumulators let the processor run 4 additions at a time instead of waiting for the previous one. They are doubles,
+ *   a float sum of millions of prices loses its last digits
+ * - min / max use a conditional expression C2 compiles to minss / maxss (or to a vector min on recent JVMs)
+ * - the group by adds into an array indexed by the group code, a scatter the JIT does not vectorize, but without a HashMap nor a boxed key
+ *
+ * The selections are arrays of row indexes, at least as long as the columns they filter
+ */
+public final class ColumnKernels {
+
+  private ColumnKernels() {
+  }
+
+  /**
+   * Rows of the first size values of the column greater than the threshold, written to selection
+   *
+   * @return the number of rows selected
+   */
+  public static int filterGreaterThan(float[] column, int size, float threshold, int[] selection) {
+    int count = 0;
+
+    for (int i = 0; i < size; i++) {
+      selection[count] = i;
+      count += column[i] > threshold ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * Rows of the first size values of the column lower than the threshold, written to selection
+   *
+   * @return the number of rows selected
+   */
+  public static int filterLessThan(float[] column, int size, float threshold, int[] selection) {
+    int count = 0;
+
+    for (int i = 0; i < size; i++) {
+      selection[count] = i;
+      count += column[i] < threshold ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * Projection : the values of the selected rows, in the order of the selection
+   */
+  public static float[] gather(float[] column, int[] selection, int count) {
+    float[] values = new float[count];
+
+    for (int i = 0; i < count; i++) {
+      values[i] = column[selection[i]];
+    }
+    return values;
+  }
+
+  public static double sum(float[] column, int size) {
+    double sum0 = 0;
+    double sum1 = 0;
+    double sum2 = 0;
+    double sum3 = 0;
+    int i = 0;
+
+    for (; i + 3 < size; i += 4) {
+      sum0 += column[i];
+      sum1 += column[i + 1];
+      sum2 += column[i + 2];
+      sum3 += column[i + 3];
+    }
+    for (; i < size; i++) {
+      sum0 += column[i];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+  /**
+   * Sum of the values of the selected rows
+   */
+  public static double sum(float[] column, int[] selection, int count) {
+    double sum0 = 0;
+    double sum1 = 0;
+    double sum2 = 0;
+    double sum3 = 0;
+    int i = 0;
+
+    for (; i + 3 < count; i += 4) {
+      sum0 += column[selection[i]];
+      sum1 += column[selection[i + 1]];
+      sum2 += column[selection[i + 2]];
+      sum3 += column[selection[i + 3]];
+    }
+    for (; i < count; i++) {
+      sum0 += column[selection[i]];
+    }
+    return (sum0 + sum1) + (sum2 + sum3);
+  }
+
+  /**
+   * Sum of the values greater than the threshold, filter and sum fused in one pass without a selection
+   */
+  public static double sumGreaterThan(float[] column, int size, float threshold) {
+    double sum0 = 0;
+    double sum1 = 0;
+    int i = 0;
+
+    // a select instead of a branch : the value or 0
+    for (; i + 1 < size; i += 2) {
+      float value0 = column[i];
+      float value1 = column[i + 1];
+      sum0 += value0 > threshold ? value0 : 0f;
+      sum1 += value1 > threshold ? value1 : 0f;
+    }
+    for (; i < size; i++) {
+      sum0 += column[i] > threshold ? column[i] : 0f;
+    }
+    return sum0 + sum1;
+  }
+
+  /**
+   * Lowest of the first size values, NaN when size is 0 or when they are all NaN (the NaN values of the column are ignored)
+   */
+  public static float min(float[] column, int size) {
+    if (size == 0) {
+      return Float.NaN;
+    }
+
+    float min0 = Float.POSITIVE_INFINITY;
+    float min1 = Float.POSITIVE_INFINITY;
+    int i = 0;
+
+    for (; i + 1 < size; i += 2) {
+      min0 = column[i] < min0 ? column[i] : min0;
+      min1 = column[i + 1] < min1 ? column[i + 1] : min1;
+    }
+    for (; i < size; i++) {
+      min0 = column[i] < min0 ? column[i] : min0;
+    }
+    return nanIfNoValue(column, size, min0 < min1 ? min0 : min1, Float.POSITIVE_INFINITY);
+  }
+
+  /**
+   * Highest of the first size values, NaN when size is 0 or when they are all NaN (the NaN values of the column are ignored)
+   */
+  public static float max(float[] column, int size) {
+    if (size == 0) {
+      return Float.NaN;
+    }
+
+    float max0 = Float.NEGATIVE_INFINITY;
+    float max1 = Float.NEGATIVE_INFINITY;
+    int i = 0;
+
+    for (; i + 1 < size; i += 2) {
+      max0 = column[i] > max0 ? column[i] : max0;
+      max1 = column[i + 1] > max1 ? column[i + 1] : max1;
+    }
+    for (; i < size; i++) {
+      max0 = column[i] > max0 ? column[i] : max0;
+    }
+    return nanIfNoValue(column, size, max0 > max1 ? max0 : max1, Float.NEGATIVE_INFINITY);
+  }
+
+  /**
+   * A min / max still at the infinity it started from is either a real infinity or no value at all (only NaN) :
+   * the rare case pays a second pass, the loops above stay branch free
+   */
+  private static float nanIfNoValue(float[] column, int size, float result, float start) {
+    if (result != start) {
+      return result;
+    }
+
+    for (int i = 0; i < size; i++) {
+      if (!Float.isNaN(column[i])) {
+        return result;
+      }
+    }
+    return Float.NaN;
+  }
+
+  /**
+   * Row of the first highest value, -1 when size is 0 or when the values are all NaN (no row holds a highest value)
+   * Two passes (the max, then its first row) : the first one is the vectorizable loop, the second one stops at the row
+   */
+  public static int indexOfMax(float[] column, int size) {
+    float max = max(column, size);
+
+    for (int i = 0; i < size; i++) {
+      if (column[i] == max) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Row of the first lowest value, -1 when size is 0 or when the values are all NaN
+   */
+  public static int indexOfMin(float[] column, int size) {
+    float min = min(column, size);
+
+    for (int i = 0; i < size; i++) {
+      if (column[i] == min) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Sum of the values of each group : groups[i] is the group code of the row i, in [0, groupCount)
+   */
+  public static double[] groupSum(int[] groups, float[] column, int size, int groupCount) {
+    double[] sums = new double[groupCount];
+
+    for (int i = 0; i < size; i++) {
+      sums[groups[i]] += column[i];
+    }
+    return sums;
+  }
+
+  /**
+   * Number of rows of each group : groups[i] is the group code of the row i, in [0, groupCount)
+   */
+  public static int[] groupCount(int[] groups, int size, int groupCount) {
+    int[] counts = new int[groupCount];
+
+    for (int i = 0; i < size; i++) {
+      counts[groups[i]]++;
+    }
+    return counts;
+  }
+}
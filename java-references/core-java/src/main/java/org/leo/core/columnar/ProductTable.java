@@ -0,0 +1,203 @@
+package org.leo.core.columnar;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The products of ReferenceFeatures8 (id, name, price) stored by column (struct of arrays) instead of a List<Product> (array of structs)
+ *
+ * One array per field : int[] ids, float[] prices, and the names dictionary encoded (int[] codes and a StringDictionary)
+ * A List<Product> is an array of references to objects each holding a header, the fields and a reference to the name :
+ * a pass over the prices reads one object per row, wherever it is in the heap, and streams box each price they map.
+ * Here the same pass reads one float[] sequentially, 4 bytes per row, and the queries run the loops of ColumnKernels :
+ * - filterPriceGreaterThan / filterPriceLessThan select rows, prices(selection) projects them
+ *   (filter(p -> p.price > 30000).map(p -> p.price) without a Float per price)
+ * - sumPrice, minPrice, maxPrice, rowOfMaxPrice (reduce(0.0f, Float::sum), max(comparator))
+ * - sumPriceByName, countByName (Collectors.groupingBy) : arrays indexed by the name code, no HashMap per row
+ *
+ * Appending is amortized O(1) (the columns double), rows are not removed. It is not thread safe
+ */
+public class ProductTable {
+
+  public ProductTable() {
+    this(16);
+  }
+
+  /**
+   * @param capacity rows before the columns grow
+   */
+  public ProductTable(int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("The capacity cannot be negative : " + capacity);
+    }
+
+    this.ids = new int[capacity];
+    this.prices = new float[capacity];
+    this.nameCodes = new int[capacity];
+  }
+
+  /**
+   * Appends a row
+   *
+   * @return its index
+   */
+  public int add(int id, String name, float price) {
+    if (size == ids.length) {
+      int capacity = Math.max(16, size * 2);
+      ids = Arrays.copyOf(ids, capacity);
+      prices = Arrays.copyOf(prices, capacity);
+      nameCodes = Arrays.copyOf(nameCodes, capacity);
+    }
+
+    ids[size] = id;
+    prices[size] = price;
+    nameCodes[size] = names.encode(name);
+    return size++;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public int id(int row) {
+    checkRow(row);
+    return ids[row];
+  }
+
+  public String name(int row) {
+    checkRow(row);
+    return names.decode(nameCodes[row]);
+  }
+
+  public float price(int row) {
+    checkRow(row);
+    return prices[row];
+  }
+
+  /**
+   * The dictionary of the names, the codes of the name column
+   */
+  public StringDictionary names() {
+    return names;
+  }
+
+  public Selection filterPriceGreaterThan(float threshold) {
+    int[] rows = new int[size];
+    return new Selection(this, rows, ColumnKernels.filterGreaterThan(prices, size, threshold, rows));
+  }
+
+  public Selection filterPriceLessThan(float threshold) {
+    int[] rows = new int[size];
+    return new Selection(this, rows, ColumnKernels.filterLessThan(prices, size, threshold, rows));
+  }
+
+  /**
+   * The prices of the selected rows
+   *
+   * @throws IllegalArgumentException when the selection was filtered from another table
+   */
+  public float[] prices(Selection selection) {
+    checkSelection(selection);
+    return ColumnKernels.gather(prices, selection.rows, selection.size);
+  }
+
+  /**
+   * The prices of all the rows, a copy
+   */
+  public float[] prices() {
+    return Arrays.copyOf(prices, size);
+  }
+
+  public double sumPrice() {
+    return ColumnKernels.sum(prices, size);
+  }
+
+  /**
+   * @throws IllegalArgumentException when the selection was filtered from another table
+   */
+  public double sumPrice(Selection selection) {
+    checkSelection(selection);
+    return ColumnKernels.sum(prices, selection.rows, selection.size);
+  }
+
+  /**
+   * Sum of the prices greater than the threshold in one pass, without materializing the selection
+   */
+  public double sumPriceGreaterThan(float threshold) {
+    return ColumnKernels.sumGreaterThan(prices, size, threshold);
+  }
+
+  /**
+   * NaN when the table is empty or every price is NaN
+   */
+  public float minPrice() {
+    return ColumnKernels.min(prices, size);
+  }
+
+  /**
+   * NaN when the table is empty or every price is NaN
+   */
+  public float maxPrice() {
+    return ColumnKernels.max(prices, size);
+  }
+
+  /**
+   * Row of the most expensive product (the first one on a tie), -1 when the table is empty or every price is NaN
+   */
+  public int rowOfMaxPrice() {
+    return ColumnKernels.indexOfMax(prices, size);
+  }
+
+  /**
+   * Sum of the prices of each name, the names in order of first appearance
+   */
+  public Map<String, Double> sumPriceByName() {
+    double[] sums = ColumnKernels.groupSum(nameCodes, prices, size, names.size());
+    Map<String, Double> byName = new LinkedHashMap<>();
+
+    for (int code = 0; code < sums.length; code++) {
+      byName.put(names.decode(code), sums[code]);
+    }
+    return byName;
+  }
+
+  /**
+   * Number of rows of each name, the names in order of first appearance
+   */
+  public Map<String, Integer> countByName() {
+    int[] counts = ColumnKernels.groupCount(nameCodes, size, names.size());
+    Map<String, Integer> byName = new LinkedHashMap<>();
+
+    for (int code = 0; code < counts.length; code++) {
+      byName.put(names.decode(code), counts[code]);
+    }
+    return byName;
+  }
+
+  @Override
+  public String toString() {
+    return "ProductTable[size=" + size + ", names=" + names.size() + "]";
+  }
+
+  /**
+   * The rows of a selection of this table stay valid, rows are never removed
+   */
+  private void checkSelection(Selection selection) {
+    if (selection.table != this) {
+      throw new IllegalArgumentException("The selection was filtered from another table : " + selection.table);
+    }
+  }
+
+  private void checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("Row : " + row + ", size : " + size);
+    }
+  }
+
+  private final StringDictionary names = new StringDictionary();
+  private int[] ids;
+  private float[] prices;
+  private int[] nameCodes;
+  private int size;
+}
@@ -0,0 +1,40 @@
+package org.leo.core.columnar;
+
+import java.util.Arrays;
+
+/**
+ * Rows of a table selected by a filter, in increasing order : an array of row indexes and their count
+ *
+ * The array is as long as the table was when filtered, the rows past size are garbage left by the branch free filter
+ * A selection only applies to the table it was filtered from, which checks it
+ */
+public final class Selection {
+
+  Selection(ProductTable table, int[] rows, int size) {
+    this.table = table;
+    this.rows = rows;
+    this.size = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * @param index in [0, size)
+   */
+  public int row(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index : " + index + ", size : " + size);
+    }
+    return rows[index];
+  }
+
+  public int[] toArray() {
+    return Arrays.copyOf(rows, size);
+  }
+
+  final ProductTable table;
+  final int[] rows;
+  final int size;
+}
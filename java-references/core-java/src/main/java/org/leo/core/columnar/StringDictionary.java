@@ -0,0 +1,56 @@
+package org.leo.core.columnar;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionary encoding of a string column : each distinct string gets a code 0, 1, 2... in order of first appearance,
+ * the column stores the int codes
+ *
+ * A column of names repeats a few distinct values : the codes take 4 bytes per row instead of a reference to a String,
+ * equality is an int comparison, and a group by name is an array indexed by code (ColumnKernels.groupSum)
+ *
+ * It is not thread safe
+ */
+public class StringDictionary {
+
+  /**
+   * Code of the string, added to the dictionary when new
+   */
+  public int encode(String value) {
+    Integer code = codes.get(value);
+
+    if (code == null) {
+      code = values.size();
+      codes.put(value, code);
+      values.add(value);
+    }
+    return code;
+  }
+
+  /**
+   * Code of the string, -1 when it is not in the dictionary
+   */
+  public int codeOf(String value) {
+    return codes.getOrDefault(value, -1);
+  }
+
+  /**
+   * @throws IndexOutOfBoundsException when the code is not in the dictionary
+   */
+  public String decode(int code) {
+    return values.get(code);
+  }
+
+  /**
+   * Number of distinct strings, the codes are in [0, size)
+   */
+  public int size() {
+    return values.size();
+  }
+
+  private final Map<String, Integer> codes = new HashMap<>();
+  private final List<String> values = new ArrayList<>();
+}
@@ -0,0 +1,63 @@
+package org.leo.core.concurrent;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Drop in replacements of the Collections.synchronized* wrappers, same shape : one static method per interface
+ *
+ * - readWriteLocked* : readers run together, writers exclude everybody, for collections read much more often than written
+ * - stamped* : copies of the elements into a StampedArrayList / StampedHashSet, the reads do not even write a reader count
+ * - striped* : the map is split in stripes locked separately, for maps written by several threads
+ *
+ * Unlike the synchronized wrappers, the iterations are snapshots : no synchronized block around the loops
+ */
+public final class ConcurrentWrappers {
+
+  private ConcurrentWrappers() {
+  }
+
+  public static <E> Collection<E> readWriteLockedCollection(Collection<E> c) {
+    return new ReadWriteLockedCollection<>(c);
+  }
+
+  public static <E> List<E> readWriteLockedList(List<E> list) {
+    return new ReadWriteLockedList<>(list);
+  }
+
+  public static <E> Set<E> readWriteLockedSet(Set<E> set) {
+    return new ReadWriteLockedSet<>(set);
+  }
+
+  /**
+   * A copy of the list, the given list is not wrapped
+   */
+  public static <E> List<E> stampedList(Collection<? extends E> c) {
+    return new StampedArrayList<>(c);
+  }
+
+  /**
+   * A copy of the set, the given set is not wrapped, null elements are not allowed
+   */
+  public static <E> Set<E> stampedSet(Collection<? extends E> c) {
+    return new StampedHashSet<>(c);
+  }
+
+  /**
+   * A striped copy of the map (one HashMap per stripe), the given map is not wrapped
+   */
+  public static <K, V> ConcurrentMap<K, V> stripedMap(Map<? extends K, ? extends V> m) {
+    StripedMap<K, V> striped = new StripedMap<>();
+
+    striped.putAll(m);
+    return striped;
+  }
+
+  public static <K, V> ConcurrentMap<K, V> stripedMap(int stripes) {
+    return new StripedMap<>(stripes, HashMap::new);
+  }
+}
@@ -0,0 +1,134 @@
+package org.leo.core.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Ring buffer queue for any number of producer and consumer threads (the bounded queue of Dmitry Vyukov)
+ *
+ * Every slot has its own sequence, telling whose turn it is : equal to s when the slot is free for the element s,
+ * to s + 1 once the element s is written, to s + capacity once it is polled (free for the element of the next lap)
+ * A producer CAS the tail when the slot of the tail is free for it, a consumer CAS the head when the slot of the head is written,
+ * the slot sequence is published after the element so a thread never sees a half done slot, and no thread ever waits for another
+ * one in the middle of an operation (unlike the consumer of MpscRingBuffer)
+ * The price : two CAS contended by all the threads of a side, use MpscRingBuffer or SpscRingBuffer when the threads allow it
+ */
+public class MpmcRingBuffer<E> extends RingBufferQueue<E> {
+
+  public MpmcRingBuffer(int capacity) {
+    this(capacity, WaitStrategy.backoff());
+  }
+
+  public MpmcRingBuffer(int capacity, WaitStrategy waitStrategy) {
+    super(capacity, waitStrategy);
+    this.sequences = new AtomicLongArray(this.capacity);
+    for (int i = 0; i < this.capacity; i++) {
+      sequences.lazySet(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(E element) {
+    checkNotNull(element);
+
+    long currentTail = reserve();
+    if (currentTail < 0) {
+      return false;
+    }
+    publish(currentTail, element);
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    while (true) {
+      long currentHead = head.get();
+      int index = index(currentHead);
+      long sequence = sequences.get(index);
+
+      if (sequence == currentHead + 1) {
+        if (head.compareAndSet(currentHead, currentHead + 1)) {
+          E element = buffer.get(index);
+
+          buffer.lazySet(index, null);
+          sequences.lazySet(index, currentHead + capacity);
+          return element;
+        }
+      } else if (sequence < currentHead + 1 && currentHead >= tail.get()) {
+        // not written and not reserved by a producer either : empty
+        return null;
+      }
+      // another consumer took it, or a producer is writing it : again
+    }
+  }
+
+  @Override
+  public E peek() {
+    while (true) {
+      long currentHead = head.get();
+      int index = index(currentHead);
+      long sequence = sequences.get(index);
+
+      if (sequence == currentHead + 1) {
+        E element = buffer.get(index);
+
+        // still the head : the element was not polled (and replaced) meanwhile
+        if (element != null && head.get() == currentHead) {
+          return element;
+        }
+      } else if (sequence < currentHead + 1 && currentHead >= tail.get()) {
+        return null;
+      }
+    }
+  }
+
+  /**
+   * Reserves and writes the slots one by one, the supplier is called right after each reservation,
+   * it must neither return null nor throw : a reserved slot left empty would block the consumers of its lap for ever
+   */
+  @Override
+  public int fill(Supplier<? extends E> supplier, int limit) {
+    int count = 0;
+
+    for (; count < limit; count++) {
+      long currentTail = reserve();
+      if (currentTail < 0) {
+        break;
+      }
+
+      E element = supplier.get();
+      checkNotNull(element);
+      publish(currentTail, element);
+    }
+    return count;
+  }
+
+  /**
+   * Reserves the slot of the tail, returns its sequence or -1 when the queue is full
+   */
+  private long reserve() {
+    while (true) {
+      long currentTail = tail.get();
+      long sequence = sequences.get(index(currentTail));
+
+      if (sequence == currentTail) {
+        if (tail.compareAndSet(currentTail, currentTail + 1)) {
+          return currentTail;
+        }
+      } else if (sequence < currentTail && currentTail - capacity >= head.get()) {
+        // the element of the previous lap is still there and not even reserved by a consumer : full
+        return -1;
+      }
+      // another producer took it, or a consumer is emptying it : again
+    }
+  }
+
+  private void publish(long sequence, E element) {
+    int index = index(sequence);
+
+    buffer.lazySet(index, element);
+    sequences.lazySet(index, sequence + 1);
+  }
+
+  private final AtomicLongArray sequences;
+}
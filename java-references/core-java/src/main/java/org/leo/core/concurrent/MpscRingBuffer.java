@@ -0,0 +1,162 @@
+package org.leo.core.concurrent;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ring buffer queue for any number of producer threads and exactly one consumer thread
+ *
+ * The producers reserve a slot by a CAS on the tail, then write the element in it, the consumer alone moves the head
+ * Between the CAS and the write the slot is reserved but still empty : the consumer, which finds it null while the tail is past it,
+ * waits for that producer instead of reporting an empty queue (elements are polled in the order of their reservation)
+ * The producers check the room left against a cached limit (head + capacity) and only read the head, which the consumer keeps writing,
+ * when they reach that limit
+ */
+public class MpscRingBuffer<E> extends RingBufferQueue<E> {
+
+  public MpscRingBuffer(int capacity) {
+    this(capacity, WaitStrategy.backoff());
+  }
+
+  public MpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+    super(capacity, waitStrategy);
+    this.producerLimit = new Sequence(this.capacity);
+  }
+
+  @Override
+  public boolean offer(E element) {
+    checkNotNull(element);
+
+    long currentTail = reserve(1);
+    if (currentTail < 0) {
+      return false;
+    }
+    buffer.lazySet(index(currentTail), element);
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    long currentHead = head.get();
+    int index = index(currentHead);
+    E element = buffer.get(index);
+
+    if (element == null) {
+      if (currentHead == tail.get()) {
+        return null;
+      }
+      element = awaitElement(index);
+    }
+    buffer.lazySet(index, null);
+    head.setOrdered(currentHead + 1);
+    return element;
+  }
+
+  @Override
+  public E peek() {
+    long currentHead = head.get();
+    int index = index(currentHead);
+    E element = buffer.get(index);
+
+    if (element == null && currentHead != tail.get()) {
+      element = awaitElement(index);
+    }
+    return element;
+  }
+
+  @Override
+  public int drain(Consumer<? super E> consumer, int limit) {
+    long currentHead = head.get();
+    long currentTail = tail.get();
+    int count = 0;
+
+    try {
+      for (; count < limit && currentHead + count < currentTail; count++) {
+        int index = index(currentHead + count);
+        E element = buffer.get(index);
+
+        if (element == null) {
+          element = awaitElement(index);
+        }
+        buffer.lazySet(index, null);
+        consumer.accept(element);
+      }
+    } finally {
+      head.setOrdered(currentHead + count);
+    }
+    return count;
+  }
+
+  /**
+   * Reserves up to limit slots with a single CAS, the supplier must neither return null nor throw : a reserved slot
+   * left empty would block the consumer for ever
+   */
+  @Override
+  public int fill(Supplier<? extends E> supplier, int limit) {
+    if (limit <= 0) {
+      return 0;
+    }
+
+    long currentTail;
+    int count;
+
+    do {
+      currentTail = tail.get();
+      long available = producerLimit.get() - currentTail;
+
+      if (available <= 0) {
+        long limitNow = head.get() + capacity;
+        available = limitNow - currentTail;
+        if (available <= 0) {
+          return 0;
+        }
+        producerLimit.setOrdered(limitNow);
+      }
+      count = (int) Math.min(available, limit);
+    } while (!tail.compareAndSet(currentTail, currentTail + count));
+
+    for (int i = 0; i < count; i++) {
+      E element = supplier.get();
+      checkNotNull(element);
+      buffer.lazySet(index(currentTail + i), element);
+    }
+    return count;
+  }
+
+  /**
+   * Reserves slots, returns the sequence of the first one or -1 when the queue is full
+   */
+  private long reserve(int count) {
+    long limit = producerLimit.get();
+    long currentTail;
+
+    do {
+      currentTail = tail.get();
+      if (currentTail + count > limit) {
+        // the cached limit may be stale, the real one depends on how far the consumer went
+        limit = head.get() + capacity;
+        if (currentTail + count > limit) {
+          return -1;
+        }
+        producerLimit.setOrdered(limit);
+      }
+    } while (!tail.compareAndSet(currentTail, currentTail + count));
+
+    return currentTail;
+  }
+
+  /**
+   * The slot is reserved by a producer that has not written it yet, it will shortly
+   */
+  private E awaitElement(int index) {
+    E element;
+
+    while ((element = buffer.get(index)) == null) {
+      Thread.yield();
+    }
+    return element;
+  }
+
+  /** The producers may fill the slots up to this sequence, excluded */
+  private final Sequence producerLimit;
+}
@@ -0,0 +1,238 @@
+package org.leo.core.concurrent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe view of a collection where the reads share a ReentrantReadWriteLock and the writes take it exclusively
+ *
+ * Collections.synchronizedCollection puts every call behind one monitor, two threads calling contains wait for each other,
+ * here any number of readers run together and only a writer excludes them : the right trade for collections read much more
+ * often than written, for write heavy ones the read/write lock only adds bookkeeping to a plain lock
+ *
+ * The iterators work on a snapshot copied under the read lock : no ConcurrentModificationException and no need to lock the
+ * collection around a loop as with the synchronized wrappers, at the price of a copy per iteration and of not seeing the
+ * writes made during the loop
+ * forEach runs the action under the read lock on the live collection (no copy), the action must not write to it
+ *
+ * All the accesses must go through the wrapper, the wrapped collection must not be used directly anymore
+ */
+public class ReadWriteLockedCollection<E> implements Collection<E> {
+
+  public ReadWriteLockedCollection(Collection<E> delegate) {
+    this(delegate, false);
+  }
+
+  /**
+   * @param fair whether the lock is given in arrival order, a fair lock never starves the writers but costs throughput
+   */
+  public ReadWriteLockedCollection(Collection<E> delegate, boolean fair) {
+    this.delegate = Objects.requireNonNull(delegate);
+    this.lock = new ReentrantReadWriteLock(fair);
+  }
+
+  @Override
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return delegate.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    lock.readLock().lock();
+    try {
+      return delegate.isEmpty();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    lock.readLock().lock();
+    try {
+      return delegate.contains(o);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean containsAll(Collection<?> c) {
+    lock.readLock().lock();
+    try {
+      return delegate.containsAll(c);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    lock.readLock().lock();
+    try {
+      return delegate.toArray();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public <T> T[] toArray(T[] a) {
+    lock.readLock().lock();
+    try {
+      return delegate.toArray(a);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Iterator over a snapshot, its remove removes the last returned element from the collection
+   */
+  @Override
+  public Iterator<E> iterator() {
+    Iterator<E> snapshot = snapshot().iterator();
+
+    return new Iterator<E>() {
+
+      @Override
+      public boolean hasNext() {
+        return snapshot.hasNext();
+      }
+
+      @Override
+      public E next() {
+        last = snapshot.next();
+        removable = true;
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (!removable) {
+          throw new IllegalStateException();
+        }
+        removable = false;
+        ReadWriteLockedCollection.this.remove(last);
+      }
+
+      private E last;
+      private boolean removable;
+    };
+  }
+
+  @Override
+  public void forEach(Consumer<? super E> action) {
+    lock.readLock().lock();
+    try {
+      delegate.forEach(action);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean add(E e) {
+    lock.writeLock().lock();
+    try {
+      return delegate.add(e);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    lock.writeLock().lock();
+    try {
+      return delegate.remove(o);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    lock.writeLock().lock();
+    try {
+      return delegate.addAll(c);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    lock.writeLock().lock();
+    try {
+      return delegate.removeAll(c);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    lock.writeLock().lock();
+    try {
+      return delegate.retainAll(c);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean removeIf(Predicate<? super E> filter) {
+    lock.writeLock().lock();
+    try {
+      return delegate.removeIf(filter);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void clear() {
+    lock.writeLock().lock();
+    try {
+      delegate.clear();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    lock.readLock().lock();
+    try {
+      return delegate.toString();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Copy of the elements, taken under the read lock
+   */
+  protected ArrayList<E> snapshot() {
+    lock.readLock().lock();
+    try {
+      return new ArrayList<>(delegate);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  protected final Collection<E> delegate;
+  protected final ReentrantReadWriteLock lock;
+}
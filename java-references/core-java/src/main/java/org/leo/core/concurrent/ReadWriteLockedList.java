@@ -0,0 +1,163 @@
+package org.leo.core.concurrent;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.function.UnaryOperator;
+
+/**
+ * List version of ReadWriteLockedCollection : get, indexOf... share the read lock, set, add, remove... take the write lock
+ *
+ * The iterators are read only snapshots (removing through them by value would not say which occurrence to remove),
+ * subList is a snapshot too, not a view of the list
+ */
+public class ReadWriteLockedList<E> extends ReadWriteLockedCollection<E> implements List<E> {
+
+  public ReadWriteLockedList(List<E> delegate) {
+    super(delegate);
+    this.list = delegate;
+  }
+
+  public ReadWriteLockedList(List<E> delegate, boolean fair) {
+    super(delegate, fair);
+    this.list = delegate;
+  }
+
+  @Override
+  public E get(int index) {
+    lock.readLock().lock();
+    try {
+      return list.get(index);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    lock.readLock().lock();
+    try {
+      return list.indexOf(o);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int lastIndexOf(Object o) {
+    lock.readLock().lock();
+    try {
+      return list.lastIndexOf(o);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public E set(int index, E element) {
+    lock.writeLock().lock();
+    try {
+      return list.set(index, element);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void add(int index, E element) {
+    lock.writeLock().lock();
+    try {
+      list.add(index, element);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public E remove(int index) {
+    lock.writeLock().lock();
+    try {
+      return list.remove(index);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean addAll(int index, Collection<? extends E> c) {
+    lock.writeLock().lock();
+    try {
+      return list.addAll(index, c);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void replaceAll(UnaryOperator<E> operator) {
+    lock.writeLock().lock();
+    try {
+      list.replaceAll(operator);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public void sort(Comparator<? super E> c) {
+    lock.writeLock().lock();
+    try {
+      list.sort(c);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return listIterator(0);
+  }
+
+  @Override
+  public ListIterator<E> listIterator() {
+    return listIterator(0);
+  }
+
+  @Override
+  public ListIterator<E> listIterator(int index) {
+    return Collections.unmodifiableList(snapshot()).listIterator(index);
+  }
+
+  @Override
+  public List<E> subList(int fromIndex, int toIndex) {
+    return Collections.unmodifiableList(snapshot().subList(fromIndex, toIndex));
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    lock.readLock().lock();
+    try {
+      return list.equals(o);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    lock.readLock().lock();
+    try {
+      return list.hashCode();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private final List<E> list;
+}
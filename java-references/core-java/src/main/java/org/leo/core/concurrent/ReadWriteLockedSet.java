@@ -0,0 +1,40 @@
+package org.leo.core.concurrent;
+
+import java.util.Set;
+
+/**
+ * Set version of ReadWriteLockedCollection, contains shares the read lock, add and remove take the write lock
+ */
+public class ReadWriteLockedSet<E> extends ReadWriteLockedCollection<E> implements Set<E> {
+
+  public ReadWriteLockedSet(Set<E> delegate) {
+    super(delegate);
+  }
+
+  public ReadWriteLockedSet(Set<E> delegate, boolean fair) {
+    super(delegate, fair);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) {
+      return true;
+    }
+    lock.readLock().lock();
+    try {
+      return delegate.equals(o);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  @Override
+  public int hashCode() {
+    lock.readLock().lock();
+    try {
+      return delegate.hashCode();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+}
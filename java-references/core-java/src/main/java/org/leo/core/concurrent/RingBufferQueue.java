@@ -0,0 +1,166 @@
+package org.leo.core.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded lock free queue over an array used as a ring : the element i goes to the slot i & (capacity - 1)
+ *
+ * ArrayBlockingQueue takes one lock for offer and poll, LinkedBlockingQueue one lock per end and a node per element,
+ * ConcurrentLinkedQueue is lock free but allocates a node per element and is unbounded
+ * Here the producers and the consumers only move two counters (tail and head, each on its own cache line, see Sequence)
+ * and nothing is allocated per element, the variants only differ by what they know about their threads :
+ * - SpscRingBuffer : one producer thread and one consumer thread, no CAS at all
+ * - MpscRingBuffer : any number of producers, one consumer (the usual event loop / actor mailbox)
+ * - MpmcRingBuffer : any number of both
+ * Using a variant with more threads than it allows corrupts it, nothing checks it
+ *
+ * Beyond Queue :
+ * - drain and fill move a batch of elements for a single write of the counter, the way to reach the highest rates
+ * - put and take wait with the WaitStrategy of the queue (spin, yield, park or a backoff of the three) instead of a lock and a condition
+ *
+ * Null elements are not allowed, there is no iterator (a lock free ring cannot be walked while it moves), hence no contains, remove(Object)...
+ */
+public abstract class RingBufferQueue<E> extends AbstractQueue<E> {
+
+  private static final int MAXIMUM_CAPACITY = 1 << 30;
+
+  /**
+   * @param capacity rounded up to a power of two
+   */
+  RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+    if (capacity < 2 || capacity > MAXIMUM_CAPACITY) {
+      throw new IllegalArgumentException("The capacity must be in [2, 2^30] : " + capacity);
+    }
+    if (waitStrategy == null) {
+      throw new NullPointerException("waitStrategy");
+    }
+
+    this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+    this.mask = this.capacity - 1;
+    this.buffer = new AtomicReferenceArray<>(this.capacity);
+    this.waitStrategy = waitStrategy;
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  /**
+   * Exact when the queue is still, an estimate while the other threads move it
+   */
+  @Override
+  public int size() {
+    long after = head.get();
+    long before;
+    long currentTail;
+
+    // head read before and after tail : the difference belongs to one instant
+    do {
+      before = after;
+      currentTail = tail.get();
+      after = head.get();
+    } while (before != after);
+
+    return (int) Math.max(0, Math.min(currentTail - after, capacity));
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return head.get() == tail.get();
+  }
+
+  /**
+   * Offers the element, waiting with the wait strategy as long as the queue is full
+   */
+  public void put(E element) throws InterruptedException {
+    for (int attempts = 0; !offer(element); attempts++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      waitStrategy.idle(attempts);
+    }
+  }
+
+  /**
+   * Polls an element, waiting with the wait strategy as long as the queue is empty
+   */
+  public E take() throws InterruptedException {
+    E element;
+
+    for (int attempts = 0; (element = poll()) == null; attempts++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException();
+      }
+      waitStrategy.idle(attempts);
+    }
+    return element;
+  }
+
+  /**
+   * Polls up to limit elements and passes them to the consumer
+   *
+   * @return the number of elements drained, 0 when the queue was empty
+   */
+  public int drain(Consumer<? super E> consumer, int limit) {
+    int count = 0;
+
+    for (E element; count < limit && (element = poll()) != null; count++) {
+      consumer.accept(element);
+    }
+    return count;
+  }
+
+  public int drain(Consumer<? super E> consumer) {
+    return drain(consumer, capacity);
+  }
+
+  /**
+   * Offers up to limit elements taken from the supplier, the supplier is only called for a slot already reserved
+   * (no element is taken then dropped because the queue was full), it must not return null
+   *
+   * @return the number of elements added, 0 when the queue was full
+   */
+  public abstract int fill(Supplier<? extends E> supplier, int limit);
+
+  public int fill(Supplier<? extends E> supplier) {
+    return fill(supplier, capacity);
+  }
+
+  /**
+   * Not supported
+   */
+  @Override
+  public Iterator<E> iterator() {
+    throw new UnsupportedOperationException("A ring buffer queue cannot be iterated");
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "[size=" + size() + ", capacity=" + capacity + "]";
+  }
+
+  final int index(long sequence) {
+    return (int) sequence & mask;
+  }
+
+  static void checkNotNull(Object element) {
+    if (element == null) {
+      throw new NullPointerException("Null elements are not allowed");
+    }
+  }
+
+  final int capacity;
+  final int mask;
+  final AtomicReferenceArray<E> buffer;
+  final WaitStrategy waitStrategy;
+
+  /** Sequence of the next element to poll */
+  final Sequence head = new Sequence();
+
+  /** Sequence of the next element to offer */
+  final Sequence tail = new Sequence();
+}
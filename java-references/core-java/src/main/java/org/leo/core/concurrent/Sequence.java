@@ -0,0 +1,64 @@
+package org.leo.core.concurrent;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A counter alone on its cache line(s), the indexes of the ring buffers
+ *
+ * Two counters written by two threads (the producer and the consumer index) on the same 64 bytes line of cache slow each other
+ * down as if they were the same variable : every write invalidates the line in the cache of the other core (false sharing)
+ * 7 longs on each side keep the value 56 bytes away from any other field, whatever the objects around it in the heap
+ * The padding is spread over a class hierarchy because the JVM is free to reorder the fields of one class, not those of a superclass
+ * (@sun.misc.Contended does the same job but needs -XX:-RestrictContended outside the JDK)
+ */
+final class Sequence extends SequenceRightPadding {
+
+  private static final AtomicLongFieldUpdater<SequenceValue> VALUE = AtomicLongFieldUpdater.newUpdater(SequenceValue.class, "value");
+
+  Sequence() {
+  }
+
+  Sequence(long initialValue) {
+    this.value = initialValue;
+  }
+
+  long get() {
+    return value;
+  }
+
+  void set(long newValue) {
+    value = newValue;
+  }
+
+  /**
+   * Ordered write (lazySet) : visible to the other threads after every write made before it, but without the full fence of a volatile
+   * write, enough for a counter written by a single thread and much cheaper
+   */
+  void setOrdered(long newValue) {
+    VALUE.lazySet(this, newValue);
+  }
+
+  boolean compareAndSet(long expected, long newValue) {
+    return VALUE.compareAndSet(this, expected, newValue);
+  }
+
+  @Override
+  public String toString() {
+    return Long.toString(value);
+  }
+}
+
+abstract class SequenceLeftPadding {
+
+  protected long p01, p02, p03, p04, p05, p06, p07;
+}
+
+abstract class SequenceValue extends SequenceLeftPadding {
+
+  protected volatile long value;
+}
+
+abstract class SequenceRightPadding extends SequenceValue {
+
+  protected long p11, p12, p13, p14, p15, p16, p17;
+}
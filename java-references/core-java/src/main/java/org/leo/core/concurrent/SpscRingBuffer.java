@@ -0,0 +1,101 @@
+package org.leo.core.concurrent;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Ring buffer queue for exactly one producer thread and one consumer thread
+ *
+ * Each side is the only writer of its counter, so no CAS : an ordered write (lazySet) publishes the counter
+ * The producer does not even read the consumer counter, a slot is free when it is null (the consumer empties it before moving on),
+ * so the two threads only meet on the slots they hand over, not on the counters
+ * drain and fill publish their counter once for the whole batch
+ */
+public class SpscRingBuffer<E> extends RingBufferQueue<E> {
+
+  public SpscRingBuffer(int capacity) {
+    this(capacity, WaitStrategy.backoff());
+  }
+
+  public SpscRingBuffer(int capacity, WaitStrategy waitStrategy) {
+    super(capacity, waitStrategy);
+  }
+
+  @Override
+  public boolean offer(E element) {
+    checkNotNull(element);
+
+    long currentTail = tail.get();
+    int index = index(currentTail);
+
+    if (buffer.get(index) != null) {
+      return false;
+    }
+    buffer.lazySet(index, element);
+    tail.setOrdered(currentTail + 1);
+    return true;
+  }
+
+  @Override
+  public E poll() {
+    long currentHead = head.get();
+    int index = index(currentHead);
+    E element = buffer.get(index);
+
+    if (element == null) {
+      return null;
+    }
+    buffer.lazySet(index, null);
+    head.setOrdered(currentHead + 1);
+    return element;
+  }
+
+  @Override
+  public E peek() {
+    return buffer.get(index(head.get()));
+  }
+
+  @Override
+  public int drain(Consumer<? super E> consumer, int limit) {
+    long currentHead = head.get();
+    int count = 0;
+
+    try {
+      for (; count < limit; count++) {
+        int index = index(currentHead + count);
+        E element = buffer.get(index);
+
+        if (element == null) {
+          break;
+        }
+        buffer.lazySet(index, null);
+        consumer.accept(element);
+      }
+    } finally {
+      head.setOrdered(currentHead + count);
+    }
+    return count;
+  }
+
+  @Override
+  public int fill(Supplier<? extends E> supplier, int limit) {
+    long currentTail = tail.get();
+    int count = 0;
+
+    try {
+      for (; count < limit; count++) {
+        int index = index(currentTail + count);
+
+        if (buffer.get(index) != null) {
+          break;
+        }
+        E element = supplier.get();
+        checkNotNull(element);
+        buffer.lazySet(index, element);
+      }
+    } finally {
+      tail.setOrdered(currentTail + count);
+    }
+    return count;
+  }
+}
@@ -0,0 +1,346 @@
+package org.leo.core.concurrent;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe array list for read mostly use, the reads are optimistic : they take no lock at all
+ *
+ * Even a read lock is a write to shared memory (the count of readers), with many cores reading the same list that counter
+ * bounces between their caches and the reads stop scaling, it is the limit of ReadWriteLockedList
+ * A StampedLock read is optimistic : tryOptimisticRead returns a stamp without writing anything, the reader reads the fields,
+ * then validate tells whether a writer took the lock in the meantime, in which case the reader tries again under a real read lock
+ * The reader may have read a half written state before validating, which is why the list holds its own array instead of wrapping
+ * any List : every optimistic read is bounds checked against the array it read, whatever the state it finds
+ *
+ * The writes take the write lock, a growth copies to a new array (the optimistic readers of the old one stay in bounds)
+ * The iterators and subList are read only snapshots, removeIf, removeAll and retainAll filter in place under the write lock
+ * (removeAll and retainAll on a snapshot of their argument, so that list.retainAll(list) does not deadlock on the non reentrant lock)
+ */
+public class StampedArrayList<E> extends AbstractList<E> implements RandomAccess {
+
+  public StampedArrayList() {
+    this(10);
+  }
+
+  public StampedArrayList(int initialCapacity) {
+    if (initialCapacity < 0) {
+      throw new IllegalArgumentException("Negative capacity : " + initialCapacity);
+    }
+    this.elements = new Object[initialCapacity];
+  }
+
+  public StampedArrayList(Collection<? extends E> c) {
+    this.elements = c.toArray();
+    if (elements.getClass() != Object[].class) {
+      elements = Arrays.copyOf(elements, elements.length, Object[].class);
+    }
+    this.size = elements.length;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E get(int index) {
+    long stamp = lock.tryOptimisticRead();
+    Object[] array = elements;
+    int currentSize = size;
+    Object element = index >= 0 && index < currentSize && index < array.length ? array[index] : null;
+
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        currentSize = size;
+        element = index >= 0 && index < currentSize ? elements[index] : null;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    if (index < 0 || index >= currentSize) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + currentSize);
+    }
+    return (E) element;
+  }
+
+  @Override
+  public int size() {
+    long stamp = lock.tryOptimisticRead();
+    int currentSize = size;
+
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        currentSize = size;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return currentSize;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return indexOf(o) >= 0;
+  }
+
+  @Override
+  public int indexOf(Object o) {
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        int index = indexOf(o, elements, size);
+        if (lock.validate(stamp)) {
+          return index;
+        }
+      } catch (RuntimeException e) {
+        // equals called on an element read in a half written state, the stamp is invalid anyway
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return indexOf(o, elements, size);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    long stamp = lock.tryOptimisticRead();
+    Object[] array = elements;
+    Object[] copy = Arrays.copyOf(array, Math.min(size, array.length));
+
+    if (lock.validate(stamp)) {
+      return copy;
+    }
+
+    stamp = lock.readLock();
+    try {
+      return Arrays.copyOf(elements, size);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public E set(int index, E element) {
+    long stamp = lock.writeLock();
+    try {
+      checkIndex(index);
+
+      @SuppressWarnings("unchecked")
+      E previous = (E) elements[index];
+      elements[index] = element;
+      return previous;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean add(E element) {
+    long stamp = lock.writeLock();
+    try {
+      ensureCapacity(size + 1);
+      elements[size] = element;
+      size++;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void add(int index, E element) {
+    long stamp = lock.writeLock();
+    try {
+      if (index < 0 || index > size) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      }
+      ensureCapacity(size + 1);
+      System.arraycopy(elements, index, elements, index + 1, size - index);
+      elements[index] = element;
+      size++;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public E remove(int index) {
+    long stamp = lock.writeLock();
+    try {
+      checkIndex(index);
+
+      @SuppressWarnings("unchecked")
+      E removed = (E) elements[index];
+      System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+      elements[--size] = null;
+      return removed;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    long stamp = lock.writeLock();
+    try {
+      int index = indexOf(o, elements, size);
+      if (index < 0) {
+        return false;
+      }
+      System.arraycopy(elements, index + 1, elements, index, size - index - 1);
+      elements[--size] = null;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean addAll(Collection<? extends E> c) {
+    Object[] added = c.toArray();
+
+    long stamp = lock.writeLock();
+    try {
+      ensureCapacity(size + added.length);
+      System.arraycopy(added, 0, elements, size, added.length);
+      size += added.length;
+      return added.length > 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Tests every element first, then compacts : a filter throwing an exception leaves the list unchanged (as ArrayList does)
+   * The filter runs under the write lock, it must not use this list
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean removeIf(Predicate<? super E> filter) {
+    Objects.requireNonNull(filter);
+
+    long stamp = lock.writeLock();
+    try {
+      BitSet removed = new BitSet(size);
+
+      for (int i = 0; i < size; i++) {
+        if (filter.test((E) elements[i])) {
+          removed.set(i);
+        }
+      }
+      if (removed.isEmpty()) {
+        return false;
+      }
+
+      int kept = 0;
+      for (int i = 0; i < size; i++) {
+        if (!removed.get(i)) {
+          elements[kept++] = elements[i];
+        }
+      }
+      Arrays.fill(elements, kept, size, null);
+      size = kept;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * c is copied into a HashSet before the write lock is taken : c.contains could need the lock of this list (this list itself,
+   * one of its views), which the write lock holder cannot take again
+   */
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    Set<Object> snapshot = new HashSet<>(c);
+    return removeIf(snapshot::contains);
+  }
+
+  /**
+   * c is copied into a HashSet before the write lock is taken, see removeAll
+   */
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    Set<Object> snapshot = new HashSet<>(c);
+    return removeIf(element -> !snapshot.contains(element));
+  }
+
+  @Override
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      Arrays.fill(elements, 0, size, null);
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    return listIterator(0);
+  }
+
+  @Override
+  public ListIterator<E> listIterator() {
+    return listIterator(0);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public ListIterator<E> listIterator(int index) {
+    return Collections.unmodifiableList(Arrays.asList((E[]) toArray())).listIterator(index);
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public List<E> subList(int fromIndex, int toIndex) {
+    return Collections.unmodifiableList(Arrays.asList((E[]) toArray()).subList(fromIndex, toIndex));
+  }
+
+  private static int indexOf(Object o, Object[] array, int size) {
+    int end = Math.min(size, array.length);
+
+    for (int i = 0; i < end; i++) {
+      if (Objects.equals(o, array[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private void checkIndex(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+    }
+  }
+
+  /**
+   * Grows to a new array, never in place : an optimistic reader of the old array must stay in its bounds
+   */
+  private void ensureCapacity(int capacity) {
+    if (capacity > elements.length) {
+      elements = Arrays.copyOf(elements, Math.max(capacity, elements.length + (elements.length >> 1) + 1));
+    }
+  }
+
+  private final StampedLock lock = new StampedLock();
+  private Object[] elements;
+  private int size;
+}
@@ -0,0 +1,284 @@
+package org.leo.core.concurrent;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+
+/**
+ * Thread safe hash set for read mostly use, contains is an optimistic read (see StampedArrayList for the principle)
+ *
+ * The set holds its own open addressing table (linear probing, backward shift deletion) rather than wrapping a HashSet :
+ * an optimistic reader may look at the table in the middle of a write, a probe over an array stays in its bounds whatever it finds
+ * and is then thrown away by validate, a walk through the nodes of a HashMap being rebalanced is not that safe
+ *
+ * The writes take the write lock, a resize builds a new table, the iterator is a read only snapshot (removeIf, removeAll
+ * and retainAll work under the write lock, the last two on a snapshot of their argument), null elements are not allowed
+ */
+public class StampedHashSet<E> extends AbstractSet<E> {
+
+  private static final float LOAD_FACTOR = 0.5f;
+
+  public StampedHashSet() {
+    this(16);
+  }
+
+  public StampedHashSet(int expectedSize) {
+    int capacity = Math.max(Integer.highestOneBit((int) Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR) - 1) << 1, 4);
+    this.table = new Object[capacity];
+  }
+
+  public StampedHashSet(Collection<? extends E> c) {
+    this(c.size());
+    addAll(c);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (o == null) {
+      return false;
+    }
+
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0) {
+      try {
+        boolean found = slot(table, o) >= 0;
+        if (lock.validate(stamp)) {
+          return found;
+        }
+      } catch (RuntimeException e) {
+        // equals called on an element read in a half written state, the stamp is invalid anyway
+      }
+    }
+
+    stamp = lock.readLock();
+    try {
+      return slot(table, o) >= 0;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public int size() {
+    long stamp = lock.tryOptimisticRead();
+    int currentSize = size;
+
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        currentSize = size;
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return currentSize;
+  }
+
+  @Override
+  public boolean add(E element) {
+    Objects.requireNonNull(element);
+
+    long stamp = lock.writeLock();
+    try {
+      if (slot(table, element) >= 0) {
+        return false;
+      }
+      if (size + 1 > table.length * LOAD_FACTOR) {
+        resize(table.length * 2);
+      }
+      insert(table, element);
+      size++;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (o == null) {
+      return false;
+    }
+
+    long stamp = lock.writeLock();
+    try {
+      int slot = slot(table, o);
+      if (slot < 0) {
+        return false;
+      }
+      shiftBack(slot);
+      size--;
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Builds the new table aside : a filter throwing an exception leaves the set unchanged
+   * The filter runs under the write lock, it must not use this set
+   */
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean removeIf(Predicate<? super E> filter) {
+    long stamp = lock.writeLock();
+    try {
+      Object[] kept = new Object[table.length];
+      int keptSize = 0;
+
+      for (Object element : table) {
+        if (element != null && !filter.test((E) element)) {
+          insert(kept, element);
+          keptSize++;
+        }
+      }
+
+      boolean removed = keptSize < size;
+      table = kept;
+      size = keptSize;
+      return removed;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * c is copied into a HashSet before the write lock is taken : c.contains could need the lock of this set (this set itself,
+   * a view of it), which the write lock holder cannot take again
+   */
+  @Override
+  public boolean removeAll(Collection<?> c) {
+    Set<Object> snapshot = new HashSet<>(c);
+    return removeIf(snapshot::contains);
+  }
+
+  /**
+   * c is copied into a HashSet before the write lock is taken, see removeAll
+   */
+  @Override
+  public boolean retainAll(Collection<?> c) {
+    Set<Object> snapshot = new HashSet<>(c);
+    return removeIf(element -> !snapshot.contains(element));
+  }
+
+  @Override
+  public void clear() {
+    long stamp = lock.writeLock();
+    try {
+      Arrays.fill(table, null);
+      size = 0;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public Object[] toArray() {
+    long stamp = lock.readLock();
+    try {
+      Object[] array = new Object[size];
+      int i = 0;
+
+      for (Object element : table) {
+        if (element != null) {
+          array[i++] = element;
+        }
+      }
+      return array;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    Iterator<Object> snapshot = Arrays.asList(toArray()).iterator();
+
+    return new Iterator<E>() {
+
+      @Override
+      public boolean hasNext() {
+        return snapshot.hasNext();
+      }
+
+      @Override
+      public E next() {
+        return (E) snapshot.next();
+      }
+    };
+  }
+
+  private static int spread(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Slot of o in table or -1, at most table.length probes : an optimistic reader may see a table without a free slot
+   */
+  private static int slot(Object[] table, Object o) {
+    int mask = table.length - 1;
+    int slot = spread(o.hashCode()) & mask;
+
+    for (int probes = 0; probes < table.length; probes++) {
+      Object element = table[slot];
+
+      if (element == null) {
+        return -1;
+      }
+      if (element.equals(o)) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private static void insert(Object[] table, Object element) {
+    int mask = table.length - 1;
+    int slot = spread(element.hashCode()) & mask;
+
+    while (table[slot] != null) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = element;
+  }
+
+  private void resize(int capacity) {
+    Object[] resized = new Object[capacity];
+
+    for (Object element : table) {
+      if (element != null) {
+        insert(resized, element);
+      }
+    }
+    table = resized;
+  }
+
+  private void shiftBack(int hole) {
+    int mask = table.length - 1;
+
+    for (int slot = (hole + 1) & mask; table[slot] != null; slot = (slot + 1) & mask) {
+      int home = spread(table[slot].hashCode()) & mask;
+
+      // the element may move to the hole when the hole lies cyclically between its home slot and its slot
+      boolean canShift = slot > hole ? (home <= hole || home > slot) : (home <= hole && home > slot);
+      if (canShift) {
+        table[hole] = table[slot];
+        hole = slot;
+      }
+    }
+    table[hole] = null;
+  }
+
+  private final StampedLock lock = new StampedLock();
+  private Object[] table;
+  private int size;
+}
@@ -0,0 +1,317 @@
+package org.leo.core.concurrent;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Thread safe map made of several maps (the stripes), each one behind its own read/write lock
+ *
+ * Collections.synchronizedMap and Hashtable have one lock for the whole map, every thread waits for every other one
+ * A key always goes to the same stripe (chosen by its hash), so two threads only wait for each other when their keys fall in
+ * the same stripe : with 64 stripes and 8 writing threads a write rarely waits at all
+ * It is the design of the ConcurrentHashMap of Java 5 to 7 (segments), usable around any map (a TreeMap, a LinkedHashMap...)
+ * while ConcurrentHashMap is a hash map only
+ *
+ * The lookups (get, getOrDefault, containsKey) take the read lock of their stripe, several threads run them at once :
+ * the stripe maps must not change on a lookup. A LinkedHashMap in access order does (get moves the entry to the end of its list),
+ * such maps need the constructor with lookupsModify = true, their lookups then take the write lock
+ * The single key operations, the atomic ones of ConcurrentMap included, lock one stripe
+ * size and containsValue lock the stripes one after the other, they are not a snapshot of the whole map
+ * entrySet, keySet and values are read only snapshots, copied stripe by stripe, there is no need to lock the map around a loop
+ */
+public class StripedMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+  public StripedMap() {
+    this(Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 8 - 1) << 1, HashMap::new);
+  }
+
+  /**
+   * @param stripes number of stripes, rounded up to a power of two
+   * @param factory creates the map of each stripe, its lookups must not modify it
+   */
+  public StripedMap(int stripes, Supplier<? extends Map<K, V>> factory) {
+    this(stripes, factory, false);
+  }
+
+  /**
+   * @param stripes number of stripes, rounded up to a power of two
+   * @param factory creates the map of each stripe
+   * @param lookupsModify whether a lookup modifies the stripe maps (a LinkedHashMap in access order), the lookups then take the write lock
+   */
+  @SuppressWarnings("unchecked")
+  public StripedMap(int stripes, Supplier<? extends Map<K, V>> factory, boolean lookupsModify) {
+    if (stripes <= 0 || stripes > 1 << 16) {
+      throw new IllegalArgumentException("The number of stripes must be in [1, 65536] : " + stripes);
+    }
+
+    int count = Integer.highestOneBit(stripes - 1) << 1;
+    count = Math.max(count, 1);
+    this.maps = (Map<K, V>[]) new Map<?, ?>[count];
+    this.locks = new ReentrantReadWriteLock[count];
+    for (int i = 0; i < count; i++) {
+      maps[i] = factory.get();
+      locks[i] = new ReentrantReadWriteLock();
+    }
+    this.lookupsModify = lookupsModify;
+  }
+
+  @Override
+  public V get(Object key) {
+    int stripe = stripeOf(key);
+
+    Lock lock = lookupLock(stripe);
+    lock.lock();
+    try {
+      return maps[stripe].get(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public V getOrDefault(Object key, V defaultValue) {
+    int stripe = stripeOf(key);
+
+    Lock lock = lookupLock(stripe);
+    lock.lock();
+    try {
+      return maps[stripe].getOrDefault(key, defaultValue);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    int stripe = stripeOf(key);
+
+    Lock lock = lookupLock(stripe);
+    lock.lock();
+    try {
+      return maps[stripe].containsKey(key);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public V put(K key, V value) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].put(key, value);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V remove(Object key) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].remove(key);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V putIfAbsent(K key, V value) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].putIfAbsent(key, value);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean remove(Object key, Object value) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].remove(key, value);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public boolean replace(K key, V oldValue, V newValue) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].replace(key, oldValue, newValue);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V replace(K key, V value) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].replace(key, value);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  /**
+   * The function runs under the lock of the stripe, it must be short and must not use this map
+   */
+  @Override
+  public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].computeIfAbsent(key, mappingFunction);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].computeIfPresent(key, remappingFunction);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].compute(key, remappingFunction);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+    int stripe = stripeOf(key);
+
+    locks[stripe].writeLock().lock();
+    try {
+      return maps[stripe].merge(key, value, remappingFunction);
+    } finally {
+      locks[stripe].writeLock().unlock();
+    }
+  }
+
+  @Override
+  public int size() {
+    long size = 0;
+
+    for (int stripe = 0; stripe < maps.length; stripe++) {
+      locks[stripe].readLock().lock();
+      try {
+        size += maps[stripe].size();
+      } finally {
+        locks[stripe].readLock().unlock();
+      }
+    }
+    return (int) Math.min(size, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  @Override
+  public boolean containsValue(Object value) {
+    for (int stripe = 0; stripe < maps.length; stripe++) {
+      locks[stripe].readLock().lock();
+      try {
+        if (maps[stripe].containsValue(value)) {
+          return true;
+        }
+      } finally {
+        locks[stripe].readLock().unlock();
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void clear() {
+    for (int stripe = 0; stripe < maps.length; stripe++) {
+      locks[stripe].writeLock().lock();
+      try {
+        maps[stripe].clear();
+      } finally {
+        locks[stripe].writeLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Runs the action stripe by stripe under the read lock of each one, the action must not write to this map
+   */
+  @Override
+  public void forEach(BiConsumer<? super K, ? super V> action) {
+    for (int stripe = 0; stripe < maps.length; stripe++) {
+      locks[stripe].readLock().lock();
+      try {
+        maps[stripe].forEach(action);
+      } finally {
+        locks[stripe].readLock().unlock();
+      }
+    }
+  }
+
+  /**
+   * Read only snapshot of the entries
+   */
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    Set<Entry<K, V>> entries = new LinkedHashSet<>();
+
+    forEach((key, value) -> entries.add(new SimpleImmutableEntry<>(key, value)));
+    return Collections.unmodifiableSet(entries);
+  }
+
+  private Lock lookupLock(int stripe) {
+    return lookupsModify ? locks[stripe].writeLock() : locks[stripe].readLock();
+  }
+
+  private int stripeOf(Object key) {
+    int h = Objects.hashCode(key) * 0x9E3779B9;
+    return (h ^ (h >>> 16)) & (maps.length - 1);
+  }
+
+  private final Map<K, V>[] maps;
+  private final ReentrantReadWriteLock[] locks;
+  private final boolean lookupsModify;
+}
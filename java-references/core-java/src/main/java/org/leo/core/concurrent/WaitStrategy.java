@@ -0,0 +1,45 @@
+package org.leo.core.concurrent;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * What a thread does while it waits for a ring buffer (full for a producer, empty for a consumer), between two attempts
+ *
+ * - SPIN : nothing, the lowest latency, burns a whole core, only for threads pinned to their own core
+ * - YIELD : gives the core to another thread if one is ready, low latency still, but the core stays busy when nothing else runs
+ * - park(nanos) : sleeps, frees the core, the latency of a wake up (tens of microseconds at least)
+ * - backoff() : spins, then yields, then parks longer and longer, the default : fast when the other side is quick, cheap when it is idle
+ */
+@FunctionalInterface
+public interface WaitStrategy {
+
+  WaitStrategy SPIN = attempts -> {
+  };
+
+  WaitStrategy YIELD = attempts -> Thread.yield();
+
+  /**
+   * @param attempts number of failed attempts in a row, from 0
+   */
+  void idle(int attempts);
+
+  static WaitStrategy park(long nanos) {
+    return attempts -> LockSupport.parkNanos(nanos);
+  }
+
+  /**
+   * 100 spins, 100 yields, then parks of 1 microsecond doubling up to 1 millisecond
+   */
+  static WaitStrategy backoff() {
+    return attempts -> {
+      if (attempts < 100) {
+        return;
+      }
+      if (attempts < 200) {
+        Thread.yield();
+        return;
+      }
+      LockSupport.parkNanos(1000L << Math.min(attempts - 200, 10));
+    };
+  }
+}
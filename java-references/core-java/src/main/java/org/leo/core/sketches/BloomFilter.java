@@ -0,0 +1,216 @@
+package org.leo.core.sketches;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate membership : mightContain never misses an element added, and wrongly answers true for an element never added
+ * with a chosen probability (the false positive rate), in about 10 bits per element for 1 %, whatever the size of the elements
+ * (a HashSet keeps every element plus a node of 32 bytes or more)
+ *
+ * An array of m bits and k indexes per element : add sets the k bits of the element, mightContain checks that they are all set
+ * For n expected elements and a false positive rate p : m = -n ln(p) / ln(2)^2 and k = m / n ln(2)
+ * The k indexes come from one 64 bits hash (h1 + i h2, Kirsch and Mitzenmacher), as good as k independent hashes for a Bloom filter
+ * Past n elements the false positive rate grows, expectedFalsePositiveRate tells how far it went
+ *
+ * Two filters of the same size and k merge by a bitwise OR (the filter of the union), toBytes / fromBytes save and restore it
+ * It is not thread safe, Sketches.toBloomFilter collects a stream (a parallel one fills a filter per thread then merges them)
+ */
+public class BloomFilter<T> {
+
+  private static final byte FORMAT = 1;
+
+  private static final int MAXIMUM_HASHES = 32;
+
+  public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+    this(expectedInsertions, falsePositiveRate, Hashing::hash);
+  }
+
+  /**
+   * @param hasher 64 bits hash of an element, see Hashing
+   */
+  public BloomFilter(long expectedInsertions, double falsePositiveRate, ToLongFunction<? super T> hasher) {
+    if (expectedInsertions <= 0) {
+      throw new IllegalArgumentException("The expected insertions must be positive : " + expectedInsertions);
+    }
+    if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+      throw new IllegalArgumentException("The false positive rate must be in ]0, 1[ : " + falsePositiveRate);
+    }
+
+    double ln2 = Math.log(2);
+    long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+    long words = Math.max(1, (bits + 63) >>> 6);
+    if (words > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many bits : " + bits);
+    }
+
+    this.words = new long[(int) words];
+    this.numBits = words << 6;
+    this.numHashes = (int) Math.max(1, Math.min(MAXIMUM_HASHES, Math.round((double) numBits / expectedInsertions * ln2)));
+    this.hasher = hasher;
+  }
+
+  private BloomFilter(long[] words, int numHashes, long bitCount, ToLongFunction<? super T> hasher) {
+    this.words = words;
+    this.numBits = (long) words.length << 6;
+    this.numHashes = numHashes;
+    this.bitCount = bitCount;
+    this.hasher = hasher;
+  }
+
+  /**
+   * Restores a filter written by toBytes, with the hasher it used
+   *
+   * @throws IllegalArgumentException when the bytes are not a BloomFilter
+   */
+  public static <T> BloomFilter<T> fromBytes(byte[] bytes, ToLongFunction<? super T> hasher) {
+    try {
+      ByteBuffer in = ByteBuffer.wrap(bytes);
+      if (in.get() != FORMAT) {
+        throw new IllegalArgumentException("Not a BloomFilter");
+      }
+
+      int numHashes = in.get();
+      int length = in.getInt();
+      if (length <= 0 || in.remaining() != 8L * length) {
+        throw new IllegalArgumentException("Not a BloomFilter");
+      }
+
+      long[] words = new long[length];
+      long bitCount = 0;
+      for (int i = 0; i < words.length; i++) {
+        words[i] = in.getLong();
+        bitCount += Long.bitCount(words[i]);
+      }
+      if (numHashes < 1 || numHashes > MAXIMUM_HASHES) {
+        throw new IllegalArgumentException("Not a BloomFilter");
+      }
+      return new BloomFilter<>(words, numHashes, bitCount, hasher);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Not a BloomFilter", e);
+    }
+  }
+
+  public static <T> BloomFilter<T> fromBytes(byte[] bytes) {
+    return fromBytes(bytes, Hashing::hash);
+  }
+
+  /**
+   * @return true when the filter changed : the element was certainly not there before, false when it might have been
+   */
+  public boolean add(T element) {
+    return addHash(hasher.applyAsLong(element));
+  }
+
+  /**
+   * add with the hash of the element already computed
+   */
+  public boolean addHash(long hash) {
+    long h1 = hash;
+    long h2 = secondHash(hash);
+    boolean changed = false;
+
+    for (int i = 0; i < numHashes; i++) {
+      long index = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+      int word = (int) (index >>> 6);
+      long mask = 1L << index;
+
+      if ((words[word] & mask) == 0) {
+        words[word] |= mask;
+        bitCount++;
+        changed = true;
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @return false when the element was never added, true when it probably was
+   */
+  public boolean mightContain(T element) {
+    return mightContainHash(hasher.applyAsLong(element));
+  }
+
+  public boolean mightContainHash(long hash) {
+    long h1 = hash;
+    long h2 = secondHash(hash);
+
+    for (int i = 0; i < numHashes; i++) {
+      long index = ((h1 + i * h2) & Long.MAX_VALUE) % numBits;
+      if ((words[(int) (index >>> 6)] & (1L << index)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Adds the elements of the other filter to this one
+   *
+   * @throws IllegalArgumentException when the filters differ in size or number of hashes
+   */
+  public BloomFilter<T> merge(BloomFilter<? extends T> other) {
+    if (other.numBits != numBits || other.numHashes != numHashes) {
+      throw new IllegalArgumentException("Incompatible Bloom filters : " + this + " and " + other);
+    }
+
+    bitCount = 0;
+    for (int i = 0; i < words.length; i++) {
+      words[i] |= other.words[i];
+      bitCount += Long.bitCount(words[i]);
+    }
+    return this;
+  }
+
+  /**
+   * Number of distinct elements added, estimated from the bits set : -m / k ln(1 - set / m)
+   */
+  public long approximateElementCount() {
+    double fractionSet = (double) bitCount / numBits;
+    return Math.round(-Math.log1p(-fractionSet) * numBits / numHashes);
+  }
+
+  /**
+   * Probability that mightContain answers true for an element never added, given the bits set now : (set / m)^k
+   */
+  public double expectedFalsePositiveRate() {
+    return Math.pow((double) bitCount / numBits, numHashes);
+  }
+
+  public long bitSize() {
+    return numBits;
+  }
+
+  public int numHashes() {
+    return numHashes;
+  }
+
+  public byte[] toBytes() {
+    ByteBuffer out = ByteBuffer.allocate(1 + 1 + 4 + 8 * words.length);
+
+    out.put(FORMAT).put((byte) numHashes).putInt(words.length);
+    for (long word : words) {
+      out.putLong(word);
+    }
+    return out.array();
+  }
+
+  @Override
+  public String toString() {
+    return "BloomFilter[bits=" + numBits + ", hashes=" + numHashes + ", set=" + bitCount + "]";
+  }
+
+  /**
+   * The second hash of the double hashing, never 0 so that the k indexes are not all the same
+   */
+  private static long secondHash(long hash) {
+    return Hashing.mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+  }
+
+  private final long[] words;
+  private final long numBits;
+  private final int numHashes;
+  private final ToLongFunction<? super T> hasher;
+  private long bitCount;
+}
@@ -0,0 +1,199 @@
+package org.leo.core.sketches;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate frequencies : how many times an element was added, in a fixed memory whatever the number of distinct elements
+ * (a HashMap<T, Long> keeps every distinct element with its counter)
+ *
+ * depth rows of width counters, an element adds its count to one counter per row (a different hash per row),
+ * its estimate is the smallest of its counters : the other elements of the stream may only have added to them
+ * So the estimate is never below the true count, and above it by at most epsilon * totalCount with a probability 1 - delta,
+ * for width = e / epsilon and depth = ln(1 / delta)
+ * The error is relative to the total of the stream : exact enough for the heavy hitters, noise for the rare elements
+ *
+ * Two sketches of the same dimensions merge by adding their counters, toBytes / fromBytes save and restore it
+ * It is not thread safe, Sketches.toCountMinSketch collects a stream
+ */
+public class CountMinSketch<T> {
+
+  private static final byte FORMAT = 1;
+
+  /**
+   * @param epsilon error of the estimates relative to the total count, e.g. 0.001
+   * @param delta probability of an error beyond epsilon, e.g. 0.01
+   */
+  public CountMinSketch(double epsilon, double delta) {
+    this(epsilon, delta, Hashing::hash);
+  }
+
+  public CountMinSketch(double epsilon, double delta, ToLongFunction<? super T> hasher) {
+    if (!(epsilon > 0 && epsilon < 1) || !(delta > 0 && delta < 1)) {
+      throw new IllegalArgumentException("epsilon and delta must be in ]0, 1[ : " + epsilon + ", " + delta);
+    }
+
+    int width = (int) Math.min(1 << 30, Math.ceil(Math.E / epsilon));
+    // a power of two : the index of a row is the high bits of its hash
+    this.widthBits = 32 - Integer.numberOfLeadingZeros(width - 1);
+    this.depth = (int) Math.ceil(Math.log(1 / delta));
+    if ((long) depth << widthBits > Integer.MAX_VALUE - 8) {
+      throw new IllegalArgumentException("Too many counters for epsilon " + epsilon + " and delta " + delta);
+    }
+    this.counters = new long[depth << widthBits];
+    this.hasher = hasher;
+  }
+
+  private CountMinSketch(int depth, int widthBits, long[] counters, long totalCount, ToLongFunction<? super T> hasher) {
+    this.depth = depth;
+    this.widthBits = widthBits;
+    this.counters = counters;
+    this.totalCount = totalCount;
+    this.hasher = hasher;
+  }
+
+  /**
+   * Restores a sketch written by toBytes, with the hasher it used
+   *
+   * @throws IllegalArgumentException when the bytes are not a CountMinSketch
+   */
+  public static <T> CountMinSketch<T> fromBytes(byte[] bytes, ToLongFunction<? super T> hasher) {
+    try {
+      ByteBuffer in = ByteBuffer.wrap(bytes);
+      if (in.get() != FORMAT) {
+        throw new IllegalArgumentException("Not a CountMinSketch");
+      }
+
+      int depth = in.getInt();
+      int widthBits = in.get();
+      long totalCount = in.getLong();
+      if (depth < 1 || widthBits < 0 || widthBits > 30 || in.remaining() != 8L * depth << widthBits) {
+        throw new IllegalArgumentException("Not a CountMinSketch");
+      }
+
+      long[] counters = new long[depth << widthBits];
+      for (int i = 0; i < counters.length; i++) {
+        counters[i] = in.getLong();
+      }
+      return new CountMinSketch<>(depth, widthBits, counters, totalCount, hasher);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Not a CountMinSketch", e);
+    }
+  }
+
+  public static <T> CountMinSketch<T> fromBytes(byte[] bytes) {
+    return fromBytes(bytes, Hashing::hash);
+  }
+
+  public void add(T element) {
+    addHash(hasher.applyAsLong(element), 1);
+  }
+
+  /**
+   * @throws IllegalArgumentException when the count is negative (the estimates rely on counters that only grow)
+   */
+  public void add(T element, long count) {
+    addHash(hasher.applyAsLong(element), count);
+  }
+
+  public void addHash(long hash, long count) {
+    if (count < 0) {
+      throw new IllegalArgumentException("Negative count : " + count);
+    }
+
+    long h2 = secondHash(hash);
+    for (int row = 0; row < depth; row++) {
+      counters[index(row, hash, h2)] += count;
+    }
+    totalCount += count;
+  }
+
+  /**
+   * At least the number of times the element was added, at most epsilon * totalCount more with a probability 1 - delta
+   */
+  public long estimateCount(T element) {
+    return estimateCountHash(hasher.applyAsLong(element));
+  }
+
+  public long estimateCountHash(long hash) {
+    long h2 = secondHash(hash);
+    long estimate = Long.MAX_VALUE;
+
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters[index(row, hash, h2)]);
+    }
+    return estimate;
+  }
+
+  /**
+   * Sum of the counts added
+   */
+  public long totalCount() {
+    return totalCount;
+  }
+
+  /**
+   * The epsilon actually reached : e / width, the width being rounded up to a power of two
+   */
+  public double relativeError() {
+    return Math.E / (1 << widthBits);
+  }
+
+  /**
+   * 1 - delta
+   */
+  public double confidence() {
+    return 1 - Math.exp(-depth);
+  }
+
+  /**
+   * Adds the counts of the other sketch to this one
+   *
+   * @throws IllegalArgumentException when the sketches differ in dimensions
+   */
+  public CountMinSketch<T> merge(CountMinSketch<? extends T> other) {
+    if (other.depth != depth || other.widthBits != widthBits) {
+      throw new IllegalArgumentException("Incompatible count-min sketches : " + this + " and " + other);
+    }
+
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] += other.counters[i];
+    }
+    totalCount += other.totalCount;
+    return this;
+  }
+
+  public byte[] toBytes() {
+    ByteBuffer out = ByteBuffer.allocate(1 + 4 + 1 + 8 + 8 * counters.length);
+
+    out.put(FORMAT).putInt(depth).put((byte) widthBits).putLong(totalCount);
+    for (long counter : counters) {
+      out.putLong(counter);
+    }
+    return out.array();
+  }
+
+  @Override
+  public String toString() {
+    return "CountMinSketch[depth=" + depth + ", width=" + (1 << widthBits) + ", total=" + totalCount + "]";
+  }
+
+  private static long secondHash(long hash) {
+    return Hashing.mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+  }
+
+  /**
+   * Counter of the row : the high bits of h1 + row * h2, a different hash per row (Kirsch and Mitzenmacher as for BloomFilter)
+   */
+  private int index(int row, long h1, long h2) {
+    int column = widthBits == 0 ? 0 : (int) ((h1 + row * h2) >>> (64 - widthBits));
+    return (row << widthBits) | column;
+  }
+
+  private final int depth;
+  private final int widthBits;
+  private final long[] counters;
+  private final ToLongFunction<? super T> hasher;
+  private long totalCount;
+}
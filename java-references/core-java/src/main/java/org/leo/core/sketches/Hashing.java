@@ -0,0 +1,86 @@
+package org.leo.core.sketches;
+
+/**
+ * 64 bits hashes for the sketches
+ *
+ * A sketch only sees the hashes of the elements, so its accuracy relies on them : every bit must look random and independent
+ * of the others (HyperLogLog reads the leading zeros, the Bloom filter and the count-min sketch derive several indexes from one hash)
+ * hashCode() is neither 64 bits nor well mixed (Integer.hashCode() is the value, Long.hashCode() folds the two halves),
+ * so the values are mixed by the finalizer of MurmurHash3 (fmix64) : each input bit flips each output bit with a probability close to 1/2
+ *
+ * hash(Object) knows the usual element types, for the others it mixes hashCode() : 32 bits only, two distinct elements
+ * collide with a probability of 2^-32 (a few collisions per 100 000 elements), negligible for the error of the sketches
+ * until hundreds of millions of distinct elements, past that give the sketch a 64 bits hash of the fields of the element
+ */
+public final class Hashing {
+
+  private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+
+  private static final long FNV_PRIME = 0x100000001b3L;
+
+  private Hashing() {
+  }
+
+  /**
+   * fmix64 of MurmurHash3, a bijection of the longs
+   */
+  public static long mix(long value) {
+    long h = value;
+
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  public static long hash(long value) {
+    return mix(value);
+  }
+
+  public static long hash(double value) {
+    // +0.0 and -0.0 are equal values, NaN has several encodings
+    return mix(value == 0 ? 0 : Double.doubleToLongBits(value));
+  }
+
+  /**
+   * FNV-1a over the chars, then mixed (FNV alone leaves the high bits poorly mixed for short strings)
+   */
+  public static long hash(CharSequence value) {
+    long h = FNV_OFFSET;
+
+    for (int i = 0; i < value.length(); i++) {
+      h = (h ^ value.charAt(i)) * FNV_PRIME;
+    }
+    return mix(h ^ value.length());
+  }
+
+  public static long hash(byte[] value) {
+    long h = FNV_OFFSET;
+
+    for (byte b : value) {
+      h = (h ^ (b & 0xff)) * FNV_PRIME;
+    }
+    return mix(h ^ value.length);
+  }
+
+  /**
+   * Hash of the boxed numbers, the strings and the byte arrays by their value, of the other objects by their hashCode()
+   */
+  public static long hash(Object value) {
+    if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      return mix(((Number) value).longValue());
+    }
+    if (value instanceof Double || value instanceof Float) {
+      return hash(((Number) value).doubleValue());
+    }
+    if (value instanceof CharSequence) {
+      return hash((CharSequence) value);
+    }
+    if (value instanceof byte[]) {
+      return hash((byte[]) value);
+    }
+    return mix(value.hashCode());
+  }
+}
@@ -0,0 +1,377 @@
+package org.leo.core.sketches;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.function.ToLongFunction;
+
+/**
+ * Approximate number of distinct elements, with a relative standard error of 1.04 / sqrt(2^precision) (0.8 % for the default 14)
+ * in 2^precision bytes at most (16 KB), whatever the number of elements (a HashSet keeps every distinct element)
+ *
+ * The hash of an element picks a register with its first precision bits, and the register keeps the highest rank seen :
+ * the position of the first 1 bit in the rest of the hash. A rank of r has a probability of 2^-r, seeing one means about 2^r distinct
+ * hashes went to the register, and the registers together average out the luck of each
+ *
+ * Along the lines of HyperLogLog++ (Heule, Nunkesser and Hall) :
+ * - a 64 bits hash, no correction needed for the collisions of a 32 bits hash past a few hundred million elements
+ * - a sparse representation while few registers are used : the (register, rank) pairs with a precision of 25 bits in a sorted int array,
+ *   exact up to thousands of elements and smaller than the registers, replaced by them once it would take more memory
+ * - instead of the empirically measured bias tables of the paper for the small and middle range, the estimator of Ertl
+ *   ("New cardinality estimation algorithms for HyperLogLog sketches", 2017) computed from the histogram of the registers,
+ *   unbiased over the whole range without tables
+ *
+ * Two sketches of the same precision merge into the sketch of the union (the highest rank of each register), toBytes / fromBytes
+ * save and restore it
+ * It is not thread safe, Sketches.toHyperLogLog collects a stream
+ */
+public class HyperLogLog<T> {
+
+  public static final int DEFAULT_PRECISION = 14;
+
+  public static final int MINIMUM_PRECISION = 4;
+
+  public static final int MAXIMUM_PRECISION = 18;
+
+  private static final int SPARSE_PRECISION = 25;
+
+  /** Bits of a sparse entry holding the rank, the register (25 bits) is above */
+  private static final int RANK_BITS = 6;
+
+  private static final byte FORMAT = 1;
+
+  public HyperLogLog() {
+    this(DEFAULT_PRECISION);
+  }
+
+  public HyperLogLog(int precision) {
+    this(precision, Hashing::hash);
+  }
+
+  /**
+   * @param precision 2^precision registers, in [4, 18]
+   * @param hasher 64 bits hash of an element, see Hashing
+   */
+  public HyperLogLog(int precision, ToLongFunction<? super T> hasher) {
+    if (precision < MINIMUM_PRECISION || precision > MAXIMUM_PRECISION) {
+      throw new IllegalArgumentException("The precision must be in [4, 18] : " + precision);
+    }
+
+    this.precision = precision;
+    this.hasher = hasher;
+    this.sparse = new int[16];
+    this.buffer = new int[Math.max(16, (1 << precision) >>> 6)];
+  }
+
+  /**
+   * Restores a sketch written by toBytes, with the hasher it used
+   *
+   * @throws IllegalArgumentException when the bytes are not a HyperLogLog
+   */
+  public static <T> HyperLogLog<T> fromBytes(byte[] bytes, ToLongFunction<? super T> hasher) {
+    try {
+      ByteBuffer in = ByteBuffer.wrap(bytes);
+      if (in.get() != FORMAT) {
+        throw new IllegalArgumentException("Not a HyperLogLog");
+      }
+
+      int precision = in.get();
+      if (precision < MINIMUM_PRECISION || precision > MAXIMUM_PRECISION) {
+        throw new IllegalArgumentException("Not a HyperLogLog");
+      }
+
+      HyperLogLog<T> sketch = new HyperLogLog<>(precision, hasher);
+      if (in.get() == 0) {
+        int size = in.getInt();
+        if (size < 0 || in.remaining() != 4L * size) {
+          throw new IllegalArgumentException("Not a HyperLogLog");
+        }
+        sketch.sparse = new int[Math.max(16, size)];
+        for (int i = 0; i < size; i++) {
+          sketch.sparse[i] = in.getInt();
+        }
+        sketch.sparseSize = size;
+      } else {
+        if (in.remaining() != 1 << precision) {
+          throw new IllegalArgumentException("Not a HyperLogLog");
+        }
+        sketch.registers = new byte[1 << precision];
+        in.get(sketch.registers);
+        sketch.sparse = null;
+        sketch.buffer = null;
+      }
+      return sketch;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Not a HyperLogLog", e);
+    }
+  }
+
+  public static <T> HyperLogLog<T> fromBytes(byte[] bytes) {
+    return fromBytes(bytes, Hashing::hash);
+  }
+
+  public void add(T element) {
+    addHash(hasher.applyAsLong(element));
+  }
+
+  public void addHash(long hash) {
+    if (registers != null) {
+      int register = (int) (hash >>> (64 - precision));
+      int rank = rank(hash << precision, 64 - precision);
+
+      if (rank > registers[register]) {
+        registers[register] = (byte) rank;
+      }
+      return;
+    }
+
+    int register = (int) (hash >>> (64 - SPARSE_PRECISION));
+    int rank = rank(hash << SPARSE_PRECISION, 64 - SPARSE_PRECISION);
+    addSparse(register << RANK_BITS | rank);
+  }
+
+  /**
+   * Estimated number of distinct elements added
+   */
+  public long cardinality() {
+    if (registers == null) {
+      flushBuffer();
+    }
+    if (registers == null) {
+      // linear counting over the 2^25 sparse registers : exact in practice for the sizes the sparse representation holds
+      double m = 1 << SPARSE_PRECISION;
+      return Math.round(m * Math.log(m / (m - sparseSize)));
+    }
+    return Math.round(estimate());
+  }
+
+  /**
+   * Adds the elements of the other sketch to this one
+   *
+   * @throws IllegalArgumentException when the sketches differ in precision
+   */
+  public HyperLogLog<T> merge(HyperLogLog<? extends T> other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Incompatible precisions : " + precision + " and " + other.precision);
+    }
+
+    if (other.registers == null) {
+      other.flushBuffer();
+    }
+    if (other.registers == null) {
+      // a copy : other may be this sketch
+      int[] entries = Arrays.copyOf(other.sparse, other.sparseSize);
+      for (int entry : entries) {
+        if (registers == null) {
+          addSparse(entry);
+        } else {
+          addDense(entry);
+        }
+      }
+      return this;
+    }
+
+    if (registers == null) {
+      toDense();
+    }
+    for (int i = 0; i < registers.length; i++) {
+      registers[i] = (byte) Math.max(registers[i], other.registers[i]);
+    }
+    return this;
+  }
+
+  public int precision() {
+    return precision;
+  }
+
+  /**
+   * 1.04 / sqrt(2^precision)
+   */
+  public double relativeStandardError() {
+    return 1.04 / Math.sqrt(1 << precision);
+  }
+
+  public byte[] toBytes() {
+    if (registers == null) {
+      flushBuffer();
+    }
+    if (registers == null) {
+      ByteBuffer out = ByteBuffer.allocate(3 + 4 + 4 * sparseSize);
+      out.put(FORMAT).put((byte) precision).put((byte) 0).putInt(sparseSize);
+      for (int i = 0; i < sparseSize; i++) {
+        out.putInt(sparse[i]);
+      }
+      return out.array();
+    }
+
+    ByteBuffer out = ByteBuffer.allocate(3 + registers.length);
+    out.put(FORMAT).put((byte) precision).put((byte) 1).put(registers);
+    return out.array();
+  }
+
+  @Override
+  public String toString() {
+    return "HyperLogLog[precision=" + precision + ", " + (registers == null ? "sparse" : "dense") + ", cardinality=" + cardinality() + "]";
+  }
+
+  /**
+   * Position of the first 1 bit of the bits bits at the top of value, bits + 1 when they are all 0
+   */
+  private static int rank(long value, int bits) {
+    return value == 0 ? bits + 1 : Math.min(Long.numberOfLeadingZeros(value) + 1, bits + 1);
+  }
+
+  private void addSparse(int entry) {
+    if (bufferSize == buffer.length) {
+      flushBuffer();
+      if (registers != null) {
+        addDense(entry);
+        return;
+      }
+    }
+    buffer[bufferSize++] = entry;
+  }
+
+  /**
+   * Sorts the buffer into the sparse entries, keeping the highest rank of each register, and switches to the dense registers
+   * once the entries take more memory than them (4 bytes per entry, 1 per register)
+   */
+  private void flushBuffer() {
+    if (bufferSize == 0) {
+      return;
+    }
+
+    Arrays.sort(buffer, 0, bufferSize);
+    int[] merged = new int[Math.max(sparse.length, sparseSize + bufferSize)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+
+    // both sorted : the entries of a register are adjacent and the last one has the highest rank
+    while (i < sparseSize || j < bufferSize) {
+      int entry = j >= bufferSize || (i < sparseSize && sparse[i] <= buffer[j]) ? sparse[i++] : buffer[j++];
+
+      if (size > 0 && merged[size - 1] >>> RANK_BITS == entry >>> RANK_BITS) {
+        merged[size - 1] = entry;
+      } else {
+        merged[size++] = entry;
+      }
+    }
+
+    sparse = merged;
+    sparseSize = size;
+    bufferSize = 0;
+    if (sparseSize > (1 << precision) / 4) {
+      toDense();
+    }
+  }
+
+  private void toDense() {
+    flushBufferEntries();
+    registers = new byte[1 << precision];
+    for (int i = 0; i < sparseSize; i++) {
+      addDense(sparse[i]);
+    }
+    sparse = null;
+    buffer = null;
+    sparseSize = 0;
+  }
+
+  /**
+   * The entries of the buffer appended to the sparse ones, unsorted, before a switch to the dense registers
+   */
+  private void flushBufferEntries() {
+    if (bufferSize > 0) {
+      sparse = Arrays.copyOf(sparse, sparseSize + bufferSize);
+      System.arraycopy(buffer, 0, sparse, sparseSize, bufferSize);
+      sparseSize += bufferSize;
+      bufferSize = 0;
+    }
+  }
+
+  /**
+   * Applies a sparse entry to the dense registers : its 25 bits register starts with the register of this precision,
+   * the bits that follow are the start of the rest of the hash
+   */
+  private void addDense(int entry) {
+    int sparseRegister = entry >>> RANK_BITS;
+    int sparseRank = entry & ((1 << RANK_BITS) - 1);
+    int extraBits = SPARSE_PRECISION - precision;
+    int extra = sparseRegister & ((1 << extraBits) - 1);
+    int register = sparseRegister >>> extraBits;
+    int rank = extra != 0 ? Integer.numberOfLeadingZeros(extra) - (32 - extraBits) + 1 : extraBits + sparseRank;
+
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  /**
+   * Ertl's improved estimator : alpha m^2 / (m sigma(C0 / m) + sum of the histogram scaled by 2^-k + m tau(1 - C(q+1) / m) 2^-q)
+   * where Ck is the number of registers of rank k, sigma corrects the empty registers (small range) and tau the saturated ones
+   */
+  private double estimate() {
+    int m = registers.length;
+    int q = 64 - precision;
+    int[] histogram = new int[q + 2];
+
+    for (byte register : registers) {
+      histogram[register]++;
+    }
+
+    double z = m * tau(1 - (double) histogram[q + 1] / m);
+    for (int k = q; k >= 1; k--) {
+      z = 0.5 * (z + histogram[k]);
+    }
+    z += m * sigma((double) histogram[0] / m);
+    return m / (2 * Math.log(2)) * m / z;
+  }
+
+  private static double sigma(double x) {
+    if (x == 1) {
+      return Double.POSITIVE_INFINITY;
+    }
+
+    double y = 1;
+    double z = x;
+    double previous;
+    do {
+      x *= x;
+      previous = z;
+      z += x * y;
+      y += y;
+    } while (z != previous);
+    return z;
+  }
+
+  private static double tau(double x) {
+    if (x == 0 || x == 1) {
+      return 0;
+    }
+
+    double y = 1;
+    double z = 1 - x;
+    double previous;
+    do {
+      x = Math.sqrt(x);
+      previous = z;
+      y *= 0.5;
+      z -= (1 - x) * (1 - x) * y;
+    } while (z != previous);
+    return z / 3;
+  }
+
+  private final int precision;
+  private final ToLongFunction<? super T> hasher;
+
+  /** The registers once dense, null while sparse */
+  private byte[] registers;
+
+  /** Sorted sparse entries : register of 25 bits << 6 | rank */
+  private int[] sparse;
+  private int sparseSize;
+
+  /** Sparse entries added since the last sort */
+  private int[] buffer;
+  private int bufferSize;
+}
@@ -0,0 +1,48 @@
+package org.leo.core.sketches;
+
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collector;
+
+/**
+ * Collectors building the sketches from a stream, the way Collectors.toSet() or Collectors.counting() collect the exact answers
+ *
+ * Each collector fills a sketch, a parallel stream fills one per thread and merges them (the sketches are mergeable),
+ * the order of the elements does not matter (UNORDERED)
+ * e.g. long visitors = events.stream().map(Event::getUserId).collect(Sketches.toHyperLogLog()).cardinality();
+ */
+public final class Sketches {
+
+  private Sketches() {
+  }
+
+  public static <T> Collector<T, ?, BloomFilter<T>> toBloomFilter(long expectedInsertions, double falsePositiveRate) {
+    return Collector.of(() -> new BloomFilter<T>(expectedInsertions, falsePositiveRate), BloomFilter::add, BloomFilter::merge,
+        Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  public static <T> Collector<T, ?, CountMinSketch<T>> toCountMinSketch(double epsilon, double delta) {
+    return Collector.of(() -> new CountMinSketch<T>(epsilon, delta), CountMinSketch::add, CountMinSketch::merge,
+        Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  public static <T> Collector<T, ?, HyperLogLog<T>> toHyperLogLog() {
+    return toHyperLogLog(HyperLogLog.DEFAULT_PRECISION);
+  }
+
+  public static <T> Collector<T, ?, HyperLogLog<T>> toHyperLogLog(int precision) {
+    return Collector.of(() -> new HyperLogLog<T>(precision), HyperLogLog::add, HyperLogLog::merge,
+        Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+  }
+
+  /**
+   * @param mapper the value of an element, e.g. Order::getAmount
+   */
+  public static <T> Collector<T, ?, TDigest> toTDigest(ToDoubleFunction<? super T> mapper) {
+    return toTDigest(mapper, TDigest.DEFAULT_COMPRESSION);
+  }
+
+  public static <T> Collector<T, ?, TDigest> toTDigest(ToDoubleFunction<? super T> mapper, double compression) {
+    return Collector.of(() -> new TDigest(compression), (digest, element) -> digest.add(mapper.applyAsDouble(element)), TDigest::merge,
+        Collector.Characteristics.UNORDERED, Collector.Characteristics.IDENTITY_FINISH);
+  }
+}
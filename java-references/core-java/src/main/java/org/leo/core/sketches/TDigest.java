@@ -0,0 +1,396 @@
+package org.leo.core.sketches;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Approximate quantiles (median, p99, p999...) of a stream of doubles, accurate at the tails, in a few KB whatever the number of values
+ * (the exact answer keeps and sorts every value)
+ *
+ * The values are summarized by centroids : a mean and a weight (the number of values it stands for), sorted by mean
+ * The size of a centroid is bounded by a scale function of its quantile q : k(q) = compression / (2 pi) asin(2q - 1),
+ * a centroid may only span 1 unit of k, and k is steep near 0 and 1 so the centroids of the tails hold few values
+ * (the extremes stay exact) while the middle ones hold many
+ * The merging t-digest of Dunning : the values are appended to a buffer, when it is full the buffer and the centroids are
+ * sorted together and merged again from left to right, as long as the merged centroid spans less than 1 unit of k
+ * quantile and cdf interpolate linearly between the centroids, from the minimum to the maximum
+ *
+ * At most about compression centroids (100 by default), a centroid at the quantile q holds a fraction of about sqrt(q (1 - q)) / compression
+ * of the values, which bounds the error in rank : about 0.05 % at the median and 0.03 % at p99 with the default
+ *
+ * Two digests merge into the digest of both streams, toBytes / fromBytes save and restore it
+ * It is not thread safe, Sketches.toTDigest collects a stream
+ */
+public class TDigest {
+
+  public static final double DEFAULT_COMPRESSION = 100;
+
+  private static final byte FORMAT = 1;
+
+  public TDigest() {
+    this(DEFAULT_COMPRESSION);
+  }
+
+  /**
+   * @param compression bound of the number of centroids, at least 10
+   */
+  public TDigest(double compression) {
+    if (!(compression >= 10)) {
+      throw new IllegalArgumentException("The compression must be at least 10 : " + compression);
+    }
+
+    int capacity = (int) Math.ceil(compression) * 2 + 10;
+    this.compression = compression;
+    this.means = new double[capacity];
+    this.weights = new long[capacity];
+    this.bufferMeans = new double[capacity * 5];
+    this.bufferWeights = new long[capacity * 5];
+  }
+
+  /**
+   * Restores a digest written by toBytes
+   *
+   * @throws IllegalArgumentException when the bytes are not a TDigest
+   */
+  public static TDigest fromBytes(byte[] bytes) {
+    try {
+      ByteBuffer in = ByteBuffer.wrap(bytes);
+      if (in.get() != FORMAT) {
+        throw new IllegalArgumentException("Not a TDigest");
+      }
+
+      TDigest digest = new TDigest(in.getDouble());
+      double min = in.getDouble();
+      double max = in.getDouble();
+      int size = in.getInt();
+      if (size < 0 || size > digest.means.length || in.remaining() != 16L * size) {
+        throw new IllegalArgumentException("Not a TDigest");
+      }
+
+      for (int i = 0; i < size; i++) {
+        digest.means[i] = in.getDouble();
+        digest.weights[i] = in.getLong();
+        digest.count += digest.weights[i];
+      }
+      digest.size = size;
+      digest.min = min;
+      digest.max = max;
+      return digest;
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException("Not a TDigest", e);
+    }
+  }
+
+  public void add(double value) {
+    add(value, 1);
+  }
+
+  /**
+   * Adds weight occurrences of the value
+   *
+   * @throws IllegalArgumentException when the value is NaN or the weight is not positive
+   */
+  public void add(double value, long weight) {
+    if (Double.isNaN(value)) {
+      throw new IllegalArgumentException("Cannot add NaN");
+    }
+    if (weight <= 0) {
+      throw new IllegalArgumentException("The weight must be positive : " + weight);
+    }
+
+    if (bufferSize == bufferMeans.length) {
+      compress();
+    }
+    bufferMeans[bufferSize] = value;
+    bufferWeights[bufferSize] = weight;
+    bufferSize++;
+    count += weight;
+    min = Math.min(min, value);
+    max = Math.max(max, value);
+  }
+
+  /**
+   * Number of values added (the sum of their weights)
+   */
+  public long count() {
+    return count;
+  }
+
+  public double min() {
+    return count == 0 ? Double.NaN : min;
+  }
+
+  public double max() {
+    return count == 0 ? Double.NaN : max;
+  }
+
+  /**
+   * Estimated value below which a fraction q of the values fall, NaN when the digest is empty
+   *
+   * @param q in [0, 1]
+   */
+  public double quantile(double q) {
+    if (!(q >= 0 && q <= 1)) {
+      throw new IllegalArgumentException("The quantile must be in [0, 1] : " + q);
+    }
+
+    compress();
+    if (size == 0) {
+      return Double.NaN;
+    }
+
+    // the points (rank, value) : (0, min), the middle of each centroid, (count, max)
+    double rank = q * count;
+    double previousRank = 0;
+    double previousValue = min;
+    double cumulated = 0;
+
+    for (int i = 0; i < size; i++) {
+      double middle = cumulated + weights[i] / 2.0;
+      if (rank < middle) {
+        return interpolate(rank, previousRank, previousValue, middle, means[i]);
+      }
+
+      previousRank = middle;
+      previousValue = means[i];
+      cumulated += weights[i];
+    }
+    return interpolate(rank, previousRank, previousValue, count, max);
+  }
+
+  /**
+   * Estimated fraction of the values lower than or equal to the value, NaN when the digest is empty
+   */
+  public double cdf(double value) {
+    compress();
+    if (size == 0) {
+      return Double.NaN;
+    }
+    if (value < min) {
+      return 0;
+    }
+    if (value >= max) {
+      return 1;
+    }
+
+    double previousRank = 0;
+    double previousValue = min;
+    double cumulated = 0;
+
+    for (int i = 0; i < size; i++) {
+      double middle = cumulated + weights[i] / 2.0;
+      if (value < means[i]) {
+        return interpolate(value, previousValue, previousRank, means[i], middle) / count;
+      }
+
+      previousRank = middle;
+      previousValue = means[i];
+      cumulated += weights[i];
+    }
+    return interpolate(value, previousValue, previousRank, max, count) / count;
+  }
+
+  /**
+   * Number of centroids
+   */
+  public int centroidCount() {
+    compress();
+    return size;
+  }
+
+  public double compression() {
+    return compression;
+  }
+
+  /**
+   * Adds the values of the other digest to this one, through its centroids
+   */
+  public TDigest merge(TDigest other) {
+    other.compress();
+
+    // copies : other may be this digest
+    double[] otherMeans = Arrays.copyOf(other.means, other.size);
+    long[] otherWeights = Arrays.copyOf(other.weights, other.size);
+    for (int i = 0; i < otherMeans.length; i++) {
+      add(otherMeans[i], otherWeights[i]);
+    }
+    if (other.count > 0) {
+      min = Math.min(min, other.min);
+      max = Math.max(max, other.max);
+    }
+    return this;
+  }
+
+  public byte[] toBytes() {
+    compress();
+
+    ByteBuffer out = ByteBuffer.allocate(1 + 8 * 3 + 4 + 16 * size);
+    out.put(FORMAT).putDouble(compression).putDouble(min).putDouble(max).putInt(size);
+    for (int i = 0; i < size; i++) {
+      out.putDouble(means[i]).putLong(weights[i]);
+    }
+    return out.array();
+  }
+
+  @Override
+  public String toString() {
+    return "TDigest[compression=" + compression + ", count=" + count + ", centroids=" + centroidCount() + "]";
+  }
+
+  private static double interpolate(double x, double x0, double y0, double x1, double y1) {
+    return x1 == x0 ? y1 : y0 + (x - x0) * (y1 - y0) / (x1 - x0);
+  }
+
+  /**
+   * Scale function k1, from the quantile to the k scale
+   */
+  private double k(double q) {
+    return compression / (2 * Math.PI) * Math.asin(2 * q - 1);
+  }
+
+  /**
+   * Inverse of k, 1 past the end of the scale
+   */
+  private double q(double k) {
+    return k >= compression / 4 ? 1 : (Math.sin(k * 2 * Math.PI / compression) + 1) / 2;
+  }
+
+  /**
+   * Merges the buffer into the centroids : both sorted by mean, then merged from left to right while a centroid spans at most 1 unit of k
+   */
+  private void compress() {
+    if (bufferSize == 0) {
+      return;
+    }
+
+    sort(bufferMeans, bufferWeights, 0, bufferSize - 1);
+
+    double[] oldMeans = means.clone();
+    long[] oldWeights = weights.clone();
+    int oldSize = size;
+    double totalWeight = count;
+    double weightSoFar = 0;
+    // the weight where the current centroid reaches 1 unit of k : one sin per centroid rather than one asin per value
+    double weightLimit = totalWeight * q(k(0) + 1);
+    int newSize = 0;
+    double mean = 0;
+    long weight = 0;
+
+    // two sorted runs : the centroids and the buffer, taken in order of mean
+    for (int i = 0, j = 0; i < oldSize || j < bufferSize; ) {
+      double nextMean;
+      long nextWeight;
+      if (j >= bufferSize || (i < oldSize && oldMeans[i] <= bufferMeans[j])) {
+        nextMean = oldMeans[i];
+        nextWeight = oldWeights[i++];
+      } else {
+        nextMean = bufferMeans[j];
+        nextWeight = bufferWeights[j++];
+      }
+
+      if (weight == 0) {
+        mean = nextMean;
+        weight = nextWeight;
+      } else if (weightSoFar + weight + nextWeight <= weightLimit) {
+        weight += nextWeight;
+        mean += (nextMean - mean) * nextWeight / weight;
+      } else {
+        weightSoFar += weight;
+        weightLimit = totalWeight * q(k(weightSoFar / totalWeight) + 1);
+        means[newSize] = mean;
+        weights[newSize] = weight;
+        newSize++;
+        mean = nextMean;
+        weight = nextWeight;
+      }
+    }
+    means[newSize] = mean;
+    weights[newSize] = weight;
+    size = newSize + 1;
+    bufferSize = 0;
+  }
+
+  /**
+   * Quicksort of the means with their weights (Arrays.sort cannot move a second array along)
+   */
+  private static void sort(double[] means, long[] weights, int from, int to) {
+    while (to - from > 16) {
+      int middle = (from + to) >>> 1;
+
+      // median of three as the pivot
+      if (means[middle] < means[from]) {
+        swap(means, weights, middle, from);
+      }
+      if (means[to] < means[from]) {
+        swap(means, weights, to, from);
+      }
+      if (means[to] < means[middle]) {
+        swap(means, weights, to, middle);
+      }
+
+      double pivot = means[middle];
+      int i = from;
+      int j = to;
+      while (i <= j) {
+        while (means[i] < pivot) {
+          i++;
+        }
+        while (means[j] > pivot) {
+          j--;
+        }
+        if (i <= j) {
+          swap(means, weights, i++, j--);
+        }
+      }
+
+      // recursion on the smaller part, loop on the larger : a stack depth of log n at most
+      if (j - from < to - i) {
+        sort(means, weights, from, j);
+        from = i;
+      } else {
+        sort(means, weights, i, to);
+        to = j;
+      }
+    }
+
+    for (int i = from + 1; i <= to; i++) {
+      double mean = means[i];
+      long weight = weights[i];
+      int j = i - 1;
+
+      for (; j >= from && means[j] > mean; j--) {
+        means[j + 1] = means[j];
+        weights[j + 1] = weights[j];
+      }
+      means[j + 1] = mean;
+      weights[j + 1] = weight;
+    }
+  }
+
+  private static void swap(double[] means, long[] weights, int i, int j) {
+    double mean = means[i];
+    long weight = weights[i];
+
+    means[i] = means[j];
+    weights[i] = weights[j];
+    means[j] = mean;
+    weights[j] = weight;
+  }
+
+  private final double compression;
+
+  /** Centroids sorted by mean */
+  private final double[] means;
+  private final long[] weights;
+  private int size;
+
+  /** Values added since the last compress, in any order */
+  private final double[] bufferMeans;
+  private final long[] bufferWeights;
+  private int bufferSize;
+
+  private long count;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+}
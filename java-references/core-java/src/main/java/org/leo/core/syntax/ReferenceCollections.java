@@ -47,6 +47,7 @@ import org.leo.core.syntax.ReferenceFeatures8.Person;
  * 
  * Unlike Arrays, Collections does not need to have assigned capacity upon creation, they also can change size
  * Also Unlike Arrays, Collections cannot hold primitive types
+ * (org.leo.core.collections.primitive has int and long lists, maps and sets storing the values in primitive arrays, without boxing)
  * A collection is a container, a data structure that holds multiple objects and can manipulate them
  * 
  * The collections Framework is a set of interfaces, abstract classes and concrete classes
@@ -74,6 +75,9 @@ import org.leo.core.syntax.ReferenceFeatures8.Person;
  * Collections implementations that are in the java.util package are not synchronized, the ones that are synchronized are those who are in java.util.concurrent and 
  * some implementations that are not general purpose ones
  * 
+ * The performance claims made below (ArrayList vs LinkedList, HashSet vs TreeSet, Hashtable vs ConcurrentHashMap...) are measured
+ * by the JMH benchmarks of the benchmarks module, org.leo.benchmarks.collections
+ * 
  */
 public class ReferenceCollections {
 
@@ -169,6 +173,9 @@ public class ReferenceCollections {
     // we can also transform it using a stream and a collector
     collection.stream().collect(Collectors.toSet());
 
+    // a set keeps every distinct element, to only count them (or test a membership with a small error) see org.leo.core.sketches :
+    // HyperLogLog counts billions of distinct elements in 16 KB, a BloomFilter answers contains in about 10 bits per element
+
     // java also provides 2 special purpose set implementations :
 
     /*
@@ -269,6 +276,9 @@ public class ReferenceCollections {
      * SynchronousQueue — a simple rendezvous mechanism that uses the BlockingQueue interface 
      * PriorityBlockingQueue is a blocking Queue used when thread safe is needed
      * 
+     * For a high rate hand off between threads (millions of elements per second), org.leo.core.concurrent has bounded lock free ring buffers
+     * (SpscRingBuffer, MpscRingBuffer, MpmcRingBuffer) : no lock and no node per element, compared by HandoffQueueBenchmark
+     * 
      *  Bounded queues are the ones that restrict the number of elements they can contains, blocking means thread safe
      * 
      * in general java.util queues are unbounded and not thread safe, unlike those from java.util.concurrent
@@ -277,6 +287,10 @@ public class ReferenceCollections {
      * add -> offer (insertion)
      * remove -> poll (head reading with removal)
      * element -> peek (head reading)
+     * 
+     * PriorityQueue cannot find an element without scanning it (remove(Object) is O(n)) nor move one whose priority changed,
+     * org.leo.core.collections.heap has indexed heaps doing both in O(log n), and org.leo.core.collections.timer.TimerWheel
+     * replaces a DelayQueue of timeouts (O(1) schedule and cancel)
      */
     Queue<String> priorityQueue = new PriorityQueue<>();
 
@@ -310,6 +324,8 @@ public class ReferenceCollections {
      * range view : subMap, headMap, tailMap
      * Endpoints : firstKey and lastKey
      * Comparator access : comparator
+     * The thread safe sorted map is ConcurrentSkipListMap, both keep one node per entry, for large maps read by many threads
+     * org.leo.core.collections.btree has B+trees (many keys per node, linked leaves for the range scans, lock free reads)
      * 
      * Map have basic operations (such as put, get, containsKey, containsValue, size, and isEmpty) bulk operations (such as putAll and clear)
      * and collection views operations (such as keySet, entrySet, and values)
@@ -346,6 +362,8 @@ public class ReferenceCollections {
      *    protected boolean removeEldestEntry(Entry<Integer, String> eldest) {
      *      return size() > 100;
      *    }
+     *    Shared between threads, such a map needs a lock around every get (a get moves the entry), org.leo.core.cache.ConcurrentCache
+     *    is a concurrent cache with a better eviction policy than LRU
      */
     
     /*
@@ -383,6 +401,7 @@ public class ReferenceCollections {
      * ConcurrentHashMap implementation of that interface is a highly concurrent, high-performance implementation backed up by a hash table
      * This implementation never blocks when performing retrievals and allows the client to select the concurrency level for updates.
      * It is intended as a drop-in replacement for Hashtable: in addition to implementing ConcurrentMap, it supports all the legacy methods peculiar to Hashtable.
+     * All these maps keep their entries as objects on the heap, for tables of tens of millions of entries see org.leo.core.collections.offheap.OffHeapHashMap
      */
     ConcurrentMap<Integer, String> concurrentHashMap = new ConcurrentHashMap<>();
     
@@ -459,6 +478,11 @@ public class ReferenceCollections {
       }
     }
     
+    /*
+     * One lock for everything : two threads reading the collection wait for each other, org.leo.core.concurrent.ConcurrentWrappers
+     * has read/write locked, optimistic (StampedLock) and striped replacements whose iterations need no synchronized block
+     */
+    
     /*
      * The only down side of these wrappers it's that does not allow to call interface implementation methods, they return one of the core interfaces and never
      * a given implementation like ArrayList or HashMap for example
@@ -472,6 +496,12 @@ public class ReferenceCollections {
     Set<String> immutableSet = Collections.unmodifiableSet(hashSet);
     Map<Integer, String> immutableMap = Collections.unmodifiableMap(hashMap);
     
+    /*
+     * These are views : the wrapped collection can still change underneath, a snapshot for a reader needs a full copy (O(n)),
+     * org.leo.core.collections.persistent has immutable vector, hash map / set and sorted map whose modified versions are new
+     * collections sharing almost all their structure with the original (O(log n) per write, with builders for bulk construction)
+     */
+    
     /*
      * Let's see another interesting set of wrappers called checked wrappers, it tackles a problem with generic collections:   
      * The generic system provided by java is a static one, the checking is done in compile time, such a system can be beaten simply by
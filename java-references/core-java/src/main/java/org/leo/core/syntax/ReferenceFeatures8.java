@@ -355,6 +355,10 @@ public class ReferenceFeatures8 {
         .map(product -> product.price)  
         .reduce(0.0f, Float::sum);                   // accumulating price, by referring method of Float class  
 
+    // map(product -> product.price) boxes every price into a Float, over millions of products the same queries are much faster
+    // on columns of primitives : org.leo.core.columnar.ProductTable keeps the prices in a float[] and runs filter, sum, max and
+    // group by as plain loops over it (measured against these pipelines by org.leo.benchmarks.columnar.ProductTableBenchmark)
+
     // find max
     Product productA = productsList.stream()  
         .max((product1, product2) -> {   
@@ -396,6 +400,10 @@ public class ReferenceFeatures8 {
     Map<Boolean, List<Product>> partitionByPrice = productsList.stream()
         .collect(Collectors.partitioningBy(p -> p.getPrice() >= 3000));       // take a predicate
 
+    // when an approximate answer is enough, org.leo.core.sketches.Sketches has collectors building fixed size sketches
+    // instead of keeping every element : Bloom filter (membership), count-min (frequencies), HyperLogLog (distinct count)
+    // and t-digest (quantiles), e.g. productsList.stream().collect(Sketches.toTDigest(Product::getPrice)).quantile(0.99)
+
     /*
      * The operation we apply on streams are called aggregation operations and a sequence of such operations are called pipelines
      * There are intermediate operations (we can call zero or more of them in a pipeline), they return a stream (like filter or map for instance)
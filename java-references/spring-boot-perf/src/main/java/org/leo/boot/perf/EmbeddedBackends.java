@@ -0,0 +1,100 @@
+package org.leo.boot.perf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.leo.boot.data.model.Role;
+import org.leo.boot.data.repository.RoleRepository;
+import org.leo.boot.examples.SpringBootMvcExample;
+import org.leo.boot.examples.SpringBootRestExample;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.context.embedded.EmbeddedWebApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodProcess;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+
+/**
+ * Starts the two spring boot examples on random ports, in this JVM, against local stand-ins of their databases :
+ * - SpringBootRestExample against an embedded mongodb process (the binaries are downloaded into ~/.embedmongo the first time)
+ * - SpringBootMvcExample against an in memory H2 database in MySQL mode, the schema is created by hibernate
+ *   and the ADMIN role given to the registered users is inserted once the application is up
+ * 
+ * The applications keep their application.properties, only the connections and the noisy settings are overridden,
+ * as command line arguments since these win over application.properties
+ * @author fahdessid
+ */
+final class EmbeddedBackends implements AutoCloseable {
+
+  void start() throws IOException {
+    int mongoPort = Network.getFreeServerPort();
+
+    mongodExecutable = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+        .version(Version.Main.PRODUCTION)
+        .net(new Net("localhost", mongoPort, Network.localhostIsIPv6()))
+        .build());
+    mongodProcess = mongodExecutable.start();
+
+    restApplication = new SpringApplicationBuilder(SpringBootRestExample.class).run(
+        "--server.port=0",
+        "--spring.data.mongodb.host=localhost",
+        "--spring.data.mongodb.port=" + mongoPort,
+        "--spring.data.mongodb.database=perf_db",
+        "--spring.jmx.enabled=false",
+        "--logging.level.=warn",
+        "--logging.level.org.springframework.data=warn");
+    contexts.add(restApplication);
+
+    // IGNORE_UNKNOWN_SETTINGS : H2 would refuse the MySQL driver settings of spring.datasource.hikari.data-source-properties
+    mvcApplication = new SpringApplicationBuilder(SpringBootMvcExample.class).run(
+        "--server.port=0",
+        "--spring.datasource.url=jdbc:h2:mem:perf_db;MODE=MySQL;DB_CLOSE_DELAY=-1;IGNORE_UNKNOWN_SETTINGS=TRUE",
+        "--spring.datasource.driver-class-name=org.h2.Driver",
+        "--spring.datasource.username=sa",
+        "--spring.datasource.password=",
+        "--spring.jpa.hibernate.ddl-auto=create",
+        "--spring.jpa.show-sql=false",
+        "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "--spring.jmx.enabled=false",
+        "--logging.level.=warn",
+        "--logging.level.org.springframework.data=warn");
+    contexts.add(mvcApplication);
+
+    Role admin = new Role();
+    admin.setRole("ADMIN");
+    mvcApplication.getBean(RoleRepository.class).save(admin);
+  }
+
+  String restUrl() {
+    return "http://localhost:" + ((EmbeddedWebApplicationContext) restApplication).getEmbeddedServletContainer().getPort();
+  }
+
+  String mvcUrl() {
+    return "http://localhost:" + ((EmbeddedWebApplicationContext) mvcApplication).getEmbeddedServletContainer().getPort();
+  }
+
+  @Override
+  public void close() {
+    for (ConfigurableApplicationContext context : contexts) {
+      context.close();
+    }
+    if (mongodProcess != null) {
+      mongodProcess.stop();
+    }
+    if (mongodExecutable != null) {
+      mongodExecutable.stop();
+    }
+  }
+
+  private MongodExecutable mongodExecutable;
+  private MongodProcess mongodProcess;
+  private ConfigurableApplicationContext restApplication;
+  private ConfigurableApplicationContext mvcApplication;
+  private final List<ConfigurableApplicationContext> contexts = new ArrayList<ConfigurableApplicationContext>();
+}
@@ -0,0 +1,99 @@
+package org.leo.boot.perf;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Minimal http client over HttpURLConnection
+ * The bodies are always read to the end and the streams closed, so the JDK keeps the connections alive and reuses them
+ * Redirects are not followed, the login scenario checks the redirect location
+ * @author fahdessid
+ */
+final class HttpCalls {
+
+  private static final int TIMEOUT = 30000;
+
+  private HttpCalls() {
+  }
+
+  static Response get(String url) throws IOException {
+    return send("GET", url, null, null);
+  }
+
+  static Response json(String method, String url, String json) throws IOException {
+    return send(method, url, "application/json", json);
+  }
+
+  static Response form(String url, Map<String, String> fields) throws IOException {
+    StringJoiner body = new StringJoiner("&");
+
+    for (Map.Entry<String, String> field : fields.entrySet()) {
+      body.add(URLEncoder.encode(field.getKey(), "UTF-8") + "=" + URLEncoder.encode(field.getValue(), "UTF-8"));
+    }
+    return send("POST", url, "application/x-www-form-urlencoded", body.toString());
+  }
+
+  static Response send(String method, String url, String contentType, String body) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+
+    connection.setRequestMethod(method);
+    connection.setInstanceFollowRedirects(false);
+    connection.setConnectTimeout(TIMEOUT);
+    connection.setReadTimeout(TIMEOUT);
+
+    if (body != null) {
+      byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", contentType);
+      connection.setFixedLengthStreamingMode(bytes.length);
+
+      try (OutputStream out = connection.getOutputStream()) {
+        out.write(bytes);
+      }
+    }
+
+    int status = connection.getResponseCode();
+    InputStream in = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+
+    return new Response(status, connection.getHeaderField("Location"), in == null ? "" : readFully(in));
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    try (InputStream stream = in) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int read;
+
+      while ((read = stream.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+      return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  static final class Response {
+
+    Response(int status, String location, String body) {
+      this.status = status;
+      this.location = location;
+      this.body = body;
+    }
+
+    boolean isOk() {
+      return status >= 200 && status < 300;
+    }
+
+    final int status;
+    final String location;
+    final String body;
+  }
+}
@@ -0,0 +1,83 @@
+package org.leo.boot.perf;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Json report of a load test run
+ * The keys are always written in the same order and the report holds no date nor host name,
+ * so the reports of two commits can be compared with a plain diff or with LoadReportComparison
+ * 
+ * {"settings" : {...}, "scenarios" : {"item-read" : {"target-rate", "throughput", "requests", "errors",
+ *  "latency-ms" : {"mean", "p50", "p90", "p99", "p99.9", "max"}}, ...}}
+ * @author fahdessid
+ */
+final class LoadReport {
+
+  static final String[] PERCENTILES = {"p50", "p90", "p99", "p99.9"};
+
+  private static final double[] PERCENTILE_VALUES = {50, 90, 99, 99.9};
+
+  private LoadReport() {
+  }
+
+  static Map<String, Object> of(Map<String, Object> settings, Map<String, OpenLoadGenerator.Result> results) {
+    Map<String, Object> scenarios = new LinkedHashMap<String, Object>();
+
+    for (Map.Entry<String, OpenLoadGenerator.Result> result : results.entrySet()) {
+      scenarios.put(result.getKey(), scenario(result.getValue()));
+    }
+
+    Map<String, Object> report = new LinkedHashMap<String, Object>();
+
+    report.put("settings", settings);
+    report.put("scenarios", scenarios);
+    return report;
+  }
+
+  static void write(Map<String, Object> report, File file) throws IOException {
+    if (file.getParentFile() != null) {
+      file.getParentFile().mkdirs();
+    }
+    MAPPER.writeValue(file, report);
+  }
+
+  @SuppressWarnings("unchecked")
+  static Map<String, Object> read(File file) throws IOException {
+    return MAPPER.readValue(file, Map.class);
+  }
+
+  private static Map<String, Object> scenario(OpenLoadGenerator.Result result) {
+    Histogram latencies = result.latencies;
+    long requests = latencies.getTotalCount();
+    Map<String, Object> latency = new LinkedHashMap<String, Object>();
+
+    latency.put("mean", round(latencies.getMean() / 1000));
+    for (int i = 0; i < PERCENTILES.length; i++) {
+      latency.put(PERCENTILES[i], round(latencies.getValueAtPercentile(PERCENTILE_VALUES[i]) / 1000.0));
+    }
+    latency.put("max", round(latencies.getMaxValue() / 1000.0));
+
+    Map<String, Object> scenario = new LinkedHashMap<String, Object>();
+
+    scenario.put("target-rate", result.targetRate);
+    scenario.put("throughput", round(requests * 1000.0 / result.durationMillis));
+    scenario.put("requests", requests);
+    scenario.put("errors", result.errors.sum());
+    scenario.put("latency-ms", latency);
+    return scenario;
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+
+  private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+}
@@ -0,0 +1,65 @@
+package org.leo.boot.perf;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * Compares two load reports (see LoadReport), for instance the reports of a commit and of its parent
+ * usage : LoadReportComparison baseline.json candidate.json
+ * 
+ * Prints, for every scenario of the baseline, the throughput, the errors and the latencies of both reports
+ * with the relative change, the changes above the threshold (10% by default, -Dload.compare.threshold=5) are flagged
+ * @author fahdessid
+ */
+public class LoadReportComparison {
+
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("usage : LoadReportComparison baseline.json candidate.json");
+      System.exit(1);
+    }
+
+    double threshold = Double.parseDouble(System.getProperty("load.compare.threshold", "10"));
+    Map<String, Object> baseline = scenarios(LoadReport.read(new File(args[0])));
+    Map<String, Object> candidate = scenarios(LoadReport.read(new File(args[1])));
+
+    for (String name : baseline.keySet()) {
+      if (!candidate.containsKey(name)) {
+        System.out.println(name + " : missing from " + args[1]);
+        continue;
+      }
+
+      Map<String, Object> before = asMap(baseline.get(name));
+      Map<String, Object> after = asMap(candidate.get(name));
+
+      System.out.println(name);
+      print("throughput", before.get("throughput"), after.get("throughput"), threshold);
+      print("errors", before.get("errors"), after.get("errors"), threshold);
+
+      Map<String, Object> latencyBefore = asMap(before.get("latency-ms"));
+      Map<String, Object> latencyAfter = asMap(after.get("latency-ms"));
+
+      for (String metric : latencyBefore.keySet()) {
+        print("latency " + metric + " ms", latencyBefore.get(metric), latencyAfter.get(metric), threshold);
+      }
+    }
+  }
+
+  private static void print(String metric, Object before, Object after, double threshold) {
+    double x = ((Number) before).doubleValue();
+    double y = after == null ? Double.NaN : ((Number) after).doubleValue();
+    double change = x == 0 ? (y == 0 ? 0 : Double.POSITIVE_INFINITY) : (y - x) * 100 / x;
+
+    System.out.println(String.format("  %-18s %12.2f -> %12.2f  %+8.1f%%%s", metric, x, y, change,
+        Math.abs(change) > threshold ? "  <<" : ""));
+  }
+
+  private static Map<String, Object> scenarios(Map<String, Object> report) {
+    return asMap(report.get("scenarios"));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, Object> asMap(Object value) {
+    return (Map<String, Object>) value;
+  }
+}
@@ -0,0 +1,229 @@
+package org.leo.boot.perf;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Load test of the spring boot examples, without any external database (see EmbeddedBackends)
+ * 
+ * Scenarios, each with its own target rate (load.rate.<scenario> in load-test.properties) :
+ * - item-create, item-read, item-update, item-delete, item-list, item-rank on the rest application
+ * - login (form login of a seeded user) and registration (a new user each time) on the mvc application
+ * The load is open (see OpenLoadGenerator) and the throughput and latency percentiles of every scenario are written to
+ * load.report (target/load-report.json by default), two reports are compared with LoadReportComparison
+ * 
+ * The numbers measure the applications, not the databases : the embedded mongodb and H2 run on the same machine as the
+ * load, so compare reports taken on the same machine with the same settings
+ * @author fahdessid
+ */
+public class LoadTest {
+
+  public static void main(String[] args) throws Exception {
+    Properties settings = settings();
+
+    try (EmbeddedBackends backends = new EmbeddedBackends()) {
+      backends.start();
+
+      LoadTest test = new LoadTest(backends.restUrl(), backends.mvcUrl());
+      test.seed(intSetting(settings, "load.seed.items"), intSetting(settings, "load.seed.users"),
+          (int) Math.ceil(doubleSetting(settings, "load.rate.item-delete")
+              * (intSetting(settings, "load.warmup-seconds") + intSetting(settings, "load.duration-seconds")) * 1.5));
+
+      List<Scenario> scenarios = new ArrayList<Scenario>();
+      for (Map.Entry<String, Callable<Boolean>> scenario : test.scenarios().entrySet()) {
+        double rate = doubleSetting(settings, "load.rate." + scenario.getKey());
+
+        if (rate > 0) {
+          scenarios.add(new Scenario(scenario.getKey(), rate, scenario.getValue()));
+        }
+      }
+
+      long warmup = TimeUnit.SECONDS.toMillis(intSetting(settings, "load.warmup-seconds"));
+      long duration = TimeUnit.SECONDS.toMillis(intSetting(settings, "load.duration-seconds"));
+      OpenLoadGenerator generator = new OpenLoadGenerator(scenarios, intSetting(settings, "load.max-concurrency"),
+          Long.parseLong(settings.getProperty("load.seed")));
+
+      Map<String, Object> reported = new LinkedHashMap<String, Object>();
+      for (String key : new TreeSet<String>(settings.stringPropertyNames())) {
+        if (key.startsWith("load.") && !key.equals("load.report")) {
+          reported.put(key, settings.getProperty(key));
+        }
+      }
+
+      Map<String, Object> report = LoadReport.of(reported, generator.run(warmup, duration));
+      File file = new File(settings.getProperty("load.report"));
+
+      LoadReport.write(report, file);
+      System.out.println("load report written to " + file.getAbsolutePath());
+    }
+
+    // the embedded servers leave non daemon threads behind
+    System.exit(0);
+  }
+
+  LoadTest(String restUrl, String mvcUrl) {
+    this.restUrl = restUrl;
+    this.mvcUrl = mvcUrl;
+  }
+
+  /**
+   * Items read, updated and ranked during the run, users for the login scenario and spare items for the delete scenario
+   */
+  void seed(int items, int users, int deletable) throws Exception {
+    for (int i = 0; i < items + deletable; i++) {
+      SeededItem item = createItem();
+
+      if (item == null) {
+        throw new IllegalStateException("Could not create the seed items");
+      }
+      if (i < items) {
+        seededItems.add(item);
+      } else {
+        deletableItems.add(item);
+      }
+    }
+    for (int i = 0; i < users; i++) {
+      String email = "perf-login-" + i + "@leo.org";
+
+      if (!register(email)) {
+        throw new IllegalStateException("Could not register " + email);
+      }
+      loginEmails.add(email);
+    }
+  }
+
+  Map<String, Callable<Boolean>> scenarios() {
+    Map<String, Callable<Boolean>> scenarios = new LinkedHashMap<String, Callable<Boolean>>();
+
+    scenarios.put("item-create", () -> createItem() != null);
+
+    scenarios.put("item-read", () -> HttpCalls.get(restUrl + "/item/" + seededItem().id).isOk());
+
+    scenarios.put("item-update", () -> {
+      SeededItem item = seededItem();
+      return HttpCalls.json("PUT", restUrl + "/item/" + item.id, itemJson(item.name, random().nextInt(1000))).isOk();
+    });
+
+    scenarios.put("item-delete", () -> {
+      SeededItem item = deletableItems.poll();
+      return item != null && HttpCalls.send("DELETE", restUrl + "/item/" + item.id, null, null).isOk();
+    });
+
+    scenarios.put("item-list", () -> HttpCalls.get(restUrl + "/item").isOk());
+
+    // the rank endpoint looks the item up by name
+    scenarios.put("item-rank", () -> HttpCalls.send("PUT", restUrl + "/item/" + seededItem().name + "/" + random().nextInt(100), null, null).isOk());
+
+    scenarios.put("login", () -> {
+      Map<String, String> form = new LinkedHashMap<String, String>();
+
+      form.put("email", loginEmails.get(random().nextInt(loginEmails.size())));
+      form.put("password", PASSWORD);
+
+      HttpCalls.Response response = HttpCalls.form(mvcUrl + "/login", form);
+      return response.status == 302 && response.location != null && response.location.endsWith("/admin/home");
+    });
+
+    scenarios.put("registration", () -> register("perf-user-" + sequence.incrementAndGet() + "@leo.org"));
+
+    return scenarios;
+  }
+
+  private SeededItem createItem() throws Exception {
+    String name = "perf-item-" + sequence.incrementAndGet();
+    HttpCalls.Response response = HttpCalls.json("POST", restUrl + "/item", itemJson(name, random().nextInt(1000)));
+
+    if (!response.isOk()) {
+      return null;
+    }
+
+    JsonNode item = MAPPER.readTree(response.body).get("item");
+    return new SeededItem(item.get("id").asText(), name);
+  }
+
+  private boolean register(String email) throws Exception {
+    Map<String, String> form = new LinkedHashMap<String, String>();
+
+    form.put("name", "perf");
+    form.put("lastName", "user");
+    form.put("email", email);
+    form.put("password", PASSWORD);
+
+    // the registration page is answered with a 200 either way, the success message tells a registration from a validation error
+    HttpCalls.Response response = HttpCalls.form(mvcUrl + "/registration", form);
+    return response.isOk() && response.body.contains("User has been registered successfully");
+  }
+
+  private SeededItem seededItem() {
+    return seededItems.get(random().nextInt(seededItems.size()));
+  }
+
+  private static String itemJson(String name, int quantity) {
+    return "{\"name\":\"" + name + "\",\"code\":\"" + name.toUpperCase() + "\",\"type\":\"perf\",\"quantity\":" + quantity + "}";
+  }
+
+  private static ThreadLocalRandom random() {
+    return ThreadLocalRandom.current();
+  }
+
+  /**
+   * load-test.properties overridden by the system properties
+   */
+  private static Properties settings() throws Exception {
+    Properties settings = new Properties();
+
+    try (InputStream in = LoadTest.class.getResourceAsStream("/load-test.properties")) {
+      settings.load(in);
+    }
+    for (String key : System.getProperties().stringPropertyNames()) {
+      if (key.startsWith("load.")) {
+        settings.setProperty(key, System.getProperty(key));
+      }
+    }
+    return settings;
+  }
+
+  private static int intSetting(Properties settings, String key) {
+    return Integer.parseInt(settings.getProperty(key, "0").trim());
+  }
+
+  private static double doubleSetting(Properties settings, String key) {
+    return Double.parseDouble(settings.getProperty(key, "0").trim());
+  }
+
+  private static final class SeededItem {
+
+    SeededItem(String id, String name) {
+      this.id = id;
+      this.name = name;
+    }
+
+    final String id;
+    final String name;
+  }
+
+  private static final String PASSWORD = "perf-password";
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final String restUrl;
+  private final String mvcUrl;
+  private final List<SeededItem> seededItems = new ArrayList<SeededItem>();
+  private final ConcurrentLinkedQueue<SeededItem> deletableItems = new ConcurrentLinkedQueue<SeededItem>();
+  private final List<String> loginEmails = new ArrayList<String>();
+  private final AtomicLong sequence = new AtomicLong();
+}
@@ -0,0 +1,132 @@
+package org.leo.boot.perf;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Open model load : the requests arrive at their scheduled time whatever the state of the previous ones,
+ * like independent users do, instead of a closed loop of threads waiting for each response before sending the next one
+ * 
+ * The arrivals of a scenario follow a poisson process (exponential gaps, mean 1/rate), drawn from a seeded Random so two runs
+ * with the same seed send the same schedule
+ * The latency is measured from the scheduled time and not from the moment a thread sends the request, so the time spent
+ * waiting for a free thread counts : a slow server makes the latency grow instead of silently lowering the load
+ * (the closed loop "coordinated omission")
+ * @author fahdessid
+ */
+final class OpenLoadGenerator {
+
+  /**
+   * Latencies are recorded in microseconds, up to one hour with 3 significant digits
+   */
+  private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+  OpenLoadGenerator(List<Scenario> scenarios, int maxConcurrency, long seed) {
+    this.scenarios = scenarios;
+    this.maxConcurrency = maxConcurrency;
+    this.seed = seed;
+  }
+
+  /**
+   * Runs all the scenarios together for warmup + duration, only the requests scheduled after the warmup are reported
+   */
+  Map<String, Result> run(long warmupMillis, long durationMillis) throws InterruptedException {
+    ExecutorService workers = Executors.newFixedThreadPool(maxConcurrency);
+    Map<String, Result> results = new LinkedHashMap<String, Result>();
+    List<Thread> dispatchers = new ArrayList<Thread>();
+
+    long start = System.nanoTime();
+    long measureStart = start + TimeUnit.MILLISECONDS.toNanos(warmupMillis);
+    long end = measureStart + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+
+    for (int i = 0; i < scenarios.size(); i++) {
+      Scenario scenario = scenarios.get(i);
+      Result result = new Result(scenario.rate, durationMillis);
+      Random arrivals = new Random(seed + i);
+
+      results.put(scenario.name, result);
+
+      Thread dispatcher = new Thread(() -> {
+        long scheduled = start;
+
+        while (true) {
+          scheduled += (long) (-Math.log(1 - arrivals.nextDouble()) / scenario.rate * 1e9);
+          if (scheduled >= end) {
+            return;
+          }
+
+          LockSupport.parkNanos(scheduled - System.nanoTime());
+
+          long intended = scheduled;
+          workers.execute(() -> call(scenario, result, intended, intended >= measureStart));
+        }
+      }, "load-" + scenario.name);
+
+      dispatchers.add(dispatcher);
+      dispatcher.start();
+    }
+
+    for (Thread dispatcher : dispatchers) {
+      dispatcher.join();
+    }
+
+    workers.shutdown();
+    if (!workers.awaitTermination(1, TimeUnit.MINUTES)) {
+      workers.shutdownNow();
+    }
+    return results;
+  }
+
+  private static void call(Scenario scenario, Result result, long intended, boolean measured) {
+    boolean ok;
+
+    try {
+      ok = scenario.call.call();
+    } catch (Exception e) {
+      ok = false;
+    }
+
+    if (!measured) {
+      return;
+    }
+
+    long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+
+    if (ok) {
+      result.latencies.recordValue(Math.min(latency, HIGHEST_LATENCY));
+    } else {
+      result.errors.increment();
+    }
+  }
+
+  /**
+   * Measured requests of one scenario, the latencies are those of the successful requests
+   */
+  static final class Result {
+
+    Result(double targetRate, long durationMillis) {
+      this.targetRate = targetRate;
+      this.durationMillis = durationMillis;
+    }
+
+    final double targetRate;
+    final long durationMillis;
+    final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY, 3);
+    final LongAdder errors = new LongAdder();
+  }
+
+  private final List<Scenario> scenarios;
+  private final int maxConcurrency;
+  private final long seed;
+}
@@ -0,0 +1,21 @@
+package org.leo.boot.perf;
+
+import java.util.concurrent.Callable;
+
+/**
+ * One kind of request of the load test : a name, a target rate (requests per second) and the call,
+ * the call returns false (or throws) when the response is not the expected one
+ * @author fahdessid
+ */
+final class Scenario {
+
+  Scenario(String name, double rate, Callable<Boolean> call) {
+    this.name = name;
+    this.rate = rate;
+    this.call = call;
+  }
+
+  final String name;
+  final double rate;
+  final Callable<Boolean> call;
+}
@@ -0,0 +1,36 @@
+#!/usr/bin/env bash
+#
+# Payload size and latency of the item list endpoints, plain versus gzip and HTTP/1.1 versus HTTP/2 (h2c)
+# Run it against an application started with the tuned profile (--spring.profiles.active=tuned), the plain HTTP/1.1 line
+# then shows what a client gets without the tuning. Prints, for every variant, the bytes received, the protocol used
+# and the median / p90 of the total time over RUNS requests
+#
+# usage : scripts/compression-benchmark.sh [BASE_URL] [RUNS]   (default http://localhost:8001 and 50)
+# the items collection should hold enough items for the list to matter (e.g. after a load test seed)
+
+set -euo pipefail
+
+BASE=${1:-http://localhost:8001}
+RUNS=${2:-50}
+URLS=("/item" "/item/search?q=item&size=100")
+
+measure() {
+  local label=$1 url=$2; shift 2
+  local times=() size protocol
+
+  for run in $(seq 1 "$RUNS"); do
+    read -r size protocol time < <(curl -s -o /dev/null "$@" -w '%{size_download} %{http_version} %{time_total}\n' "$BASE$url")
+    times+=("$time")
+  done
+
+  local sorted=($(printf '%s\n' "${times[@]}" | sort -n))
+  printf '%-40s %-14s %10s bytes  HTTP/%-4s median %6.1f ms  p90 %6.1f ms\n' "$url" "$label" "$size" "$protocol" \
+    "$(echo "${sorted[$(( RUNS / 2 ))]} * 1000" | bc)" "$(echo "${sorted[$(( RUNS * 9 / 10 ))]} * 1000" | bc)"
+}
+
+for url in "${URLS[@]}"; do
+  measure "http1.1 plain" "$url" --http1.1
+  measure "http1.1 gzip" "$url" --http1.1 -H 'Accept-Encoding: gzip'
+  measure "h2c plain" "$url" --http2
+  measure "h2c gzip" "$url" --http2 -H 'Accept-Encoding: gzip'
+done
@@ -0,0 +1,65 @@
+#!/usr/bin/env bash
+#
+# CRUD suite of the item rest api, run against a running SpringBootRestExample
+# exits with 1 at the first unexpected response
+#
+# usage : scripts/crud-smoke.sh [BASE_URL]   (default http://localhost:8001)
+
+set -euo pipefail
+
+BASE=${1:-http://localhost:8001}
+NAME="smoke-$$-$(date +%s)"
+
+fail() {
+  echo "crud smoke : $1" >&2
+  exit 1
+}
+
+# status code and body of a request, the body is kept in $BODY and the headers in $HEADERS
+call() {
+  local method=$1 url=$2; shift 2
+  local out
+  out=$(mktemp)
+  HEADERS=$(curl -s -D - -o "$out" -X "$method" -H 'Content-Type: application/json' "$@" "$BASE$url" | tr -d '\r')
+  BODY=$(cat "$out")
+  rm -f "$out"
+  STATUS=$(echo "$HEADERS" | awk 'NR == 1 { print $2 }')
+}
+
+expect() {
+  [ "$STATUS" = "$1" ] || fail "$2 : expected $1, got $STATUS $BODY"
+}
+
+call POST /item -d "{\"name\":\"$NAME\",\"code\":\"SMOKE\",\"type\":\"smoke\",\"quantity\":1}"
+expect 200 "create"
+ID=$(echo "$BODY" | sed -n 's/.*"id":"\([^"]*\)".*/\1/p')
+[ -n "$ID" ] || fail "create : no id in $BODY"
+
+call GET "/item/$ID"
+expect 200 "read"
+ETAG=$(echo "$HEADERS" | awk -F': ' 'tolower($1) == "etag" { print $2 }')
+echo "$BODY" | grep -q "\"name\":\"$NAME\"" || fail "read : $BODY"
+
+call GET "/item/$ID" -H "If-None-Match: $ETAG"
+expect 304 "conditional read"
+
+call PUT "/item/$ID" -d "{\"name\":\"$NAME\",\"code\":\"SMOKE\",\"type\":\"smoke\",\"quantity\":2}"
+expect 200 "update"
+echo "$BODY" | grep -q '"quantity":2' || fail "update : $BODY"
+
+call PUT "/item/$NAME/7"
+expect 200 "rank"
+echo "$BODY" | grep -q '"result":"1"' || fail "rank : $BODY"
+
+call GET /item
+expect 200 "list"
+echo "$BODY" | grep -q "$ID" || fail "list : $ID missing"
+
+call DELETE "/item/$ID"
+expect 200 "delete"
+
+call GET "/item/$ID"
+expect 200 "read after delete"
+[ -z "$BODY" ] || fail "read after delete : $BODY"
+
+echo "crud smoke : ok"
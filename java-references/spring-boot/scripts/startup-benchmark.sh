@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+#
+# Time to first request of the spring boot examples
+# Starts the application RUNS times and reports, for every run, the milliseconds between the launch
+# and the first successful response of the probe url and the resident memory (RSS) at that point, then the min / median / max
+# With CRUD=1 the item CRUD suite (scripts/crud-smoke.sh) is run against every rest application started
+#
+# usage : [CRUD=1] scripts/startup-benchmark.sh [rest|mvc] [default|fast] [RUNS]
+#   rest|mvc      : SpringBootRestExample (probe /api/greet) or SpringBootMvcExample (probe /login)
+#   default|fast  : spring profile, fast also uses target/app-cds.jsa when it exists
+#
+# needs the application jar target/spring-boot-*-app.jar and target/classpath.txt, build them with : mvn package -Pfast-startup
+# the classpath is the one of the training run, a CDS archive is only used with the classpath it was recorded with (JDK 13 or later)
+# the databases used by the application (mongodb or mysql) should be running
+
+set -euo pipefail
+cd "$(dirname "$0")/.."
+
+APP=${1:-rest}
+PROFILE=${2:-default}
+RUNS=${3:-5}
+PORT=${PORT:-8001}
+
+case "$APP" in
+  rest) MAIN=org.leo.boot.examples.SpringBootRestExample; PROBE=/api/greet ;;
+  mvc)  MAIN=org.leo.boot.examples.SpringBootMvcExample;  PROBE=/login ;;
+  *)    echo "unknown application $APP" >&2; exit 1 ;;
+esac
+
+APP_JAR=$(ls target/spring-boot-*-app.jar 2> /dev/null | head -n 1 || true)
+if [ ! -f target/classpath.txt ] || [ -z "$APP_JAR" ]; then
+  echo "target/classpath.txt or the application jar is missing, run mvn package -Pfast-startup first" >&2
+  exit 1
+fi
+
+# absolute like the training run of the maven profile
+CLASSPATH="$PWD/$APP_JAR:$(cat target/classpath.txt)"
+JVM_OPTS=()
+APP_OPTS=("--server.port=$PORT")
+
+if [ "$PROFILE" = "fast" ]; then
+  APP_OPTS+=("--spring.profiles.active=fast")
+  if [ -f target/app-cds.jsa ]; then
+    JVM_OPTS+=("-XX:SharedArchiveFile=target/app-cds.jsa")
+  fi
+fi
+
+now_ms() {
+  date +%s%3N
+}
+
+rss_mb() {
+  awk '/VmRSS/ { printf "%d", $2 / 1024 }' "/proc/$1/status"
+}
+
+results=()
+memory=()
+for run in $(seq 1 "$RUNS"); do
+  start=$(now_ms)
+  java "${JVM_OPTS[@]}" -cp "$CLASSPATH" "$MAIN" "${APP_OPTS[@]}" > "target/startup-run-$run.log" 2>&1 &
+  pid=$!
+
+  until curl -s -o /dev/null "http://localhost:$PORT$PROBE"; do
+    if ! kill -0 "$pid" 2> /dev/null; then
+      echo "run $run : application exited, see target/startup-run-$run.log" >&2
+      exit 1
+    fi
+    sleep 0.01
+  done
+
+  elapsed=$(( $(now_ms) - start ))
+  rss=$(rss_mb "$pid")
+  results+=("$elapsed")
+  memory+=("$rss")
+  echo "run $run : ${elapsed} ms, ${rss} MB"
+
+  if [ "${CRUD:-0}" = "1" ] && [ "$APP" = "rest" ]; then
+    if ! scripts/crud-smoke.sh "http://localhost:$PORT"; then
+      kill "$pid"
+      exit 1
+    fi
+  fi
+
+  kill "$pid"
+  wait "$pid" 2> /dev/null || true
+done
+
+sorted=($(printf '%s\n' "${results[@]}" | sort -n))
+echo "$APP $PROFILE time to first request (ms) : min ${sorted[0]} median ${sorted[$(( RUNS / 2 ))]} max ${sorted[$(( RUNS - 1 ))]}"
+sorted=($(printf '%s\n' "${memory[@]}" | sort -n))
+echo "$APP $PROFILE RSS at first request (MB) : min ${sorted[0]} median ${sorted[$(( RUNS / 2 ))]} max ${sorted[$(( RUNS - 1 ))]}"
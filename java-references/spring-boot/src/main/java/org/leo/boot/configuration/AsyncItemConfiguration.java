@@ -0,0 +1,36 @@
+package org.leo.boot.configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+/**
+ * Executor of the async item endpoints (see AsyncItemController)
+ * Both the threads and the queue are bounded : when the repository is slow the requests queue up to queue-capacity,
+ * then they are rejected right away (503) instead of piling up and exhausting the memory
+ * @author fahdessid
+ */
+@Configuration
+public class AsyncItemConfiguration {
+
+  @Bean(destroyMethod = "shutdown")
+  public ThreadPoolExecutor itemExecutor() {
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+        new ArrayBlockingQueue<Runnable>(queueCapacity), new CustomizableThreadFactory("item-async-"),
+        new ThreadPoolExecutor.AbortPolicy());
+
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  @Value("${item.async.threads:32}")
+  private int threads;
+
+  @Value("${item.async.queue-capacity:500}")
+  private int queueCapacity;
+}
@@ -0,0 +1,38 @@
+package org.leo.boot.configuration;
+
+import org.leo.boot.metrics.HikariMetricsTrackerFactory;
+import org.leo.boot.metrics.PoolMetrics;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * MySQL DataSource backed by a HikariCP pool instead of the default tomcat pool
+ * url and credentials still come from spring.datasource.*, the pool sizing, timeouts and the driver properties
+ * (prepared statement cache) are bound from spring.datasource.hikari.* in the application.properties file
+ * No connection test query is set so Hikari validates connections using the JDBC4 Connection.isValid()
+ * instead of a round trip with SELECT 1
+ * @author fahdessid
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+  @Bean
+  public PoolMetrics dataSourcePoolMetrics() {
+    return new PoolMetrics("mysql");
+  }
+
+  @Bean
+  @ConfigurationProperties(prefix = "spring.datasource.hikari")
+  public HikariDataSource dataSource(DataSourceProperties properties) {
+    HikariDataSource dataSource = (HikariDataSource) properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class)
+        .build();
+
+    dataSource.setMetricsTrackerFactory(new HikariMetricsTrackerFactory(dataSourcePoolMetrics()));
+    return dataSource;
+  }
+}
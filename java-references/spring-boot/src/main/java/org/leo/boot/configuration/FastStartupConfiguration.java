@@ -0,0 +1,47 @@
+package org.leo.boot.configuration;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Settings of the "fast" profile (see application-fast.properties) that cannot be expressed as properties
+ * 
+ * Lazy initialization : every bean definition is marked lazy so a bean is only created the first time it is needed,
+ * the web server is up before most of the application graph is built and the first request pays for what it uses
+ * BeanFactoryPostProcessor beans are created before all the other beans, this is why the bean method is static
+ * 
+ * Training run : with fast-startup.training-run=true the application closes itself as soon as it is ready,
+ * the fast-startup maven profile uses it to record the loaded classes into a class data sharing archive
+ * @author fahdessid
+ */
+@Configuration
+@Profile("fast")
+public class FastStartupConfiguration {
+
+  @Bean
+  public static BeanFactoryPostProcessor lazyInitBeanFactoryPostProcessor() {
+    return beanFactory -> {
+      for (String name : beanFactory.getBeanDefinitionNames()) {
+        BeanDefinition definition = beanFactory.getBeanDefinition(name);
+
+        // the servlet container and the infrastructure beans have to start eagerly anyway
+        if (definition.getRole() == BeanDefinition.ROLE_APPLICATION) {
+          definition.setLazyInit(true);
+        }
+      }
+    };
+  }
+
+  @Bean
+  @ConditionalOnProperty("fast-startup.training-run")
+  public ApplicationListener<ApplicationReadyEvent> trainingRunExit() {
+    return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+  }
+}
@@ -0,0 +1,51 @@
+package org.leo.boot.configuration;
+
+import org.leo.boot.metrics.MongoPoolMetricsListener;
+import org.leo.boot.metrics.PoolMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.mongodb.MongoClientOptions;
+
+/**
+ * Mongo client pool settings
+ * Spring Boot MongoAutoConfiguration picks up any MongoClientOptions bean when it creates the MongoClient
+ * behind MongoTemplate, so we only have to provide the options, the host/port/database stay in spring.data.mongodb.*
+ * @author fahdessid
+ */
+@Configuration
+public class MongoPoolConfiguration {
+
+  @Bean
+  public PoolMetrics mongoPoolMetrics() {
+    return new PoolMetrics("mongo");
+  }
+
+  @Bean
+  public MongoClientOptions mongoClientOptions() {
+    return MongoClientOptions.builder()
+        .connectionsPerHost(maxSize)
+        .minConnectionsPerHost(minSize)
+        .maxWaitTime(maxWaitTime)
+        .threadsAllowedToBlockForConnectionMultiplier(waitQueueMultiplier)
+        .maxConnectionIdleTime(maxIdleTime)
+        .addConnectionPoolListener(new MongoPoolMetricsListener(mongoPoolMetrics()))
+        .build();
+  }
+
+  @Value("${mongo.pool.max-size:50}")
+  private int maxSize;
+
+  @Value("${mongo.pool.min-size:5}")
+  private int minSize;
+
+  @Value("${mongo.pool.max-wait-time:3000}")
+  private int maxWaitTime;
+
+  @Value("${mongo.pool.wait-queue-multiplier:5}")
+  private int waitQueueMultiplier;
+
+  @Value("${mongo.pool.max-idle-time:600000}")
+  private int maxIdleTime;
+}
@@ -0,0 +1,81 @@
+package org.leo.boot.configuration;
+
+import org.apache.coyote.http11.AbstractHttp11Protocol;
+import org.apache.coyote.http2.Http2Protocol;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.EmbeddedServletContainerCustomizer;
+import org.springframework.boot.context.embedded.tomcat.TomcatEmbeddedServletContainerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+/**
+ * Settings of the "tuned" profile (see application-tuned.properties) for the embedded tomcat connector
+ * 
+ * The response compression (gzip, size threshold and mime types) is plain spring boot configuration, server.compression.*,
+ * what spring boot 1.5 does not expose is set here on the connector :
+ * - HTTP/2 : the Http2Protocol upgrade protocol lets clients switch a clear text connection to h2c (Upgrade: h2c),
+ *   h2 over TLS needs the connector to use ssl in addition
+ * - direct buffers for the NIO socket buffers, the bytes are not copied between the heap and the native memory on every write
+ * - bigger socket write buffer, so a large json list is flushed in fewer writes
+ * - keep alive : how many requests a connection serves and how long it stays open idle, clients reuse their connections
+ * @author fahdessid
+ */
+@Configuration
+@Profile("tuned")
+public class ServerTuningConfiguration {
+
+  @Bean
+  public EmbeddedServletContainerCustomizer tomcatConnectorTuning() {
+    return container -> {
+      if (!(container instanceof TomcatEmbeddedServletContainerFactory)) {
+        return;
+      }
+
+      ((TomcatEmbeddedServletContainerFactory) container).addConnectorCustomizers(connector -> {
+        if (http2) {
+          Http2Protocol http2Protocol = new Http2Protocol();
+
+          http2Protocol.setMaxConcurrentStreams(http2MaxConcurrentStreams);
+          http2Protocol.setInitialWindowSize(http2InitialWindowSize);
+          connector.addUpgradeProtocol(http2Protocol);
+        }
+
+        connector.setProperty("socket.directBuffer", Boolean.toString(directBuffers));
+        connector.setProperty("socket.appWriteBufSize", Integer.toString(writeBufferSize));
+        connector.setProperty("socket.appReadBufSize", Integer.toString(readBufferSize));
+
+        if (connector.getProtocolHandler() instanceof AbstractHttp11Protocol) {
+          AbstractHttp11Protocol<?> protocol = (AbstractHttp11Protocol<?>) connector.getProtocolHandler();
+
+          protocol.setMaxKeepAliveRequests(maxKeepAliveRequests);
+          protocol.setKeepAliveTimeout(keepAliveTimeout);
+        }
+      });
+    };
+  }
+
+  @Value("${server.tuning.http2:true}")
+  private boolean http2;
+
+  @Value("${server.tuning.http2-max-concurrent-streams:100}")
+  private int http2MaxConcurrentStreams;
+
+  @Value("${server.tuning.http2-initial-window-size:1048576}")
+  private int http2InitialWindowSize;
+
+  @Value("${server.tuning.direct-buffers:true}")
+  private boolean directBuffers;
+
+  @Value("${server.tuning.write-buffer-size:65536}")
+  private int writeBufferSize;
+
+  @Value("${server.tuning.read-buffer-size:16384}")
+  private int readBufferSize;
+
+  @Value("${server.tuning.max-keep-alive-requests:1000}")
+  private int maxKeepAliveRequests;
+
+  @Value("${server.tuning.keep-alive-timeout:30000}")
+  private int keepAliveTimeout;
+}
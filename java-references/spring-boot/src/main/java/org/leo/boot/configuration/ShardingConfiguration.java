@@ -0,0 +1,115 @@
+package org.leo.boot.configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.leo.boot.data.model.Item;
+import org.leo.boot.data.sharding.ShardConnector;
+import org.leo.boot.data.sharding.ShardedMongoTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.util.StringUtils;
+
+import com.mongodb.MongoClientOptions;
+
+/**
+ * Sharding of the items collection, enabled with items.sharding.enabled=true
+ * 
+ * Our mongoTemplate bean replaces the one of MongoDataAutoConfiguration (it backs off when a MongoTemplate exists),
+ * so ItemRepository and every other MongoTemplate user get the ShardedMongoTemplate
+ * The default shard, named "main", is the spring.data.mongodb.* database and keeps all the other collections,
+ * the other shards are listed in items.sharding.shards as name=mongodb://host:port/database,name=...
+ * The shards added with POST /shards are recorded in items.sharding.topology-collection on the default shard :
+ * they are connected at startup after the listed ones, and every items.sharding.topology-refresh ms by the running instances
+ * (with @EnableScheduling, see SpringBootRestExample)
+ * @author fahdessid
+ */
+@Configuration
+@ConditionalOnProperty(name = "items.sharding.enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+  public static final String DEFAULT_SHARD = "main";
+
+  @Bean(destroyMethod = "close")
+  public ShardConnector shardConnector(MongoClientOptions options, MappingMongoConverter converter) {
+    return new ShardConnector(options, converter);
+  }
+
+  @Bean(destroyMethod = "shutdown")
+  public ExecutorService shardingExecutor() {
+    return Executors.newFixedThreadPool(executorThreads);
+  }
+
+  @Bean
+  public MongoTemplate mongoTemplate(MongoDbFactory mongoDbFactory, MappingMongoConverter converter, ShardConnector shardConnector) {
+    Map<String, MongoTemplate> shards = new LinkedHashMap<String, MongoTemplate>();
+    MongoTemplate defaultShard = new MongoTemplate(mongoDbFactory, converter);
+
+    shards.put(DEFAULT_SHARD, defaultShard);
+
+    for (String shard : StringUtils.commaDelimitedListToStringArray(shardList)) {
+      String[] nameAndUri = shard.trim().split("=", 2);
+
+      if (nameAndUri.length != 2 || shards.containsKey(nameAndUri[0])) {
+        throw new IllegalArgumentException("Invalid or duplicated shard in items.sharding.shards : " + shard);
+      }
+      shards.put(nameAndUri[0], shardConnector.connect(nameAndUri[1]));
+    }
+
+    // the listed uri wins over the recorded one
+    for (Map.Entry<String, String> recorded : ShardedMongoTemplate.recordedShards(defaultShard, topologyCollection).entrySet()) {
+      if (!shards.containsKey(recorded.getKey())) {
+        shards.put(recorded.getKey(), shardConnector.connect(recorded.getValue()));
+      }
+    }
+
+    String collection = converter.getMappingContext().getPersistentEntity(Item.class).getCollection();
+    ShardedMongoTemplate template = new ShardedMongoTemplate(mongoDbFactory, converter, collection, topologyCollection, shards, virtualNodes,
+      shardingExecutor());
+
+    // documents written before a shard was listed are still on their previous shard, they are moved in background
+    if (rebalanceOnStartup) {
+      template.rebalance();
+    }
+
+    this.template = template;
+    this.shardConnector = shardConnector;
+    return template;
+  }
+
+  /**
+   * Picks up the shards added by the other instances
+   */
+  @Scheduled(initialDelayString = "${items.sharding.topology-refresh:60000}", fixedDelayString = "${items.sharding.topology-refresh:60000}")
+  public void refreshTopology() {
+    if (template != null) {
+      template.refreshTopology(shardConnector::connect);
+    }
+  }
+
+  @Value("${items.sharding.shards:}")
+  private String shardList;
+
+  @Value("${items.sharding.virtual-nodes:128}")
+  private int virtualNodes;
+
+  @Value("${items.sharding.rebalance-on-startup:true}")
+  private boolean rebalanceOnStartup;
+
+  @Value("${items.sharding.executor-threads:16}")
+  private int executorThreads;
+
+  @Value("${items.sharding.topology-collection:sharding_topology}")
+  private String topologyCollection;
+
+  private volatile ShardedMongoTemplate template;
+  private volatile ShardConnector shardConnector;
+}
@@ -1,6 +1,7 @@
 package org.leo.boot.data.model;
 
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import lombok.Data;
@@ -26,4 +27,9 @@ public class Item {
   private String code;
   private String type;
   private int quantity;
+  
+  // bumped on every write, it is the source of the item ETag
+  // items stored before this field was added have no version until their next update
+  @Version
+  private Long version;
 }
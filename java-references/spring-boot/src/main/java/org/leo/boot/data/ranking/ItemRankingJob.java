@@ -0,0 +1,267 @@
+package org.leo.boot.data.ranking;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.leo.boot.data.model.Item;
+import org.leo.boot.data.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.ApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.DBObject;
+
+/**
+ * Server side recomputation of the rank of every item
+ * 
+ * A run streams the items from a mongodb cursor (only the scored fields and the current rank), scores them chunk by chunk
+ * in parallel on the job own ForkJoinPool, sorts the scores and gives the ranks (1 is the best score, equal scores share
+ * a rank), then writes the ranks that changed with bulk $set updates of chunk-size items
+ * Only ids, scores and current ranks are kept in memory, not the items
+ * 
+ * Runs are started by the ranking.cron schedule or by POST /item/ranking, always on the job thread, never on the caller
+ * thread, and one at a time, the progress is given by getStatus() and the ranking.* metrics
+ * @author fahdessid
+ */
+@Component
+public class ItemRankingJob implements PublicMetrics {
+
+  private static final List<String> SCORED_FIELDS = Arrays.asList("name", "code", "type", "quantity", "rank");
+
+  @PostConstruct
+  public void init() {
+    scorer = applicationContext.getBean(scorerName, ItemScorer.class);
+    runner = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("item-ranking-"));
+    scoringPool = new ForkJoinPool(parallelism);
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    runner.shutdownNow();
+    scoringPool.shutdownNow();
+  }
+
+  @Scheduled(cron = "${ranking.cron:0 0 3 * * *}")
+  public void scheduledRun() {
+    start();
+  }
+
+  /**
+   * Starts a run in background, returns false when a run is already going on
+   */
+  public boolean start() {
+    if (!running.compareAndSet(false, true)) {
+      return false;
+    }
+
+    scored.set(0);
+    updated.set(0);
+    phase = "scoring";
+    runner.execute(this::run);
+    return true;
+  }
+
+  public Map<String, Object> getStatus() {
+    Map<String, Object> status = new LinkedHashMap<String, Object>();
+
+    status.put("running", running.get());
+    status.put("phase", phase);
+    status.put("total", total.get());
+    status.put("scored", scored.get());
+    status.put("updated", updated.get());
+    status.put("runs", runs.get());
+    status.put("lastDuration", lastDuration);
+    status.put("lastError", lastError);
+
+    return status;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+    metrics.add(new Metric<Integer>("ranking.running", running.get() ? 1 : 0));
+    metrics.add(new Metric<Long>("ranking.items.total", total.get()));
+    metrics.add(new Metric<Long>("ranking.items.scored", scored.get()));
+    metrics.add(new Metric<Long>("ranking.items.updated", updated.get()));
+    metrics.add(new Metric<Long>("ranking.runs", runs.get()));
+    metrics.add(new Metric<Long>("ranking.failures", failures.get()));
+    metrics.add(new Metric<Long>("ranking.last.duration", lastDuration));
+
+    return metrics;
+  }
+
+  private void run() {
+    long start = System.currentTimeMillis();
+
+    try {
+      // through the template : the count() of the repository only reads the default shard of a ShardedMongoTemplate
+      total.set(mongoTemplate.count(new Query(), Item.class));
+      Scores scores = score();
+
+      phase = "writing";
+      writeRanks(scores);
+
+      lastError = null;
+    } catch (Exception e) {
+      failures.incrementAndGet();
+      lastError = e.toString();
+
+      if (e instanceof InterruptedException) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      lastDuration = System.currentTimeMillis() - start;
+      runs.incrementAndGet();
+      phase = "idle";
+      running.set(false);
+    }
+  }
+
+  private Scores score() throws InterruptedException, ExecutionException {
+    Scores scores = new Scores();
+
+    try (CloseableIterator<DBObject> items = itemRepository.streamItems(null, SCORED_FIELDS, null)) {
+      List<DBObject> chunk = new ArrayList<DBObject>(chunkSize);
+
+      while (items.hasNext()) {
+        chunk.add(items.next());
+
+        if (chunk.size() == chunkSize) {
+          scoreChunk(chunk, scores);
+          chunk.clear();
+        }
+      }
+      scoreChunk(chunk, scores);
+    }
+    return scores;
+  }
+
+  private void scoreChunk(List<DBObject> chunk, Scores scores) throws InterruptedException, ExecutionException {
+    double[] chunkScores = scoringPool.submit(() -> chunk.parallelStream().mapToDouble(item -> scorer.score(toItem(item))).toArray()).get();
+
+    for (int i = 0; i < chunk.size(); i++) {
+      Object rank = chunk.get(i).get("rank");
+      scores.add(chunk.get(i).get("_id").toString(), chunkScores[i], rank instanceof Number ? ((Number) rank).intValue() : -1);
+    }
+    scored.addAndGet(chunk.size());
+  }
+
+  /**
+   * Competition ranking (1, 2, 2, 4) by descending score, equal scores keep the _id order
+   */
+  private void writeRanks(Scores scores) {
+    Integer[] order = new Integer[scores.size];
+
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.parallelSort(order, (a, b) -> Double.compare(scores.scores[b], scores.scores[a]));
+
+    Map<String, Integer> changed = new LinkedHashMap<String, Integer>();
+    int rank = 0;
+
+    for (int position = 0; position < order.length; position++) {
+      int item = order[position];
+
+      if (position == 0 || scores.scores[item] != scores.scores[order[position - 1]]) {
+        rank = position + 1;
+      }
+      if (scores.ranks[item] != rank) {
+        changed.put(scores.ids.get(item), rank);
+      }
+      if (changed.size() == chunkSize) {
+        updated.addAndGet(itemRepository.setItemRanks(changed));
+        changed = new LinkedHashMap<String, Integer>();
+      }
+    }
+    updated.addAndGet(itemRepository.setItemRanks(changed));
+  }
+
+  private static Item toItem(DBObject document) {
+    Object quantity = document.get("quantity");
+    Item item = new Item(string(document.get("name")), string(document.get("code")), string(document.get("type")),
+        quantity instanceof Number ? ((Number) quantity).intValue() : 0);
+
+    item.setId(document.get("_id").toString());
+    return item;
+  }
+
+  private static String string(Object value) {
+    return value == null ? null : value.toString();
+  }
+
+  /**
+   * Scores and current ranks in growing primitive arrays, in the stream (_id) order
+   */
+  private static final class Scores {
+
+    void add(String id, double score, int rank) {
+      if (size == scores.length) {
+        scores = Arrays.copyOf(scores, size * 2);
+        ranks = Arrays.copyOf(ranks, size * 2);
+      }
+      ids.add(id);
+      scores[size] = score;
+      ranks[size] = rank;
+      size++;
+    }
+
+    final List<String> ids = new ArrayList<String>();
+    double[] scores = new double[1024];
+    int[] ranks = new int[1024];
+    int size;
+  }
+
+  private final AtomicBoolean running = new AtomicBoolean();
+  private final AtomicLong total = new AtomicLong();
+  private final AtomicLong scored = new AtomicLong();
+  private final AtomicLong updated = new AtomicLong();
+  private final AtomicLong runs = new AtomicLong();
+  private final AtomicLong failures = new AtomicLong();
+  private volatile String phase = "idle";
+  private volatile long lastDuration;
+  private volatile String lastError;
+  private ItemScorer scorer;
+  private ExecutorService runner;
+  private ForkJoinPool scoringPool;
+
+  @Value("${ranking.scorer:quantityTypeScorer}")
+  private String scorerName;
+
+  @Value("${ranking.chunk-size:1000}")
+  private int chunkSize;
+
+  @Value("${ranking.parallelism:4}")
+  private int parallelism;
+
+  @Autowired
+  private ItemRepository itemRepository;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ApplicationContext applicationContext;
+}
@@ -0,0 +1,14 @@
+package org.leo.boot.data.ranking;
+
+import org.leo.boot.data.model.Item;
+
+/**
+ * Score of an item for the ranking job, the higher the score the better (smaller) the rank
+ * Implementations are spring beans, the job uses the one named by ranking.scorer, see QuantityTypeScorer
+ * score is called from several threads at once
+ * @author fahdessid
+ */
+public interface ItemScorer {
+
+  double score(Item item);
+}
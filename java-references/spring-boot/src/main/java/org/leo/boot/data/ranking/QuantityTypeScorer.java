@@ -0,0 +1,44 @@
+package org.leo.boot.data.ranking;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+
+import org.leo.boot.data.model.Item;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+/**
+ * Default scorer : log(1 + quantity) weighted by the item type
+ * the log keeps a huge stock from outweighing everything else, the weights are set with ranking.type-weights=type:weight,...
+ * and the types not listed weigh 1
+ * @author fahdessid
+ */
+@Component("quantityTypeScorer")
+public class QuantityTypeScorer implements ItemScorer {
+
+  @PostConstruct
+  public void parseWeights() {
+    for (String weight : StringUtils.commaDelimitedListToStringArray(typeWeights)) {
+      String[] typeAndWeight = weight.trim().split(":");
+
+      if (typeAndWeight.length != 2) {
+        throw new IllegalArgumentException("Invalid ranking.type-weights entry : " + weight);
+      }
+      weights.put(typeAndWeight[0].trim(), Double.parseDouble(typeAndWeight[1].trim()));
+    }
+  }
+
+  @Override
+  public double score(Item item) {
+    Double weight = item.getType() == null ? null : weights.get(item.getType());
+    return (weight == null ? 1 : weight) * Math.log1p(Math.max(item.getQuantity(), 0));
+  }
+
+  private final Map<String, Double> weights = new HashMap<String, Double>();
+
+  @Value("${ranking.type-weights:}")
+  private String typeWeights;
+}
@@ -1,7 +1,10 @@
 package org.leo.boot.data.repository;
 
+import java.util.stream.Stream;
+
 import org.leo.boot.data.model.Item;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 /**
  * Item repository interface to communicate with MongoDB
@@ -9,4 +12,9 @@ import org.springframework.data.mongodb.repository.MongoRepository;
  */
 public interface ItemRepository extends MongoRepository<Item, String>, ItemRepositoryCustom {
 
+  /**
+   * All the items backed by a mongodb cursor, the stream has to be closed once consumed
+   */
+  @Query("{}")
+  Stream<Item> streamAll();
 }
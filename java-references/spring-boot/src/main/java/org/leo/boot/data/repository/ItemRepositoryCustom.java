@@ -1,5 +1,15 @@
 package org.leo.boot.data.repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.leo.boot.data.model.Item;
+
+import org.springframework.data.util.CloseableIterator;
+
+import com.mongodb.DBObject;
+
 /**
  * Custom item repository to have custom methods
  * this interface needs an implementation with the same name as the main repository (ItemRepository) plus Impl
@@ -10,4 +20,29 @@ package org.leo.boot.data.repository;
 public interface ItemRepositoryCustom {
   
   int setItemRank(String item, int rank);
+
+  /**
+   * Sets the rank of many items by id with one unordered bulk write, the version of every updated item is bumped
+   * returns the number of items matched
+   */
+  int setItemRanks(Map<String, Integer> ranks);
+
+  /**
+   * Sets the name, code, type and quantity of the item and bumps its version in a single atomic update
+   * the item is created when it does not exist, the updated item is returned
+   */
+  Item updateItem(Item item);
+
+  /**
+   * Current versions of the given items, read without loading the rest of the documents
+   * missing items are absent from the map, items without a version are mapped to 0
+   */
+  Map<String, Long> findVersions(Collection<String> ids);
+
+  /**
+   * Raw item documents in _id order, read from a mongodb cursor, only _id and the given fields are returned
+   * type and afterId are optional filters, afterId lets an interrupted export carry on after the last exported document
+   * the iterator has to be closed once consumed
+   */
+  CloseableIterator<DBObject> streamItems(String type, List<String> fields, String afterId);
 }
@@ -1,12 +1,23 @@
 package org.leo.boot.data.repository;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bson.types.ObjectId;
 import org.leo.boot.data.model.Item;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
+import com.mongodb.DBObject;
 import com.mongodb.WriteResult;
 
 /**
@@ -23,6 +34,7 @@ public class ItemRepositoryImpl implements ItemRepositoryCustom {
         Update update = new Update();
         
         update.set("rank", rank);
+        update.inc("version", 1);
 
         WriteResult result = mongoTemplate.updateFirst(query, update, Item.class);
 
@@ -33,6 +45,77 @@ public class ItemRepositoryImpl implements ItemRepositoryCustom {
         }
     } 
 
+    @Override
+    public int setItemRanks(Map<String, Integer> ranks) {
+        if (ranks.isEmpty()) {
+            return 0;
+        }
+
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Item.class);
+
+        for (Map.Entry<String, Integer> rank : ranks.entrySet()) {
+            Update update = new Update();
+
+            update.set("rank", rank.getValue());
+            update.inc("version", 1);
+
+            bulk.updateOne(new Query(Criteria.where("id").is(rank.getKey())), update);
+        }
+
+        return bulk.execute().getMatchedCount();
+    }
+
+    @Override
+    public Item updateItem(Item item) {
+        Query query = new Query(Criteria.where("id").is(item.getId()));
+        Update update = new Update();
+
+        update.set("name", item.getName());
+        update.set("code", item.getCode());
+        update.set("type", item.getType());
+        update.set("quantity", item.getQuantity());
+        update.inc("version", 1);
+
+        return mongoTemplate.findAndModify(query, update, new FindAndModifyOptions().returnNew(true).upsert(true), Item.class);
+    }
+
+    @Override
+    public Map<String, Long> findVersions(Collection<String> ids) {
+        Query query = new Query(Criteria.where("id").in(ids));
+        Map<String, Long> versions = new HashMap<String, Long>();
+
+        query.fields().include("version");
+
+        for (Item item : mongoTemplate.find(query, Item.class)) {
+            versions.put(item.getId(), item.getVersion() == null ? 0L : item.getVersion());
+        }
+
+        return versions;
+    }
+
+    @Override
+    public CloseableIterator<DBObject> streamItems(String type, List<String> fields, String afterId) {
+        Query query = new Query();
+
+        if (type != null) {
+            query.addCriteria(Criteria.where("type").is(type));
+        }
+
+        if (afterId != null) {
+            query.addCriteria(Criteria.where("_id").gt(ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId));
+        }
+
+        for (String field : fields) {
+            query.fields().include(field);
+        }
+
+        // _id order is served by the _id index and gives a stable position to resume from
+        query.with(new Sort(Sort.Direction.ASC, "_id"));
+
+        // reading into DBObject skips the mapping to Item, documents are handed over as they come from the driver
+        return mongoTemplate.stream(query, DBObject.class, mongoTemplate.getCollectionName(Item.class));
+    }
+
     @Autowired
     MongoTemplate mongoTemplate;
 }
@@ -1,7 +1,13 @@
 package org.leo.boot.data.repository;
 
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
+
 import org.leo.boot.data.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 /**
@@ -12,4 +18,13 @@ import org.springframework.stereotype.Repository;
 public interface UserRepository extends JpaRepository<User, String> {
   
   User findByEmail(String email);
+
+  /**
+   * All the emails, streamed from a server side cursor fetched 1000 rows at a time (useCursorFetch in the MySQL driver settings)
+   * a positive fetch size is also accepted by the other drivers, H2 refuses the Integer.MIN_VALUE streaming hint of the MySQL driver
+   * the stream has to be consumed in a transaction and closed
+   */
+  @Query("select u.email from User u")
+  @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+  Stream<String> streamAllEmails();
 }
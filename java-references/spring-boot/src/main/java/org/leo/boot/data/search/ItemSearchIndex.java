@@ -0,0 +1,367 @@
+package org.leo.boot.data.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.leo.boot.data.model.Item;
+import org.leo.boot.data.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * In memory search index over the name, code and type of the items
+ * 
+ * Two indexes are kept for every indexed field :
+ * - a sorted term dictionary (word -> documents) answering prefix queries with a range scan of the dictionary
+ * - a trigram index (3 consecutive characters -> documents) answering substring queries, the documents containing
+ *   every trigram of the query word are the candidates, then the candidates are checked against the field values
+ * Query words shorter than a trigram can only be looked up as prefixes
+ * 
+ * Every query word must match (AND), the hits are ranked by the sum of the best match of each word, a match on the code
+ * outweighs a match on the name which outweighs a match on the type, and an exact match outweighs a word prefix which
+ * outweighs a substring. Only the hits up to the requested page are kept sorted (bounded heap), so a large result set
+ * costs a scan of its candidates but not a full sort
+ * 
+ * The index is loaded from the ItemRepository when the bean is created, then ItemController keeps it current on
+ * every write, one read/write lock protects it : many concurrent queries, one writer at a time
+ * The document numbers of the removed items are given to the next new ones, so the index does not grow with the churn
+ * Hits of equal score are ordered by name then by _id, the pages of a query do not depend on the heap order
+ * @author fahdessid
+ */
+@Component
+public class ItemSearchIndex {
+
+  /**
+   * Deepest hit a page can reach, the pages past it are empty : the heap holds every hit up to the requested page
+   */
+  public static final int MAX_RESULT_WINDOW = 10_000;
+
+  private static final int GRAM = 3;
+
+  private static final int CODE_WEIGHT = 3;
+  private static final int NAME_WEIGHT = 2;
+  private static final int TYPE_WEIGHT = 1;
+
+  private static final int EXACT = 8;
+  private static final int WORD = 4;
+  private static final int PREFIX = 2;
+  private static final int SUBSTRING = 1;
+
+  @PostConstruct
+  public void load() {
+    try (Stream<Item> items = itemRepository.streamAll()) {
+      items.forEach(this::index);
+    }
+  }
+
+  public void index(Item item) {
+    lock.writeLock().lock();
+    try {
+      Integer doc = docNumbers.get(item.getId());
+
+      if (doc != null) {
+        unindex(doc);
+      } else if (!freeDocs.isEmpty()) {
+        // the number of a removed item, so the documents list and the bitsets stay as large as the index
+        doc = freeDocs.pop();
+        docNumbers.put(item.getId(), doc);
+      } else {
+        doc = docs.size();
+        docs.add(null);
+        docNumbers.put(item.getId(), doc);
+      }
+
+      Document document = new Document(item);
+      docs.set(doc, document);
+      for (String field : document.fields) {
+        addTerms(field, doc);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public void remove(String itemId) {
+    lock.writeLock().lock();
+    try {
+      Integer doc = docNumbers.remove(itemId);
+
+      if (doc != null) {
+        unindex(doc);
+        docs.set(doc, null);
+        freeDocs.push(doc);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Ranked search, page is zero based, the hits past MAX_RESULT_WINDOW are counted in the total but never returned
+   */
+  public SearchResult search(String query, int page, int size) {
+    String[] words = normalize(query).split("[^\\p{Alnum}]+");
+    List<String> queryWords = new ArrayList<String>();
+
+    for (String word : words) {
+      if (!word.isEmpty()) {
+        queryWords.add(word);
+      }
+    }
+
+    if (queryWords.isEmpty()) {
+      return new SearchResult(0, Collections.<Item>emptyList());
+    }
+
+    lock.readLock().lock();
+    try {
+      BitSet candidates = null;
+
+      for (String word : queryWords) {
+        BitSet matches = candidates(word);
+
+        if (candidates == null) {
+          candidates = matches;
+        } else {
+          candidates.and(matches);
+        }
+        if (candidates.isEmpty()) {
+          break;
+        }
+      }
+
+      // in long, page * size can overflow an int
+      long start = (long) page * size;
+      int keep = (int) Math.min(start + size, MAX_RESULT_WINDOW);
+      PriorityQueue<Hit> top = new PriorityQueue<Hit>(Hit.WORST_FIRST);
+      int total = 0;
+
+      for (int doc = candidates.nextSetBit(0); doc >= 0; doc = candidates.nextSetBit(doc + 1)) {
+        Document document = docs.get(doc);
+        int score = 0;
+
+        for (String word : queryWords) {
+          int wordScore = document.score(word);
+
+          if (wordScore == 0) {
+            score = 0;
+            break;
+          }
+          score += wordScore;
+        }
+
+        if (score > 0) {
+          total++;
+          top.offer(new Hit(score, document.item));
+          if (top.size() > keep) {
+            top.poll();
+          }
+        }
+      }
+
+      List<Hit> ranked = new ArrayList<Hit>(top);
+      Collections.sort(ranked, Collections.reverseOrder(Hit.WORST_FIRST));
+
+      List<Item> items = new ArrayList<Item>();
+      for (int i = (int) Math.min(start, ranked.size()); i < ranked.size(); i++) {
+        items.add(ranked.get(i).item);
+      }
+
+      return new SearchResult(total, items);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return docNumbers.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private BitSet candidates(String word) {
+    BitSet matches = new BitSet(docs.size());
+
+    if (word.length() < GRAM) {
+      NavigableMap<String, Postings> range = terms.subMap(word, true, word + Character.MAX_VALUE, true);
+      for (Postings postings : range.values()) {
+        or(matches, postings);
+      }
+      return matches;
+    }
+
+    // the rarest trigram gives the smallest starting set, the others only filter it
+    Postings rarest = null;
+    List<Postings> others = new ArrayList<Postings>();
+
+    for (int i = 0; i + GRAM <= word.length(); i++) {
+      Postings postings = grams.get(word.substring(i, i + GRAM));
+
+      if (postings == null) {
+        return matches;
+      }
+      if (rarest == null || postings.size() < rarest.size()) {
+        if (rarest != null) {
+          others.add(rarest);
+        }
+        rarest = postings;
+      } else {
+        others.add(postings);
+      }
+    }
+
+    for (int i = 0; i < rarest.size(); i++) {
+      int doc = rarest.get(i);
+      boolean inAll = true;
+
+      for (Postings postings : others) {
+        if (!postings.contains(doc)) {
+          inAll = false;
+          break;
+        }
+      }
+      if (inAll) {
+        matches.set(doc);
+      }
+    }
+
+    return matches;
+  }
+
+  private static void or(BitSet bits, Postings postings) {
+    for (int i = 0; i < postings.size(); i++) {
+      bits.set(postings.get(i));
+    }
+  }
+
+  private void addTerms(String field, int doc) {
+    for (String word : field.split("[^\\p{Alnum}]+")) {
+      if (!word.isEmpty()) {
+        terms.computeIfAbsent(word, w -> new Postings()).add(doc);
+      }
+    }
+    for (int i = 0; i + GRAM <= field.length(); i++) {
+      grams.computeIfAbsent(field.substring(i, i + GRAM), g -> new Postings()).add(doc);
+    }
+  }
+
+  private void unindex(int doc) {
+    for (String field : docs.get(doc).fields) {
+      for (String word : field.split("[^\\p{Alnum}]+")) {
+        removePosting(terms, word, doc);
+      }
+      for (int i = 0; i + GRAM <= field.length(); i++) {
+        removePosting(grams, field.substring(i, i + GRAM), doc);
+      }
+    }
+  }
+
+  private static void removePosting(Map<String, Postings> index, String key, int doc) {
+    Postings postings = index.get(key);
+
+    if (postings != null) {
+      postings.remove(doc);
+      if (postings.isEmpty()) {
+        index.remove(key);
+      }
+    }
+  }
+
+  private static String normalize(String value) {
+    return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * An indexed item with its normalized fields, in weight order : code, name, type
+   */
+  private static class Document {
+
+    Document(Item item) {
+      this.item = item;
+      this.fields = new String[] {normalize(item.getCode()), normalize(item.getName()), normalize(item.getType())};
+    }
+
+    int score(String word) {
+      int best = 0;
+
+      for (int i = 0; i < fields.length; i++) {
+        int match = match(fields[i], word);
+
+        if (match > 0) {
+          best = Math.max(best, match * WEIGHTS[i]);
+        }
+      }
+      return best;
+    }
+
+    private static int match(String field, String word) {
+      int position = field.indexOf(word);
+
+      if (position < 0) {
+        return 0;
+      }
+      if (field.equals(word)) {
+        return EXACT;
+      }
+
+      // look for an occurrence starting a word of the field
+      while (position >= 0) {
+        if (position == 0 || !Character.isLetterOrDigit(field.charAt(position - 1))) {
+          int end = position + word.length();
+          return end == field.length() || !Character.isLetterOrDigit(field.charAt(end)) ? WORD : PREFIX;
+        }
+        position = field.indexOf(word, position + 1);
+      }
+      return SUBSTRING;
+    }
+
+    private static final int[] WEIGHTS = {CODE_WEIGHT, NAME_WEIGHT, TYPE_WEIGHT};
+
+    final Item item;
+    final String[] fields;
+  }
+
+  private static class Hit {
+
+    static final Comparator<Hit> WORST_FIRST = Comparator.<Hit>comparingInt(h -> h.score)
+        .thenComparing((Hit h) -> h.item.getName(), Comparator.nullsFirst(Comparator.<String>reverseOrder()))
+        .thenComparing((Hit h) -> h.item.getId(), Comparator.nullsFirst(Comparator.<String>reverseOrder()));
+
+    Hit(int score, Item item) {
+      this.score = score;
+      this.item = item;
+    }
+
+    final int score;
+    final Item item;
+  }
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> docNumbers = new HashMap<String, Integer>();
+  private final List<Document> docs = new ArrayList<Document>();
+  private final Deque<Integer> freeDocs = new ArrayDeque<Integer>();
+  private final NavigableMap<String, Postings> terms = new TreeMap<String, Postings>();
+  private final Map<String, Postings> grams = new HashMap<String, Postings>();
+
+  @Autowired
+  private ItemRepository itemRepository;
+}
@@ -0,0 +1,56 @@
+package org.leo.boot.data.search;
+
+import java.util.Arrays;
+
+/**
+ * Sorted set of document numbers backed by an int array
+ * Document numbers are mostly handed out in increasing order so adding a new document is an append,
+ * adding the reused number of a removed document and removal shift the tail of the array
+ * @author fahdessid
+ */
+class Postings {
+
+  void add(int doc) {
+    int position = Arrays.binarySearch(docs, 0, size, doc);
+
+    if (position >= 0) {
+      return;
+    }
+
+    position = -position - 1;
+    if (size == docs.length) {
+      docs = Arrays.copyOf(docs, size * 2);
+    }
+    System.arraycopy(docs, position, docs, position + 1, size - position);
+    docs[position] = doc;
+    size++;
+  }
+
+  void remove(int doc) {
+    int position = Arrays.binarySearch(docs, 0, size, doc);
+
+    if (position >= 0) {
+      System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+      size--;
+    }
+  }
+
+  boolean contains(int doc) {
+    return Arrays.binarySearch(docs, 0, size, doc) >= 0;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  int size() {
+    return size;
+  }
+
+  int get(int index) {
+    return docs[index];
+  }
+
+  private int[] docs = new int[4];
+  private int size;
+}
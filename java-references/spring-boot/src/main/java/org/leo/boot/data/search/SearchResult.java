@@ -0,0 +1,18 @@
+package org.leo.boot.data.search;
+
+import java.util.List;
+
+import org.leo.boot.data.model.Item;
+
+import lombok.Data;
+
+/**
+ * A page of ranked search hits and the total number of items matching the query
+ * @author fahdessid
+ */
+@Data
+public class SearchResult {
+
+  private final int total;
+  private final List<Item> items;
+}
@@ -0,0 +1,141 @@
+package org.leo.boot.data.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.leo.boot.data.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Bloom filter of the registered emails, lets the registration skip the database lookup for emails that are definitely new
+ * 
+ * It is loaded when the bean is created by streaming the emails from the UserRepository and UserServiceImpl.saveUser
+ * adds every new user, emails are lower cased like the (case insensitive) MySQL comparison of findByEmail
+ * The filter only knows the users saved through this application instance : it is rebuilt from the database every
+ * bloom.emails.rebuild-interval ms (swapped once complete, the users saved meanwhile are added to both filters),
+ * so a user inserted directly in the database is seen after the next rebuild
+ * Until then the filter can wrongly answer "absent", which is why it is for a single instance : with
+ * bloom.emails.shared-database=true (several instances registering users) it is bypassed and every registration is looked up
+ * 
+ * The metrics endpoint publishes bloom.emails.* : the expected false positive rate, the number of emails, the number of
+ * chained filters and the number of database lookups skipped
+ * @author fahdessid
+ */
+@Component
+public class RegisteredEmailFilter implements PublicMetrics {
+
+  @PostConstruct
+  public void load() {
+    rebuild();
+  }
+
+  /**
+   * Replaces the filter with one built from the database, run by SpringBootMvcExample's scheduler
+   * The emails added meanwhile go to both filters : add, the publication of the new filter and the end of the rebuild
+   * hold one lock, so no add can land only in the filter being dropped
+   */
+  @Scheduled(initialDelayString = "${bloom.emails.rebuild-interval:600000}", fixedDelayString = "${bloom.emails.rebuild-interval:600000}")
+  public void rebuild() {
+    ScalableBloomFilter built = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+
+    synchronized (swap) {
+      rebuilding = built;
+    }
+    try {
+      // a streamed jpa query needs an open transaction for the whole iteration
+      transactionTemplate.execute(status -> {
+        try (Stream<String> emails = userRepository.streamAllEmails()) {
+          emails.filter(Objects::nonNull).forEach(email -> built.add(normalize(email)));
+        }
+        return null;
+      });
+
+      synchronized (swap) {
+        filter = built;
+        rebuilding = null;
+      }
+    } finally {
+      synchronized (swap) {
+        rebuilding = null;
+      }
+    }
+  }
+
+  public boolean mightBeRegistered(String email) {
+    if (email == null) {
+      return false;
+    }
+    if (sharedDatabase) {
+      return true;
+    }
+
+    boolean maybe = filter.mightContain(normalize(email));
+
+    if (!maybe) {
+      skippedLookups.increment();
+    }
+    return maybe;
+  }
+
+  public void add(String email) {
+    if (email == null) {
+      return;
+    }
+
+    String normalized = normalize(email);
+    synchronized (swap) {
+      filter.add(normalized);
+      if (rebuilding != null) {
+        rebuilding.add(normalized);
+      }
+    }
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+    metrics.add(new Metric<Double>("bloom.emails.fpp", filter.falsePositiveRate()));
+    metrics.add(new Metric<Long>("bloom.emails.size", filter.size()));
+    metrics.add(new Metric<Integer>("bloom.emails.stages", filter.stageCount()));
+    metrics.add(new Metric<Long>("bloom.emails.skipped-lookups", skippedLookups.sum()));
+
+    return metrics;
+  }
+
+  private static String normalize(String email) {
+    return email.trim().toLowerCase(Locale.ROOT);
+  }
+
+  private volatile ScalableBloomFilter filter;
+  private ScalableBloomFilter rebuilding;
+  private final Object swap = new Object();
+  private final LongAdder skippedLookups = new LongAdder();
+
+  @Value("${bloom.emails.initial-capacity:100000}")
+  private int initialCapacity;
+
+  @Value("${bloom.emails.false-positive-rate:0.01}")
+  private double falsePositiveRate;
+
+  @Value("${bloom.emails.shared-database:false}")
+  private boolean sharedDatabase;
+
+  @Autowired
+  private UserRepository userRepository;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+}
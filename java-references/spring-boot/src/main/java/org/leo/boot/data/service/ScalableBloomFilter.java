@@ -0,0 +1,156 @@
+package org.leo.boot.data.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scalable Bloom filter of strings (Almeida et al.)
+ * 
+ * A Bloom filter answers "maybe present" or "definitely absent" using k bit positions per value in a bit array,
+ * it never gives a false negative but gives false positives once the array fills up
+ * A plain filter has to be sized for a known number of values, the scalable one is a chain of filters :
+ * when the last filter holds its capacity a new one is appended, twice as large and with half the false positive rate,
+ * so the compound false positive rate stays under twice the initial one however many values are added
+ * 
+ * Lookups are lock free (bits in an AtomicLongArray, volatile chain), additions are serialized
+ * @author fahdessid
+ */
+public class ScalableBloomFilter {
+
+  private static final double GROWTH = 2;
+  private static final double TIGHTENING = 0.5;
+
+  public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+    this.stages = new Stage[] {new Stage(initialCapacity, falsePositiveRate)};
+  }
+
+  public boolean mightContain(String value) {
+    long h1 = hash(value, 0x9E3779B97F4A7C15L);
+    long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+
+    for (Stage stage : stages) {
+      if (stage.mightContain(h1, h2)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public synchronized void add(String value) {
+    if (mightContain(value)) {
+      return;
+    }
+
+    long h1 = hash(value, 0x9E3779B97F4A7C15L);
+    long h2 = hash(value, 0xC2B2AE3D27D4EB4FL) | 1;
+    Stage last = stages[stages.length - 1];
+
+    if (last.count >= last.capacity) {
+      Stage[] grown = new Stage[stages.length + 1];
+
+      System.arraycopy(stages, 0, grown, 0, stages.length);
+      last = new Stage((int) Math.min(Integer.MAX_VALUE / 2, last.capacity * GROWTH), last.falsePositiveRate * TIGHTENING);
+      grown[stages.length] = last;
+      stages = grown;
+    }
+
+    last.add(h1, h2);
+  }
+
+  /**
+   * Probability that a value never added is reported present, computed from the bits actually set in every stage
+   */
+  public double falsePositiveRate() {
+    double allNegative = 1;
+
+    for (Stage stage : stages) {
+      allNegative *= 1 - stage.falsePositiveRate();
+    }
+    return 1 - allNegative;
+  }
+
+  public long size() {
+    long size = 0;
+
+    for (Stage stage : stages) {
+      size += stage.count;
+    }
+    return size;
+  }
+
+  public int stageCount() {
+    return stages.length;
+  }
+
+  /**
+   * FNV-1a over the chars, then the murmur3 finalizer to spread the bits
+   */
+  private static long hash(String value, long seed) {
+    long h = seed;
+
+    for (int i = 0; i < value.length(); i++) {
+      h ^= value.charAt(i);
+      h *= 0x100000001B3L;
+    }
+
+    h ^= h >>> 33;
+    h *= 0xFF51AFD7ED558CCDL;
+    h ^= h >>> 33;
+    h *= 0xC4CEB9FE1A85EC53L;
+    h ^= h >>> 33;
+    return h;
+  }
+
+  private static class Stage {
+
+    Stage(int capacity, double falsePositiveRate) {
+      // optimal sizing : m = -n ln(p) / ln(2)^2 bits and k = m/n ln(2) hash functions
+      long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+
+      this.capacity = capacity;
+      this.falsePositiveRate = falsePositiveRate;
+      this.words = new AtomicLongArray((int) ((Math.max(optimalBits, 64) + 63) / 64));
+      this.bitCount = words.length() * 64L;
+      this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * Math.log(2)));
+    }
+
+    boolean mightContain(long h1, long h2) {
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(h1 + i * h2, bitCount);
+
+        if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void add(long h1, long h2) {
+      for (int i = 0; i < hashCount; i++) {
+        long bit = Math.floorMod(h1 + i * h2, bitCount);
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        long current = words.get(word);
+
+        if ((current & mask) == 0) {
+          words.set(word, current | mask);
+          bitsSet++;
+        }
+      }
+      count++;
+    }
+
+    double falsePositiveRate() {
+      return Math.pow((double) bitsSet / bitCount, hashCount);
+    }
+
+    final int capacity;
+    final double falsePositiveRate;
+    final AtomicLongArray words;
+    final long bitCount;
+    final int hashCount;
+    volatile long count;
+    volatile long bitsSet;
+  }
+
+  private volatile Stage[] stages;
+}
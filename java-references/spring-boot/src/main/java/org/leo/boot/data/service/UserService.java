@@ -10,5 +10,10 @@ public interface UserService {
 
   public User findUserByEmail(String email);
 
+  /**
+   * Registration check, answers without querying the database when the email is definitely not registered
+   */
+  public boolean isEmailRegistered(String email);
+
   public void saveUser(User user);
 }
@@ -15,7 +15,7 @@ import org.springframework.stereotype.Service;
  * User service implementation
  * @author fahdessid
  */
-
+@Service("userService")
 public class UserServiceImpl implements UserService {
 
   @Override
@@ -23,6 +23,11 @@ public class UserServiceImpl implements UserService {
     return userRepository.findByEmail(email);
   }
 
+  @Override
+  public boolean isEmailRegistered(String email) {
+    return registeredEmailFilter.mightBeRegistered(email) && findUserByEmail(email) != null;
+  }
+
   @Override
   public void saveUser(User user) {
     user.setPassword(bCryptPasswordEncoder.encode(user.getPassword()));
@@ -33,6 +38,7 @@ public class UserServiceImpl implements UserService {
     user.setRoles(new HashSet<Role>(Arrays.asList(userRole)));
     
     userRepository.save(user);
+    registeredEmailFilter.add(user.getEmail());
   }
 
   @Autowired
@@ -43,4 +49,7 @@ public class UserServiceImpl implements UserService {
   
   @Autowired
   private BCryptPasswordEncoder bCryptPasswordEncoder;
+
+  @Autowired
+  private RegisteredEmailFilter registeredEmailFilter;
 }
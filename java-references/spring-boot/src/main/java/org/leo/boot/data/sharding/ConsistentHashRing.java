@@ -0,0 +1,74 @@
+package org.leo.boot.data.sharding;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hashing ring
+ * 
+ * Every shard is placed on the ring at many points (virtual nodes), a key belongs to the first shard point
+ * found clockwise from the hash of the key
+ * With enough virtual nodes the keys spread evenly, and adding a shard only moves about 1/N of the keys
+ * (those now falling just before one of its points), all the other keys keep their shard
+ * @author fahdessid
+ */
+public final class ConsistentHashRing {
+
+  public ConsistentHashRing(List<String> shards, int virtualNodes) {
+    NavigableMap<Long, String> points = new TreeMap<Long, String>();
+
+    for (String shard : shards) {
+      for (int i = 0; i < virtualNodes; i++) {
+        points.put(hash(shard + "#" + i), shard);
+      }
+    }
+
+    this.shards = Collections.unmodifiableList(new ArrayList<String>(shards));
+    this.virtualNodes = virtualNodes;
+    this.points = points;
+  }
+
+  public ConsistentHashRing withShard(String shard) {
+    List<String> grown = new ArrayList<String>(shards);
+
+    grown.add(shard);
+    return new ConsistentHashRing(grown, virtualNodes);
+  }
+
+  public String shardOf(String key) {
+    Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+    return point != null ? point.getValue() : points.firstEntry().getValue();
+  }
+
+  public List<String> getShards() {
+    return shards;
+  }
+
+  /**
+   * first 8 bytes of the md5 of the key, md5 is not used for security here but for its even spread
+   */
+  private static long hash(String key) {
+    try {
+      byte[] digest = MessageDigest.getInstance("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+      long hash = 0;
+
+      for (int i = 0; i < 8; i++) {
+        hash = (hash << 8) | (digest[i] & 0xFF);
+      }
+      return hash;
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private final List<String> shards;
+  private final int virtualNodes;
+  private final NavigableMap<Long, String> points;
+}
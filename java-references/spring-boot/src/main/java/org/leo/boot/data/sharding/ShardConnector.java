@@ -0,0 +1,63 @@
+package org.leo.boot.data.sharding;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoClientURI;
+
+/**
+ * Opens the MongoTemplate of a shard from its uri (mongodb://host:port/database)
+ * The shards share the pool settings and the mapping converter of the default mongodb connection,
+ * the clients opened are closed with the application context
+ * @author fahdessid
+ */
+public class ShardConnector implements AutoCloseable {
+
+  public ShardConnector(MongoClientOptions options, MongoConverter converter) {
+    this.options = options;
+    this.converter = converter;
+  }
+
+  public MongoTemplate connect(String uri) {
+    MongoClientURI clientUri = new MongoClientURI(uri, MongoClientOptions.builder(options));
+
+    if (clientUri.getDatabase() == null) {
+      throw new IllegalArgumentException("The shard uri " + uri + " has no database");
+    }
+
+    MongoClient client = new MongoClient(clientUri);
+    MongoTemplate shard = new MongoTemplate(new SimpleMongoDbFactory(client, clientUri.getDatabase()), converter);
+
+    clients.put(shard, client);
+    return shard;
+  }
+
+  /**
+   * Closes the client of a shard this connector opened, for a shard which was finally not added
+   */
+  public void disconnect(MongoTemplate shard) {
+    MongoClient client = clients.remove(shard);
+
+    if (client != null) {
+      client.close();
+    }
+  }
+
+  @Override
+  public void close() {
+    for (MongoClient client : clients.values()) {
+      client.close();
+    }
+    clients.clear();
+  }
+
+  private final MongoClientOptions options;
+  private final MongoConverter converter;
+  private final Map<MongoTemplate, MongoClient> clients = new ConcurrentHashMap<MongoTemplate, MongoClient>();
+}
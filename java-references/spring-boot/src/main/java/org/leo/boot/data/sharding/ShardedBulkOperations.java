@@ -0,0 +1,280 @@
+package org.leo.boot.data.sharding;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.Pair;
+
+import com.mongodb.BulkWriteResult;
+import com.mongodb.BulkWriteUpsert;
+
+/**
+ * Bulk operations on the sharded collection
+ * 
+ * The operations are recorded and split by shard on execute : an insert goes to the shard of its _id, an update or remove
+ * by _id to the owner shard and the multi updates and removes to all the shards, then every shard runs its own bulk write
+ * updateOne and upsert need an _id in their query (IllegalArgumentException otherwise), "first matching document" has no meaning across shards in a bulk
+ * While rebalancing the operations are replayed one by one through ShardedMongoTemplate, which moves the documents first
+ * @author fahdessid
+ */
+class ShardedBulkOperations implements BulkOperations {
+
+  ShardedBulkOperations(ShardedMongoTemplate template, BulkMode bulkMode, Class<?> entityType, String collectionName) {
+    this.template = template;
+    this.bulkMode = bulkMode;
+    this.entityType = entityType;
+    this.collectionName = collectionName;
+  }
+
+  @Override
+  public BulkOperations insert(Object document) {
+    template.idOf(document, true);
+    operations.add(new Operation(Kind.INSERT, null, null, document));
+    return this;
+  }
+
+  @Override
+  public BulkOperations insert(List<? extends Object> documents) {
+    documents.forEach(this::insert);
+    return this;
+  }
+
+  @Override
+  public BulkOperations updateOne(Query query, Update update) {
+    operations.add(new Operation(Kind.UPDATE_ONE, byId(query), update, null));
+    return this;
+  }
+
+  @Override
+  public BulkOperations updateOne(List<Pair<Query, Update>> updates) {
+    updates.forEach(update -> updateOne(update.getFirst(), update.getSecond()));
+    return this;
+  }
+
+  @Override
+  public BulkOperations updateMulti(Query query, Update update) {
+    operations.add(new Operation(Kind.UPDATE_MULTI, query, update, null));
+    return this;
+  }
+
+  @Override
+  public BulkOperations updateMulti(List<Pair<Query, Update>> updates) {
+    updates.forEach(update -> updateMulti(update.getFirst(), update.getSecond()));
+    return this;
+  }
+
+  @Override
+  public BulkOperations upsert(Query query, Update update) {
+    operations.add(new Operation(Kind.UPSERT, byId(query), update, null));
+    return this;
+  }
+
+  @Override
+  public BulkOperations upsert(List<Pair<Query, Update>> updates) {
+    updates.forEach(update -> upsert(update.getFirst(), update.getSecond()));
+    return this;
+  }
+
+  @Override
+  public BulkOperations remove(Query remove) {
+    operations.add(new Operation(Kind.REMOVE, remove, null, null));
+    return this;
+  }
+
+  @Override
+  public BulkOperations remove(List<Query> removes) {
+    removes.forEach(this::remove);
+    return this;
+  }
+
+  @Override
+  public BulkWriteResult execute() {
+    return template.isRebalancing() ? replay() : executeByShard();
+  }
+
+  private BulkWriteResult executeByShard() {
+    Map<MongoTemplate, BulkOperations> bulks = new IdentityHashMap<MongoTemplate, BulkOperations>();
+
+    if (operations.stream().anyMatch(operation -> operation.kind == Kind.UPSERT)) {
+      template.checkTopology();
+    }
+
+    for (Operation operation : operations) {
+      Object id = operation.kind == Kind.INSERT ? template.idOf(operation.document, true) : ShardedMongoTemplate.idOf(operation.query);
+      List<MongoTemplate> targets = new ArrayList<MongoTemplate>();
+
+      if (id != null) {
+        targets.add(template.shardOf(id));
+      } else {
+        targets.addAll(template.getShards());
+      }
+
+      for (MongoTemplate shard : targets) {
+        BulkOperations bulk = bulks.computeIfAbsent(shard, s -> s.bulkOps(bulkMode, entityType, collectionName));
+        operation.applyTo(bulk);
+      }
+    }
+
+    Counts counts = new Counts();
+    for (BulkOperations bulk : bulks.values()) {
+      counts.add(bulk.execute());
+    }
+    return counts.toResult();
+  }
+
+  private BulkWriteResult replay() {
+    Counts counts = new Counts();
+
+    // the single operations only report the documents matched
+    counts.modifiedAvailable = false;
+
+    for (Operation operation : operations) {
+      switch (operation.kind) {
+      case INSERT:
+        template.insert(operation.document, collectionName);
+        counts.inserted++;
+        break;
+      case UPDATE_ONE:
+        counts.matched += template.updateFirst(operation.query, operation.update, entityType, collectionName).getN();
+        break;
+      case UPDATE_MULTI:
+        counts.matched += template.updateMulti(operation.query, operation.update, entityType, collectionName).getN();
+        break;
+      case UPSERT:
+        counts.matched += template.upsert(operation.query, operation.update, entityType, collectionName).getN();
+        break;
+      case REMOVE:
+        counts.removed += template.remove(operation.query, entityType, collectionName).getN();
+        break;
+      }
+    }
+    return counts.toResult();
+  }
+
+  private static Query byId(Query query) {
+    if (ShardedMongoTemplate.idOf(query) == null) {
+      throw new IllegalArgumentException("updateOne and upsert on the sharded collection need an _id in the query : " + query);
+    }
+    return query;
+  }
+
+  private enum Kind {
+    INSERT, UPDATE_ONE, UPDATE_MULTI, UPSERT, REMOVE
+  }
+
+  private static final class Operation {
+
+    Operation(Kind kind, Query query, Update update, Object document) {
+      this.kind = kind;
+      this.query = query;
+      this.update = update;
+      this.document = document;
+    }
+
+    void applyTo(BulkOperations bulk) {
+      switch (kind) {
+      case INSERT:
+        bulk.insert(document);
+        break;
+      case UPDATE_ONE:
+        bulk.updateOne(query, update);
+        break;
+      case UPDATE_MULTI:
+        bulk.updateMulti(query, update);
+        break;
+      case UPSERT:
+        bulk.upsert(query, update);
+        break;
+      case REMOVE:
+        bulk.remove(query);
+        break;
+      }
+    }
+
+    final Kind kind;
+    final Query query;
+    final Update update;
+    final Object document;
+  }
+
+  /**
+   * Sum of the shard results, the modified count is only known when every shard reported it
+   */
+  private static final class Counts {
+
+    void add(BulkWriteResult result) {
+      inserted += result.getInsertedCount();
+      matched += result.getMatchedCount();
+      removed += result.getRemovedCount();
+      upserts.addAll(result.getUpserts());
+
+      if (result.isModifiedCountAvailable()) {
+        modified += result.getModifiedCount();
+      } else {
+        modifiedAvailable = false;
+      }
+    }
+
+    BulkWriteResult toResult() {
+      return new BulkWriteResult() {
+
+        @Override
+        public boolean isAcknowledged() {
+          return true;
+        }
+
+        @Override
+        public int getInsertedCount() {
+          return inserted;
+        }
+
+        @Override
+        public int getMatchedCount() {
+          return matched;
+        }
+
+        @Override
+        public int getRemovedCount() {
+          return removed;
+        }
+
+        @Override
+        public boolean isModifiedCountAvailable() {
+          return modifiedAvailable;
+        }
+
+        @Override
+        public int getModifiedCount() {
+          if (!modifiedAvailable) {
+            throw new UnsupportedOperationException("The modified count is not available");
+          }
+          return modified;
+        }
+
+        @Override
+        public List<BulkWriteUpsert> getUpserts() {
+          return upserts;
+        }
+      };
+    }
+
+    int inserted;
+    int matched;
+    int removed;
+    int modified;
+    boolean modifiedAvailable = true;
+    final List<BulkWriteUpsert> upserts = new ArrayList<BulkWriteUpsert>();
+  }
+
+  private final ShardedMongoTemplate template;
+  private final BulkMode bulkMode;
+  private final Class<?> entityType;
+  private final String collectionName;
+  private final List<Operation> operations = new ArrayList<Operation>();
+}
@@ -0,0 +1,939 @@
+package org.leo.boot.data.sharding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.StreamSupport;
+
+import org.bson.types.ObjectId;
+import org.springframework.data.mapping.PersistentPropertyAccessor;
+import org.springframework.data.mongodb.MongoDbFactory;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.AggregationResults;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.WriteResult;
+
+/**
+ * MongoTemplate spreading one collection (the items) over several databases, the shards
+ * 
+ * It sits beneath the repositories : ItemRepository (SimpleMongoRepository and the query methods) and ItemRepositoryImpl
+ * only talk to MongoTemplate, so overriding the template operations is enough to shard them without touching their code
+ * Every other collection is left to the parent MongoTemplate, bound to the default shard
+ * 
+ * Documents are placed by consistent hashing of their _id (see ConsistentHashRing) :
+ * - operations targeting one _id (findById, save, insert, updates and removes by id) go to the owner shard only
+ * - the other queries are sent to all the shards in parallel and the results gathered : counts are summed, finds are
+ *   merged following the query sort then skip/limit are applied, streams are merged lazily, aggregations are concatenated
+ *   (a pipeline ending with a $group or $sort has to be reduced again by the caller)
+ * - updateFirst and findAndModify without an _id first look for the first matching _id on all the shards,
+ *   then update that document on its shard, so "first" keeps meaning one document
+ * 
+ * Online rebalancing : addShard puts a new shard on the ring and moves in background the documents it now owns
+ * While moving, operations by _id take a lock striped by _id, and writes first move their document to its new owner,
+ * so a document is never written on two shards, the multi document updates and removes are applied _id by _id,
+ * the scatter queries drop duplicates but may miss a document caught between two shards.
+ * The count() of the repositories goes straight to the collection and only counts the default shard
+ * 
+ * The shards added at runtime are recorded in the topology collection of the default shard (name, uri, position) :
+ * ShardingConfiguration connects them at startup, and refreshTopology puts on the ring of a running instance the shards
+ * another instance added. Until its next refresh, an instance does not see the documents already moved to such a shard,
+ * and its upserts are refused with a StaleShardTopologyException : sent to the previous owner, they would recreate there
+ * a stale copy of a moved document, which a later migration could copy over the newer one
+ * @author fahdessid
+ */
+public class ShardedMongoTemplate extends MongoTemplate {
+
+  private static final int LOCK_STRIPES = 1024;
+
+  public ShardedMongoTemplate(MongoDbFactory defaultShard, MongoConverter converter, String shardedCollection, String topologyCollection,
+      Map<String, MongoTemplate> shards, int virtualNodes, ExecutorService executor) {
+    super(defaultShard, converter);
+
+    this.shardedCollection = shardedCollection;
+    this.topologyCollection = topologyCollection;
+    this.shards = new LinkedHashMap<String, MongoTemplate>(shards);
+    this.ring = new ConsistentHashRing(new ArrayList<String>(shards.keySet()), virtualNodes);
+    this.executor = executor;
+
+    for (int i = 0; i < LOCK_STRIPES; i++) {
+      stripes[i] = new Object();
+    }
+  }
+
+  /**
+   * Shards recorded in the topology collection of the default shard, name to uri in the order they were added
+   */
+  public static Map<String, String> recordedShards(MongoTemplate defaultShard, String topologyCollection) {
+    Map<String, String> recorded = new LinkedHashMap<String, String>();
+
+    try (DBCursor shards = defaultShard.getCollection(topologyCollection).find().sort(new BasicDBObject("position", 1))) {
+      while (shards.hasNext()) {
+        DBObject shard = shards.next();
+        recorded.put(shard.get("_id").toString(), shard.get("uri").toString());
+      }
+    }
+    return recorded;
+  }
+
+  /**
+   * Adds a shard to the ring and moves the documents it now owns, the returned future completes with the number of
+   * documents moved once the rebalancing is done
+   * The shard is recorded in the topology collection before it is put on the ring, so a restart keeps it
+   */
+  public Future<Long> addShard(String name, String uri, MongoTemplate shard) {
+    topology.writeLock().lock();
+    try {
+      if (shards.containsKey(name)) {
+        throw new IllegalArgumentException("Shard " + name + " already exists");
+      }
+      if (rebalancing) {
+        throw new IllegalStateException("A rebalancing is already running");
+      }
+
+      try {
+        getCollection(topologyCollection).insert(new BasicDBObject("_id", name).append("uri", uri).append("position", shards.size()));
+      } catch (DuplicateKeyException e) {
+        throw new IllegalArgumentException("Shard " + name + " was already added by another instance", e);
+      }
+
+      grow(name, shard);
+      rebalancing = true;
+    } finally {
+      topology.writeLock().unlock();
+    }
+
+    return executor.submit(this::migrate);
+  }
+
+  /**
+   * Puts on the ring the shards another instance recorded in the topology collection, connected by the connector,
+   * and moves the documents they own. Returns null when there is no new shard, or when a rebalancing is running (the next refresh retries)
+   */
+  public Future<Long> refreshTopology(Function<String, MongoTemplate> connector) {
+    Map<String, String> added = recordedShards(this, topologyCollection);
+
+    added.keySet().removeAll(shards.keySet());
+    if (added.isEmpty() || rebalancing) {
+      return null;
+    }
+
+    Map<String, MongoTemplate> connected = new LinkedHashMap<String, MongoTemplate>();
+    for (Map.Entry<String, String> shard : added.entrySet()) {
+      connected.put(shard.getKey(), connector.apply(shard.getValue()));
+    }
+
+    topology.writeLock().lock();
+    try {
+      if (rebalancing) {
+        return null;
+      }
+      for (Map.Entry<String, MongoTemplate> shard : connected.entrySet()) {
+        if (!shards.containsKey(shard.getKey())) {
+          grow(shard.getKey(), shard.getValue());
+        }
+      }
+      rebalancing = true;
+    } finally {
+      topology.writeLock().unlock();
+    }
+
+    return executor.submit(this::migrate);
+  }
+
+  /**
+   * Moves the documents which are not on their owner shard, for instance after a shard was added to items.sharding.shards
+   */
+  public Future<Long> rebalance() {
+    topology.writeLock().lock();
+    try {
+      if (rebalancing) {
+        throw new IllegalStateException("A rebalancing is already running");
+      }
+      rebalancing = true;
+    } finally {
+      topology.writeLock().unlock();
+    }
+
+    return executor.submit(this::migrate);
+  }
+
+  /**
+   * Whether the shard is on the ring of this instance or recorded in the topology collection by another one
+   */
+  public boolean hasShard(String name) {
+    return shards.containsKey(name) || getCollection(topologyCollection).count(new BasicDBObject("_id", name)) > 0;
+  }
+
+  public List<String> getShardNames() {
+    return ring.getShards();
+  }
+
+  public boolean isRebalancing() {
+    return rebalancing;
+  }
+
+  /**
+   * Count of the sharded collection documents on every shard
+   */
+  public Map<String, Long> getShardSizes() {
+    Map<String, Long> sizes = new LinkedHashMap<String, Long>();
+
+    for (Map.Entry<String, MongoTemplate> shard : shards.entrySet()) {
+      sizes.put(shard.getKey(), shard.getValue().getCollection(shardedCollection).count());
+    }
+    return sizes;
+  }
+
+  /**
+   * Bulk writes of the sharded collection are split by shard, see ShardedBulkOperations
+   */
+  @Override
+  public BulkOperations bulkOps(BulkMode bulkMode, Class<?> entityType, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.bulkOps(bulkMode, entityType, collectionName);
+    }
+    return new ShardedBulkOperations(this, bulkMode, entityType, collectionName);
+  }
+
+  @Override
+  public <T> T findById(Object id, Class<T> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.findById(id, entityClass, collectionName);
+    }
+    return readById(id, shard -> shard.findById(id, entityClass, collectionName));
+  }
+
+  @Override
+  public <T> T findOne(Query query, Class<T> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.findOne(query, entityClass, collectionName);
+    }
+
+    Object id = idOf(query);
+    if (id != null) {
+      return readById(id, shard -> shard.findOne(query, entityClass, collectionName));
+    }
+
+    List<T> found = find(copyOf(query, 0, 1), entityClass, collectionName);
+    return found.isEmpty() ? null : found.get(0);
+  }
+
+  @Override
+  public boolean exists(Query query, Class<?> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.exists(query, entityClass, collectionName);
+    }
+
+    Object id = idOf(query);
+    if (id != null) {
+      return readById(id, shard -> shard.exists(query, entityClass, collectionName) ? Boolean.TRUE : null) != null;
+    }
+    return scatter(shard -> shard.exists(query, entityClass, collectionName)).contains(Boolean.TRUE);
+  }
+
+  @Override
+  public long count(Query query, Class<?> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.count(query, entityClass, collectionName);
+    }
+
+    long count = 0;
+    for (Long shardCount : scatter(shard -> shard.count(query, entityClass, collectionName))) {
+      count += shardCount;
+    }
+    return count;
+  }
+
+  @Override
+  public <T> List<T> find(Query query, Class<T> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.find(query, entityClass, collectionName);
+    }
+
+    Object id = idOf(query);
+    if (id != null) {
+      List<T> found = readById(id, shard -> {
+        List<T> documents = shard.find(query, entityClass, collectionName);
+        return documents.isEmpty() ? null : documents;
+      });
+      return found != null ? found : new ArrayList<T>();
+    }
+
+    // every shard returns its first skip + limit documents, the merge keeps the global ones
+    int skip = query.getSkip();
+    int limit = query.getLimit();
+    Query shardQuery = copyOf(query, 0, limit > 0 ? skip + limit : 0);
+    List<List<T>> results = scatter(shard -> shard.find(shardQuery, entityClass, collectionName));
+
+    List<T> merged = new ArrayList<T>();
+    Iterator<T> documents = merge(iterators(results), query.getSortObject());
+    Set<String> seen = rebalancing ? new HashSet<String>() : null;
+    int position = 0;
+
+    while (documents.hasNext() && (limit <= 0 || merged.size() < limit)) {
+      T document = documents.next();
+
+      if (seen != null && !seen.add(String.valueOf(idOf(document)))) {
+        continue;
+      }
+      if (position++ >= skip) {
+        merged.add(document);
+      }
+    }
+    return merged;
+  }
+
+  @Override
+  public <T> List<T> findAll(Class<T> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.findAll(entityClass, collectionName);
+    }
+    return find(new Query(), entityClass, collectionName);
+  }
+
+  @Override
+  public <T> CloseableIterator<T> stream(Query query, Class<T> entityType, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.stream(query, entityType, collectionName);
+    }
+
+    List<CloseableIterator<T>> streams = new ArrayList<CloseableIterator<T>>();
+    for (MongoTemplate shard : shards.values()) {
+      streams.add(shard.stream(query, entityType, collectionName));
+    }
+
+    Iterator<T> merged = merge(new ArrayList<Iterator<T>>(streams), query.getSortObject());
+    Set<String> seen = rebalancing ? new HashSet<String>() : null;
+
+    return new CloseableIterator<T>() {
+
+      @Override
+      public boolean hasNext() {
+        while (next == null && merged.hasNext()) {
+          T candidate = merged.next();
+
+          if (seen == null || seen.add(String.valueOf(idOf(candidate)))) {
+            next = candidate;
+          }
+        }
+        return next != null;
+      }
+
+      @Override
+      public T next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        T current = next;
+        next = null;
+        return current;
+      }
+
+      @Override
+      public void close() {
+        for (CloseableIterator<T> stream : streams) {
+          stream.close();
+        }
+      }
+
+      private T next;
+    };
+  }
+
+  @Override
+  public void insert(Object objectToSave, String collectionName) {
+    if (!isSharded(collectionName)) {
+      super.insert(objectToSave, collectionName);
+      return;
+    }
+    writeById(idOf(objectToSave, true), collectionName, shard -> {
+      shard.insert(objectToSave, collectionName);
+      return null;
+    });
+  }
+
+  @Override
+  public void insert(Collection<? extends Object> batchToSave, String collectionName) {
+    if (!isSharded(collectionName)) {
+      super.insert(batchToSave, collectionName);
+      return;
+    }
+
+    // under the topology lock, addShard waits for the batches, which the migration then sees
+    topology.readLock().lock();
+    try {
+      if (!rebalancing) {
+        // one batch insert per shard
+        Map<String, List<Object>> batches = new LinkedHashMap<String, List<Object>>();
+        for (Object objectToSave : batchToSave) {
+          String shard = ring.shardOf(idOf(objectToSave, true).toString());
+          batches.computeIfAbsent(shard, s -> new ArrayList<Object>()).add(objectToSave);
+        }
+        for (Map.Entry<String, List<Object>> batch : batches.entrySet()) {
+          shards.get(batch.getKey()).insert(batch.getValue(), collectionName);
+        }
+        return;
+      }
+    } finally {
+      topology.readLock().unlock();
+    }
+
+    for (Object objectToSave : batchToSave) {
+      insert(objectToSave, collectionName);
+    }
+  }
+
+  @Override
+  public void insert(Collection<? extends Object> batchToSave, Class<?> entityClass) {
+    insert(batchToSave, getCollectionName(entityClass));
+  }
+
+  /**
+   * Objects of several classes, one insert per collection so the sharded one is routed
+   */
+  @Override
+  public void insertAll(Collection<? extends Object> objectsToSave) {
+    Map<String, List<Object>> batches = new LinkedHashMap<String, List<Object>>();
+
+    for (Object objectToSave : objectsToSave) {
+      batches.computeIfAbsent(getCollectionName(objectToSave.getClass()), c -> new ArrayList<Object>()).add(objectToSave);
+    }
+    for (Map.Entry<String, List<Object>> batch : batches.entrySet()) {
+      insert(batch.getValue(), batch.getKey());
+    }
+  }
+
+  @Override
+  public void save(Object objectToSave, String collectionName) {
+    if (!isSharded(collectionName)) {
+      super.save(objectToSave, collectionName);
+      return;
+    }
+    writeById(idOf(objectToSave, true), collectionName, shard -> {
+      shard.save(objectToSave, collectionName);
+      return null;
+    });
+  }
+
+  @Override
+  public <T> T findAndModify(Query query, Update update, FindAndModifyOptions options, Class<T> entityClass, String collectionName) {
+    if (!isSharded(collectionName)) {
+      return super.findAndModify(query, update, options, entityClass, collectionName);
+    }
+
+    if (options.isUpsert()) {
+      checkTopology();
+    }
+
+    Object id = idOf(query);
+    Query routed = query;
+
+    if (id == null) {
+      id = firstIdOf(query, collectionName);
+      if (id == null && !options.isUpsert()) {
+        return null;
+      }
+      if (id == null) {
+        id = new ObjectId();
+      }
+      routed = withId(query, id);
+    }
+
+    Query target = routed;
+    return writeById(id, collectionName, shard -> shard.findAndModify(target, update, options, entityClass, collectionName));
+  }
+
+  @Override
+  protected WriteResult doUpdate(String collectionName, Query query, Update update, Class<?> entityClass, boolean upsert, boolean multi) {
+    if (!isSharded(collectionName)) {
+      return super.doUpdate(collectionName, query, update, entityClass, upsert, multi);
+    }
+
+    if (upsert) {
+      checkTopology();
+    }
+
+    Object id = idOf(query);
+
+    if (id == null && multi) {
+      topology.readLock().lock();
+      try {
+        if (!rebalancing) {
+          int updated = 0;
+          for (WriteResult result : scatter(shard -> update(shard, query, update, entityClass, collectionName, upsert, true))) {
+            updated += result.getN();
+          }
+          return new WriteResult(updated, updated > 0, null);
+        }
+      } finally {
+        topology.readLock().unlock();
+      }
+
+      // a document moving meanwhile could be updated on the shard it leaves after its copy, each one is moved then updated
+      int updated = 0;
+      for (Object matching : idsOf(query, collectionName)) {
+        updated += writeById(matching, collectionName,
+          shard -> update(shard, withId(query, matching), update, entityClass, collectionName, false, false)).getN();
+      }
+      return new WriteResult(updated, updated > 0, null);
+    }
+
+    Query routed = query;
+    if (id == null) {
+      id = firstIdOf(query, collectionName);
+      if (id == null && !upsert) {
+        return new WriteResult(0, false, null);
+      }
+      if (id == null) {
+        id = new ObjectId();
+      }
+      routed = withId(query, id);
+    }
+
+    Query target = routed;
+    return writeById(id, collectionName, shard -> update(shard, target, update, entityClass, collectionName, upsert, multi));
+  }
+
+  @Override
+  protected <T> WriteResult doRemove(String collectionName, Query query, Class<T> entityClass) {
+    if (!isSharded(collectionName)) {
+      return super.doRemove(collectionName, query, entityClass);
+    }
+
+    Object id = idOf(query);
+    if (id != null) {
+      return writeById(id, collectionName, shard -> remove(shard, query, entityClass, collectionName));
+    }
+
+    int removed = 0;
+    topology.readLock().lock();
+    try {
+      if (!rebalancing) {
+        for (WriteResult result : scatter(shard -> remove(shard, query, entityClass, collectionName))) {
+          removed += result.getN();
+        }
+        return new WriteResult(removed, false, null);
+      }
+    } finally {
+      topology.readLock().unlock();
+    }
+
+    // a removed document could come back with the copy of a migration, each one is moved then removed
+    for (Object matching : idsOf(query, collectionName)) {
+      removed += writeById(matching, collectionName, shard -> remove(shard, withId(query, matching), entityClass, collectionName)).getN();
+    }
+    return new WriteResult(removed, false, null);
+  }
+
+  @Override
+  protected <O> AggregationResults<O> aggregate(Aggregation aggregation, String collectionName, Class<O> outputType,
+      AggregationOperationContext context) {
+    if (!isSharded(collectionName)) {
+      return super.aggregate(aggregation, collectionName, outputType, context);
+    }
+
+    List<O> mapped = new ArrayList<O>();
+    List<DBObject> raw = new ArrayList<DBObject>();
+
+    for (AggregationResults<O> results : scatter(shard -> shard.aggregate(aggregation, collectionName, outputType))) {
+      mapped.addAll(results.getMappedResults());
+      raw.add(results.getRawResults());
+    }
+    return new AggregationResults<O>(mapped, new BasicDBObject("shards", raw));
+  }
+
+  private boolean isSharded(String collectionName) {
+    return shardedCollection.equals(collectionName);
+  }
+
+  /**
+   * Owner shard of an _id, for the bulk operations, which fall back to single operations while rebalancing
+   */
+  MongoTemplate shardOf(Object id) {
+    return shards.get(ring.shardOf(id.toString()));
+  }
+
+  Collection<MongoTemplate> getShards() {
+    return shards.values();
+  }
+
+  /**
+   * Throws StaleShardTopologyException when the topology collection records a shard missing from the ring of this instance
+   * An upsert checked here and racing with an addShard of another instance can still reach the previous owner
+   */
+  void checkTopology() {
+    DBObject unknown = new BasicDBObject("_id", new BasicDBObject("$nin", new ArrayList<String>(shards.keySet())));
+
+    if (getCollection(topologyCollection).count(unknown) > 0) {
+      throw new StaleShardTopologyException();
+    }
+  }
+
+  /**
+   * Read by _id, outside a rebalancing only the owner shard is asked
+   * while rebalancing the owner is asked first and then the other shards, under the _id lock so the document cannot move meanwhile
+   */
+  private <R> R readById(Object id, Function<MongoTemplate, R> read) {
+    topology.readLock().lock();
+    try {
+      String key = id.toString();
+      String owner = ring.shardOf(key);
+
+      if (!rebalancing) {
+        return read.apply(shards.get(owner));
+      }
+
+      synchronized (stripe(key)) {
+        R result = read.apply(shards.get(owner));
+
+        for (Iterator<Map.Entry<String, MongoTemplate>> it = shards.entrySet().iterator(); result == null && it.hasNext();) {
+          Map.Entry<String, MongoTemplate> shard = it.next();
+
+          if (!shard.getKey().equals(owner)) {
+            result = read.apply(shard.getValue());
+          }
+        }
+        return result;
+      }
+    } finally {
+      topology.readLock().unlock();
+    }
+  }
+
+  /**
+   * Write by _id on the owner shard, while rebalancing the document is first moved to its owner under the _id lock
+   */
+  private <R> R writeById(Object id, String collectionName, Function<MongoTemplate, R> write) {
+    topology.readLock().lock();
+    try {
+      String key = id.toString();
+
+      if (!rebalancing) {
+        return write.apply(shards.get(ring.shardOf(key)));
+      }
+
+      synchronized (stripe(key)) {
+        moveToOwner(key, collectionName);
+        return write.apply(shards.get(ring.shardOf(key)));
+      }
+    } finally {
+      topology.readLock().unlock();
+    }
+  }
+
+  /**
+   * Adds the shard to a copy of the shards and to the ring, callers hold the topology write lock
+   */
+  private void grow(String name, MongoTemplate shard) {
+    Map<String, MongoTemplate> grown = new LinkedHashMap<String, MongoTemplate>(shards);
+    grown.put(name, shard);
+
+    shards = grown;
+    ring = ring.withShard(name);
+  }
+
+  private long migrate() {
+    long moved = 0;
+
+    try {
+      for (Map.Entry<String, MongoTemplate> shard : shards.entrySet()) {
+        try (DBCursor ids = shard.getValue().getCollection(shardedCollection).find(new BasicDBObject(), new BasicDBObject("_id", 1))) {
+          while (ids.hasNext()) {
+            String key = ids.next().get("_id").toString();
+
+            if (!ring.shardOf(key).equals(shard.getKey())) {
+              synchronized (stripe(key)) {
+                if (moveToOwner(key, shardedCollection)) {
+                  moved++;
+                }
+              }
+            }
+          }
+        }
+      }
+    } finally {
+      topology.writeLock().lock();
+      rebalancing = false;
+      topology.writeLock().unlock();
+    }
+
+    return moved;
+  }
+
+  /**
+   * Copies the raw document to its owner shard then deletes it from the shard holding it, so at any time
+   * the document exists on at least one shard, callers hold the _id lock
+   */
+  private boolean moveToOwner(String key, String collectionName) {
+    String owner = ring.shardOf(key);
+    DBObject byId = new BasicDBObject("_id", ObjectId.isValid(key) ? new ObjectId(key) : key);
+
+    for (Map.Entry<String, MongoTemplate> shard : shards.entrySet()) {
+      if (shard.getKey().equals(owner)) {
+        continue;
+      }
+
+      DBObject document = shard.getValue().getCollection(collectionName).findOne(byId);
+      if (document != null) {
+        shards.get(owner).getCollection(collectionName).save(document);
+        shard.getValue().getCollection(collectionName).remove(byId);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * _id of the first document matching the query (in _id order) among all the shards
+   */
+  private Object firstIdOf(Query query, String collectionName) {
+    BasicQuery idQuery = new BasicQuery(query.getQueryObject(), new BasicDBObject("_id", 1));
+    idQuery.setSortObject(new BasicDBObject("_id", 1));
+    idQuery.limit(1);
+
+    List<DBObject> firsts = find(idQuery, DBObject.class, collectionName);
+    return firsts.isEmpty() ? null : firsts.get(0).get("_id");
+  }
+
+  /**
+   * _ids of all the documents matching the query among all the shards
+   */
+  private List<Object> idsOf(Query query, String collectionName) {
+    List<Object> ids = new ArrayList<Object>();
+
+    for (DBObject document : find(new BasicQuery(query.getQueryObject(), new BasicDBObject("_id", 1)), DBObject.class, collectionName)) {
+      ids.add(document.get("_id"));
+    }
+    return ids;
+  }
+
+  private <R> List<R> scatter(Function<MongoTemplate, R> call) {
+    List<CompletableFuture<R>> futures = new ArrayList<CompletableFuture<R>>();
+
+    for (MongoTemplate shard : shards.values()) {
+      futures.add(CompletableFuture.supplyAsync(() -> call.apply(shard), executor));
+    }
+
+    List<R> results = new ArrayList<R>();
+    for (CompletableFuture<R> future : futures) {
+      try {
+        results.add(future.join());
+      } catch (CompletionException e) {
+        throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Merges iterators already sorted by the given sort (a mongodb sort document), or chains them when there is no sort
+   */
+  private <T> Iterator<T> merge(List<Iterator<T>> iterators, DBObject sort) {
+    if (sort == null || sort.keySet().isEmpty()) {
+      return iterators.stream().flatMap(it -> {
+        Iterable<T> iterable = () -> it;
+        return StreamSupport.stream(iterable.spliterator(), false);
+      }).iterator();
+    }
+
+    Comparator<T> order = comparatorOf(sort);
+    PriorityQueue<Head<T>> heads = new PriorityQueue<Head<T>>((a, b) -> order.compare(a.value, b.value));
+
+    for (Iterator<T> iterator : iterators) {
+      if (iterator.hasNext()) {
+        heads.add(new Head<T>(iterator.next(), iterator));
+      }
+    }
+
+    return new Iterator<T>() {
+
+      @Override
+      public boolean hasNext() {
+        return !heads.isEmpty();
+      }
+
+      @Override
+      public T next() {
+        Head<T> head = heads.poll();
+
+        if (head == null) {
+          throw new NoSuchElementException();
+        }
+        if (head.iterator.hasNext()) {
+          heads.add(new Head<T>(head.iterator.next(), head.iterator));
+        }
+        return head.value;
+      }
+    };
+  }
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private <T> Comparator<T> comparatorOf(DBObject sort) {
+    Comparator<T> comparator = (a, b) -> 0;
+
+    for (String field : sort.keySet()) {
+      int direction = ((Number) sort.get(field)).intValue() < 0 ? -1 : 1;
+      Comparator<T> byField = (a, b) -> {
+        Object x = valueOf(a, field);
+        Object y = valueOf(b, field);
+
+        if (x == null || y == null) {
+          return x == y ? 0 : (x == null ? -1 : 1);
+        }
+        return ((Comparable) x).compareTo(y);
+      };
+
+      comparator = comparator.thenComparing(direction < 0 ? byField.reversed() : byField);
+    }
+    return comparator;
+  }
+
+  private Object valueOf(Object document, String field) {
+    if (document instanceof DBObject) {
+      return ((DBObject) document).get(field);
+    }
+    if ("_id".equals(field)) {
+      return idOf(document, false);
+    }
+
+    MongoPersistentEntity<?> entity = getConverter().getMappingContext().getPersistentEntity(document.getClass());
+    MongoPersistentProperty property = entity.getPersistentProperty(field);
+    return property == null ? null : entity.getPropertyAccessor(document).getProperty(property);
+  }
+
+  /**
+   * _id of an entity or a raw document, a missing _id is generated when asked so the document can be placed
+   */
+  Object idOf(Object document, boolean generate) {
+    if (document instanceof DBObject) {
+      DBObject dbObject = (DBObject) document;
+
+      if (dbObject.get("_id") == null && generate) {
+        dbObject.put("_id", new ObjectId());
+      }
+      return dbObject.get("_id");
+    }
+
+    MongoPersistentEntity<?> entity = getConverter().getMappingContext().getPersistentEntity(document.getClass());
+    MongoPersistentProperty idProperty = entity.getIdProperty();
+    PersistentPropertyAccessor accessor = entity.getPropertyAccessor(document);
+    Object id = accessor.getProperty(idProperty);
+
+    if (id == null && generate) {
+      ObjectId generated = new ObjectId();
+
+      id = String.class.equals(idProperty.getType()) ? generated.toHexString() : generated;
+      accessor.setProperty(idProperty, id);
+    }
+    return id;
+  }
+
+  private Object idOf(Object document) {
+    return idOf(document, false);
+  }
+
+  /**
+   * The _id of a query looking up a single document by _id, null for any other query
+   */
+  static Object idOf(Query query) {
+    DBObject criteria = query.getQueryObject();
+    Object id = criteria.containsField("_id") ? criteria.get("_id") : criteria.get("id");
+
+    return id instanceof String || id instanceof ObjectId ? id : null;
+  }
+
+  private static Query withId(Query query, Object id) {
+    BasicDBObject criteria = new BasicDBObject(query.getQueryObject().toMap());
+
+    criteria.put("_id", id);
+    return new BasicQuery(criteria, query.getFieldsObject());
+  }
+
+  private static Query copyOf(Query query, int skip, int limit) {
+    BasicQuery copy = new BasicQuery(query.getQueryObject(), query.getFieldsObject());
+
+    copy.setSortObject(query.getSortObject());
+    copy.skip(skip);
+    copy.limit(limit);
+    return copy;
+  }
+
+  private static <T> List<Iterator<T>> iterators(List<List<T>> lists) {
+    List<Iterator<T>> iterators = new ArrayList<Iterator<T>>();
+
+    for (List<T> list : lists) {
+      iterators.add(list.iterator());
+    }
+    return iterators;
+  }
+
+  private static WriteResult update(MongoTemplate shard, Query query, Update update, Class<?> entityClass, String collectionName,
+      boolean upsert, boolean multi) {
+    if (upsert) {
+      return entityClass == null ? shard.upsert(query, update, collectionName) : shard.upsert(query, update, entityClass, collectionName);
+    }
+    if (multi) {
+      return entityClass == null ? shard.updateMulti(query, update, collectionName) : shard.updateMulti(query, update, entityClass, collectionName);
+    }
+    return entityClass == null ? shard.updateFirst(query, update, collectionName) : shard.updateFirst(query, update, entityClass, collectionName);
+  }
+
+  private static WriteResult remove(MongoTemplate shard, Query query, Class<?> entityClass, String collectionName) {
+    return entityClass == null ? shard.remove(query, collectionName) : shard.remove(query, entityClass, collectionName);
+  }
+
+  private Object stripe(String key) {
+    return stripes[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
+  }
+
+  private static class Head<T> {
+
+    Head(T value, Iterator<T> iterator) {
+      this.value = value;
+      this.iterator = iterator;
+    }
+
+    final T value;
+    final Iterator<T> iterator;
+  }
+
+  private final String shardedCollection;
+  private final String topologyCollection;
+  private final ExecutorService executor;
+  private final ReadWriteLock topology = new ReentrantReadWriteLock();
+  private final Object[] stripes = new Object[LOCK_STRIPES];
+  private volatile Map<String, MongoTemplate> shards;
+  private volatile ConsistentHashRing ring;
+  private volatile boolean rebalancing;
+}
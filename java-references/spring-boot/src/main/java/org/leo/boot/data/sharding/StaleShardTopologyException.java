@@ -0,0 +1,14 @@
+package org.leo.boot.data.sharding;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An upsert was refused because another instance added a shard this instance has not put on its ring yet,
+ * it is accepted again after the next topology refresh
+ * @author fahdessid
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "The shard topology changed, retry later")
+public class StaleShardTopologyException extends RuntimeException {
+}
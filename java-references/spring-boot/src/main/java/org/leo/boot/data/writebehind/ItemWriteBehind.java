@@ -0,0 +1,300 @@
+package org.leo.boot.data.writebehind;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.bson.types.ObjectId;
+import org.leo.boot.data.model.Item;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * Write behind of the created items, enabled with items.write-behind.enabled=true
+ * 
+ * POST /item gets an _id generated here and is answered as soon as the item is queued, the mongodb insert happens later :
+ * the request threads only put items into a bounded queue (many producers), one writer thread takes them out (one consumer)
+ * and inserts them in batches of up to batch-size documents, one round trip per batch instead of one per item
+ * When the queue is full the request waits up to enqueue-timeout and is then refused with a 503, the queue bounds
+ * the memory and the data lost if the process dies
+ * 
+ * Until its batch is written an item is kept in the pending overlay, the item reads look there first so a created item
+ * can be read back right away, writes to a pending item (edit, delete, rank) wait for it to be persisted first
+ * On shutdown the queue stops accepting items and the writer drains it before the mongodb client is closed
+ * (this bean depends on MongoTemplate so it is destroyed before it), a kill -9 loses the queued items
+ * @author fahdessid
+ */
+@Component
+@ConditionalOnProperty(name = "items.write-behind.enabled", havingValue = "true")
+public class ItemWriteBehind implements PublicMetrics {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ItemWriteBehind.class);
+
+  @PostConstruct
+  public void start() {
+    queue = new ArrayBlockingQueue<Item>(queueCapacity);
+    writer = new Thread(this::drain, "item-write-behind");
+    writer.start();
+  }
+
+  /**
+   * Queues the item for insertion and gives it its _id, throws WriteBehindQueueFullException when it cannot be queued
+   */
+  public Item enqueue(Item item) {
+    if (item.getId() == null) {
+      item.setId(new ObjectId().toHexString());
+    }
+
+    // the read lock keeps flush() from closing the queue between the closed check and the offer
+    shutdown.readLock().lock();
+    try {
+      if (!closed) {
+        // in the overlay before the queue, the writer removes it after the insert and must find it there
+        pending.put(item.getId(), item);
+
+        if (queue.offer(item, enqueueTimeout, TimeUnit.MILLISECONDS)) {
+          queued.increment();
+          return item;
+        }
+        pending.remove(item.getId(), item);
+      }
+    } catch (InterruptedException e) {
+      pending.remove(item.getId(), item);
+      Thread.currentThread().interrupt();
+    } finally {
+      shutdown.readLock().unlock();
+    }
+
+    rejected.increment();
+    throw new WriteBehindQueueFullException();
+  }
+
+  /**
+   * The item if it is queued and not written yet
+   */
+  public Item getPending(String id) {
+    return pending.get(id);
+  }
+
+  public Collection<Item> getPendingItems() {
+    return Collections.unmodifiableCollection(pending.values());
+  }
+
+  /**
+   * Waits until the item is written (or was never queued), returns false when it is still pending after the timeout
+   */
+  public boolean awaitPersisted(String id, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+
+    synchronized (written) {
+      while (pending.containsKey(id)) {
+        long remaining = deadline - System.currentTimeMillis();
+
+        if (remaining <= 0) {
+          return false;
+        }
+        written.wait(remaining);
+      }
+    }
+    return true;
+  }
+
+  @PreDestroy
+  public void flush() throws InterruptedException {
+    shutdown.writeLock().lock();
+    closed = true;
+    shutdown.writeLock().unlock();
+
+    // no interrupt, the mongodb driver fails the operations of an interrupted thread, the writer sees closed within a second
+    writer.join();
+
+    if (!pending.isEmpty()) {
+      LOGGER.error("{} queued items could not be written before shutdown", pending.size());
+    }
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+    metrics.add(new Metric<Integer>("writebehind.items.pending", pending.size()));
+    metrics.add(new Metric<Long>("writebehind.items.queued", queued.sum()));
+    metrics.add(new Metric<Long>("writebehind.items.written", writtenItems.sum()));
+    metrics.add(new Metric<Long>("writebehind.items.batches", batches.sum()));
+    metrics.add(new Metric<Long>("writebehind.items.rejected", rejected.sum()));
+    metrics.add(new Metric<Long>("writebehind.items.dropped", droppedItems.sum()));
+    metrics.add(new Metric<Long>("writebehind.items.failures", failures.sum()));
+
+    return metrics;
+  }
+
+  /**
+   * Writer loop, once closed it goes on without waiting until the queue is empty
+   */
+  private void drain() {
+    List<Item> batch = new ArrayList<Item>(batchSize);
+
+    while (!closed || !queue.isEmpty()) {
+      try {
+        Item first = closed ? queue.poll() : queue.poll(1, TimeUnit.SECONDS);
+
+        if (first == null) {
+          continue;
+        }
+
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        batch.clear();
+      }
+    }
+  }
+
+  /**
+   * One bulk insert, retried item by item when it fails : an item still refused after max-retries attempts is dropped and logged
+   * so it does not hold back the items queued behind it, while shutting down the rest of the batch is dropped after shutdown-retries
+   * attempts on one item. The items leave the overlay and the waiters of awaitPersisted are woken up whatever the outcome
+   * 
+   * The retry is an explicit upsert by _id of the whole document : the items a failed batch already wrote are overwritten with
+   * the same values instead of duplicated. Not save : insert has already set the @Version of the items to 0, save would then
+   * update by {_id, version} without upsert and fail with an OptimisticLockingFailureException for every item the batch did not write
+   */
+  private void write(List<Item> batch) {
+    String collection = mongoTemplate.getCollectionName(Item.class);
+    int inserted = batch.size();
+
+    try {
+      mongoTemplate.insert(batch, collection);
+    } catch (RuntimeException e) {
+      failures.increment();
+      inserted = retry(batch, collection);
+    } finally {
+      synchronized (written) {
+        for (Item item : batch) {
+          pending.remove(item.getId(), item);
+        }
+        written.notifyAll();
+      }
+    }
+
+    batches.increment();
+    writtenItems.add(inserted);
+    droppedItems.add(batch.size() - inserted);
+  }
+
+  /**
+   * Upserts the items one by one, returns how many were written
+   */
+  private int retry(List<Item> batch, String collection) {
+    int inserted = 0;
+    int attempt = 0;
+
+    for (int i = 0; i < batch.size(); ) {
+      Item item = batch.get(i);
+
+      try {
+        upsert(item, collection);
+        inserted++;
+        attempt = 0;
+        i++;
+      } catch (RuntimeException e) {
+        failures.increment();
+        attempt++;
+
+        if (closed && attempt >= shutdownRetries) {
+          LOGGER.error("dropping the last {} items of a batch after {} attempts", batch.size() - i, attempt, e);
+          return inserted;
+        }
+        if (attempt >= maxRetries) {
+          LOGGER.error("dropping item {} after {} attempts", item.getId(), attempt, e);
+          attempt = 0;
+          i++;
+        } else {
+          sleepQuietly(retryBackoff);
+        }
+      }
+    }
+    return inserted;
+  }
+
+  /**
+   * $set of every field of the item (version included, so no version check nor increment) on the document of its _id, created if missing
+   */
+  private void upsert(Item item, String collection) {
+    DBObject document = new BasicDBObject();
+
+    mongoTemplate.getConverter().write(item, document);
+    mongoTemplate.upsert(Query.query(Criteria.where("_id").is(item.getId())), Update.fromDBObject(document, "_id"), Item.class, collection);
+  }
+
+  private static void sleepQuietly(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private volatile boolean closed;
+  private final ReadWriteLock shutdown = new ReentrantReadWriteLock();
+  private BlockingQueue<Item> queue;
+  private Thread writer;
+  private final Map<String, Item> pending = new ConcurrentHashMap<String, Item>();
+  private final Object written = new Object();
+  private final LongAdder queued = new LongAdder();
+  private final LongAdder writtenItems = new LongAdder();
+  private final LongAdder batches = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder droppedItems = new LongAdder();
+  private final LongAdder failures = new LongAdder();
+
+  @Value("${items.write-behind.queue-capacity:10000}")
+  private int queueCapacity;
+
+  @Value("${items.write-behind.batch-size:500}")
+  private int batchSize;
+
+  @Value("${items.write-behind.enqueue-timeout:100}")
+  private long enqueueTimeout;
+
+  @Value("${items.write-behind.retry-backoff:1000}")
+  private long retryBackoff;
+
+  @Value("${items.write-behind.max-retries:10}")
+  private int maxRetries;
+
+  @Value("${items.write-behind.shutdown-retries:5}")
+  private int shutdownRetries;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+}
@@ -0,0 +1,13 @@
+package org.leo.boot.data.writebehind;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * The write behind queue stayed full during the whole enqueue timeout, or the application is shutting down
+ * @author fahdessid
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "Too many pending item writes, retry later")
+public class WriteBehindQueueFullException extends RuntimeException {
+}
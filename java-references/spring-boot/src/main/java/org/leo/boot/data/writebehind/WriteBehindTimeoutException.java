@@ -0,0 +1,13 @@
+package org.leo.boot.data.writebehind;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A write to a queued item gave up waiting for the write behind insert of the item
+ * @author fahdessid
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE, reason = "The item is not written yet, retry later")
+public class WriteBehindTimeoutException extends RuntimeException {
+}
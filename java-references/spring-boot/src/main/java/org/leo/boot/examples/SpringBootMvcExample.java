@@ -1,21 +1,36 @@
 package org.leo.boot.examples;
 
+import org.leo.boot.configuration.DataSourceConfiguration;
+import org.leo.boot.configuration.FastStartupConfiguration;
+import org.leo.boot.configuration.SecurityConfiguration;
+import org.leo.boot.configuration.ServerTuningConfiguration;
+import org.leo.boot.configuration.WebMvcConfig;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.autoconfigure.data.mongo.MongoDataAutoConfiguration;
 import org.springframework.boot.autoconfigure.domain.EntityScan;
 import org.springframework.boot.autoconfigure.mongo.MongoAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 /**
  * Testing spring boot MVC, JPA, Thymleaf, Security application
  * @author fahdessid
  */
-@SpringBootApplication(scanBasePackages = {"org.leo.boot"})
+//only the packages holding this application's components are scanned, scanning the whole org.leo.boot tree
+//would also walk the rest api and the examples package (and pick up the mongo only beans)
+@SpringBootApplication(scanBasePackages = {"org.leo.boot.mvc", "org.leo.boot.data.service"})
+//the configuration package also holds the rest only settings (mongo pool, sharding, async item executor),
+//so like SpringBootRestExample we import the ones of this application instead of scanning it
+@Import({DataSourceConfiguration.class, SecurityConfiguration.class, WebMvcConfig.class, FastStartupConfiguration.class,
+  ServerTuningConfiguration.class})
 @EnableJpaRepositories(basePackages = {"org.leo.boot.data.repository"})
 @EntityScan("org.leo.boot.data.model")
 @EnableAutoConfiguration(exclude={MongoAutoConfiguration.class, MongoDataAutoConfiguration.class})
+//runs the @Scheduled methods, the rebuild of the registered emails filter
+@EnableScheduling
 public class SpringBootMvcExample {
 
   public static void main(String[] args) {
@@ -1,5 +1,10 @@
 package org.leo.boot.examples;
 
+import org.leo.boot.configuration.AsyncItemConfiguration;
+import org.leo.boot.configuration.FastStartupConfiguration;
+import org.leo.boot.configuration.MongoPoolConfiguration;
+import org.leo.boot.configuration.ServerTuningConfiguration;
+import org.leo.boot.configuration.ShardingConfiguration;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -7,7 +12,9 @@ import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
 import org.springframework.boot.autoconfigure.jdbc.DataSourceTransactionManagerAutoConfiguration;
 import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
 import org.springframework.boot.autoconfigure.security.SecurityAutoConfiguration;
+import org.springframework.context.annotation.Import;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
@@ -16,11 +23,17 @@ import org.springframework.web.bind.annotation.RestController;
  * @author fahdessid
  */
 //when SpringBootApplication annotation is used, the ScanPackage is implicitly used for the current package
-@SpringBootApplication(scanBasePackages = {"org.leo.boot.rest.api"})
+@SpringBootApplication(scanBasePackages = {"org.leo.boot.rest.api", "org.leo.boot.rest.idempotency", "org.leo.boot.data.search",
+  "org.leo.boot.data.writebehind", "org.leo.boot.data.ranking"})
 //needed if the Mongodb repositories are not in the same package/sub package of the application class
 @EnableMongoRepositories(basePackages = {"org.leo.boot.data.repository"})
 //we only want to test rest api against mongodb here, so we disable Datasource and Security integration
 @EnableAutoConfiguration(exclude = {DataSourceAutoConfiguration.class, DataSourceTransactionManagerAutoConfiguration.class, HibernateJpaAutoConfiguration.class, SecurityAutoConfiguration.class})
+//the configuration package is not scanned by this application, so we import the mongo pool, fast startup, sharding, async executor and server tuning settings explicitly
+@Import({MongoPoolConfiguration.class, FastStartupConfiguration.class, ShardingConfiguration.class, AsyncItemConfiguration.class,
+  ServerTuningConfiguration.class})
+//runs the @Scheduled methods, the item ranking job
+@EnableScheduling
 @RestController
 public class SpringBootRestExample {
 
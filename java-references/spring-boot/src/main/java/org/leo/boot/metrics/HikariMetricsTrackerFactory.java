@@ -0,0 +1,37 @@
+package org.leo.boot.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/**
+ * Hikari metrics hook, Hikari calls the tracker on every borrow (with the time spent waiting for a connection)
+ * and on every borrow that ended with connectionTimeout elapsed
+ * @author fahdessid
+ */
+public class HikariMetricsTrackerFactory implements MetricsTrackerFactory {
+
+  public HikariMetricsTrackerFactory(PoolMetrics poolMetrics) {
+    this.poolMetrics = poolMetrics;
+  }
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats poolStats) {
+    poolMetrics.bindGauges(poolStats::getActiveConnections, poolStats::getIdleConnections);
+
+    return new IMetricsTracker() {
+
+      @Override
+      public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        poolMetrics.recordAcquisition(elapsedAcquiredNanos);
+      }
+
+      @Override
+      public void recordConnectionTimeout() {
+        poolMetrics.recordTimeout();
+      }
+    };
+  }
+
+  private final PoolMetrics poolMetrics;
+}
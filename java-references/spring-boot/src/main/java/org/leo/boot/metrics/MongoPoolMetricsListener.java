@@ -0,0 +1,69 @@
+package org.leo.boot.metrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+
+/**
+ * Mongo driver pool listener feeding a PoolMetrics
+ * The driver fires waitQueueEntered, connectionCheckedOut and waitQueueExited on the borrowing thread, so the wait time
+ * is measured with a thread local, a thread leaving the wait queue without a connection has hit maxWaitTime (or a full wait queue)
+ * @author fahdessid
+ */
+public class MongoPoolMetricsListener extends ConnectionPoolListenerAdapter {
+
+  public MongoPoolMetricsListener(PoolMetrics poolMetrics) {
+    this.poolMetrics = poolMetrics;
+    poolMetrics.bindGauges(checkedOut::get, () -> size.get() - checkedOut.get());
+  }
+
+  @Override
+  public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+    waitStart.set(System.nanoTime());
+  }
+
+  @Override
+  public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+    checkedOut.incrementAndGet();
+
+    Long start = waitStart.get();
+    if (start != null) {
+      poolMetrics.recordAcquisition(System.nanoTime() - start);
+      waitStart.remove();
+    }
+  }
+
+  @Override
+  public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+    if (waitStart.get() != null) {
+      poolMetrics.recordTimeout();
+      waitStart.remove();
+    }
+  }
+
+  @Override
+  public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+    checkedOut.decrementAndGet();
+  }
+
+  @Override
+  public void connectionAdded(ConnectionAddedEvent event) {
+    size.incrementAndGet();
+  }
+
+  @Override
+  public void connectionRemoved(ConnectionRemovedEvent event) {
+    size.decrementAndGet();
+  }
+
+  private final PoolMetrics poolMetrics;
+  private final AtomicInteger size = new AtomicInteger();
+  private final AtomicInteger checkedOut = new AtomicInteger();
+  private final ThreadLocal<Long> waitStart = new ThreadLocal<Long>();
+}
@@ -0,0 +1,67 @@
+package org.leo.boot.metrics;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+
+/**
+ * Connection pool statistics, published on the actuator metrics endpoint under pool.{name}.*
+ * Acquisitions and timeouts are pushed by the pool specific trackers (Hikari tracker, Mongo pool listener)
+ * while active and idle counts are read from the pool itself each time the metrics are collected
+ * LongAdder is used for the counters since they are updated by every thread borrowing a connection
+ * @author fahdessid
+ */
+public class PoolMetrics implements PublicMetrics {
+
+  public PoolMetrics(String name) {
+    this.prefix = "pool." + name + ".";
+  }
+
+  public void recordAcquisition(long waitNanos) {
+    acquisitions.increment();
+    totalWaitNanos.add(waitNanos);
+    maxWaitNanos.accumulate(waitNanos);
+  }
+
+  public void recordTimeout() {
+    timeouts.increment();
+  }
+
+  public void bindGauges(IntSupplier active, IntSupplier idle) {
+    this.active = active;
+    this.idle = idle;
+  }
+
+  @Override
+  public Collection<Metric<?>> metrics() {
+    long count = acquisitions.sum();
+    Collection<Metric<?>> metrics = new ArrayList<Metric<?>>();
+
+    metrics.add(new Metric<Integer>(prefix + "active", active.getAsInt()));
+    metrics.add(new Metric<Integer>(prefix + "idle", idle.getAsInt()));
+    metrics.add(new Metric<Long>(prefix + "acquisitions", count));
+    metrics.add(new Metric<Long>(prefix + "timeouts", timeouts.sum()));
+    metrics.add(new Metric<Double>(prefix + "wait.mean", count == 0 ? 0.0 : toMillis(totalWaitNanos.sum()) / count));
+    metrics.add(new Metric<Double>(prefix + "wait.max", toMillis(maxWaitNanos.get())));
+
+    return metrics;
+  }
+
+  private static double toMillis(long nanos) {
+    return (double) nanos / TimeUnit.MILLISECONDS.toNanos(1);
+  }
+
+  private final String prefix;
+  private final LongAdder acquisitions = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder totalWaitNanos = new LongAdder();
+  private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0L);
+  private volatile IntSupplier active = () -> 0;
+  private volatile IntSupplier idle = () -> 0;
+}
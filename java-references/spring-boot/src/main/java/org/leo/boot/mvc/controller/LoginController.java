@@ -46,9 +46,8 @@ public class LoginController {
   @RequestMapping(value = "/registration", method = RequestMethod.POST)
   public ModelAndView createNewUser(@Valid User user, BindingResult bindingResult) {
     ModelAndView modelAndView = new ModelAndView();
-    User userExists = userService.findUserByEmail(user.getEmail());
     
-    if (userExists != null) {
+    if (userService.isEmailRegistered(user.getEmail())) {
       bindingResult.rejectValue("email", "error.user", "There is already a user registered with the email provided");
     }
     
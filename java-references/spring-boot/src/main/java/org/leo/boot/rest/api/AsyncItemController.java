@@ -0,0 +1,130 @@
+package org.leo.boot.rest.api;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Async variants of the ItemController endpoints, under /async/item
+ * 
+ * Each method hands the call to ItemController over to the item executor and returns a DeferredResult right away,
+ * the servlet thread goes back to the container pool while mongodb works, the response is written when the future completes
+ * Every endpoint has its own timeout (item.async.timeout.*), a call not done in time is answered with a 504,
+ * a call refused by the full executor queue with a 503
+ * A timed out call keeps running on its executor thread until the repository returns, its result is dropped
+ * @author fahdessid
+ */
+@RestController
+@RequestMapping("/async/item")
+public class AsyncItemController {
+
+  @RequestMapping(method = RequestMethod.POST)
+  public DeferredResult<Object> createBook(@RequestBody Map<String, Object> itemMap,
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+    return async(writeTimeout, () -> itemController.createBook(itemMap, idempotencyKey));
+  }
+
+  @RequestMapping(method = RequestMethod.GET, value="/{itemId}")
+  public DeferredResult<Object> getItemDetails(@PathVariable("itemId") String itemId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    return async(readTimeout, () -> itemController.getItemDetails(itemId, ifNoneMatch));
+  }
+
+  @RequestMapping(method = RequestMethod.GET, value="/multi")
+  public DeferredResult<Object> getItems(@RequestParam("ids") List<String> ids,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    return async(readTimeout, () -> itemController.getItems(ids, ifNoneMatch));
+  }
+
+  @RequestMapping(method = RequestMethod.PUT, value="/{itemId}")
+  public DeferredResult<Object> editItem(@PathVariable("itemId") String itemId, @RequestBody Map<String, Object> itemMap) {
+    return async(writeTimeout, () -> itemController.editItem(itemId, itemMap));
+  }
+
+  @RequestMapping(method = RequestMethod.DELETE, value="/{itemId}")
+  public DeferredResult<Object> deleteBook(@PathVariable("itemId") String itemId) {
+    return async(writeTimeout, () -> itemController.deleteBook(itemId));
+  }
+
+  @RequestMapping(method = RequestMethod.GET)
+  public DeferredResult<Object> getAllBooks() {
+    return async(listTimeout, () -> itemController.getAllBooks());
+  }
+
+  @RequestMapping(method = RequestMethod.PUT, value="/{itemId}/{rank}")
+  public DeferredResult<Object> setRanking(@PathVariable("itemId") String itemId, @PathVariable("rank") int rank) {
+    return async(rankTimeout, () -> itemController.setRanking(itemId, rank));
+  }
+
+  @RequestMapping(method = RequestMethod.GET, value="/search")
+  public DeferredResult<Object> searchItems(@RequestParam("q") String query,
+      @RequestParam(value = "page", defaultValue = "0") int page,
+      @RequestParam(value = "size", defaultValue = "20") int size) {
+    return async(readTimeout, () -> itemController.searchItems(query, page, size));
+  }
+
+  /**
+   * Runs the call on the item executor, the DeferredResult gets its result, its exception (handled by the usual
+   * exception resolvers, e.g. the @ResponseStatus of the idempotency exceptions) or a 504 after timeout milliseconds
+   */
+  private DeferredResult<Object> async(long timeout, Supplier<Object> call) {
+    DeferredResult<Object> result = new DeferredResult<Object>(timeout, ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build());
+    CompletableFuture<Object> future;
+
+    try {
+      future = CompletableFuture.supplyAsync(call, itemExecutor);
+    } catch (RejectedExecutionException e) {
+      result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+      return result;
+    }
+
+    future.whenComplete((value, error) -> {
+      if (error != null) {
+        result.setErrorResult(error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+      } else {
+        result.setResult(value);
+      }
+    });
+    result.onTimeout(() -> future.cancel(false));
+
+    return result;
+  }
+
+  @Value("${item.async.timeout.read:2000}")
+  private long readTimeout;
+
+  @Value("${item.async.timeout.write:5000}")
+  private long writeTimeout;
+
+  @Value("${item.async.timeout.list:30000}")
+  private long listTimeout;
+
+  @Value("${item.async.timeout.rank:10000}")
+  private long rankTimeout;
+
+  @Autowired
+  private ItemController itemController;
+
+  @Autowired
+  @Qualifier("itemExecutor")
+  private Executor itemExecutor;
+}
@@ -1,17 +1,34 @@
 package org.leo.boot.rest.api;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import org.leo.boot.data.model.Item;
 import org.leo.boot.data.repository.ItemRepository;
+import org.leo.boot.data.search.ItemSearchIndex;
+import org.leo.boot.data.search.SearchResult;
+import org.leo.boot.data.writebehind.ItemWriteBehind;
+import org.leo.boot.data.writebehind.WriteBehindTimeoutException;
+import org.leo.boot.rest.idempotency.IdempotencyStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 /**
@@ -23,14 +40,40 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/item")
 public class ItemController {
 
+  private static final int MAX_MULTI_GET = 100;
+
+  private static final long WRITE_BEHIND_WAIT = 5000;
+
+  /**
+   * With an Idempotency-Key header a retried request (same key, same body) gets the response of the first one
+   * instead of creating the item again, see IdempotencyStore
+   */
   @RequestMapping(method = RequestMethod.POST)
-  public Map<String,Object> createBook(@RequestBody Map<String, Object> itemMap) {
+  public Map<String,Object> createBook(@RequestBody Map<String, Object> itemMap,
+      @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+    if (idempotencyKey == null) {
+      return createItem(itemMap);
+    }
+
+    // the body keys are sorted so the fingerprint does not depend on the json field order
+    String fingerprint = DigestUtils.md5DigestAsHex(("POST /item " + new TreeMap<String, Object>(itemMap)).getBytes(StandardCharsets.UTF_8));
+
+    return idempotencyStore.execute(idempotencyKey, fingerprint, () -> createItem(itemMap));
+  }
+
+  private Map<String,Object> createItem(Map<String, Object> itemMap) {
     Item item = new Item(itemMap.get("name").toString(),
         itemMap.get("code").toString(),
         itemMap.get("type").toString(),
         Integer.parseInt(itemMap.get("quantity").toString()));
 
-    itemRepository.save(item);
+    // in write behind mode the item is only queued, it gets its id right away and is inserted by a later batch
+    if (itemWriteBehind != null) {
+      itemWriteBehind.enqueue(item);
+    } else {
+      itemRepository.save(item);
+    }
+    itemSearchIndex.index(item);
 
     Map<String,Object> response = new LinkedHashMap<String,Object>();
 
@@ -40,9 +83,87 @@ public class ItemController {
     return response;
   }
 
+  /**
+   * Item read with a strong ETag, when the client sends If-None-Match only the item version is read
+   * and an unchanged item is answered with a 304 without body
+   */
   @RequestMapping(method = RequestMethod.GET, value="/{itemId}")
-  public Item getItemDetails(@PathVariable("itemId") String itemId) {
-    return itemRepository.findOne(itemId);
+  public ResponseEntity<Item> getItemDetails(@PathVariable("itemId") String itemId,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    if (ifNoneMatch != null) {
+      Long version = itemRepository.findVersions(Collections.singletonList(itemId)).get(itemId);
+      String etag = ItemETags.of(itemId, version);
+
+      if (version != null && ItemETags.matches(ifNoneMatch, etag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+      }
+    }
+
+    Item item = findItem(itemId);
+
+    // an unknown id keeps answering 200 without body
+    if (item == null) {
+      return ResponseEntity.ok(null);
+    }
+
+    return ResponseEntity.ok().eTag(ItemETags.of(itemId, item.getVersion())).body(item);
+  }
+
+  /**
+   * Multi get, resolves all the ids with one $in query and returns the items in the order of the ids
+   * the ids that do not match any item are listed under "missing"
+   * The whole response has a strong ETag computed from the ids and the item versions, handled like the single item read
+   */
+  @RequestMapping(method = RequestMethod.GET, value="/multi")
+  public ResponseEntity<Map<String, Object>> getItems(@RequestParam("ids") List<String> ids,
+      @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+    if (ids.size() > MAX_MULTI_GET) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    // the overlay is read before mongodb : an item written in between is then found in one of them, not missed by both
+    Map<String, Item> pending = getPending(ids);
+
+    if (ifNoneMatch != null) {
+      String etag = multiGetETag(ids, itemRepository.findVersions(ids), pending);
+
+      if (ItemETags.matches(ifNoneMatch, etag)) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+      }
+    }
+
+    Map<String, Item> found = new HashMap<String, Item>();
+    Map<String, Long> versions = new HashMap<String, Long>();
+
+    for (Item item : itemRepository.findAll(ids)) {
+      found.put(item.getId(), item);
+      versions.put(item.getId(), item.getVersion() == null ? 0L : item.getVersion());
+    }
+
+    for (Map.Entry<String, Item> item : pending.entrySet()) {
+      found.putIfAbsent(item.getKey(), item.getValue());
+    }
+
+    List<Item> items = new ArrayList<Item>();
+    List<String> missing = new ArrayList<String>();
+
+    for (String id : ids) {
+      Item item = found.get(id);
+
+      if (item != null) {
+        items.add(item);
+      } else {
+        missing.add(id);
+      }
+    }
+
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+    response.put("total Items", items.size());
+    response.put("items", items);
+    response.put("missing", missing);
+
+    return ResponseEntity.ok().eTag(multiGetETag(ids, versions, pending)).body(response);
   }
 
   @RequestMapping(method = RequestMethod.PUT, value="/{itemId}")
@@ -53,18 +174,24 @@ public class ItemController {
         Integer.parseInt(itemMap.get("quantity").toString()));
 
     item.setId(itemId);
+    awaitPersisted(itemId);
 
     Map<String, Object> response = new LinkedHashMap<String, Object>();
 
+    Item saved = itemRepository.updateItem(item);
+    itemSearchIndex.index(saved);
+
     response.put("message", "Item Updated successfully");
-    response.put("item", itemRepository.save(item));
+    response.put("item", saved);
 
     return response;
   }
 
   @RequestMapping(method = RequestMethod.DELETE, value="/{itemId}")
   public Map<String, String> deleteBook(@PathVariable("itemId") String itemId) {
+    awaitPersisted(itemId);
     itemRepository.delete(itemId);
+    itemSearchIndex.remove(itemId);
 
     Map<String, String> response = new HashMap<String, String>();
     response.put("message", "Item deleted successfully");
@@ -74,8 +201,23 @@ public class ItemController {
 
   @RequestMapping(method = RequestMethod.GET)
   public Map<String,Object> getAllBooks() {
+    // snapshot of the overlay before mongodb, like the multi get
+    List<Item> pending = itemWriteBehind == null ? Collections.<Item>emptyList() : new ArrayList<Item>(itemWriteBehind.getPendingItems());
     List<Item> items = itemRepository.findAll();
     Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+    if (!pending.isEmpty()) {
+      Set<String> listed = new HashSet<String>();
+
+      for (Item item : items) {
+        listed.add(item.getId());
+      }
+      for (Item item : pending) {
+        if (listed.add(item.getId())) {
+          items.add(item);
+        }
+      }
+    }
     
     response.put("total Items", items.size());
     response.put("items", items);
@@ -85,6 +227,15 @@ public class ItemController {
   
   @RequestMapping(method = RequestMethod.PUT, value="/{itemId}/{rank}")
   public Map<String, String> setRanking(@PathVariable("itemId") String itemId, @PathVariable("rank") int rank) {
+    // the rank is set by item name, a queued item with that name has to be in mongodb first
+    if (itemWriteBehind != null) {
+      for (Item pending : itemWriteBehind.getPendingItems()) {
+        if (itemId.equals(pending.getName())) {
+          awaitPersisted(pending.getId());
+        }
+      }
+    }
+
     int result = itemRepository.setItemRank(itemId, rank);
     
     Map<String,String> response = new HashMap<String,String>();
@@ -94,6 +245,96 @@ public class ItemController {
     return response;
   }
 
+  /**
+   * Ranked prefix and substring search over the name, code and type of the items, served from ItemSearchIndex
+   * page is zero based and size is capped to 100, the pages past ItemSearchIndex.MAX_RESULT_WINDOW hits are empty
+   */
+  @RequestMapping(method = RequestMethod.GET, value="/search")
+  public Map<String, Object> searchItems(@RequestParam("q") String query,
+      @RequestParam(value = "page", defaultValue = "0") int page,
+      @RequestParam(value = "size", defaultValue = "20") int size) {
+    page = Math.max(page, 0);
+    size = Math.min(Math.max(size, 1), 100);
+
+    SearchResult result = itemSearchIndex.search(query, page, size);
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+    response.put("query", query);
+    response.put("page", page);
+    response.put("size", size);
+    response.put("total Items", result.getTotal());
+    response.put("items", result.getItems());
+
+    return response;
+  }
+
+  /**
+   * The item from mongodb or, in write behind mode, from the items not written yet
+   */
+  private Item findItem(String itemId) {
+    Item pending = itemWriteBehind == null ? null : itemWriteBehind.getPending(itemId);
+    return pending != null ? pending : itemRepository.findOne(itemId);
+  }
+
+  /**
+   * ETag of a multi get, the same for the 304 check and the response : the versions found in mongodb,
+   * a pending item not in mongodb yet counting as version 0
+   */
+  private static String multiGetETag(List<String> ids, Map<String, Long> versions, Map<String, Item> pending) {
+    Map<String, Long> merged = new HashMap<String, Long>(versions);
+
+    for (String id : pending.keySet()) {
+      merged.putIfAbsent(id, 0L);
+    }
+    return ItemETags.of(ids, merged);
+  }
+
+  /**
+   * The pending items among the ids, empty without write behind
+   */
+  private Map<String, Item> getPending(List<String> ids) {
+    Map<String, Item> pending = new HashMap<String, Item>();
+
+    if (itemWriteBehind != null) {
+      for (String id : ids) {
+        Item item = itemWriteBehind.getPending(id);
+
+        if (item != null) {
+          pending.put(id, item);
+        }
+      }
+    }
+    return pending;
+  }
+
+  /**
+   * Updates and deletes go straight to mongodb, they wait for a queued item to be inserted so the insert cannot overwrite them
+   * throws WriteBehindTimeoutException when the item is still queued after WRITE_BEHIND_WAIT ms
+   */
+  private void awaitPersisted(String itemId) {
+    if (itemWriteBehind == null) {
+      return;
+    }
+
+    try {
+      if (!itemWriteBehind.awaitPersisted(itemId, WRITE_BEHIND_WAIT)) {
+        throw new WriteBehindTimeoutException();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new WriteBehindTimeoutException();
+    }
+  }
+
   @Autowired
   private ItemRepository itemRepository;
+
+  @Autowired
+  private ItemSearchIndex itemSearchIndex;
+
+  @Autowired
+  private IdempotencyStore idempotencyStore;
+
+  @Autowired(required = false)
+  private ItemWriteBehind itemWriteBehind;
 }
@@ -0,0 +1,55 @@
+package org.leo.boot.rest.api;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.util.DigestUtils;
+
+/**
+ * Strong ETags of the item reads, derived from the item versions so they can be checked without loading the items
+ * - single item : "{id}-{version}"
+ * - multi get   : md5 of the ids and versions in the requested order, a missing item counts as version -1
+ * @author fahdessid
+ */
+final class ItemETags {
+
+  private ItemETags() {
+  }
+
+  static String of(String id, Long version) {
+    return '"' + id + '-' + (version == null ? 0L : version) + '"';
+  }
+
+  static String of(List<String> ids, Map<String, Long> versions) {
+    StringBuilder builder = new StringBuilder();
+
+    for (String id : ids) {
+      Long version = versions.get(id);
+      builder.append(id).append('-').append(version == null ? -1L : version).append(';');
+    }
+
+    return '"' + DigestUtils.md5DigestAsHex(builder.toString().getBytes(StandardCharsets.UTF_8)) + '"';
+  }
+
+  /**
+   * If-None-Match holds a list of ETags or *, GET uses the weak comparison so a W/ prefix is ignored
+   */
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) {
+      return false;
+    }
+
+    for (String candidate : ifNoneMatch.split(",")) {
+      candidate = candidate.trim();
+      if (candidate.startsWith("W/")) {
+        candidate = candidate.substring(2);
+      }
+      if (candidate.equals("*") || candidate.equals(etag)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+}
@@ -0,0 +1,141 @@
+package org.leo.boot.rest.api;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.bson.types.ObjectId;
+import org.leo.boot.data.repository.ItemRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.DBObject;
+
+/**
+ * Bulk export of the items collection as a gzip compressed csv or ndjson (one json document per line) file
+ * 
+ * The documents are written one by one from the mongodb cursor into the gzip stream of the response,
+ * so the memory used does not depend on the size of the collection
+ * StreamingResponseBody is written from an async thread, the servlet thread is released as soon as the headers are set
+ * The async request is bounded by spring.mvc.async.request-timeout (30s by default in Tomcat), raised in application.properties
+ * 
+ * Every line starts with the _id of the document, when the connection breaks the client calls the export again with
+ * after=<last _id received> and gets the documents following that one
+ * @author fahdessid
+ */
+@RestController
+@RequestMapping("/item/export")
+public class ItemExportController {
+
+  private static final List<String> EXPORTABLE_FIELDS = Arrays.asList("name", "code", "type", "quantity", "rank");
+
+  private static final MediaType GZIP = MediaType.parseMediaType("application/gzip");
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  @RequestMapping(method = RequestMethod.GET)
+  public ResponseEntity<StreamingResponseBody> exportItems(
+      @RequestParam(value = "format", defaultValue = "csv") String format,
+      @RequestParam(value = "fields", required = false) List<String> fields,
+      @RequestParam(value = "type", required = false) String type,
+      @RequestParam(value = "after", required = false) String afterId) {
+    List<String> projection = fields == null || fields.isEmpty() ? EXPORTABLE_FIELDS : fields;
+
+    if (!EXPORTABLE_FIELDS.containsAll(projection) || !("csv".equals(format) || "ndjson".equals(format))) {
+      return ResponseEntity.badRequest().build();
+    }
+
+    boolean csv = "csv".equals(format);
+    StreamingResponseBody body = outputStream -> {
+      try (CloseableIterator<DBObject> documents = itemRepository.streamItems(type, projection, afterId);
+          Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(outputStream, BUFFER_SIZE), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+        if (csv && afterId == null) {
+          writeCsvHeader(writer, projection);
+        }
+
+        while (documents.hasNext()) {
+          DBObject document = documents.next();
+
+          if (csv) {
+            writeCsvLine(writer, document, projection);
+          } else {
+            writeJsonLine(writer, document, projection);
+          }
+        }
+      }
+    };
+
+    return ResponseEntity.ok()
+        .contentType(GZIP)
+        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=items." + format + ".gz")
+        .body(body);
+  }
+
+  private static void writeCsvHeader(Writer writer, List<String> fields) throws IOException {
+    writer.write("_id");
+    for (String field : fields) {
+      writer.write(',');
+      writer.write(field);
+    }
+    writer.write('\n');
+  }
+
+  private static void writeCsvLine(Writer writer, DBObject document, List<String> fields) throws IOException {
+    writer.write(idOf(document));
+    for (String field : fields) {
+      Object value = document.get(field);
+
+      writer.write(',');
+      if (value != null) {
+        writer.write(escapeCsv(value.toString()));
+      }
+    }
+    writer.write('\n');
+  }
+
+  private void writeJsonLine(Writer writer, DBObject document, List<String> fields) throws IOException {
+    Map<String, Object> line = new LinkedHashMap<String, Object>();
+
+    line.put("_id", idOf(document));
+    for (String field : fields) {
+      line.put(field, document.get(field));
+    }
+
+    writer.write(objectMapper.writeValueAsString(line));
+    writer.write('\n');
+  }
+
+  private static String idOf(DBObject document) {
+    Object id = document.get("_id");
+    return id instanceof ObjectId ? ((ObjectId) id).toHexString() : String.valueOf(id);
+  }
+
+  private static String escapeCsv(String value) {
+    if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+      return value;
+    }
+    return '"' + value.replace("\"", "\"\"") + '"';
+  }
+
+  @Autowired
+  private ItemRepository itemRepository;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+}
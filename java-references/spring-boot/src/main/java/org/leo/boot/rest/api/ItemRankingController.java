@@ -0,0 +1,35 @@
+package org.leo.boot.rest.api;
+
+import java.util.Map;
+
+import org.leo.boot.data.ranking.ItemRankingJob;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Ranking job of the items (see ItemRankingJob) : POST /item/ranking starts a run and answers right away (202, or 409 when
+ * a run is already going on), GET /item/ranking gives the progress of the current run and the outcome of the last one
+ * @author fahdessid
+ */
+@RestController
+@RequestMapping("/item/ranking")
+public class ItemRankingController {
+
+  @RequestMapping(method = RequestMethod.POST)
+  public ResponseEntity<Map<String, Object>> startRanking() {
+    HttpStatus status = itemRankingJob.start() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT;
+    return new ResponseEntity<Map<String, Object>>(itemRankingJob.getStatus(), status);
+  }
+
+  @RequestMapping(method = RequestMethod.GET)
+  public Map<String, Object> getRankingStatus() {
+    return itemRankingJob.getStatus();
+  }
+
+  @Autowired
+  private ItemRankingJob itemRankingJob;
+}
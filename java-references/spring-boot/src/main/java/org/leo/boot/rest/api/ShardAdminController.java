@@ -0,0 +1,75 @@
+package org.leo.boot.rest.api;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.leo.boot.data.sharding.ShardConnector;
+import org.leo.boot.data.sharding.ShardedMongoTemplate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Shards of the items collection : GET /shards lists them with their document count,
+ * POST /shards?name=&uri= adds a shard and starts moving to it the items it now owns, the application keeps serving meanwhile
+ * The shard is recorded on the default shard (the uri included), the other instances and the restarts connect it too
+ * Only registered with items.sharding.admin-enabled=true, the endpoint is meant for an internal network
+ * @author fahdessid
+ */
+@RestController
+@RequestMapping("/shards")
+@ConditionalOnProperty(name = {"items.sharding.enabled", "items.sharding.admin-enabled"}, havingValue = "true")
+public class ShardAdminController {
+
+  @RequestMapping(method = RequestMethod.GET)
+  public Map<String, Object> getShards() {
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+    response.put("shards", mongoTemplate.getShardSizes());
+    response.put("rebalancing", mongoTemplate.isRebalancing());
+    return response;
+  }
+
+  @RequestMapping(method = RequestMethod.POST)
+  public ResponseEntity<Map<String, Object>> addShard(@RequestParam("name") String name, @RequestParam("uri") String uri) {
+    Map<String, Object> response = new LinkedHashMap<String, Object>();
+
+    // checked before connecting, a rejected shard does not leave a client open
+    if (mongoTemplate.hasShard(name) || mongoTemplate.isRebalancing()) {
+      return conflict(response);
+    }
+
+    MongoTemplate shard = shardConnector.connect(uri);
+    try {
+      mongoTemplate.addShard(name, uri, shard);
+    } catch (IllegalArgumentException | IllegalStateException e) {
+      // added or rebalancing meanwhile
+      shardConnector.disconnect(shard);
+      return conflict(response);
+    } catch (RuntimeException e) {
+      shardConnector.disconnect(shard);
+      throw e;
+    }
+
+    response.put("message", "Shard added, rebalancing started");
+    response.put("shards", mongoTemplate.getShardNames());
+    return new ResponseEntity<Map<String, Object>>(response, HttpStatus.ACCEPTED);
+  }
+
+  private static ResponseEntity<Map<String, Object>> conflict(Map<String, Object> response) {
+    response.put("message", "Shard already exists or a rebalancing is running");
+    return new ResponseEntity<Map<String, Object>>(response, HttpStatus.CONFLICT);
+  }
+
+  @Autowired
+  private ShardedMongoTemplate mongoTemplate;
+
+  @Autowired
+  private ShardConnector shardConnector;
+}
@@ -0,0 +1,13 @@
+package org.leo.boot.rest.idempotency;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * A duplicate request gave up waiting for the first request using the same Idempotency-Key
+ * @author fahdessid
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(value = HttpStatus.CONFLICT, reason = "A request with the same Idempotency-Key is still in progress")
+public class IdempotencyKeyInProgressException extends RuntimeException {
+}
@@ -0,0 +1,13 @@
+package org.leo.boot.rest.idempotency;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * An Idempotency-Key sent again with a different request
+ * @author fahdessid
+ */
+@SuppressWarnings("serial")
+@ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY, reason = "Idempotency-Key already used for another request")
+public class IdempotencyKeyReusedException extends RuntimeException {
+}
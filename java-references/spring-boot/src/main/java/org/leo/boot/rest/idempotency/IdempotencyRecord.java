@@ -0,0 +1,32 @@
+package org.leo.boot.rest.idempotency;
+
+import java.util.Date;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.Data;
+
+/**
+ * Idempotency-Key document of the mongo store, the response is null while the first request is running
+ * and then holds the json of the response, leaseUntil is when a waiting request may take over the key of a running one
+ * @author fahdessid
+ */
+@Data
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+
+  public IdempotencyRecord(String key, String fingerprint, Date createdAt, Date leaseUntil) {
+    this.key = key;
+    this.fingerprint = fingerprint;
+    this.createdAt = createdAt;
+    this.leaseUntil = leaseUntil;
+  }
+
+  @Id
+  private String key;
+  private String fingerprint;
+  private Date createdAt;
+  private Date leaseUntil;
+  private String response;
+}
@@ -0,0 +1,24 @@
+package org.leo.boot.rest.idempotency;
+
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Dedupe store for the Idempotency-Key request header
+ * 
+ * The first request using a key runs the write and its response is kept for the key lifetime,
+ * a replay of the key gets the kept response without running the write again,
+ * a duplicate arriving while the first request is still running waits for the first response
+ * 
+ * A key is bound to the request it was first used with (its fingerprint), reusing it for another request is refused
+ * When the write fails the key is released so the client can retry with the same key
+ * 
+ * Two implementations, selected by the idempotency.store property :
+ * - memory (default) : bounded in process map, keys are only deduplicated per application instance
+ * - mongo : keys shared by all the instances through a mongodb collection with a ttl index
+ * @author fahdessid
+ */
+public interface IdempotencyStore {
+
+  Map<String, Object> execute(String key, String fingerprint, Supplier<Map<String, Object>> write);
+}
@@ -0,0 +1,123 @@
+package org.leo.boot.rest.idempotency;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In process IdempotencyStore
+ * 
+ * Every key maps to a future completed with the response of the first request, duplicates block on that future
+ * The entries are also queued in insertion order, and since they all have the same ttl the head of the queue
+ * is always the next key to expire : each new key evicts the expired keys and then the oldest completed keys above
+ * idempotency.max-keys, skipping the keys still in flight, so the store stays bounded without a background thread
+ * @author fahdessid
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+  @Override
+  public Map<String, Object> execute(String key, String fingerprint, Supplier<Map<String, Object>> write) {
+    long now = System.currentTimeMillis();
+
+    while (true) {
+      Entry entry = new Entry(key, fingerprint, now + TimeUnit.SECONDS.toMillis(ttlSeconds));
+      Entry existing = entries.putIfAbsent(key, entry);
+
+      if (existing == null) {
+        order.add(entry);
+        evict(now);
+        return run(key, entry, write);
+      }
+
+      if (existing.expiresAt < now) {
+        entries.remove(key, existing);
+        continue;
+      }
+
+      if (!existing.fingerprint.equals(fingerprint)) {
+        throw new IdempotencyKeyReusedException();
+      }
+
+      try {
+        return existing.response.get(waitTimeout, TimeUnit.MILLISECONDS);
+      } catch (ExecutionException e) {
+        // the first request failed and released the key, try to take it
+        continue;
+      } catch (TimeoutException e) {
+        throw new IdempotencyKeyInProgressException();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IdempotencyKeyInProgressException();
+      }
+    }
+  }
+
+  private Map<String, Object> run(String key, Entry entry, Supplier<Map<String, Object>> write) {
+    try {
+      Map<String, Object> response = write.get();
+      entry.response.complete(response);
+      return response;
+    } catch (RuntimeException e) {
+      entries.remove(key, entry);
+      entry.response.completeExceptionally(e);
+      throw e;
+    }
+  }
+
+  private void evict(long now) {
+    for (Iterator<Entry> it = order.iterator(); it.hasNext();) {
+      Entry entry = it.next();
+
+      if (entries.get(entry.key) != entry) {
+        // already removed (expired on access or failed write)
+        it.remove();
+      } else if (entry.expiresAt < now || (entries.size() > maxKeys && entry.response.isDone())) {
+        entries.remove(entry.key, entry);
+        it.remove();
+      } else if (entries.size() <= maxKeys) {
+        // the following keys expire later
+        break;
+      }
+      // else a key in flight above max-keys, the completed keys behind it are evicted instead
+    }
+  }
+
+  private static class Entry {
+
+    Entry(String key, String fingerprint, long expiresAt) {
+      this.key = key;
+      this.fingerprint = fingerprint;
+      this.expiresAt = expiresAt;
+    }
+
+    final String key;
+    final String fingerprint;
+    final long expiresAt;
+    final CompletableFuture<Map<String, Object>> response = new CompletableFuture<Map<String, Object>>();
+  }
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final Queue<Entry> order = new ConcurrentLinkedQueue<Entry>();
+
+  @Value("${idempotency.ttl-seconds:86400}")
+  private long ttlSeconds;
+
+  @Value("${idempotency.max-keys:100000}")
+  private int maxKeys;
+
+  @Value("${idempotency.wait-timeout:10000}")
+  private long waitTimeout;
+}
@@ -0,0 +1,172 @@
+package org.leo.boot.rest.idempotency;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * IdempotencyStore shared by all the application instances through the idempotency_keys collection
+ * 
+ * The insert of the key document is the claim : the unique _id makes exactly one request win, the others
+ * poll the document until the winner stores its response (as json, so a replay renders exactly like the first response)
+ * A ttl index on createdAt lets mongodb drop the keys once idempotency.ttl-seconds is elapsed, so the collection stays bounded
+ * 
+ * The claim is a lease of idempotency.lease-millis : when the winner dies before storing its response, a waiting request
+ * takes the key over once the lease is elapsed (a conditional update on the previous lease, so only one of them does)
+ * instead of the key being blocked until the ttl. The lease has to outlast the slowest write, a write still running
+ * when its lease expires may run twice
+ * @author fahdessid
+ */
+@Component
+@ConditionalOnProperty(name = "idempotency.store", havingValue = "mongo")
+public class MongoIdempotencyStore implements IdempotencyStore {
+
+  private static final TypeReference<Map<String, Object>> RESPONSE_TYPE = new TypeReference<Map<String, Object>>() {};
+
+  private static final long MIN_POLL_INTERVAL = 10;
+  private static final long MAX_POLL_INTERVAL = 500;
+
+  @PostConstruct
+  public void createTtlIndex() {
+    mongoTemplate.indexOps(IdempotencyRecord.class)
+        .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttlSeconds, TimeUnit.SECONDS));
+  }
+
+  @Override
+  public Map<String, Object> execute(String key, String fingerprint, Supplier<Map<String, Object>> write) {
+    long deadline = System.currentTimeMillis() + waitTimeout;
+    long pollInterval = MIN_POLL_INTERVAL;
+
+    while (true) {
+      Date lease = new Date(System.currentTimeMillis() + leaseMillis);
+
+      if (claim(key, fingerprint, lease)) {
+        return run(key, lease, write);
+      }
+
+      IdempotencyRecord record = mongoTemplate.findById(key, IdempotencyRecord.class);
+
+      if (record == null) {
+        // the first request failed (or the key expired) in the meantime, the next turn claims the key
+        continue;
+      }
+
+      if (!record.getFingerprint().equals(fingerprint)) {
+        throw new IdempotencyKeyReusedException();
+      }
+
+      if (record.getResponse() != null) {
+        return fromJson(record.getResponse());
+      }
+
+      if ((record.getLeaseUntil() == null || record.getLeaseUntil().getTime() < System.currentTimeMillis())
+          && takeOver(key, record.getLeaseUntil(), lease)) {
+        return run(key, lease, write);
+      }
+
+      if (System.currentTimeMillis() + pollInterval > deadline) {
+        throw new IdempotencyKeyInProgressException();
+      }
+
+      sleep(pollInterval);
+      pollInterval = Math.min(pollInterval * 2, MAX_POLL_INTERVAL);
+    }
+  }
+
+  private boolean claim(String key, String fingerprint, Date lease) {
+    try {
+      mongoTemplate.insert(new IdempotencyRecord(key, fingerprint, new Date(), lease));
+      return true;
+    } catch (DuplicateKeyException e) {
+      // another request owns the key
+      return false;
+    }
+  }
+
+  /**
+   * Takes the key of an owner whose lease expired, only when nobody took it or stored a response meanwhile
+   */
+  private boolean takeOver(String key, Date expiredLease, Date lease) {
+    Query unchanged = new Query(Criteria.where("_id").is(key).and("response").is(null).and("leaseUntil").is(expiredLease));
+    Update renewed = Update.update("leaseUntil", lease).set("createdAt", new Date());
+
+    return mongoTemplate.updateFirst(unchanged, renewed, IdempotencyRecord.class).getN() == 1;
+  }
+
+  private Map<String, Object> run(String key, Date lease, Supplier<Map<String, Object>> write) {
+    Map<String, Object> response;
+
+    try {
+      response = write.get();
+    } catch (RuntimeException e) {
+      // only while we still own the key, it may have been taken over
+      mongoTemplate.remove(new Query(Criteria.where("_id").is(key).and("leaseUntil").is(lease)), IdempotencyRecord.class);
+      throw e;
+    }
+
+    // the first stored response wins when the key was taken over
+    mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(key).and("response").is(null)), Update.update("response", toJson(response)),
+        IdempotencyRecord.class);
+    return response;
+  }
+
+  private String toJson(Map<String, Object> response) {
+    try {
+      return objectMapper.writeValueAsString(response);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private Map<String, Object> fromJson(String response) {
+    try {
+      return objectMapper.readValue(response, RESPONSE_TYPE);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IdempotencyKeyInProgressException();
+    }
+  }
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${idempotency.ttl-seconds:86400}")
+  private long ttlSeconds;
+
+  @Value("${idempotency.wait-timeout:10000}")
+  private long waitTimeout;
+
+  @Value("${idempotency.lease-millis:60000}")
+  private long leaseMillis;
+}